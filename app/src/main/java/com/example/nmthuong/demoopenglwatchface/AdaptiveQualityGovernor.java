@@ -0,0 +1,213 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.util.Arrays;
+
+/**
+ * {@link QualityPolicy} that steps between tiers based on how long recent frames took and on the
+ * battery.
+ * <p>
+ * Frame times are kept for the last {@link #WINDOW_SIZE} frames. Once a second the 95th
+ * percentile is checked: above {@link #DOWNGRADE_FRAME_NANOS} the tier drops, below
+ * {@link #UPGRADE_FRAME_NANOS} it rises. The gap between the two thresholds and the minimum time
+ * spent in a tier before moving keep the tier from flapping. The window restarts on every change,
+ * since frames drawn at another tier say little about the current one.
+ * <p>
+ * The battery caps the tier while not charging: {@link QualityTier#MEDIUM} at or below
+ * {@link #MEDIUM_BATTERY_PERCENT} and {@link QualityTier#LOW} at or below
+ * {@link #LOW_BATTERY_PERCENT}. A cap is only lifted once the level is
+ * {@link #BATTERY_HYSTERESIS_PERCENT} above its threshold.
+ * <p>
+ * Nothing here reads a clock, so a recorded trace of frames and battery reports replays to the
+ * same decisions.
+ */
+public class AdaptiveQualityGovernor implements QualityPolicy {
+
+    /**
+     * Number of recent frame times the percentile is computed over.
+     */
+    public static final int WINDOW_SIZE = 120;
+
+    /**
+     * Fewest frames in the window before the frame times are trusted.
+     */
+    public static final int MIN_SAMPLES = 30;
+
+    /**
+     * Percentile of the frame times that is compared against the thresholds.
+     */
+    public static final int PERCENTILE = 95;
+
+    /**
+     * Frame time above which the tier drops. Leaves headroom in a 60 fps frame for the
+     * compositor.
+     */
+    public static final long DOWNGRADE_FRAME_NANOS = 12000000;
+
+    /**
+     * Frame time below which the tier rises.
+     */
+    public static final long UPGRADE_FRAME_NANOS = 6000000;
+
+    /**
+     * Shortest time in a tier before dropping to a lower one.
+     */
+    public static final long DOWNGRADE_HOLD_MILLIS = 2000;
+
+    /**
+     * Shortest time in a tier before rising to a higher one. Longer than
+     * {@link #DOWNGRADE_HOLD_MILLIS} so that a struggling device backs off quickly but only
+     * retries slowly.
+     */
+    public static final long UPGRADE_HOLD_MILLIS = 10000;
+
+    /**
+     * How often the frame times are checked.
+     */
+    public static final long EVALUATION_INTERVAL_MILLIS = 1000;
+
+    public static final int LOW_BATTERY_PERCENT = 15;
+    public static final int MEDIUM_BATTERY_PERCENT = 30;
+    public static final int BATTERY_HYSTERESIS_PERCENT = 5;
+
+    /**
+     * Ring buffer of the most recent frame times.
+     */
+    private final long[] mFrameNanos = new long[WINDOW_SIZE];
+
+    /**
+     * Sorted copy of {@link #mFrameNanos}, kept to avoid allocating on every check.
+     */
+    private final long[] mSortedFrameNanos = new long[WINDOW_SIZE];
+
+    private int mNumFrames;
+    private int mNextFrame;
+
+    /**
+     * Tier the frame times allow, ignoring the battery.
+     */
+    private QualityTier mFrameTier;
+
+    /**
+     * Highest tier the battery allows.
+     */
+    private QualityTier mBatteryCap = QualityTier.HIGH;
+
+    /**
+     * Tier in effect: the lower of {@link #mFrameTier} and {@link #mBatteryCap}.
+     */
+    private QualityTier mTier;
+
+    /**
+     * When {@link #mTier} last changed, or -1 before the first report.
+     */
+    private long mTierSinceMillis = -1;
+
+    /**
+     * When the frame times were last checked.
+     */
+    private long mLastEvaluationMillis;
+
+    /**
+     * Creates a governor that starts at the given tier.
+     */
+    public AdaptiveQualityGovernor(QualityTier initialTier) {
+        mFrameTier = initialTier;
+        mTier = initialTier;
+    }
+
+    @Override
+    public void onFrameDrawn(long nowMillis, long frameNanos) {
+        if (mTierSinceMillis < 0) {
+            mTierSinceMillis = nowMillis;
+            mLastEvaluationMillis = nowMillis;
+        }
+        mFrameNanos[mNextFrame] = frameNanos;
+        mNextFrame = (mNextFrame + 1) % WINDOW_SIZE;
+        if (mNumFrames < WINDOW_SIZE) {
+            mNumFrames++;
+        }
+
+        if (mNumFrames < MIN_SAMPLES
+                || nowMillis - mLastEvaluationMillis < EVALUATION_INTERVAL_MILLIS) {
+            return;
+        }
+        mLastEvaluationMillis = nowMillis;
+
+        final long percentileNanos = getFrameTimePercentileNanos(PERCENTILE);
+        final long heldMillis = nowMillis - mTierSinceMillis;
+        if (percentileNanos > DOWNGRADE_FRAME_NANOS && heldMillis >= DOWNGRADE_HOLD_MILLIS) {
+            mFrameTier = mTier.lower();
+        } else if (percentileNanos < UPGRADE_FRAME_NANOS && heldMillis >= UPGRADE_HOLD_MILLIS
+                && mFrameTier == mTier) {
+            // Only rise when the frames were drawn at the frame tier. While the battery caps the
+            // tier, fast frames say nothing about the tier above.
+            mFrameTier = mTier.higher();
+        }
+        updateTier(nowMillis);
+    }
+
+    @Override
+    public void onBatteryChanged(long nowMillis, int levelPercent, boolean charging) {
+        if (charging) {
+            mBatteryCap = QualityTier.HIGH;
+        } else {
+            QualityTier cap = getBatteryCap(levelPercent);
+            if (cap.ordinal() > mBatteryCap.ordinal()) {
+                // Recovering. Only lift the cap as far as the level clears the hysteresis band.
+                cap = getBatteryCap(levelPercent - BATTERY_HYSTERESIS_PERCENT);
+                if (cap.ordinal() < mBatteryCap.ordinal()) {
+                    cap = mBatteryCap;
+                }
+            }
+            mBatteryCap = cap;
+        }
+        updateTier(nowMillis);
+    }
+
+    @Override
+    public QualityTier getTier() {
+        return mTier;
+    }
+
+    /**
+     * Returns the given percentile of the frame times in the window, or 0 if it is empty.
+     */
+    public long getFrameTimePercentileNanos(int percentile) {
+        if (mNumFrames == 0) {
+            return 0;
+        }
+        System.arraycopy(mFrameNanos, 0, mSortedFrameNanos, 0, mNumFrames);
+        Arrays.sort(mSortedFrameNanos, 0, mNumFrames);
+        // Nearest rank.
+        int rank = (percentile * mNumFrames + 99) / 100;
+        return mSortedFrameNanos[Math.max(rank, 1) - 1];
+    }
+
+    private static QualityTier getBatteryCap(int levelPercent) {
+        if (levelPercent <= LOW_BATTERY_PERCENT) {
+            return QualityTier.LOW;
+        } else if (levelPercent <= MEDIUM_BATTERY_PERCENT) {
+            return QualityTier.MEDIUM;
+        }
+        return QualityTier.HIGH;
+    }
+
+    private void updateTier(long nowMillis) {
+        QualityTier tier = QualityTier.min(mFrameTier, mBatteryCap);
+        if (tier == mTier) {
+            return;
+        }
+        mTier = tier;
+        mTierSinceMillis = nowMillis;
+        mLastEvaluationMillis = nowMillis;
+        mNumFrames = 0;
+        mNextFrame = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveQualityGovernor{tier=" + mTier + ", frameTier=" + mFrameTier
+                + ", batteryCap=" + mBatteryCap + ", frames=" + mNumFrames + ", p"
+                + PERCENTILE + "=" + getFrameTimePercentileNanos(PERCENTILE) / 1000 + " us}";
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * Renders the next ambient frame ahead of time, so that the next time tick only has to copy it to
+ * the screen.
+ * <p>
+ * In ambient mode the face is drawn once a minute. After a frame is on screen,
+ * {@link #prerender} draws the frame for the next minute into an offscreen
+ * {@link Gles2RenderTarget} while the device is still awake. On the next tick {@link #present}
+ * shows it with a single texture copy, which keeps the wakeup short. Frames are identified by a
+ * key, e.g. the minute since the epoch. If the key doesn't match, e.g. right after entering
+ * ambient mode, the caller draws the frame itself.
+ * <p>
+ * Presenting and prerendering times are tracked so the cost per tick can be compared with
+ * drawing directly.
+ */
+public class AmbientFrameCache {
+    private static final String TAG = "AmbientFrameCache";
+
+    /**
+     * Draws a complete frame into the bound framebuffer.
+     */
+    public interface FrameRenderer {
+        /**
+         * Draws the frame for the given time, covering every pixel.
+         */
+        void drawFrame(long timeMillis);
+    }
+
+    private final GlApi mGl;
+    private final Gles2TextureCopier mCopier;
+    private final FrameRenderer mRenderer;
+
+    /**
+     * Holds the prerendered frame, or null while there is no surface or if it couldn't be
+     * created.
+     */
+    private Gles2RenderTarget mTarget;
+
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Key of the frame in {@link #mTarget}, valid if {@link #mValid} is set.
+     */
+    private long mKey;
+    private boolean mValid;
+
+    private int mHits;
+    private int mMisses;
+    private int mPrerenders;
+    private long mTotalPresentNanos;
+    private long mTotalPrerenderNanos;
+    private long mLastPrerenderNanos;
+
+    /**
+     * Call this from {@code onGlContextCreated()}, then {@link #onSurfaceChanged} once the size
+     * is known.
+     *
+     * @param gl       GL to issue calls through
+     * @param copier   copier for showing prerendered frames
+     * @param renderer draws frames
+     */
+    public AmbientFrameCache(GlApi gl, Gles2TextureCopier copier, FrameRenderer renderer) {
+        mGl = gl;
+        mCopier = copier;
+        mRenderer = renderer;
+    }
+
+    /**
+     * (Re)creates the render target at the given size. Call this from
+     * {@code onGlSurfaceCreated()}.
+     */
+    public void onSurfaceChanged(int width, int height) {
+        release();
+        mWidth = width;
+        mHeight = height;
+        mTarget = Gles2RenderTarget.create(mGl, width, height);
+        if (mTarget == null) {
+            Log.w(TAG, "Can't prerender, drawing ambient frames directly");
+        }
+    }
+
+    /**
+     * Drops the prerendered frame, e.g. because the time zone changed.
+     */
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Copies the prerendered frame to the default framebuffer if it has the given key.
+     *
+     * @return whether the frame was shown. If not, the caller has to draw it.
+     */
+    public boolean present(long key) {
+        if (mTarget == null || !mValid || mKey != key) {
+            mMisses++;
+            return false;
+        }
+        final long startNanos = System.nanoTime();
+        mGl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        mGl.glViewport(0, 0, mWidth, mHeight);
+        // Clearing first lets tiled GPUs skip loading the previous frame.
+        mGl.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        mCopier.copy(mTarget.getTextureId());
+        mHits++;
+        mTotalPresentNanos += System.nanoTime() - startNanos;
+        return true;
+    }
+
+    /**
+     * Draws the frame for the given time into the render target, unless it already holds the
+     * frame with the given key. Leaves the default framebuffer bound. The GL context must be
+     * current.
+     */
+    public void prerender(long key, long timeMillis) {
+        if (mTarget == null || (mValid && mKey == key)) {
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        mTarget.bind();
+        mRenderer.drawFrame(timeMillis);
+        mGl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        mGl.glViewport(0, 0, mWidth, mHeight);
+        mKey = key;
+        mValid = true;
+        mPrerenders++;
+        mLastPrerenderNanos = System.nanoTime() - startNanos;
+        mTotalPrerenderNanos += mLastPrerenderNanos;
+    }
+
+    /**
+     * Returns the number of pixels of a frame, which is what a {@link #present} shades.
+     */
+    public long getPixelCount() {
+        return (long) mWidth * mHeight;
+    }
+
+    /**
+     * Returns the number of frames shown from the cache.
+     */
+    public int getHits() {
+        return mHits;
+    }
+
+    /**
+     * Returns the number of frames the caller had to draw itself.
+     */
+    public int getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * Returns the average CPU time of a successful {@link #present}, in nanoseconds.
+     */
+    public long getAveragePresentNanos() {
+        return mHits == 0 ? 0 : mTotalPresentNanos / mHits;
+    }
+
+    /**
+     * Returns the average CPU time of a {@link #prerender} that drew a frame, in nanoseconds.
+     */
+    public long getAveragePrerenderNanos() {
+        return mPrerenders == 0 ? 0 : mTotalPrerenderNanos / mPrerenders;
+    }
+
+    /**
+     * Returns the CPU time of the last {@link #prerender} that drew a frame, in nanoseconds.
+     */
+    public long getLastPrerenderNanos() {
+        return mLastPrerenderNanos;
+    }
+
+    /**
+     * Deletes the render target. The copier belongs to the caller. Only call this while the GL
+     * context that created it is current.
+     */
+    public void release() {
+        if (mTarget != null) {
+            mTarget.release();
+            mTarget = null;
+        }
+        mValid = false;
+    }
+
+    @Override
+    public String toString() {
+        return "AmbientFrameCache{hits=" + mHits + ", misses=" + mMisses
+                + ", present=" + getAveragePresentNanos() / 1000 + " us"
+                + ", prerender=" + getAveragePrerenderNanos() / 1000 + " us}";
+    }
+}
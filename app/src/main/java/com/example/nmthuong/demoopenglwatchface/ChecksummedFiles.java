@@ -0,0 +1,75 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Helpers for the small binary files the watch faces keep on disk, i.e. the program binaries of
+ * {@link ProgramBinaryCache} and the snapshot of {@link ComplicationSnapshotStore}. Both files
+ * carry a CRC32 of their payload, so damage is detected when they are read back.
+ */
+public final class ChecksummedFiles {
+
+    /**
+     * Suffix of the temporary files {@link #writeAtomically} writes before renaming them. Any
+     * left over were abandoned by a crash and can be deleted.
+     */
+    static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Writes the contents of a file.
+     */
+    interface Content {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    private ChecksummedFiles() {
+    }
+
+    /**
+     * Writes a file under a temporary name and renames it, so a crash never leaves a
+     * half-written file behind under the real name. The directory must exist. On failure the
+     * temporary file is deleted and the previous file, if any, is left alone.
+     */
+    static void writeAtomically(File file, Content content) throws IOException {
+        final File tmp = new File(file.getPath() + TMP_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(tmp));
+            content.writeTo(out);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Can't rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Returns the CRC32 of the given bytes.
+     */
+    static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing useful left to do.
+            }
+        }
+    }
+}
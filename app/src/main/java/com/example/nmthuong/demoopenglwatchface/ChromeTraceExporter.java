@@ -0,0 +1,124 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the events of an {@link EventTrace} in the Chrome trace event JSON format, which
+ * chrome://tracing and the Perfetto UI open directly. Pure Java, so it also runs on a desktop
+ * JVM.
+ * <p>
+ * Sections become begin and end events, counters become counter events and instants become
+ * thread-scoped instant events. Times are in microseconds of {@link System#nanoTime()}.
+ * <p>
+ * Once the ring has wrapped, the begin events of the oldest sections may be gone. Their end
+ * events are dropped, so the sections of every thread still nest.
+ */
+public final class ChromeTraceExporter {
+
+    private ChromeTraceExporter() {
+    }
+
+    /**
+     * Writes every event in the trace's ring.
+     *
+     * @param trace trace to export
+     * @param pid   process ID to attribute the events to
+     * @param out   where to write the JSON
+     * @return the number of events written, which doesn't count dropped end events
+     */
+    public static int export(EventTrace trace, int pid, StringBuilder out) {
+        return export(trace, trace.snapshot(), pid, out);
+    }
+
+    /**
+     * Writes the given events.
+     *
+     * @param trace  trace the events' names are registered in
+     * @param events events from {@link EventTrace#snapshot()}
+     * @param pid    process ID to attribute the events to
+     * @param out    where to write the JSON
+     * @return the number of events written, which doesn't count dropped end events
+     */
+    public static int export(EventTrace trace, long[] events, int pid, StringBuilder out) {
+        final int count = events.length / EventTrace.EVENT_LONGS;
+        // Open sections of every thread.
+        final Map<Long, Integer> depths = new HashMap<>();
+        int written = 0;
+        out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (int i = 0; i < count; i++) {
+            final int type = EventTrace.getType(events, i);
+            final long threadId = EventTrace.getThreadId(events, i);
+            if (type == EventTrace.TYPE_BEGIN || type == EventTrace.TYPE_END) {
+                final Integer depth = depths.get(threadId);
+                if (type == EventTrace.TYPE_BEGIN) {
+                    depths.put(threadId, depth == null ? 1 : depth + 1);
+                } else if (depth == null || depth == 0) {
+                    // Its begin was overwritten.
+                    continue;
+                } else {
+                    depths.put(threadId, depth - 1);
+                }
+            }
+            out.append(written == 0 ? "\n{" : ",\n{").append("\"name\":");
+            appendString(out, trace.getName(EventTrace.getNameId(events, i)));
+            out.append(",\"ph\":\"").append(getPhase(type)).append("\",\"ts\":");
+            appendMicros(out, EventTrace.getTimeNanos(events, i));
+            out.append(",\"pid\":").append(pid)
+                    .append(",\"tid\":").append(threadId);
+            if (type == EventTrace.TYPE_COUNTER) {
+                out.append(",\"args\":{\"value\":").append(EventTrace.getValue(events, i))
+                        .append('}');
+            } else if (type == EventTrace.TYPE_INSTANT) {
+                out.append(",\"s\":\"t\"");
+            }
+            out.append('}');
+            written++;
+        }
+        out.append("\n]}\n");
+        return written;
+    }
+
+    private static char getPhase(int type) {
+        switch (type) {
+            case EventTrace.TYPE_BEGIN:
+                return 'B';
+            case EventTrace.TYPE_END:
+                return 'E';
+            case EventTrace.TYPE_COUNTER:
+                return 'C';
+            default:
+                return 'i';
+        }
+    }
+
+    /**
+     * Appends nanoseconds as microseconds with three decimals.
+     */
+    private static void appendMicros(StringBuilder out, long nanos) {
+        out.append(nanos / 1000).append('.');
+        final long fraction = nanos % 1000;
+        if (fraction < 100) {
+            out.append('0');
+        }
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
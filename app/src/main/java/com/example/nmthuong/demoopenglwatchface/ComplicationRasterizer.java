@@ -0,0 +1,673 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Draws {@link ComplicationDrawable}s into bitmaps on a background thread, and shows them on the
+ * GL surface from a texture atlas.
+ * <p>
+ * A ComplicationDrawable needs a {@link Canvas}, which the GL surface doesn't have. So every
+ * complication gets two bitmaps the size of its bounds. Whenever its data, bounds or ambient state
+ * change, a worker thread draws it into the back bitmap and swaps the two. On the GL thread,
+ * {@link #uploadChanged()} copies the front bitmap of every complication that changed into its
+ * place in a single atlas texture with {@code texSubImage2D}, and {@link #draw} draws all of them
+ * as textured quads in one draw call. Places in the atlas are assigned by a {@link ShelfPacker},
+ * and only assigned again when a complication changes size.
+ * <p>
+ * After construction the drawables are only touched on the worker thread. Changes are left in
+ * their complication for the worker to pick up, so setting them doesn't allocate. A
+ * complication's lock is only held to hand over changes, to swap its bitmaps or to upload the
+ * front one, so the GL thread never waits for Canvas drawing.
+ */
+public class ComplicationRasterizer {
+    private static final String TAG = "ComplicationRasterizer";
+
+    /**
+     * Whether to check for GL errors. This is slow, so not appropriate for production builds.
+     */
+    private static final boolean CHECK_GL_ERRORS = false;
+
+    private static final int TRACE_RASTERIZE =
+            EventTrace.getInstance().registerName("rasterizeComplication");
+
+    /**
+     * Smallest and largest atlas size. The atlas doubles in size until every complication fits.
+     */
+    private static final int MIN_ATLAS_SIZE = 256;
+    private static final int MAX_ATLAS_SIZE = 2048;
+
+    /**
+     * Empty pixels between atlas entries.
+     */
+    private static final int ATLAS_PADDING = 1;
+
+    /**
+     * Results of {@link #planUpload}.
+     */
+    static final int UPLOAD_NOTHING = 0;
+    static final int UPLOAD_IN_PLACE = 1;
+    static final int UPLOAD_REPACK = 2;
+
+    /**
+     * Told when a complication has new content to upload.
+     */
+    public interface Listener {
+        /**
+         * Called on the worker thread after a complication was drawn into its bitmap. Ask for a
+         * frame, e.g. with {@code postInvalidate()}, to show it. Never called once
+         * {@link #quit()} has returned.
+         */
+        void onComplicationRasterized(int complicationId);
+    }
+
+    /**
+     * One complication. Fields are confined as commented.
+     */
+    private static class Slot {
+        final int mId;
+        final ComplicationDrawable mDrawable;
+
+        // Worker thread only.
+        final Rect mBounds = new Rect();
+        final Canvas mCanvas = new Canvas();
+
+        // Guarded by this. Changes not yet applied to the drawable and mBounds.
+        ComplicationData mPendingData;
+        boolean mHasPendingData;
+        final Rect mPendingBounds = new Rect();
+        boolean mHasPendingBounds;
+        boolean mPendingAmbient;
+        boolean mHasPendingAmbient;
+
+        // Guarded by this.
+        Bitmap[] mBitmaps;
+        int mFront;
+        boolean mDirty;
+        final Rect mFrontBounds = new Rect();
+
+        // GL thread only. Where the complication is in the atlas, and whether it is there. Its
+        // size there is in mEntryWidths and mEntryHeights.
+        int mAtlasX;
+        int mAtlasY;
+        boolean mUploaded;
+        final Rect mDrawBounds = new Rect();
+
+        Slot(int id, ComplicationDrawable drawable) {
+            mId = id;
+            mDrawable = drawable;
+        }
+    }
+
+    private final GlApi mGl;
+    private final Listener mListener;
+    private final Slot[] mSlots;
+
+    private final HandlerThread mThread;
+
+    /**
+     * Runs work on {@link #mThread}. Message {@code what} is the index of a slot to draw, so
+     * requests for the same slot coalesce.
+     */
+    private final Handler mHandler;
+
+    /**
+     * Set by {@link #quit()}. Guarded by this.
+     */
+    private boolean mQuit;
+
+    /**
+     * Redraws a complication when it invalidates itself, e.g. after loading an icon. Drawables
+     * only keep a weak reference to their callback, so this holds it.
+     */
+    private final Drawable.Callback mDrawableCallback = new Drawable.Callback() {
+        @Override
+        public void invalidateDrawable(Drawable who) {
+            for (int i = 0; i < mSlots.length; i++) {
+                if (mSlots[i].mDrawable == who) {
+                    requestRasterize(i);
+                }
+            }
+        }
+
+        @Override
+        public void scheduleDrawable(Drawable who, Runnable what, long when) {
+            mHandler.postAtTime(what, who, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(Drawable who, Runnable what) {
+            mHandler.removeCallbacks(what, who);
+        }
+    };
+
+    // GL thread only.
+    private Gles2SpriteBatch mSpriteBatch;
+    private int mAtlasTextureId;
+    private int mAtlasSize;
+    private final int[] mPackWidths;
+    private final int[] mPackHeights;
+    private final int[] mPackPositions;
+    private final boolean[] mPackDirty;
+
+    /**
+     * Size of each complication's entry in the atlas, 0 if it has none.
+     */
+    private final int[] mEntryWidths;
+    private final int[] mEntryHeights;
+
+    /**
+     * Quads of the uploaded complications, rebuilt when {@link #mQuadsDirty} is set or the
+     * surface size changes.
+     */
+    private final float[] mQuads;
+    private boolean mQuadsDirty;
+    private int mQuadsSurfaceWidth;
+    private int mQuadsSurfaceHeight;
+
+    private int mUploads;
+    private int mRepacks;
+    private long mDrawnPixels;
+
+    /**
+     * Starts the worker thread. Call {@link #quit()} when done.
+     *
+     * @param gl        GL to issue calls through
+     * @param ids       complication IDs
+     * @param drawables drawable of each complication. They must not be touched elsewhere
+     *                  afterwards.
+     * @param listener  told when a complication has new content
+     */
+    public ComplicationRasterizer(GlApi gl, int[] ids, ComplicationDrawable[] drawables,
+                                  Listener listener) {
+        mGl = gl;
+        mListener = listener;
+        mSlots = new Slot[ids.length];
+        mPackWidths = new int[ids.length];
+        mPackHeights = new int[ids.length];
+        mPackPositions = new int[ids.length * 2];
+        mPackDirty = new boolean[ids.length];
+        mEntryWidths = new int[ids.length];
+        mEntryHeights = new int[ids.length];
+        mQuads = new float[ids.length * Gles2SpriteBatch.FLOATS_PER_QUAD];
+        for (int i = 0; i < ids.length; i++) {
+            mSlots[i] = new Slot(ids[i], drawables[i]);
+            drawables[i].setCallback(mDrawableCallback);
+        }
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper()) {
+            @Override
+            public void handleMessage(Message message) {
+                if (hasQuit()) {
+                    return;
+                }
+                EventTrace.getInstance().begin(TRACE_RASTERIZE);
+                rasterize(mSlots[message.what]);
+                EventTrace.getInstance().end(TRACE_RASTERIZE);
+            }
+        };
+    }
+
+    /**
+     * Shows new data in a complication. Call this from any thread.
+     */
+    public void setComplicationData(int complicationId, ComplicationData data) {
+        final int index = indexOf(complicationId);
+        if (index < 0) {
+            return;
+        }
+        final Slot slot = mSlots[index];
+        synchronized (slot) {
+            slot.mPendingData = data;
+            slot.mHasPendingData = true;
+        }
+        requestRasterize(index);
+    }
+
+    /**
+     * Moves a complication, in surface pixels with the origin at the top left. Call this from any
+     * thread.
+     */
+    public void setBounds(int complicationId, Rect bounds) {
+        final int index = indexOf(complicationId);
+        if (index < 0) {
+            return;
+        }
+        final Slot slot = mSlots[index];
+        synchronized (slot) {
+            slot.mPendingBounds.set(bounds);
+            slot.mHasPendingBounds = true;
+        }
+        requestRasterize(index);
+    }
+
+    /**
+     * Switches every complication between its ambient and interactive style. Call this from any
+     * thread.
+     */
+    public void setInAmbientMode(boolean inAmbientMode) {
+        for (int i = 0; i < mSlots.length; i++) {
+            final Slot slot = mSlots[i];
+            synchronized (slot) {
+                slot.mPendingAmbient = inAmbientMode;
+                slot.mHasPendingAmbient = true;
+            }
+            requestRasterize(i);
+        }
+    }
+
+    /**
+     * Call this from {@code onGlContextCreated()}. The atlas of a previous context is gone, so
+     * every complication is packed and uploaded again.
+     *
+     * @param eglContext the EGL context the complications are drawn in
+     */
+    public void onGlContextCreated(Object eglContext) {
+        mSpriteBatch = new Gles2SpriteBatch(mGl, eglContext);
+        mAtlasTextureId = 0;
+        mAtlasSize = 0;
+        mQuadsDirty = true;
+        Arrays.fill(mEntryWidths, 0);
+        Arrays.fill(mEntryHeights, 0);
+        for (Slot slot : mSlots) {
+            slot.mUploaded = false;
+            synchronized (slot) {
+                slot.mDirty = slot.mBitmaps != null;
+            }
+        }
+    }
+
+    /**
+     * Uploads the complications drawn since the last call into the atlas. A complication whose
+     * size didn't change is updated in place; otherwise every complication is packed again and
+     * the whole atlas is uploaded. Call this on the GL thread.
+     *
+     * @return the number of complications uploaded
+     */
+    public int uploadChanged() {
+        for (int i = 0; i < mSlots.length; i++) {
+            final Slot slot = mSlots[i];
+            synchronized (slot) {
+                if (slot.mBitmaps == null) {
+                    mPackWidths[i] = 0;
+                    mPackHeights[i] = 0;
+                } else {
+                    mPackWidths[i] = slot.mBitmaps[slot.mFront].getWidth();
+                    mPackHeights[i] = slot.mBitmaps[slot.mFront].getHeight();
+                }
+                mPackDirty[i] = slot.mDirty;
+            }
+        }
+        final int plan = planUpload(mAtlasTextureId != 0, mPackDirty, mPackWidths,
+                mPackHeights, mEntryWidths, mEntryHeights);
+        if (plan == UPLOAD_NOTHING) {
+            return 0;
+        }
+        final boolean repack = plan == UPLOAD_REPACK;
+        if (repack && !repack()) {
+            return 0;
+        }
+
+        if (!repack) {
+            mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+            mGl.glBindTexture(GLES20.GL_TEXTURE_2D, mAtlasTextureId);
+        }
+        int uploaded = 0;
+        for (int i = 0; i < mSlots.length; i++) {
+            final Slot slot = mSlots[i];
+            synchronized (slot) {
+                if (slot.mBitmaps == null || (!slot.mDirty && !repack)) {
+                    continue;
+                }
+                final Bitmap bitmap = slot.mBitmaps[slot.mFront];
+                if (bitmap.getWidth() != mEntryWidths[i]
+                        || bitmap.getHeight() != mEntryHeights[i]) {
+                    // Resized since it was packed. Stays dirty, so the next call packs again.
+                    continue;
+                }
+                mGl.texSubImage2D(GLES20.GL_TEXTURE_2D, 0 /* level */, slot.mAtlasX,
+                        slot.mAtlasY, bitmap);
+                if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(mGl, "texSubImage2D");
+                if (!slot.mUploaded || !slot.mDrawBounds.equals(slot.mFrontBounds)) {
+                    slot.mDrawBounds.set(slot.mFrontBounds);
+                    slot.mUploaded = true;
+                    mQuadsDirty = true;
+                }
+                slot.mDirty = false;
+            }
+            uploaded++;
+        }
+        mUploads += uploaded;
+        return uploaded;
+    }
+
+    /**
+     * Decides how {@link #uploadChanged()} updates the atlas. Nothing is uploaded if no
+     * complication changed. Changed complications that still have the size of their atlas entry
+     * are uploaded in place. If any changed size, or there is no atlas yet, every complication
+     * is packed again.
+     *
+     * @param hasAtlas     whether the atlas texture exists
+     * @param dirty        whether each complication changed since its last upload
+     * @param widths       current width of each complication, 0 if it isn't drawn yet
+     * @param heights      current height of each complication
+     * @param entryWidths  width of each complication's atlas entry
+     * @param entryHeights height of each complication's atlas entry
+     * @return {@link #UPLOAD_NOTHING}, {@link #UPLOAD_IN_PLACE} or {@link #UPLOAD_REPACK}
+     */
+    static int planUpload(boolean hasAtlas, boolean[] dirty, int[] widths, int[] heights,
+                          int[] entryWidths, int[] entryHeights) {
+        boolean anyDirty = false;
+        boolean repack = !hasAtlas;
+        for (int i = 0; i < dirty.length; i++) {
+            if (dirty[i]) {
+                anyDirty = true;
+                if (widths[i] != entryWidths[i] || heights[i] != entryHeights[i]) {
+                    repack = true;
+                }
+            }
+        }
+        if (!anyDirty) {
+            return UPLOAD_NOTHING;
+        }
+        return repack ? UPLOAD_REPACK : UPLOAD_IN_PLACE;
+    }
+
+    /**
+     * Draws every uploaded complication over the bound framebuffer, in one draw call. Call this
+     * on the GL thread.
+     *
+     * @param surfaceWidth  width of the surface the bounds refer to
+     * @param surfaceHeight height of the surface the bounds refer to
+     * @return the number of draw calls issued
+     */
+    public int draw(int surfaceWidth, int surfaceHeight) {
+        if (mAtlasTextureId == 0) {
+            mDrawnPixels = 0;
+            return 0;
+        }
+        if (mQuadsDirty || surfaceWidth != mQuadsSurfaceWidth
+                || surfaceHeight != mQuadsSurfaceHeight) {
+            updateQuads(surfaceWidth, surfaceHeight);
+        }
+        return mSpriteBatch.draw(mAtlasTextureId);
+    }
+
+    /**
+     * Returns the pixels covered by the last {@link #draw}.
+     */
+    public long getDrawnPixels() {
+        return mDrawnPixels;
+    }
+
+    /**
+     * Returns the number of complication uploads so far.
+     */
+    public int getUploads() {
+        return mUploads;
+    }
+
+    /**
+     * Returns the number of times the atlas was packed so far.
+     */
+    public int getRepacks() {
+        return mRepacks;
+    }
+
+    /**
+     * Deletes the atlas and the sprite batch. Only call this while the GL context that created
+     * them is current.
+     */
+    public void releaseGl() {
+        if (mAtlasTextureId != 0) {
+            mGl.glDeleteTextures(1 /* n */, new int[]{mAtlasTextureId}, 0 /* offset */);
+            mAtlasTextureId = 0;
+            mAtlasSize = 0;
+        }
+        if (mSpriteBatch != null) {
+            mSpriteBatch.release();
+            mSpriteBatch = null;
+        }
+    }
+
+    /**
+     * Stops the worker thread and frees the bitmaps. Complications not drawn yet are dropped,
+     * and the listener isn't called once this returns. Call {@link #releaseGl()} first.
+     */
+    public void quit() {
+        synchronized (this) {
+            mQuit = true;
+        }
+        // The worker thread may still be drawing into a bitmap, so it frees them itself.
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                recycleBitmaps();
+            }
+        });
+        mThread.quitSafely();
+    }
+
+    private synchronized boolean hasQuit() {
+        return mQuit;
+    }
+
+    private int indexOf(int complicationId) {
+        for (int i = 0; i < mSlots.length; i++) {
+            if (mSlots[i].mId == complicationId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Asks the worker thread to draw a slot, unless it already will.
+     */
+    private void requestRasterize(int index) {
+        if (!mHandler.hasMessages(index)) {
+            mHandler.sendEmptyMessage(index);
+        }
+    }
+
+    /**
+     * Draws a complication into its back bitmap and swaps the bitmaps. Runs on the worker thread.
+     */
+    private void rasterize(Slot slot) {
+        applyPending(slot);
+        final int width = slot.mBounds.width();
+        final int height = slot.mBounds.height();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        Bitmap[] bitmaps;
+        int back;
+        synchronized (slot) {
+            bitmaps = slot.mBitmaps;
+            back = 1 - slot.mFront;
+        }
+        final Bitmap[] oldBitmaps = bitmaps;
+        if (bitmaps == null || bitmaps[0].getWidth() != width
+                || bitmaps[0].getHeight() != height) {
+            bitmaps = new Bitmap[]{
+                    Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888),
+                    Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+            };
+            back = 0;
+        }
+
+        // The GL thread only reads the front bitmap, so the back one can be drawn unlocked.
+        final Bitmap bitmap = bitmaps[back];
+        bitmap.eraseColor(Color.TRANSPARENT);
+        slot.mCanvas.setBitmap(bitmap);
+        slot.mDrawable.setBounds(0, 0, width, height);
+        slot.mDrawable.draw(slot.mCanvas, System.currentTimeMillis());
+        slot.mCanvas.setBitmap(null);
+
+        synchronized (slot) {
+            slot.mBitmaps = bitmaps;
+            slot.mFront = back;
+            slot.mFrontBounds.set(slot.mBounds);
+            slot.mDirty = true;
+        }
+        if (oldBitmaps != null && oldBitmaps != bitmaps) {
+            // Nothing else refers to them now.
+            oldBitmaps[0].recycle();
+            oldBitmaps[1].recycle();
+        }
+        synchronized (this) {
+            if (!mQuit) {
+                mListener.onComplicationRasterized(slot.mId);
+            }
+        }
+    }
+
+    /**
+     * Frees the bitmaps of every slot. Runs on the worker thread, after the last draw.
+     */
+    private void recycleBitmaps() {
+        for (Slot slot : mSlots) {
+            synchronized (slot) {
+                if (slot.mBitmaps != null) {
+                    slot.mBitmaps[0].recycle();
+                    slot.mBitmaps[1].recycle();
+                    slot.mBitmaps = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the changes set since the slot was last drawn. Runs on the worker thread.
+     */
+    private static void applyPending(Slot slot) {
+        ComplicationData data = null;
+        boolean hasData;
+        boolean ambient;
+        boolean hasAmbient;
+        synchronized (slot) {
+            hasData = slot.mHasPendingData;
+            if (hasData) {
+                data = slot.mPendingData;
+                slot.mPendingData = null;
+                slot.mHasPendingData = false;
+            }
+            if (slot.mHasPendingBounds) {
+                slot.mBounds.set(slot.mPendingBounds);
+                slot.mHasPendingBounds = false;
+            }
+            ambient = slot.mPendingAmbient;
+            hasAmbient = slot.mHasPendingAmbient;
+            slot.mHasPendingAmbient = false;
+        }
+        // The drawable may do work of its own, e.g. start loading icons, so not under the lock.
+        if (hasAmbient) {
+            slot.mDrawable.setInAmbientMode(ambient);
+        }
+        if (hasData) {
+            slot.mDrawable.setComplicationData(data);
+        }
+    }
+
+    /**
+     * Packs the sizes in {@link #mPackWidths} and {@link #mPackHeights} into the smallest atlas
+     * that fits them, (re)allocating the texture if its size changes, and leaves it bound. Runs
+     * on the GL thread.
+     *
+     * @return whether they fit in {@link #MAX_ATLAS_SIZE}
+     */
+    private boolean repack() {
+        int size = Math.max(mAtlasSize, MIN_ATLAS_SIZE);
+        ShelfPacker packer = new ShelfPacker(size, size, ATLAS_PADDING);
+        while (!packer.packAll(mPackWidths, mPackHeights, mSlots.length, mPackPositions)) {
+            if (size >= MAX_ATLAS_SIZE) {
+                Log.w(TAG, "Complications don't fit in a " + size + " x " + size + " atlas");
+                return false;
+            }
+            size *= 2;
+            packer = new ShelfPacker(size, size, ATLAS_PADDING);
+        }
+
+        mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+        if (mAtlasTextureId == 0) {
+            int[] ids = new int[1];
+            mGl.glGenTextures(1 /* n */, ids, 0 /* offset */);
+            mAtlasTextureId = ids[0];
+            mGl.glBindTexture(GLES20.GL_TEXTURE_2D, mAtlasTextureId);
+            // Drawn pixel for pixel, so no filtering is needed.
+            mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                    GLES20.GL_NEAREST);
+            mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER,
+                    GLES20.GL_NEAREST);
+            mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S,
+                    GLES20.GL_CLAMP_TO_EDGE);
+            mGl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T,
+                    GLES20.GL_CLAMP_TO_EDGE);
+        } else {
+            mGl.glBindTexture(GLES20.GL_TEXTURE_2D, mAtlasTextureId);
+        }
+        if (size != mAtlasSize) {
+            mGl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0 /* level */, GLES20.GL_RGBA, size, size,
+                    0 /* border */, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null /* pixels */);
+            mAtlasSize = size;
+        }
+
+        for (int i = 0; i < mSlots.length; i++) {
+            final Slot slot = mSlots[i];
+            slot.mAtlasX = mPackPositions[i * 2];
+            slot.mAtlasY = mPackPositions[i * 2 + 1];
+            mEntryWidths[i] = mPackWidths[i];
+            mEntryHeights[i] = mPackHeights[i];
+        }
+        mQuadsDirty = true;
+        mRepacks++;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "repack: " + packer);
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the quads of the uploaded complications. Bitmap rows are uploaded top row first,
+     * so the top of a quad samples the first row of its atlas entry. Runs on the GL thread.
+     */
+    private void updateQuads(int surfaceWidth, int surfaceHeight) {
+        final float atlasSize = mAtlasSize;
+        int quadCount = 0;
+        mDrawnPixels = 0;
+        for (int i = 0; i < mSlots.length; i++) {
+            final Slot slot = mSlots[i];
+            final Rect bounds = slot.mDrawBounds;
+            if (!slot.mUploaded || bounds.isEmpty()) {
+                continue;
+            }
+            Gles2SpriteBatch.putQuad(mQuads, quadCount,
+                    2f * bounds.left / surfaceWidth - 1, 1 - 2f * bounds.top / surfaceHeight,
+                    2f * bounds.right / surfaceWidth - 1, 1 - 2f * bounds.bottom / surfaceHeight,
+                    slot.mAtlasX / atlasSize, slot.mAtlasY / atlasSize,
+                    (slot.mAtlasX + mEntryWidths[i]) / atlasSize,
+                    (slot.mAtlasY + mEntryHeights[i]) / atlasSize);
+            mDrawnPixels += (long) bounds.width() * bounds.height();
+            quadCount++;
+        }
+        mSpriteBatch.setQuads(mQuads, quadCount);
+        mQuadsSurfaceWidth = surfaceWidth;
+        mQuadsSurfaceHeight = surfaceHeight;
+        mQuadsDirty = false;
+    }
+}
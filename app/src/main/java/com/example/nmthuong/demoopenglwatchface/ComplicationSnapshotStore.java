@@ -0,0 +1,418 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Keeps the last known data of every complication on disk, so that after a restart the face can
+ * show it right away instead of waiting for every provider to send fresh data.
+ * <p>
+ * The file holds one record per complication: its type, the texts as they read when they were
+ * stored, its range and value, and when it is active. Icons and images can't be stored, so
+ * complications that are only an image aren't stored at all, and the others come back without
+ * their icon until the provider sends fresh data. Complications with a text that depends on
+ * the time, e.g. a countdown or a clock in another time zone, aren't stored either, since the
+ * text as it read when stored would be wrong when restored. The records are checksummed; a
+ * damaged or outdated file is ignored and deleted.
+ * <p>
+ * {@link #put} only encodes the data. Writing the file happens on a worker thread, at most once
+ * per {@link #WRITE_DELAY_MILLIS}, so a burst of updates costs one write.
+ */
+public class ComplicationSnapshotStore {
+    private static final String TAG = "ComplicationSnapshot";
+
+    /**
+     * Name of the file, under {@link Context#getNoBackupFilesDir()}, the watch faces keep their
+     * complication snapshot in.
+     */
+    public static final String FILE_NAME = "complication_snapshot.bin";
+
+    /**
+     * How long after the first unsaved change the file is written.
+     */
+    public static final long WRITE_DELAY_MILLIS = 5000;
+
+    /**
+     * Identifies a snapshot file. "CPSN" in ASCII.
+     */
+    private static final int MAGIC = 0x4350534e;
+
+    /**
+     * Bump this whenever the file layout changes so old files are ignored.
+     */
+    static final int FILE_VERSION = 1;
+
+    /**
+     * Snapshots larger than this are treated as corrupt rather than allocated.
+     */
+    static final int MAX_BODY_LENGTH = 64 * 1024;
+
+    /**
+     * Bits of a record's flags byte telling which fields follow.
+     */
+    private static final int FLAG_SHORT_TEXT = 1;
+    private static final int FLAG_SHORT_TITLE = 1 << 1;
+    private static final int FLAG_LONG_TEXT = 1 << 2;
+    private static final int FLAG_LONG_TITLE = 1 << 3;
+    private static final int FLAG_RANGED_VALUE = 1 << 4;
+
+    private static final int MSG_WRITE = 0;
+
+    private final Context mContext;
+    private final File mFile;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    /**
+     * Encoded record of each complication. Guarded by this.
+     */
+    private final SparseArray<byte[]> mRecords = new SparseArray<>();
+
+    private int mLoaded;
+    private long mLoadNanos;
+
+    /**
+     * Number of times the file was written. Only touched on the worker thread.
+     */
+    private int mWrites;
+
+    /**
+     * Starts the worker thread. Call {@link #close()} when done.
+     *
+     * @param context context to evaluate complication texts with
+     * @param file    file to keep the snapshot in
+     */
+    public ComplicationSnapshotStore(Context context, File file) {
+        mContext = context;
+        mFile = file;
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper()) {
+            @Override
+            public void handleMessage(Message message) {
+                if (message.what == MSG_WRITE) {
+                    write();
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the snapshot. Records that can't be turned back into complication data are skipped.
+     * Call this once, before {@link #put}.
+     *
+     * @return the stored data by complication ID, empty if there is no usable snapshot
+     */
+    public SparseArray<ComplicationData> load() {
+        final long startNanos = System.nanoTime();
+        SparseArray<ComplicationData> result = new SparseArray<>();
+        byte[] body = readBody(mFile);
+        if (body != null) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            try {
+                final int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    final int start = body.length - in.available();
+                    final int id = in.readInt();
+                    ComplicationData data = readRecord(in);
+                    final int end = body.length - in.available();
+                    if (data != null) {
+                        result.put(id, data);
+                        byte[] record = new byte[end - start];
+                        System.arraycopy(body, start, record, 0, record.length);
+                        synchronized (this) {
+                            mRecords.put(id, record);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // The checksum matched, so this is a bug in the format rather than damage.
+                Log.w(TAG, "Can't parse " + mFile, e);
+                result.clear();
+            }
+        }
+        mLoaded = result.size();
+        mLoadNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Stores the data of a complication, replacing what was stored for it. Data that can't be
+     * stored removes the complication from the snapshot, so stale content is never restored.
+     * Storing what is already stored doesn't write the file.
+     */
+    public void put(int complicationId, ComplicationData data) {
+        byte[] record = encode(complicationId, data);
+        synchronized (this) {
+            if (record == null) {
+                if (mRecords.get(complicationId) == null) {
+                    return;
+                }
+                mRecords.remove(complicationId);
+            } else {
+                if (Arrays.equals(record, mRecords.get(complicationId))) {
+                    return;
+                }
+                mRecords.put(complicationId, record);
+            }
+        }
+        if (!mHandler.hasMessages(MSG_WRITE)) {
+            mHandler.sendEmptyMessageDelayed(MSG_WRITE, WRITE_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Writes unsaved changes right away and stops the worker thread once that is done.
+     */
+    public void close() {
+        if (mHandler.hasMessages(MSG_WRITE)) {
+            mHandler.removeMessages(MSG_WRITE);
+            mHandler.sendEmptyMessage(MSG_WRITE);
+        }
+        mThread.quitSafely();
+    }
+
+    /**
+     * Returns the number of complications restored by {@link #load()}.
+     */
+    public int getLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Returns how long {@link #load()} took, in nanoseconds.
+     */
+    public long getLoadNanos() {
+        return mLoadNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ComplicationSnapshotStore{loaded=" + mLoaded
+                + ", load=" + mLoadNanos / 1000 + " us}";
+    }
+
+    /**
+     * Encodes a complication as a record, or returns null if its type can't be stored or a text
+     * depends on the time.
+     */
+    private byte[] encode(int complicationId, ComplicationData data) {
+        if (data == null) {
+            return null;
+        }
+        switch (data.getType()) {
+            case ComplicationData.TYPE_ICON:
+            case ComplicationData.TYPE_SMALL_IMAGE:
+            case ComplicationData.TYPE_LARGE_IMAGE:
+                return null;
+        }
+        if (isTimeDependent(data.getShortText()) || isTimeDependent(data.getShortTitle())
+                || isTimeDependent(data.getLongText()) || isTimeDependent(data.getLongTitle())) {
+            return null;
+        }
+        final long now = System.currentTimeMillis();
+        final String shortText = evaluate(data.getShortText(), now);
+        final String shortTitle = evaluate(data.getShortTitle(), now);
+        final String longText = evaluate(data.getLongText(), now);
+        final String longTitle = evaluate(data.getLongTitle(), now);
+        final boolean ranged = data.getType() == ComplicationData.TYPE_RANGED_VALUE;
+        int flags = 0;
+        flags |= shortText != null ? FLAG_SHORT_TEXT : 0;
+        flags |= shortTitle != null ? FLAG_SHORT_TITLE : 0;
+        flags |= longText != null ? FLAG_LONG_TEXT : 0;
+        flags |= longTitle != null ? FLAG_LONG_TITLE : 0;
+        flags |= ranged ? FLAG_RANGED_VALUE : 0;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(complicationId);
+            out.writeByte(data.getType());
+            out.writeByte(flags);
+            if (shortText != null) {
+                out.writeUTF(shortText);
+            }
+            if (shortTitle != null) {
+                out.writeUTF(shortTitle);
+            }
+            if (longText != null) {
+                out.writeUTF(longText);
+            }
+            if (longTitle != null) {
+                out.writeUTF(longTitle);
+            }
+            if (ranged) {
+                out.writeFloat(data.getValue());
+                out.writeFloat(data.getMinValue());
+                out.writeFloat(data.getMaxValue());
+            }
+            out.writeLong(data.getStartTime());
+            out.writeLong(data.getEndTime());
+        } catch (IOException e) {
+            // Texts longer than writeUTF allows. Not worth storing.
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static boolean isTimeDependent(ComplicationText text) {
+        return text != null && text.isTimeDependent();
+    }
+
+    private String evaluate(ComplicationText text, long now) {
+        if (text == null) {
+            return null;
+        }
+        CharSequence chars = text.getText(mContext, now);
+        return chars == null ? null : chars.toString();
+    }
+
+    /**
+     * Reads a record after its ID and builds its data, or returns null if the builder refuses
+     * it, e.g. because a newer library wants fields this format doesn't store.
+     */
+    private ComplicationData readRecord(DataInputStream in) throws IOException {
+        final int type = in.readUnsignedByte();
+        final int flags = in.readUnsignedByte();
+        ComplicationData.Builder builder = new ComplicationData.Builder(type);
+        if ((flags & FLAG_SHORT_TEXT) != 0) {
+            builder.setShortText(ComplicationText.plainText(in.readUTF()));
+        }
+        if ((flags & FLAG_SHORT_TITLE) != 0) {
+            builder.setShortTitle(ComplicationText.plainText(in.readUTF()));
+        }
+        if ((flags & FLAG_LONG_TEXT) != 0) {
+            builder.setLongText(ComplicationText.plainText(in.readUTF()));
+        }
+        if ((flags & FLAG_LONG_TITLE) != 0) {
+            builder.setLongTitle(ComplicationText.plainText(in.readUTF()));
+        }
+        if ((flags & FLAG_RANGED_VALUE) != 0) {
+            builder.setValue(in.readFloat());
+            builder.setMinValue(in.readFloat());
+            builder.setMaxValue(in.readFloat());
+        }
+        builder.setStartTime(in.readLong());
+        builder.setEndTime(in.readLong());
+        try {
+            return builder.build();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads and checks a snapshot file.
+     *
+     * @return the records section, or null if there is no usable file. Unusable files are
+     * deleted.
+     */
+    static byte[] readBody(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != MAGIC || in.readInt() != FILE_VERSION) {
+                discard(file, "bad magic or version");
+                return null;
+            }
+            final int length = in.readInt();
+            final long checksum = in.readLong();
+            if (length < 2 || length > MAX_BODY_LENGTH) {
+                discard(file, "bad length " + length);
+                return null;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            if (in.read() != -1 || ChecksummedFiles.checksum(body) != checksum) {
+                discard(file, "checksum mismatch");
+                return null;
+            }
+            return body;
+        } catch (EOFException e) {
+            discard(file, "truncated");
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read " + file, e);
+            return null;
+        } finally {
+            ChecksummedFiles.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes a snapshot file holding the given records section, creating its directory if
+     * needed.
+     */
+    static void writeBody(File file, final byte[] body) throws IOException {
+        final File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        ChecksummedFiles.writeAtomically(file, new ChecksummedFiles.Content() {
+            @Override
+            public void writeTo(DataOutputStream out) throws IOException {
+                out.writeInt(MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(body.length);
+                out.writeLong(ChecksummedFiles.checksum(body));
+                out.write(body);
+            }
+        });
+    }
+
+    /**
+     * Writes every record to the file. Runs on the worker thread. Failures are logged and
+     * otherwise ignored; the next change tries again.
+     */
+    private void write() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        synchronized (this) {
+            final int count = mRecords.size();
+            body.write(count >>> 8);
+            body.write(count);
+            for (int i = 0; i < count; i++) {
+                byte[] record = mRecords.valueAt(i);
+                body.write(record, 0, record.length);
+            }
+        }
+        final byte[] bytes = body.toByteArray();
+        try {
+            writeBody(mFile, bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + mFile, e);
+            return;
+        }
+        mWrites++;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "write: " + bytes.length + " bytes, write " + mWrites);
+        }
+    }
+
+    private static void discard(File file, String reason) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Discarding " + file.getName() + ": " + reason);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.content.Context;
+import android.graphics.drawable.Icon;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+
+/**
+ * Filters and batches complication data updates, so bursty providers don't cause redundant
+ * redraws.
+ * <p>
+ * Every update is reduced to a content hash of what a complication shows: its type, texts,
+ * values and icons. An update whose hash matches what the complication already has, or is about
+ * to get, is dropped. Other updates are held until {@link #flush} and replace any update still
+ * held for the same complication, so a burst within one flush window is applied once, with its
+ * last data.
+ * <p>
+ * Texts that depend on the time, and icons, can't be compared cheaply, so they are compared by
+ * object identity. Updates carrying them are never dropped. Icon only exposes what it shows from
+ * API 28.
+ * <p>
+ * Only what is drawn is hashed. Keep the newest data for anything else, e.g. tap actions,
+ * regardless of what this drops.
+ * <p>
+ * Not thread safe; use it from the thread that receives the updates.
+ */
+public class ComplicationUpdateCoalescer {
+
+    /**
+     * Applies the updates that survive filtering.
+     */
+    public interface Applier {
+        /**
+         * Called from {@link #flush} with the newest data of a complication that changed.
+         */
+        void applyComplicationData(int complicationId, ComplicationData data);
+    }
+
+    private final Context mContext;
+    private final FrameScheduler.TimeSource mTimeSource;
+    private final int[] mIds;
+
+    /**
+     * Hash of the data last applied to each complication, valid if {@link #mHasApplied} is set.
+     */
+    private final long[] mAppliedHashes;
+    private final boolean[] mHasApplied;
+
+    /**
+     * Newest data of each complication that hasn't been applied yet, or null.
+     */
+    private final ComplicationData[] mPending;
+    private final long[] mPendingHashes;
+
+    private long mReceived;
+    private long mDeduplicated;
+    private long mMerged;
+    private long mApplied;
+
+    /**
+     * @param context    context to evaluate complication texts with
+     * @param timeSource time to evaluate complication texts at
+     * @param ids        complication IDs
+     */
+    public ComplicationUpdateCoalescer(Context context, FrameScheduler.TimeSource timeSource,
+                                       int[] ids) {
+        mContext = context;
+        mTimeSource = timeSource;
+        mIds = ids.clone();
+        mAppliedHashes = new long[ids.length];
+        mHasApplied = new boolean[ids.length];
+        mPending = new ComplicationData[ids.length];
+        mPendingHashes = new long[ids.length];
+    }
+
+    /**
+     * Takes an update. Unknown complications are ignored.
+     *
+     * @return whether the update is now held for the next {@link #flush}, as opposed to dropped
+     */
+    public boolean offer(int complicationId, ComplicationData data) {
+        final int index = indexOf(complicationId);
+        if (index < 0) {
+            return false;
+        }
+        mReceived++;
+        final long hash = hash(data);
+        if (mPending[index] != null) {
+            if (mPendingHashes[index] == hash) {
+                mDeduplicated++;
+                return false;
+            }
+            mMerged++;
+        } else if (mHasApplied[index] && mAppliedHashes[index] == hash) {
+            mDeduplicated++;
+            return false;
+        }
+        mPending[index] = data;
+        mPendingHashes[index] = hash;
+        return true;
+    }
+
+    /**
+     * Returns whether any update is held.
+     */
+    public boolean hasPending() {
+        for (ComplicationData data : mPending) {
+            if (data != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the held updates. A held update that turned out to restore what the complication
+     * already shows, e.g. A then B then A again, is dropped here.
+     *
+     * @return the number of updates applied
+     */
+    public int flush(Applier applier) {
+        int applied = 0;
+        for (int i = 0; i < mIds.length; i++) {
+            final ComplicationData data = mPending[i];
+            if (data == null) {
+                continue;
+            }
+            mPending[i] = null;
+            if (mHasApplied[i] && mAppliedHashes[i] == mPendingHashes[i]) {
+                mDeduplicated++;
+                continue;
+            }
+            mAppliedHashes[i] = mPendingHashes[i];
+            mHasApplied[i] = true;
+            applier.applyComplicationData(mIds[i], data);
+            applied++;
+        }
+        mApplied += applied;
+        return applied;
+    }
+
+    /**
+     * Returns the number of updates taken by {@link #offer}.
+     */
+    public long getReceived() {
+        return mReceived;
+    }
+
+    /**
+     * Returns the number of updates dropped because they didn't change anything.
+     */
+    public long getDeduplicated() {
+        return mDeduplicated;
+    }
+
+    /**
+     * Returns the number of updates replaced by a newer one before they were applied.
+     */
+    public long getMerged() {
+        return mMerged;
+    }
+
+    /**
+     * Returns the number of updates applied.
+     */
+    public long getApplied() {
+        return mApplied;
+    }
+
+    private int indexOf(int complicationId) {
+        for (int i = 0; i < mIds.length; i++) {
+            if (mIds[i] == complicationId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hashes what a complication shows for the given data with {@link Fnv1a}.
+     */
+    long hash(ComplicationData data) {
+        if (data == null) {
+            return Fnv1a.OFFSET_BASIS;
+        }
+        final long now = mTimeSource.currentTimeMillis();
+        long hash = mix(Fnv1a.OFFSET_BASIS, data.getType());
+        hash = mix(hash, data.getShortText(), now);
+        hash = mix(hash, data.getShortTitle(), now);
+        hash = mix(hash, data.getLongText(), now);
+        hash = mix(hash, data.getLongTitle(), now);
+        hash = mix(hash, Float.floatToIntBits(data.getValue()));
+        hash = mix(hash, Float.floatToIntBits(data.getMinValue()));
+        hash = mix(hash, Float.floatToIntBits(data.getMaxValue()));
+        hash = mix(hash, data.getIcon());
+        hash = mix(hash, data.getBurnInProtectionIcon());
+        hash = mix(hash, data.getSmallImage());
+        hash = mix(hash, data.getStartTime());
+        hash = mix(hash, data.getEndTime());
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return Fnv1a.mixLong(hash, value);
+    }
+
+    private static long mix(long hash, CharSequence chars) {
+        return Fnv1a.mixChars(Fnv1a.mixLong(hash, chars.length()), chars);
+    }
+
+    private long mix(long hash, ComplicationText text, long now) {
+        if (text == null) {
+            return mix(hash, 0);
+        }
+        if (text.isTimeDependent()) {
+            return mix(hash, System.identityHashCode(text));
+        }
+        final CharSequence chars = text.getText(mContext, now);
+        return chars == null ? mix(hash, 1) : mix(hash, chars);
+    }
+
+    private long mix(long hash, Icon icon) {
+        if (icon == null) {
+            return mix(hash, 0);
+        }
+        return mix(hash, System.identityHashCode(icon));
+    }
+}
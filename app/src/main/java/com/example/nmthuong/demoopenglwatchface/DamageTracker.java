@@ -0,0 +1,337 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Works out which parts of the screen change from one frame to the next, so a frame can be drawn
+ * with the scissor test restricted to them. Pure Java, no GL calls.
+ * <p>
+ * The caller describes a fixed number of moving items, e.g. the hands, by their screen bounds in
+ * every frame. Where an item's bounds changed, both the old and the new bounds are damaged: the
+ * old ones to erase the item, the new ones to draw it. The damage is kept as a few disjoint
+ * rectangles in window coordinates (origin at the bottom left, as {@code glScissor} expects).
+ * Rectangles that overlap are merged, and when there are too many, the two whose union wastes
+ * the fewest pixels are merged. If the damage covers too much of the surface, the frame is drawn
+ * whole instead.
+ * <p>
+ * This only works if the previous frame is still in the buffer being drawn, e.g. with
+ * {@code EGL_BUFFER_PRESERVED}. Call {@link #invalidate()} whenever that might not hold.
+ */
+public class DamageTracker {
+
+    /**
+     * Floats per point passed to {@link #setItemBounds}: clip space x, y, z and w.
+     */
+    public static final int FLOATS_PER_CLIP_POINT = 4;
+
+    private final int mItemCount;
+    private final int mMaxRects;
+    private final int mPaddingPixels;
+    private final float mFullFrameFraction;
+
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Left, bottom, right and top of each item in the previous and the current frame. An item is
+     * empty if its right isn't past its left.
+     */
+    private final int[] mPreviousBounds;
+    private final int[] mCurrentBounds;
+
+    /**
+     * Left, bottom, right and top of each damage rectangle, with room for one more while merging.
+     */
+    private final int[] mRects;
+    private int mRectCount;
+
+    private boolean mFullFrameNeeded = true;
+    private boolean mFullFrame;
+    private long mDamagedPixels;
+
+    private long mFrames;
+    private double mDamagedFractionSum;
+
+    /**
+     * @param itemCount         number of moving items
+     * @param maxRects          most damage rectangles to keep, i.e. scissored passes per frame
+     * @param paddingPixels     pixels added around every item, e.g. for antialiasing
+     * @param fullFrameFraction fraction of the surface above which the whole frame is drawn
+     */
+    public DamageTracker(int itemCount, int maxRects, int paddingPixels,
+                         float fullFrameFraction) {
+        if (itemCount <= 0 || maxRects <= 0) {
+            throw new IllegalArgumentException("need at least one item and one rectangle");
+        }
+        mItemCount = itemCount;
+        mMaxRects = maxRects;
+        mPaddingPixels = paddingPixels;
+        mFullFrameFraction = fullFrameFraction;
+        mPreviousBounds = new int[itemCount * 4];
+        mCurrentBounds = new int[itemCount * 4];
+        mRects = new int[(maxRects + 1) * 4];
+    }
+
+    /**
+     * Sets the surface size. The next frame is drawn whole.
+     */
+    public void setSurfaceSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        invalidate();
+    }
+
+    /**
+     * Makes the next frame draw whole, e.g. because the buffer content was lost or everything
+     * changed.
+     */
+    public void invalidate() {
+        mFullFrameNeeded = true;
+    }
+
+    /**
+     * Sets the bounds of an item in the current frame from its points in clip space, e.g. the
+     * vertices of a hand transformed by its MVP matrix. Every point must have a positive w.
+     *
+     * @param item   index of the item
+     * @param points clip space points, {@link #FLOATS_PER_CLIP_POINT} floats each
+     * @param offset index of the first point
+     * @param count  number of points
+     */
+    public void setItemBounds(int item, float[] points, int offset, int count) {
+        if (count == 0) {
+            clearItem(item);
+            return;
+        }
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            final int p = offset + i * FLOATS_PER_CLIP_POINT;
+            final float w = points[p + 3];
+            final float x = (points[p] / w + 1) * 0.5f * mWidth;
+            final float y = (points[p + 1] / w + 1) * 0.5f * mHeight;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        setItemWindowBounds(item, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Sets the bounds of an item in the current frame in window coordinates, for callers that
+     * work out the bounds without transforming points.
+     *
+     * @param item   index of the item
+     * @param left   smallest x covered, in pixels
+     * @param bottom smallest y covered, in pixels
+     * @param right  largest x covered, in pixels
+     * @param top    largest y covered, in pixels
+     */
+    public void setItemWindowBounds(int item, float left, float bottom, float right,
+                                    float top) {
+        final int b = item * 4;
+        mCurrentBounds[b] = (int) Math.floor(left) - mPaddingPixels;
+        mCurrentBounds[b + 1] = (int) Math.floor(bottom) - mPaddingPixels;
+        mCurrentBounds[b + 2] = (int) Math.ceil(right) + mPaddingPixels;
+        mCurrentBounds[b + 3] = (int) Math.ceil(top) + mPaddingPixels;
+    }
+
+    /**
+     * Marks an item as not drawn in the current frame.
+     */
+    public void clearItem(int item) {
+        final int b = item * 4;
+        mCurrentBounds[b] = 0;
+        mCurrentBounds[b + 1] = 0;
+        mCurrentBounds[b + 2] = 0;
+        mCurrentBounds[b + 3] = 0;
+    }
+
+    /**
+     * Computes the damage of the current frame from the item bounds set since the last call.
+     * Items keep their bounds until they are set again.
+     */
+    public void endFrame() {
+        mRectCount = 0;
+        mFullFrame = mFullFrameNeeded;
+        mFullFrameNeeded = false;
+        if (!mFullFrame) {
+            for (int item = 0; item < mItemCount; item++) {
+                final int b = item * 4;
+                if (!sameBounds(b)) {
+                    addRect(mPreviousBounds[b], mPreviousBounds[b + 1], mPreviousBounds[b + 2],
+                            mPreviousBounds[b + 3]);
+                    addRect(mCurrentBounds[b], mCurrentBounds[b + 1], mCurrentBounds[b + 2],
+                            mCurrentBounds[b + 3]);
+                }
+            }
+        }
+        System.arraycopy(mCurrentBounds, 0, mPreviousBounds, 0, mCurrentBounds.length);
+
+        final long surfacePixels = (long) mWidth * mHeight;
+        mDamagedPixels = 0;
+        for (int i = 0; i < mRectCount; i++) {
+            mDamagedPixels += rectArea(i);
+        }
+        if (mDamagedPixels > mFullFrameFraction * surfacePixels) {
+            mFullFrame = true;
+        }
+        if (mFullFrame) {
+            mRectCount = 0;
+            mDamagedPixels = surfacePixels;
+        }
+        mFrames++;
+        mDamagedFractionSum += getDamagedFraction();
+    }
+
+    /**
+     * Returns whether the current frame must be drawn whole.
+     */
+    public boolean isFullFrame() {
+        return mFullFrame;
+    }
+
+    /**
+     * Returns the number of damage rectangles in the current frame. Zero if nothing changed or
+     * the frame is drawn whole.
+     */
+    public int getRectCount() {
+        return mRectCount;
+    }
+
+    /**
+     * Writes the left, bottom, width and height of a damage rectangle, ready for
+     * {@code glScissor}.
+     */
+    public void getRect(int index, int[] result) {
+        final int r = index * 4;
+        result[0] = mRects[r];
+        result[1] = mRects[r + 1];
+        result[2] = mRects[r + 2] - mRects[r];
+        result[3] = mRects[r + 3] - mRects[r + 1];
+    }
+
+    /**
+     * Returns the number of pixels drawn in the current frame.
+     */
+    public long getDamagedPixels() {
+        return mDamagedPixels;
+    }
+
+    /**
+     * Returns the fraction of the surface drawn in the current frame.
+     */
+    public float getDamagedFraction() {
+        final long surfacePixels = (long) mWidth * mHeight;
+        return surfacePixels == 0 ? 1 : (float) mDamagedPixels / surfacePixels;
+    }
+
+    /**
+     * Returns the average of {@link #getDamagedFraction()} over every frame so far.
+     */
+    public float getAverageDamagedFraction() {
+        return mFrames == 0 ? 0 : (float) (mDamagedFractionSum / mFrames);
+    }
+
+    private boolean sameBounds(int b) {
+        return mPreviousBounds[b] == mCurrentBounds[b]
+                && mPreviousBounds[b + 1] == mCurrentBounds[b + 1]
+                && mPreviousBounds[b + 2] == mCurrentBounds[b + 2]
+                && mPreviousBounds[b + 3] == mCurrentBounds[b + 3];
+    }
+
+    /**
+     * Adds a rectangle, clipped to the surface, then merges until the rectangles are disjoint and
+     * there are at most {@link #mMaxRects}.
+     */
+    private void addRect(int left, int bottom, int right, int top) {
+        left = Math.max(left, 0);
+        bottom = Math.max(bottom, 0);
+        right = Math.min(right, mWidth);
+        top = Math.min(top, mHeight);
+        if (right <= left || top <= bottom) {
+            return;
+        }
+        final int r = mRectCount * 4;
+        mRects[r] = left;
+        mRects[r + 1] = bottom;
+        mRects[r + 2] = right;
+        mRects[r + 3] = top;
+        mRectCount++;
+
+        mergeOverlapping();
+        if (mRectCount > mMaxRects) {
+            // Merge the pair whose union adds the fewest pixels.
+            int bestA = 0;
+            int bestB = 1;
+            long bestWaste = Long.MAX_VALUE;
+            for (int a = 0; a < mRectCount; a++) {
+                for (int b = a + 1; b < mRectCount; b++) {
+                    final long waste = unionArea(a, b) - rectArea(a) - rectArea(b);
+                    if (waste < bestWaste) {
+                        bestWaste = waste;
+                        bestA = a;
+                        bestB = b;
+                    }
+                }
+            }
+            merge(bestA, bestB);
+            mergeOverlapping();
+        }
+    }
+
+    /**
+     * Merges rectangles until none of them overlap.
+     */
+    private void mergeOverlapping() {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int a = 0; a < mRectCount && !merged; a++) {
+                for (int b = a + 1; b < mRectCount; b++) {
+                    if (overlap(a, b)) {
+                        merge(a, b);
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean overlap(int a, int b) {
+        final int ra = a * 4;
+        final int rb = b * 4;
+        return mRects[ra] < mRects[rb + 2] && mRects[rb] < mRects[ra + 2]
+                && mRects[ra + 1] < mRects[rb + 3] && mRects[rb + 1] < mRects[ra + 3];
+    }
+
+    /**
+     * Replaces rectangle a with the union of a and b, and removes b.
+     */
+    private void merge(int a, int b) {
+        final int ra = a * 4;
+        final int rb = b * 4;
+        mRects[ra] = Math.min(mRects[ra], mRects[rb]);
+        mRects[ra + 1] = Math.min(mRects[ra + 1], mRects[rb + 1]);
+        mRects[ra + 2] = Math.max(mRects[ra + 2], mRects[rb + 2]);
+        mRects[ra + 3] = Math.max(mRects[ra + 3], mRects[rb + 3]);
+        mRectCount--;
+        System.arraycopy(mRects, mRectCount * 4, mRects, rb, 4);
+    }
+
+    private long rectArea(int i) {
+        final int r = i * 4;
+        return (long) (mRects[r + 2] - mRects[r]) * (mRects[r + 3] - mRects[r + 1]);
+    }
+
+    private long unionArea(int a, int b) {
+        final int ra = a * 4;
+        final int rb = b * 4;
+        return (long) (Math.max(mRects[ra + 2], mRects[rb + 2])
+                - Math.min(mRects[ra], mRects[rb]))
+                * (Math.max(mRects[ra + 3], mRects[rb + 3])
+                - Math.min(mRects[ra + 1], mRects[rb + 1]));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.util.TimeZone;
+
+/**
+ * Turns a time into the angles of the hands in a time zone. Unlike
+ * {@link android.text.format.Time}, setting the time only does arithmetic on the zone's offset,
+ * so it allocates nothing and can run every frame.
+ * <p>
+ * Angles are in degrees clockwise from 12 o'clock. The hour and minute hands move continuously.
+ */
+public final class DialClock {
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private TimeZone mTimeZone;
+
+    private float mHourDegrees;
+    private float mMinuteDegrees;
+    private float mSecondDegrees;
+
+    public DialClock(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Sets the time zone, e.g. after {@code ACTION_TIMEZONE_CHANGED}. Takes effect with the
+     * next {@link #setTime}.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * Sets the hands to a time.
+     *
+     * @param timeMillis   milliseconds since the epoch
+     * @param sweepSeconds whether the second hand moves between whole seconds, otherwise it
+     *                     ticks
+     */
+    public void setTime(long timeMillis, boolean sweepSeconds) {
+        final long localMillis = timeMillis + mTimeZone.getOffset(timeMillis);
+        final long millisOfDay = (localMillis % MILLIS_PER_DAY + MILLIS_PER_DAY) % MILLIS_PER_DAY;
+        final long millisOfMinute = millisOfDay % MILLIS_PER_MINUTE;
+        final float seconds = sweepSeconds ? millisOfMinute / (float) MILLIS_PER_SECOND
+                : millisOfMinute / MILLIS_PER_SECOND;
+        final float minutes = millisOfDay / MILLIS_PER_MINUTE % 60 + seconds / 60;
+        final float hours = millisOfDay / MILLIS_PER_HOUR % 12 + minutes / 60;
+        mSecondDegrees = seconds * (360 / 60);
+        mMinuteDegrees = minutes * (360 / 60);
+        mHourDegrees = hours * (360 / 12);
+    }
+
+    public float getHourDegrees() {
+        return mHourDegrees;
+    }
+
+    public float getMinuteDegrees() {
+        return mMinuteDegrees;
+    }
+
+    public float getSecondDegrees() {
+        return mSecondDegrees;
+    }
+}
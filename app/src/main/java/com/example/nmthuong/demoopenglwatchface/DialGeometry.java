@@ -0,0 +1,168 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * The triangles and colors of the analog dial: three hands pointing at 12 o'clock and the major
+ * and minor ticks, in world units with the dial centered at the origin.
+ * {@link WatchFaceRenderer} builds its geometry from here.
+ */
+public final class DialGeometry {
+
+    /**
+     * Layers of the dial, in drawing order.
+     */
+    public static final int LAYER_HOUR_HAND = 0;
+    public static final int LAYER_MINUTE_HAND = 1;
+    public static final int LAYER_SECOND_HAND = 2;
+    public static final int LAYER_MAJOR_TICKS = 3;
+    public static final int LAYER_MINOR_TICKS = 4;
+    public static final int NUM_LAYERS = 5;
+
+    /**
+     * Length of the second hand in world units. It's the longest hand, so its tip moves the most
+     * pixels per second.
+     */
+    public static final float SECOND_HAND_LENGTH = 1.0f;
+
+    private static final float[] SECOND_HAND_COLOR = {
+            1.0f /* red */,
+            0.0f /* green */,
+            0.0f /* blue */,
+            1.0f /* alpha */
+    };
+
+    private static final float[] MINUTE_HAND_COLOR = {
+            0.7f /* red */,
+            0.7f /* green */,
+            0.7f /* blue */,
+            1.0f /* alpha */
+    };
+
+    private static final float[] HOUR_HAND_COLOR = {
+            0.9f /* red */,
+            0.9f /* green */,
+            0.9f /* blue */,
+            1.0f /* alpha */
+    };
+
+    private static final float[] MAJOR_TICK_COLOR = {
+            1.0f /* red */,
+            1.0f /* green */,
+            1.0f /* blue */,
+            1.0f /* alpha */
+    };
+
+    private static final float[] MINOR_TICK_COLOR = {
+            0.5f /* red */,
+            0.5f /* green */,
+            0.5f /* blue */,
+            1.0f /* alpha */
+    };
+
+    private DialGeometry() {
+    }
+
+    /**
+     * Returns the triangles of every layer, indexed by layer.
+     */
+    public static float[][] createLayerCoords() {
+        float[][] layerCoords = new float[NUM_LAYERS][];
+        layerCoords[LAYER_HOUR_HAND] = getHandTriangleCoords(0.1f, 0.5f);
+        layerCoords[LAYER_MINUTE_HAND] = getHandTriangleCoords(0.06f, 0.8f);
+        layerCoords[LAYER_SECOND_HAND] = getHandTriangleCoords(0.02f, SECOND_HAND_LENGTH);
+        layerCoords[LAYER_MAJOR_TICKS] = getMajorTicksCoords();
+        layerCoords[LAYER_MINOR_TICKS] = getMinorTicksCoords();
+        return layerCoords;
+    }
+
+    /**
+     * Returns the color of every layer, indexed by layer, in RGBA order, each in the range
+     * [0, 1]. The arrays are shared and must not be modified.
+     */
+    public static float[][] getLayerColors() {
+        float[][] layerColors = new float[NUM_LAYERS][];
+        layerColors[LAYER_HOUR_HAND] = HOUR_HAND_COLOR;
+        layerColors[LAYER_MINUTE_HAND] = MINUTE_HAND_COLOR;
+        layerColors[LAYER_SECOND_HAND] = SECOND_HAND_COLOR;
+        layerColors[LAYER_MAJOR_TICKS] = MAJOR_TICK_COLOR;
+        layerColors[LAYER_MINOR_TICKS] = MINOR_TICK_COLOR;
+        return layerColors;
+    }
+
+    /**
+     * Returns the coordinates of the triangle for a hand pointing at 12 o'clock.
+     *
+     * @param width  width of base of triangle
+     * @param length length of triangle
+     */
+    private static float[] getHandTriangleCoords(float width, float length) {
+        return new float[]{
+                // in counterclockwise order:
+                0, length, 0,   // top
+                -width / 2, 0, 0,   // bottom left
+                width / 2, 0, 0    // bottom right
+        };
+    }
+
+    /**
+     * Returns the coordinates of the triangles for the 4 major ticks.
+     */
+    private static float[] getMajorTicksCoords() {
+        float[] trianglesCoords = new float[9 * 4];
+        for (int i = 0; i < 4; i++) {
+            float[] triangleCoords = getMajorTickTriangleCoords(i);
+            System.arraycopy(triangleCoords, 0, trianglesCoords, i * 9, triangleCoords.length);
+        }
+        return trianglesCoords;
+    }
+
+    /**
+     * Returns the coordinates of the triangles for the 8 minor ticks.
+     */
+    private static float[] getMinorTicksCoords() {
+        float[] trianglesCoords = new float[9 * (12 - 4)];
+        int index = 0;
+        for (int i = 0; i < 12; i++) {
+            if (i % 3 == 0) {
+                // This is where a major tick goes, so skip it.
+                continue;
+            }
+            float[] triangleCoords = getMinorTickTriangleCoords(i);
+            System.arraycopy(triangleCoords, 0, trianglesCoords, index, triangleCoords.length);
+            index += 9;
+        }
+        return trianglesCoords;
+    }
+
+    private static float[] getMajorTickTriangleCoords(int index) {
+        return getTickTriangleCoords(0.03f, 0.09f, index * 360 / 4);
+    }
+
+    private static float[] getMinorTickTriangleCoords(int index) {
+        return getTickTriangleCoords(0.02f, 0.06f, index * 360 / 12);
+    }
+
+    private static float[] getTickTriangleCoords(float width, float length, int angleDegrees) {
+        float[] coords = new float[]{
+                0, 1, 0,   // top
+                width / 2, length + 1, 0,   // bottom left
+                -width / 2, length + 1, 0    // bottom right
+        };
+
+        rotateCoords(coords, angleDegrees);
+        return coords;
+    }
+
+    /**
+     * Destructively rotates the given coordinates in the XY plane about the origin by the given
+     * angle.
+     *
+     * @param coords       flattened 3D coordinates
+     * @param angleDegrees angle in degrees clockwise when viewed from negative infinity on the
+     *                     Z axis
+     */
+    private static void rotateCoords(float[] coords, int angleDegrees) {
+        double angleRadians = Math.toRadians(angleDegrees);
+        Vec.rotateZ(coords, 0 /* offset */, coords.length / 3, 3 /* stride */,
+                (float) Math.cos(angleRadians), (float) Math.sin(angleRadians));
+    }
+}
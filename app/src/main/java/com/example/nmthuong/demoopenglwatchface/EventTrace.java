@@ -0,0 +1,235 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cheap tracing of sections, counters and instants into a preallocated ring of fixed-size binary
+ * records, for viewing in a trace viewer after {@link ChromeTraceExporter} turns them into JSON.
+ * <p>
+ * Event names are registered once with {@link #registerName}, typically into a static final
+ * field, and events refer to them by ID. Recording an event writes three longs: the time, the
+ * event type with its name and thread, and a value. It neither allocates nor locks, and costs a
+ * volatile read while tracing is off. Any thread can record; writers claim slots with an atomic
+ * counter and publish them with a per-slot sequence number, so a reader skips slots that are
+ * being written. Once the ring is full, the oldest events are overwritten.
+ * <p>
+ * Tracing is off until {@link #setEnabled} turns it on, which also allocates the ring.
+ */
+public final class EventTrace {
+
+    public static final int TYPE_BEGIN = 1;
+    public static final int TYPE_END = 2;
+    public static final int TYPE_COUNTER = 3;
+    public static final int TYPE_INSTANT = 4;
+
+    /**
+     * Longs per event in the ring.
+     */
+    static final int EVENT_LONGS = 3;
+
+    /**
+     * Most names that can be registered. IDs must fit in {@link #NAME_BITS}.
+     */
+    private static final int MAX_NAMES = 1 << 12;
+    private static final int NAME_BITS = 12;
+    private static final int THREAD_BITS = 40;
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static EventTrace sInstance;
+
+    private final List<String> mNames = new ArrayList<>();
+
+    private volatile boolean mEnabled;
+
+    /**
+     * Events, {@link #EVENT_LONGS} each. Null until tracing is first enabled.
+     */
+    private volatile long[] mRing;
+    private volatile AtomicLongArray mSequences;
+    private final int mCapacity;
+
+    /**
+     * Number of events ever claimed.
+     */
+    private final AtomicLong mCount = new AtomicLong();
+
+    private EventTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a trace of its own with a ring of the given number of events, instead of the
+     * shared one.
+     */
+    EventTrace(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * Returns the trace shared by the whole process.
+     */
+    public static synchronized EventTrace getInstance() {
+        if (sInstance == null) {
+            sInstance = new EventTrace();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the ID of an event name, registering it if needed.
+     */
+    public synchronized int registerName(String name) {
+        int id = mNames.indexOf(name);
+        if (id < 0) {
+            if (mNames.size() == MAX_NAMES) {
+                throw new IllegalStateException("too many trace names");
+            }
+            id = mNames.size();
+            mNames.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Returns a registered name.
+     */
+    public synchronized String getName(int id) {
+        return mNames.get(id);
+    }
+
+    /**
+     * Turns tracing on or off. The first time it is turned on, the ring is allocated, with room
+     * for {@link #DEFAULT_CAPACITY} events in the shared trace.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        if (enabled && mRing == null) {
+            mSequences = new AtomicLongArray(mCapacity);
+            mRing = new long[mCapacity * EVENT_LONGS];
+        }
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Starts a section on the calling thread. Sections on a thread must nest.
+     */
+    public void begin(int name) {
+        record(TYPE_BEGIN, name, 0);
+    }
+
+    /**
+     * Ends the innermost section on the calling thread.
+     */
+    public void end(int name) {
+        record(TYPE_END, name, 0);
+    }
+
+    /**
+     * Records the current value of a counter.
+     */
+    public void counter(int name, long value) {
+        record(TYPE_COUNTER, name, value);
+    }
+
+    /**
+     * Records something that happened at a point in time.
+     */
+    public void instant(int name) {
+        record(TYPE_INSTANT, name, 0);
+    }
+
+    private void record(int type, int name, long value) {
+        if (!mEnabled) {
+            return;
+        }
+        final long[] ring = mRing;
+        final AtomicLongArray sequences = mSequences;
+        final long index = mCount.getAndIncrement();
+        final int slot = (int) (index % mCapacity);
+        // Marks the slot as being written.
+        sequences.set(slot, 0);
+        final int e = slot * EVENT_LONGS;
+        ring[e] = System.nanoTime();
+        ring[e + 1] = ((long) type << (NAME_BITS + THREAD_BITS))
+                | ((long) name << THREAD_BITS)
+                | (Thread.currentThread().getId() & ((1L << THREAD_BITS) - 1));
+        ring[e + 2] = value;
+        sequences.set(slot, index + 1);
+    }
+
+    /**
+     * Copies the events still in the ring, oldest first, skipping any that are being written.
+     *
+     * @return the events, {@link #EVENT_LONGS} longs each; decode them with the static getters
+     */
+    public long[] snapshot() {
+        final long[] ring = mRing;
+        final AtomicLongArray sequences = mSequences;
+        if (ring == null) {
+            return new long[0];
+        }
+        final long count = mCount.get();
+        final long first = Math.max(0, count - mCapacity);
+        long[] events = new long[(int) (count - first) * EVENT_LONGS];
+        int copied = 0;
+        for (long index = first; index < count; index++) {
+            final int slot = (int) (index % mCapacity);
+            if (sequences.get(slot) != index + 1) {
+                continue;
+            }
+            System.arraycopy(ring, slot * EVENT_LONGS, events, copied * EVENT_LONGS,
+                    EVENT_LONGS);
+            if (sequences.get(slot) != index + 1) {
+                // Overwritten while copying.
+                continue;
+            }
+            copied++;
+        }
+        if (copied * EVENT_LONGS == events.length) {
+            return events;
+        }
+        long[] trimmed = new long[copied * EVENT_LONGS];
+        System.arraycopy(events, 0, trimmed, 0, trimmed.length);
+        return trimmed;
+    }
+
+    /**
+     * Drops every recorded event.
+     */
+    public synchronized void clear() {
+        final AtomicLongArray sequences = mSequences;
+        if (sequences == null) {
+            return;
+        }
+        for (int i = 0; i < mCapacity; i++) {
+            sequences.set(i, 0);
+        }
+    }
+
+    static long getTimeNanos(long[] events, int event) {
+        return events[event * EVENT_LONGS];
+    }
+
+    static int getType(long[] events, int event) {
+        return (int) (events[event * EVENT_LONGS + 1] >>> (NAME_BITS + THREAD_BITS));
+    }
+
+    static int getNameId(long[] events, int event) {
+        return (int) (events[event * EVENT_LONGS + 1] >>> THREAD_BITS) & (MAX_NAMES - 1);
+    }
+
+    static long getThreadId(long[] events, int event) {
+        return events[event * EVENT_LONGS + 1] & ((1L << THREAD_BITS) - 1);
+    }
+
+    static long getValue(long[] events, int event) {
+        return events[event * EVENT_LONGS + 2];
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * {@link QualityPolicy} that ignores telemetry and always renders at one tier.
+ */
+public class FixedQualityPolicy implements QualityPolicy {
+    private final QualityTier mTier;
+
+    public FixedQualityPolicy(QualityTier tier) {
+        mTier = tier;
+    }
+
+    @Override
+    public void onFrameDrawn(long nowMillis, long frameNanos) {
+    }
+
+    @Override
+    public void onBatteryChanged(long nowMillis, int levelPercent, boolean charging) {
+    }
+
+    @Override
+    public QualityTier getTier() {
+        return mTier;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * 64-bit FNV-1a, the hash behind {@link ShaderRegistry#hashProgram}, {@link FrameFingerprint}
+ * and {@link ComplicationUpdateCoalescer}. It is fast, allocation free and good enough to tell
+ * inputs apart, but not cryptographic.
+ * <p>
+ * Start from {@link #OFFSET_BASIS} and mix in every input:
+ * <pre>
+ * long hash = Fnv1a.mixLong(Fnv1a.OFFSET_BASIS, type);
+ * hash = Fnv1a.mixChars(hash, text);
+ * </pre>
+ */
+public final class Fnv1a {
+
+    public static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private Fnv1a() {
+    }
+
+    /**
+     * Mixes the low 8 bits of a value into a hash.
+     */
+    public static long mixByte(long hash, int value) {
+        return (hash ^ (value & 0xff)) * PRIME;
+    }
+
+    /**
+     * Mixes all 8 bytes of a value into a hash, low byte first.
+     */
+    public static long mixLong(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    /**
+     * Mixes both bytes of every char into a hash, low byte first. Nothing marks where the chars
+     * end, so callers hashing several strings must separate them, e.g. by mixing in the length
+     * first.
+     */
+    public static long mixChars(long hash, CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            final char c = chars.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return hash;
+    }
+}
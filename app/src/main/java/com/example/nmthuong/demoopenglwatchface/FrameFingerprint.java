@@ -0,0 +1,106 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Fingerprint of everything that goes into a frame, used to skip frames that would look the same
+ * as the one on screen.
+ * <p>
+ * Build the fingerprint of a candidate frame with {@link #begin()} and the {@code add} methods,
+ * e.g. the time rounded to what the hands can show, the ambient state and a version of the
+ * complication data. If {@link #shouldSkip()} returns true, the frame would repeat the last one
+ * drawn. After drawing a frame, build its fingerprint the same way and call
+ * {@link #onFrameDrawn()}.
+ * <p>
+ * Inputs are mixed with {@link Fnv1a}, so two different frames share a fingerprint with
+ * negligible probability.
+ */
+public class FrameFingerprint {
+
+    private long mCurrent = Fnv1a.OFFSET_BASIS;
+
+    /**
+     * Fingerprint of the frame on screen, valid if {@link #mDrawnValid} is set.
+     */
+    private long mDrawn;
+    private boolean mDrawnValid;
+
+    private long mRenderedFrames;
+    private long mSkippedFrames;
+
+    /**
+     * Starts a new fingerprint.
+     *
+     * @return this, for chaining
+     */
+    public FrameFingerprint begin() {
+        mCurrent = Fnv1a.OFFSET_BASIS;
+        return this;
+    }
+
+    /**
+     * Mixes a value into the fingerprint.
+     *
+     * @return this, for chaining
+     */
+    public FrameFingerprint add(long value) {
+        mCurrent = Fnv1a.mixLong(mCurrent, value);
+        return this;
+    }
+
+    /**
+     * Mixes a flag into the fingerprint.
+     *
+     * @return this, for chaining
+     */
+    public FrameFingerprint add(boolean value) {
+        return add(value ? 1 : 0);
+    }
+
+    /**
+     * Returns whether the fingerprint just built matches the frame on screen, and if so counts a
+     * skipped frame.
+     */
+    public boolean shouldSkip() {
+        if (mDrawnValid && mCurrent == mDrawn) {
+            mSkippedFrames++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the fingerprint just built as the frame on screen.
+     */
+    public void onFrameDrawn() {
+        mDrawn = mCurrent;
+        mDrawnValid = true;
+        mRenderedFrames++;
+    }
+
+    /**
+     * Forgets the frame on screen, e.g. because the surface was recreated or an input changed that
+     * isn't part of the fingerprint. The next frame is never skipped.
+     */
+    public void invalidate() {
+        mDrawnValid = false;
+    }
+
+    /**
+     * Returns the number of frames drawn.
+     */
+    public long getRenderedFrames() {
+        return mRenderedFrames;
+    }
+
+    /**
+     * Returns the number of frames skipped because they would have repeated the one on screen.
+     */
+    public long getSkippedFrames() {
+        return mSkippedFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameFingerprint{rendered=" + mRenderedFrames + ", skipped=" + mSkippedFrames
+                + "}";
+    }
+}
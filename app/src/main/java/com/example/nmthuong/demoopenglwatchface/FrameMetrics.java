@@ -0,0 +1,328 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the CPU time of every frame, split into phases, and reports percentiles per mode.
+ * <p>
+ * The drawing thread calls {@link #beginFrame} when a frame starts, {@link #mark} at the end of
+ * every phase, which charges the time since the previous mark to that phase, and
+ * {@link #endFrame()} once the frame is on screen. None of these allocate or lock. Every frame is
+ * added to log-bucket histograms, four buckets per power of two of microseconds, and to a ring of
+ * the most recent frames. Any thread can {@link #dump} them, e.g. from
+ * {@link android.app.Service#dump}; the histograms are atomic counters, and ring entries the
+ * drawing thread overwrites while they are read are left out.
+ * <p>
+ * Percentiles are the upper bound of the bucket they fall in, so they are at most a quarter too
+ * high.
+ */
+public class FrameMetrics {
+
+    public static final int MODE_INTERACTIVE = 0;
+    public static final int MODE_AMBIENT = 1;
+    private static final int NUM_MODES = 2;
+    private static final String[] MODE_NAMES = {"interactive", "ambient"};
+
+    /**
+     * Phases of a frame: reading the clock and working out the hand angles, computing matrices,
+     * issuing GL calls including texture uploads, and swapping buffers.
+     */
+    public static final int PHASE_CLOCK = 0;
+    public static final int PHASE_MATRICES = 1;
+    public static final int PHASE_DRAW = 2;
+    public static final int PHASE_SWAP = 3;
+    private static final int NUM_PHASES = 4;
+
+    /**
+     * Series with a histogram: the phases, then the whole frame, then the time since the start
+     * of the previous frame in the same mode.
+     */
+    private static final int SERIES_TOTAL = NUM_PHASES;
+    private static final int SERIES_INTERVAL = NUM_PHASES + 1;
+    private static final int NUM_SERIES = NUM_PHASES + 2;
+    private static final String[] SERIES_NAMES = {
+            "clock", "matrices", "draw", "swap", "total", "interval"
+    };
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Buckets per histogram, for up to a couple of hours. Longer times go in the last one.
+     */
+    private static final int NUM_BUCKETS = 32 * SUB_BUCKETS;
+
+    /**
+     * Longs per ring entry: the start of the frame, its mode, and the time of every phase.
+     */
+    private static final int RING_ENTRY_LONGS = 2 + NUM_PHASES;
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p95", "p99"};
+
+    private final long mBudgetNanos;
+
+    /**
+     * Counts per mode, series and bucket.
+     */
+    private final AtomicLongArray mHistograms =
+            new AtomicLongArray(NUM_MODES * NUM_SERIES * NUM_BUCKETS);
+    private final AtomicLongArray mFrames = new AtomicLongArray(NUM_MODES);
+    private final AtomicLongArray mMissedBudget = new AtomicLongArray(NUM_MODES);
+
+    private final int mRingCapacity;
+    private final long[] mRing;
+
+    /**
+     * Number of frames ever written to {@link #mRing}. Written only by the drawing thread.
+     */
+    private final AtomicLong mRingCount = new AtomicLong();
+
+    // Drawing thread only.
+    private boolean mInFrame;
+    private int mMode;
+    private long mFrameStartNanos;
+    private long mLastMarkNanos;
+    private final long[] mPhaseNanos = new long[NUM_PHASES];
+    private final long[] mLastFrameStartNanos = new long[NUM_MODES];
+
+    /**
+     * @param budgetNanos  CPU time a frame may take before it counts as missing its budget
+     * @param ringCapacity number of recent frames to keep
+     */
+    public FrameMetrics(long budgetNanos, int ringCapacity) {
+        mBudgetNanos = budgetNanos;
+        mRingCapacity = ringCapacity;
+        mRing = new long[ringCapacity * RING_ENTRY_LONGS];
+    }
+
+    /**
+     * Starts timing a frame. A frame still open, e.g. because it was never swapped, is ended
+     * first.
+     *
+     * @param mode {@link #MODE_INTERACTIVE} or {@link #MODE_AMBIENT}
+     */
+    public void beginFrame(int mode) {
+        if (mInFrame) {
+            commit();
+        }
+        mInFrame = true;
+        mMode = mode;
+        mFrameStartNanos = System.nanoTime();
+        mLastMarkNanos = mFrameStartNanos;
+        for (int i = 0; i < NUM_PHASES; i++) {
+            mPhaseNanos[i] = 0;
+        }
+    }
+
+    /**
+     * Charges the time since the previous mark, or since the frame started, to a phase. Each
+     * phase is meant to be marked once per frame, in order.
+     */
+    public void mark(int phase) {
+        if (!mInFrame) {
+            return;
+        }
+        final long now = System.nanoTime();
+        mPhaseNanos[phase] += now - mLastMarkNanos;
+        mLastMarkNanos = now;
+    }
+
+    /**
+     * Charges the time since the last mark to {@link #PHASE_SWAP} and records the frame.
+     */
+    public void endFrame() {
+        if (!mInFrame) {
+            return;
+        }
+        mark(PHASE_SWAP);
+        commit();
+    }
+
+    private void commit() {
+        mInFrame = false;
+        final int mode = mMode;
+        long total = 0;
+        for (int i = 0; i < NUM_PHASES; i++) {
+            record(mode, i, mPhaseNanos[i]);
+            total += mPhaseNanos[i];
+        }
+        record(mode, SERIES_TOTAL, total);
+        if (mLastFrameStartNanos[mode] != 0) {
+            record(mode, SERIES_INTERVAL, mFrameStartNanos - mLastFrameStartNanos[mode]);
+        }
+        mLastFrameStartNanos[mode] = mFrameStartNanos;
+        mFrames.incrementAndGet(mode);
+        if (total > mBudgetNanos) {
+            mMissedBudget.incrementAndGet(mode);
+        }
+
+        final long count = mRingCount.get();
+        int e = (int) (count % mRingCapacity) * RING_ENTRY_LONGS;
+        mRing[e++] = mFrameStartNanos;
+        mRing[e++] = mode;
+        for (int i = 0; i < NUM_PHASES; i++) {
+            mRing[e++] = mPhaseNanos[i];
+        }
+        // Publishes the entry to readers.
+        mRingCount.set(count + 1);
+    }
+
+    private void record(int mode, int series, long nanos) {
+        mHistograms.incrementAndGet((mode * NUM_SERIES + series) * NUM_BUCKETS + bucket(nanos));
+    }
+
+    /**
+     * Returns the bucket of a duration: four per power of two of microseconds.
+     */
+    static int bucket(long nanos) {
+        final long micros = nanos / 1000;
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket,
+                NUM_BUCKETS - 1);
+    }
+
+    /**
+     * Returns the largest duration in a bucket, in microseconds.
+     */
+    static long bucketUpperMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Returns the number of frames recorded in a mode.
+     */
+    public long getFrames(int mode) {
+        return mFrames.get(mode);
+    }
+
+    /**
+     * Returns the number of frames in a mode that took longer than the budget.
+     */
+    public long getMissedBudget(int mode) {
+        return mMissedBudget.get(mode);
+    }
+
+    /**
+     * Returns a percentile of the whole frame time in a mode, in microseconds.
+     *
+     * @param fraction e.g. 0.95 for the 95th percentile
+     */
+    public long getTotalPercentileMicros(int mode, double fraction) {
+        return percentileMicros(mode, SERIES_TOTAL, fraction);
+    }
+
+    private long percentileMicros(int mode, int series, double fraction) {
+        final int base = (mode * NUM_SERIES + series) * NUM_BUCKETS;
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += mHistograms.get(base + i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += mHistograms.get(base + i);
+            if (seen >= rank) {
+                return bucketUpperMicros(i);
+            }
+        }
+        return bucketUpperMicros(NUM_BUCKETS - 1);
+    }
+
+    /**
+     * Writes frame counts, budget misses and percentiles per mode and series, followed by the
+     * recent frames, as text or JSON. Times are in microseconds.
+     *
+     * @param out         where to write
+     * @param json        whether to write JSON rather than text
+     * @param recentCount most recent frames to include
+     */
+    public void dump(StringBuilder out, boolean json, int recentCount) {
+        // Copy the recent frames first, then drop the ones overwritten while copying.
+        final long before = mRingCount.get();
+        final int wanted = (int) Math.min(Math.min(recentCount, mRingCapacity), before);
+        final long[] recent = new long[wanted * RING_ENTRY_LONGS];
+        for (int i = 0; i < wanted; i++) {
+            final long index = before - wanted + i;
+            System.arraycopy(mRing, (int) (index % mRingCapacity) * RING_ENTRY_LONGS, recent,
+                    i * RING_ENTRY_LONGS, RING_ENTRY_LONGS);
+        }
+        // The entry after the last one published may be half written.
+        final long oldestIntact = mRingCount.get() - mRingCapacity + 1;
+        final int skip = (int) Math.max(0, Math.min(wanted, oldestIntact - (before - wanted)));
+
+        out.append(json ? "{\"budgetUs\":" : "FrameMetrics budget ")
+                .append(mBudgetNanos / 1000).append(json ? ",\"modes\":{" : " us\n");
+        for (int mode = 0; mode < NUM_MODES; mode++) {
+            if (json) {
+                out.append(mode == 0 ? "" : ",").append('"').append(MODE_NAMES[mode])
+                        .append("\":{\"frames\":").append(mFrames.get(mode))
+                        .append(",\"missedBudget\":").append(mMissedBudget.get(mode));
+            } else {
+                out.append(MODE_NAMES[mode]).append(": ").append(mFrames.get(mode))
+                        .append(" frames, ").append(mMissedBudget.get(mode))
+                        .append(" over budget\n");
+            }
+            for (int series = 0; series < NUM_SERIES; series++) {
+                out.append(json ? ",\"" : "  ").append(SERIES_NAMES[series])
+                        .append(json ? "\":{" : ":");
+                for (int p = 0; p < PERCENTILES.length; p++) {
+                    final long micros = percentileMicros(mode, series, PERCENTILES[p]);
+                    if (json) {
+                        out.append(p == 0 ? "\"" : ",\"").append(PERCENTILE_NAMES[p])
+                                .append("\":").append(micros);
+                    } else {
+                        out.append(' ').append(PERCENTILE_NAMES[p]).append('=').append(micros);
+                    }
+                }
+                out.append(json ? "}" : " us\n");
+            }
+            if (json) {
+                out.append('}');
+            }
+        }
+        out.append(json ? "},\"recent\":[" : "recent (start ms, mode, phases us):\n");
+        for (int i = skip; i < wanted; i++) {
+            int e = i * RING_ENTRY_LONGS;
+            final long startMillis = recent[e++] / 1000000;
+            final String mode = MODE_NAMES[(int) recent[e++]];
+            if (json) {
+                out.append(i == skip ? "{" : ",{").append("\"startMs\":").append(startMillis)
+                        .append(",\"mode\":\"").append(mode).append('"');
+                for (int phase = 0; phase < NUM_PHASES; phase++) {
+                    out.append(",\"").append(SERIES_NAMES[phase]).append("\":")
+                            .append(recent[e++] / 1000);
+                }
+                out.append('}');
+            } else {
+                out.append("  ").append(startMillis).append(' ').append(mode);
+                for (int phase = 0; phase < NUM_PHASES; phase++) {
+                    out.append(' ').append(recent[e++] / 1000);
+                }
+                out.append('\n');
+            }
+        }
+        out.append(json ? "]}\n" : "");
+    }
+
+    @Override
+    public String toString() {
+        return "FrameMetrics{interactive=" + mFrames.get(MODE_INTERACTIVE) + " frames, p95 "
+                + getTotalPercentileMicros(MODE_INTERACTIVE, 0.95) + " us, ambient="
+                + mFrames.get(MODE_AMBIENT) + " frames, p95 "
+                + getTotalPercentileMicros(MODE_AMBIENT, 0.95) + " us}";
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Decides when the engine draws. Interactive frames are asked for at the times a
+ * {@link FrameScheduler} picks, and frames that would look the same as the one on screen are
+ * skipped, see {@link FrameFingerprint}. In ambient mode the engine calls
+ * {@link #invalidateIfChanged()} from {@code onTimeTick()} instead.
+ * <p>
+ * This class only makes decisions. A {@link Host}, i.e. the engine, owns the visibility and
+ * ambient state, draws and delivers the delayed callbacks. Time comes from a
+ * {@link FrameScheduler.TimeSource}, so the same pacing can be run against a simulated clock,
+ * as the unit tests' {@code TimeLapseHarness} does.
+ */
+public class FramePacer {
+
+    /**
+     * What the pacer drives.
+     */
+    public interface Host {
+        boolean isVisible();
+
+        boolean isInAmbientMode();
+
+        /**
+         * Asks for a frame to be drawn as soon as possible.
+         */
+        void invalidate();
+
+        /**
+         * Asks for {@link #invalidateIfChanged()} to be called after a delay, replacing any
+         * earlier request.
+         */
+        void requestFrameCheck(long delayMillis);
+
+        /**
+         * Drops the request made with {@link #requestFrameCheck}, if any.
+         */
+        void cancelFrameCheck();
+    }
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+
+    private final FrameScheduler.TimeSource mTimeSource;
+    private final FrameScheduler mFrameScheduler;
+    private final Host mHost;
+
+    /**
+     * Whether frames that would repeat the one on screen are skipped.
+     */
+    private final boolean mSkipUnchanged;
+
+    /**
+     * Fingerprint of the frame on screen.
+     */
+    private final FrameFingerprint mFrameFingerprint = new FrameFingerprint();
+
+    /**
+     * Time the tip of a sweeping second hand takes to move one pixel.
+     */
+    private long mSweepResolutionMillis = 1;
+
+    private QualityTier mQualityTier = QualityTier.LOW;
+
+    /**
+     * Incremented whenever complication data arrives, so frames showing new data are never
+     * skipped.
+     */
+    private long mComplicationDataVersion;
+
+    /**
+     * @param timeSource     clock to pace by, the same one {@code frameScheduler} uses
+     * @param frameScheduler picks the times of interactive frames
+     * @param host           the engine
+     * @param skipUnchanged  whether to skip frames that would repeat the one on screen
+     */
+    public FramePacer(FrameScheduler.TimeSource timeSource, FrameScheduler frameScheduler,
+                      Host host, boolean skipUnchanged) {
+        mTimeSource = timeSource;
+        mFrameScheduler = frameScheduler;
+        mHost = host;
+        mSkipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Sets the time the tip of a sweeping second hand takes to move one pixel. Call this when
+     * the surface size changes.
+     */
+    public void setSweepResolutionMillis(long sweepResolutionMillis) {
+        mSweepResolutionMillis = Math.max(1, sweepResolutionMillis);
+    }
+
+    /**
+     * Sets the tier the frames are drawn at, which is part of every frame's fingerprint.
+     */
+    public void setQualityTier(QualityTier tier) {
+        mQualityTier = tier;
+    }
+
+    /**
+     * Call this when complication data arrives, so the next frame isn't skipped.
+     */
+    public void onComplicationDataChanged() {
+        mComplicationDataVersion++;
+    }
+
+    /**
+     * Forgets the frame on screen, so the next frame is drawn whatever it shows, e.g. after the
+     * surface or the time zone changed.
+     */
+    public void invalidate() {
+        mFrameFingerprint.invalidate();
+    }
+
+    /**
+     * Asks for a frame unless it would look the same as the one on screen. In that case the
+     * next interactive frame is scheduled for when the hands can have moved.
+     */
+    public void invalidateIfChanged() {
+        final long now = mTimeSource.currentTimeMillis();
+        if (!mSkipUnchanged || !setFrameFingerprint(now).shouldSkip()) {
+            mHost.invalidate();
+            return;
+        }
+        if (mHost.isVisible() && !mHost.isInAmbientMode()) {
+            final long resolutionMillis = getHandResolutionMillis();
+            final long changeMillis = (now / resolutionMillis + 1) * resolutionMillis;
+            final long frameMillis = Math.max(changeMillis,
+                    mFrameScheduler.getNextFrameTimeMillis(changeMillis - 1));
+            mHost.requestFrameCheck(frameMillis - now);
+        }
+    }
+
+    /**
+     * Records the frame drawn for the given time as the one on screen.
+     */
+    public void onFrameDrawn(long timeMillis) {
+        setFrameFingerprint(timeMillis).onFrameDrawn();
+    }
+
+    /**
+     * Asks for the next interactive frame at the time the {@link FrameScheduler} picks. Nothing
+     * is scheduled while invisible or in ambient mode, where {@code onTimeTick()} draws once a
+     * minute instead.
+     */
+    public void scheduleNextFrame() {
+        mHost.cancelFrameCheck();
+        if (!mHost.isVisible() || mHost.isInAmbientMode()) {
+            return;
+        }
+        final long delayMillis = mFrameScheduler.getDelayMillis();
+        if (delayMillis <= 0) {
+            invalidateIfChanged();
+        } else {
+            mHost.requestFrameCheck(delayMillis);
+        }
+    }
+
+    /**
+     * Returns the time it takes the fastest hand on screen to visibly move.
+     */
+    public long getHandResolutionMillis() {
+        if (mHost.isInAmbientMode()) {
+            // No second hand, and frames are only drawn once a minute.
+            return MILLIS_PER_MINUTE;
+        } else if (!mFrameScheduler.isContinuous()) {
+            return MILLIS_PER_SECOND;
+        }
+        return mSweepResolutionMillis;
+    }
+
+    public long getRenderedFrames() {
+        return mFrameFingerprint.getRenderedFrames();
+    }
+
+    public long getSkippedFrames() {
+        return mFrameFingerprint.getSkippedFrames();
+    }
+
+    /**
+     * Builds the fingerprint of the frame for the given time in {@link #mFrameFingerprint}.
+     *
+     * @return {@link #mFrameFingerprint}
+     */
+    private FrameFingerprint setFrameFingerprint(long timeMillis) {
+        return mFrameFingerprint.begin()
+                .add(timeMillis / getHandResolutionMillis())
+                .add(mHost.isInAmbientMode())
+                .add(mQualityTier.ordinal())
+                .add(mComplicationDataVersion);
+    }
+
+    @Override
+    public String toString() {
+        return mFrameFingerprint.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Decides when the next interactive frame is due. Frames are aligned to the wall clock, so a
+ * once-per-second face redraws right as the second changes instead of up to a second late, and
+ * a fixed-rate face draws at the same points within every second.
+ * <p>
+ * This class only computes times. The engine turns {@link #getDelayMillis()} into a delayed
+ * {@link android.os.Handler} message that calls {@code invalidate()}. The clock is injectable so
+ * the schedule can be checked without a device.
+ */
+public class FrameScheduler {
+
+    /**
+     * Source of wall clock time in milliseconds since the epoch.
+     */
+    public interface TimeSource {
+        long currentTimeMillis();
+    }
+
+    /**
+     * {@link TimeSource} backed by {@link System#currentTimeMillis()}.
+     */
+    public static final TimeSource SYSTEM_TIME_SOURCE = new TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    public enum Mode {
+        /**
+         * One frame at the start of every second. Hands should tick.
+         */
+        ONCE_PER_SECOND,
+
+        /**
+         * A fixed number of frames per second, evenly spaced within each second.
+         */
+        FIXED_RATE,
+
+        /**
+         * A frame on every vsync. Use this for the smoothest sweep.
+         */
+        SWEEP
+    }
+
+    /**
+     * Highest rate {@link #setFixedRate} accepts. Displays don't refresh faster than this.
+     */
+    public static final int MAX_FRAMES_PER_SECOND = 60;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    private final TimeSource mTimeSource;
+
+    private Mode mMode = Mode.ONCE_PER_SECOND;
+    private int mFramesPerSecond = 1;
+
+    public FrameScheduler(TimeSource timeSource) {
+        mTimeSource = timeSource;
+    }
+
+    /**
+     * Draws one frame at the start of every second.
+     */
+    public void setOncePerSecond() {
+        mMode = Mode.ONCE_PER_SECOND;
+        mFramesPerSecond = 1;
+    }
+
+    /**
+     * Draws the given number of frames per second, e.g. 15, 30 or 60.
+     */
+    public void setFixedRate(int framesPerSecond) {
+        if (framesPerSecond < 1 || framesPerSecond > MAX_FRAMES_PER_SECOND) {
+            throw new IllegalArgumentException("frames per second out of range: "
+                    + framesPerSecond);
+        }
+        mMode = Mode.FIXED_RATE;
+        mFramesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Draws a frame on every vsync.
+     */
+    public void setSweep() {
+        mMode = Mode.SWEEP;
+        mFramesPerSecond = MAX_FRAMES_PER_SECOND;
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /**
+     * Returns the number of frames drawn per second, {@link #MAX_FRAMES_PER_SECOND} when
+     * sweeping.
+     */
+    public int getFramesPerSecond() {
+        return mFramesPerSecond;
+    }
+
+    /**
+     * Returns whether hands should move continuously. When this is false every frame starts a
+     * new second, so hands showing fractions of a second would only jump further.
+     */
+    public boolean isContinuous() {
+        return mMode != Mode.ONCE_PER_SECOND;
+    }
+
+    /**
+     * Returns how long to wait before drawing the next frame, in milliseconds. 0 means draw on
+     * the next vsync.
+     */
+    public long getDelayMillis() {
+        long now = mTimeSource.currentTimeMillis();
+        return getNextFrameTimeMillis(now) - now;
+    }
+
+    /**
+     * Returns the wall clock time of the first frame after the given time. Frames fall on the
+     * times {@code second + ceil(k * 1000 / fps)} for k = 0 .. fps - 1. When sweeping this returns
+     * the given time itself.
+     */
+    public long getNextFrameTimeMillis(long now) {
+        if (mMode == Mode.SWEEP) {
+            return now;
+        }
+        long secondStart = now - floorMod(now, MILLIS_PER_SECOND);
+        long millisInSecond = now - secondStart;
+        // Frame k starts at ceil(k * 1000 / fps), so this is the first frame starting strictly
+        // after now. Frame fps is the start of the next second.
+        long frame = millisInSecond * mFramesPerSecond / MILLIS_PER_SECOND + 1;
+        return secondStart + frameOffsetMillis(frame);
+    }
+
+    private long frameOffsetMillis(long frame) {
+        return (frame * MILLIS_PER_SECOND + mFramesPerSecond - 1) / mFramesPerSecond;
+    }
+
+    private static long floorMod(long x, long y) {
+        long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+}
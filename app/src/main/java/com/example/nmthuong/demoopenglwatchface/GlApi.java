@@ -0,0 +1,166 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * The subset of OpenGL ES 2.0 used by the watch faces. Rendering code calls GL through this
+ * interface instead of the static {@link android.opengl.GLES20} methods so the calls can be
+ * recorded or replaced when no GL context is available, e.g. in a JVM unit test.
+ * <p>
+ * Method names and parameters match {@link android.opengl.GLES20}.
+ */
+public interface GlApi {
+
+    int glGetError();
+
+    String glGetString(int name);
+
+    void glGetIntegerv(int pname, int[] params, int offset);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glClear(int mask);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glScissor(int x, int y, int width, int height);
+
+    void glEnable(int cap);
+
+    void glDisable(int cap);
+
+    void glBlendFunc(int sfactor, int dfactor);
+
+    int glCreateShader(int type);
+
+    void glShaderSource(int shader, String source);
+
+    void glCompileShader(int shader);
+
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    String glGetShaderInfoLog(int shader);
+
+    void glDeleteShader(int shader);
+
+    int glCreateProgram();
+
+    void glAttachShader(int program, int shader);
+
+    void glBindAttribLocation(int program, int index, String name);
+
+    void glLinkProgram(int program);
+
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    String glGetProgramInfoLog(int program);
+
+    void glDeleteProgram(int program);
+
+    /**
+     * Reads back the binary of a linked program. Only available on OpenGL ES 3.0 contexts, see
+     * {@link android.opengl.GLES30#glGetProgramBinary}.
+     */
+    void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset,
+                            int[] binaryFormat, int binaryFormatOffset, Buffer binary);
+
+    /**
+     * Loads a program from a binary returned by {@link #glGetProgramBinary}. Only available on
+     * OpenGL ES 3.0 contexts, see {@link android.opengl.GLES30#glProgramBinary}.
+     */
+    void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+
+    /**
+     * Sets a parameter of a program, e.g.
+     * {@link android.opengl.GLES30#GL_PROGRAM_BINARY_RETRIEVABLE_HINT} before linking. Only
+     * available on OpenGL ES 3.0 contexts, see {@link android.opengl.GLES30#glProgramParameteri}.
+     */
+    void glProgramParameteri(int program, int pname, int value);
+
+    int glGetUniformLocation(int program, String name);
+
+    int glGetAttribLocation(int program, String name);
+
+    void glUseProgram(int program);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDisableVertexAttribArray(int index);
+
+    /**
+     * Points an attribute at client-side memory. Only valid while no buffer is bound to
+     * {@link android.opengl.GLES20#GL_ARRAY_BUFFER}.
+     */
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+                               Buffer ptr);
+
+    /**
+     * Points an attribute at an offset into the buffer bound to
+     * {@link android.opengl.GLES20#GL_ARRAY_BUFFER}.
+     */
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+                               int offset);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform1i(int location, int x);
+
+    void glUniform4fv(int location, int count, float[] v, int offset);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+                            int offset);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    /**
+     * Draws with indices read from client-side memory. Only valid while no buffer is bound to
+     * {@link android.opengl.GLES20#GL_ELEMENT_ARRAY_BUFFER}.
+     */
+    void glDrawElements(int mode, int count, int type, Buffer indices);
+
+    /**
+     * Draws with indices read from an offset into the buffer bound to
+     * {@link android.opengl.GLES20#GL_ELEMENT_ARRAY_BUFFER}.
+     */
+    void glDrawElements(int mode, int count, int type, int offset);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    void glActiveTexture(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                      int border, int format, int type, Buffer pixels);
+
+    /**
+     * Replaces part of the bound texture with a bitmap, like
+     * {@link android.opengl.GLUtils#texSubImage2D(int, int, int, int, Bitmap)}.
+     */
+    void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap);
+
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+
+    void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+
+    void glBindFramebuffer(int target, int framebuffer);
+
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture,
+                                int level);
+
+    int glCheckFramebufferStatus(int target);
+}
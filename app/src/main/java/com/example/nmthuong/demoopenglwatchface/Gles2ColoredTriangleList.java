@@ -1,5 +1,6 @@
 package com.example.nmthuong.demoopenglwatchface;
 
+import android.opengl.EGL14;
 import android.opengl.EGLConfig;
 import android.opengl.GLES20;
 import android.opengl.GLU;
@@ -7,8 +8,6 @@ import android.opengl.GLUtils;
 import android.util.Log;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 
 import javax.microedition.khronos.opengles.GL10;
 
@@ -27,18 +26,13 @@ public class Gles2ColoredTriangleList {
     /**
      * Number of coordinates per vertex in this array: one for each of x, y, and z.
      */
-    private static final int COORDS_PER_VERTEX = 3;
+    private static final int COORDS_PER_VERTEX = VertexFormat.COORDS_PER_VERTEX;
 
     /**
      * Number of bytes to store a float in GL.
      */
     public static final int BYTES_PER_FLOAT = 4;
 
-    /**
-     * Number of bytes per vertex.
-     */
-    private static final int VERTEX_STRIDE = COORDS_PER_VERTEX * BYTES_PER_FLOAT;
-
     /**
      * Triangles have three vertices.
      */
@@ -60,9 +54,26 @@ public class Gles2ColoredTriangleList {
     private final Program mProgram;
 
     /**
-     * The VBO containing the vertex coordinates.
+     * Layout of the vertices in {@link #mVertexBuffer}.
+     */
+    private final VertexFormat mVertexFormat;
+
+    /**
+     * Client-side copy of the encoded vertices. This is drawn from directly when VBOs are not
+     * used, and is the source for re-creating the VBO after the GL context is lost.
+     */
+    private final ByteBuffer mVertexBuffer;
+
+    /**
+     * Whether the vertices are drawn from a GPU-resident vertex buffer object.
+     */
+    private final boolean mUseVertexBufferObject;
+
+    /**
+     * Name of the VBO holding the vertex coordinates, or 0 if it hasn't been created in the
+     * current GL context.
      */
-    private final FloatBuffer mVertexBuffer;
+    private int mVertexBufferId;
 
     /**
      * Color of this triangle list represented as an array of floats in the range [0, 1] in RGBA
@@ -84,6 +95,42 @@ public class Gles2ColoredTriangleList {
      * @param color          color in RGBA order, each in the range [0, 1]
      */
     public Gles2ColoredTriangleList(Program program, float[] triangleCoords, float[] color) {
+        this(program, triangleCoords, color, false /* useVertexBufferObject */);
+    }
+
+    /**
+     * Creates a Gles2ColoredTriangleList to draw a triangle list with the given vertices and color.
+     *
+     * @param program               program for drawing triangles
+     * @param triangleCoords        flat array of 3D coordinates of triangle vertices in
+     *                              counterclockwise order
+     * @param color                 color in RGBA order, each in the range [0, 1]
+     * @param useVertexBufferObject whether to keep the vertices in a VBO on the GPU instead of
+     *                              copying them from client memory on every draw. The VBO is
+     *                              created by {@link #onGlContextCreated()}.
+     */
+    public Gles2ColoredTriangleList(Program program, float[] triangleCoords, float[] color,
+                                    boolean useVertexBufferObject) {
+        this(program, triangleCoords, color, useVertexBufferObject, VertexFormat.FLOAT_XYZ);
+    }
+
+    /**
+     * Creates a Gles2ColoredTriangleList to draw a triangle list with the given vertices and color.
+     *
+     * @param program               program for drawing triangles
+     * @param triangleCoords        flat array of 3D coordinates of triangle vertices in
+     *                              counterclockwise order
+     * @param color                 color in RGBA order, each in the range [0, 1]
+     * @param useVertexBufferObject whether to keep the vertices in a VBO on the GPU
+     * @param vertexFormat          how to store the vertices, either {@link VertexFormat#FLOAT_XYZ}
+     *                              or the 3 times smaller {@link VertexFormat#SHORT_XY} for
+     *                              triangles in the XY plane
+     */
+    public Gles2ColoredTriangleList(Program program, float[] triangleCoords, float[] color,
+                                    boolean useVertexBufferObject, VertexFormat vertexFormat) {
+        if (vertexFormat.hasColor() || vertexFormat.hasLayer()) {
+            throw new IllegalArgumentException("vertex format must only store positions");
+        }
         if (triangleCoords.length % (VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX) != 0) {
             throw new IllegalArgumentException("must be multiple"
                     + " of VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX coordinates");
@@ -93,22 +140,56 @@ public class Gles2ColoredTriangleList {
         }
         mProgram = program;
         mColor = color;
+        mUseVertexBufferObject = useVertexBufferObject;
+        mVertexFormat = vertexFormat;
 
-        ByteBuffer bb = ByteBuffer.allocateDirect(triangleCoords.length * BYTES_PER_FLOAT);
+        // Encode the coordinates in native byte order, ready for reading.
+        mVertexBuffer = vertexFormat.encode(triangleCoords);
 
-        // Use the device hardware's native byte order.
-        bb.order(ByteOrder.nativeOrder());
-
-        // Create a FloatBuffer that wraps the ByteBuffer.
-        mVertexBuffer = bb.asFloatBuffer();
+        mNumCoords = triangleCoords.length / COORDS_PER_VERTEX;
+    }
 
-        // Add the coordinates to the FloatBuffer.
-        mVertexBuffer.put(triangleCoords);
+    /**
+     * Uploads the vertices into a VBO if this triangle list was created to use one. Call this
+     * from {@code onGlContextCreated()} each time a GL context is created. Buffer names from a
+     * previous, lost context were destroyed along with it, so they are simply replaced.
+     */
+    public void onGlContextCreated() {
+        if (!mUseVertexBufferObject) {
+            return;
+        }
+        GlApi gl = mProgram.mGl;
+        int[] bufferIds = new int[1];
+        gl.glGenBuffers(1 /* n */, bufferIds, 0 /* offset */);
+        if (CHECK_GL_ERRORS) checkGlError(gl, "glGenBuffers");
+
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferIds[0]);
+        if (CHECK_GL_ERRORS) checkGlError(gl, "glBindBuffer");
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.capacity(), mVertexBuffer,
+                GLES20.GL_STATIC_DRAW);
+        if (CHECK_GL_ERRORS) checkGlError(gl, "glBufferData");
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        if (CHECK_GL_ERRORS) checkGlError(gl, "glBindBuffer");
+
+        mVertexBufferId = bufferIds[0];
+    }
 
-        // Go back to the start for reading.
-        mVertexBuffer.position(0);
+    /**
+     * Returns the size of the encoded vertices in bytes.
+     */
+    public int getVertexBytes() {
+        return mVertexBuffer.capacity();
+    }
 
-        mNumCoords = triangleCoords.length / COORDS_PER_VERTEX;
+    /**
+     * Deletes the VBO, if any. Only call this while the GL context that created it is current.
+     */
+    public void release() {
+        if (mVertexBufferId == 0) {
+            return;
+        }
+        mProgram.mGl.glDeleteBuffers(1 /* n */, new int[]{mVertexBufferId}, 0 /* offset */);
+        mVertexBufferId = 0;
     }
 
     /**
@@ -117,15 +198,20 @@ public class Gles2ColoredTriangleList {
      * @param mvpMatrix the Model View Project matrix to draw this triangle list
      */
     public void draw(float[] mvpMatrix) {
-        // Pass the MVP matrix, vertex data, and color to OpenGL.
-        mProgram.bind(mvpMatrix, mVertexBuffer, mColor);
+        // Pass the MVP matrix, vertex data, and color to OpenGL. Fall back to the client-side
+        // vertices if the VBO hasn't been uploaded yet.
+        if (mVertexBufferId != 0) {
+            mProgram.bind(mvpMatrix, mVertexFormat, mVertexBufferId, mColor);
+        } else {
+            mProgram.bind(mvpMatrix, mVertexFormat, mVertexBuffer, mColor);
+        }
 
         // Draw the triangle list.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mNumCoords);
+        mProgram.mGl.glDrawArrays(GLES20.GL_TRIANGLES, 0, mNumCoords);
 
 
         if (CHECK_GL_ERRORS)
-            checkGlError("glDrawArrays");
+            checkGlError(mProgram.mGl, "glDrawArrays");
     }
 
     /**
@@ -134,17 +220,18 @@ public class Gles2ColoredTriangleList {
      * operation. For example:
      * <p>
      * <pre>
-     * mColorHandle = GLES20.glGetUniformLocation(mProgram, "uColor");
-     * MyGLRenderer.checkGlError("glGetUniformLocation");</pre>
+     * mColorHandle = gl.glGetUniformLocation(mProgram, "uColor");
+     * checkGlError(gl, "glGetUniformLocation");</pre>
      * <p>
      * If the operation is not successful, the check throws an exception.
      * <p>
      * <p><em>Note</em> This is quite slow so it's best to use it sparingly in production builds.
      *
+     * @param gl          GL to query for errors
      * @param glOperation name of the OpenGL call to check
      */
-    private static void checkGlError(String glOperation) {
-        int error = GLES20.glGetError();
+    static void checkGlError(GlApi gl, String glOperation) {
+        int error = gl.glGetError();
         if (error != GLES20.GL_NO_ERROR) {
             String errorString = GLU.gluErrorString(error);
             if (errorString == null) {
@@ -157,30 +244,6 @@ public class Gles2ColoredTriangleList {
         }
     }
 
-    /**
-     * Compiles an OpenGL shader.
-     *
-     * @param type       {@link GLES20#GL_VERTEX_SHADER} or {@link GLES20#GL_FRAGMENT_SHADER}
-     * @param shaderCode string containing the shader source code
-     * @return ID for the shader
-     */
-    private static int loadShader(int type, String shaderCode) {
-        // Create a vertex or fragment shader.
-        int shader = GLES20.glCreateShader(type);
-        if (CHECK_GL_ERRORS) checkGlError("glCreateShader");
-        if (shader == 0) {
-            throw new IllegalStateException("glCreateShader failed");
-        }
-
-        // Add the source code to the shader and compile it.
-        GLES20.glShaderSource(shader, shaderCode);
-        if (CHECK_GL_ERRORS) checkGlError("glShaderSource");
-        GLES20.glCompileShader(shader);
-        if (CHECK_GL_ERRORS) checkGlError("glCompileShader");
-
-        return shader;
-    }
-
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
 
         String s = gl.glGetString(GL10.GL_EXTENSIONS);
@@ -204,13 +267,16 @@ public class Gles2ColoredTriangleList {
      */
     public static class Program {
         /**
-         * Trivial vertex shader that transforms the input vertex by the MVP matrix.
+         * Trivial vertex shader that transforms the input vertex by the MVP matrix. The XY of
+         * the position is scaled first, see {@link VertexFormat#getPositionScale()}.
          */
         private static final String VERTEX_SHADER_CODE = "" +
                 "uniform mat4 uMvpMatrix;\n" +
+                "uniform float uPositionScale;\n" +
                 "attribute vec4 aPosition;\n" +
                 "void main() {\n" +
-                "    gl_Position = uMvpMatrix * aPosition;\n" +
+                "    gl_Position = uMvpMatrix\n" +
+                "            * vec4(aPosition.xy * uPositionScale, aPosition.zw);\n" +
                 "}\n";
 
         /**
@@ -223,6 +289,16 @@ public class Gles2ColoredTriangleList {
                 "    gl_FragColor = uColor;\n" +
                 "}\n";
 
+        /**
+         * GL used for all calls made by this program and the triangle lists drawn with it.
+         */
+        private final GlApi mGl;
+
+        /**
+         * EGL context the program was created in. Identifies it in the {@link ShaderRegistry}.
+         */
+        private final Object mEglContext;
+
         /**
          * ID OpenGL uses to identify this program.
          */
@@ -233,6 +309,11 @@ public class Gles2ColoredTriangleList {
          */
         private final int mMvpMatrixHandle;
 
+        /**
+         * Handle for uPositionScale uniform in vertex shader.
+         */
+        private final int mPositionScaleHandle;
+
         /**
          * Handle for aPosition attribute in vertex shader.
          */
@@ -248,42 +329,59 @@ public class Gles2ColoredTriangleList {
          * should be used for all triangle lists being drawn.
          */
         public Program() {
-            // Prepare shaders.
-            int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
-            int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_CODE);
-
-            // Create empty OpenGL Program.
-            mProgramId = GLES20.glCreateProgram();
-            if (CHECK_GL_ERRORS) checkGlError("glCreateProgram");
-            if (mProgramId == 0) {
-                throw new IllegalStateException("glCreateProgram failed");
-            }
+            this(AndroidGlApi.INSTANCE, EGL14.eglGetCurrentContext());
+        }
 
-            // Add the shaders to the program.
-            GLES20.glAttachShader(mProgramId, vertexShader);
-            if (CHECK_GL_ERRORS) checkGlError("glAttachShader");
-            GLES20.glAttachShader(mProgramId, fragmentShader);
-            if (CHECK_GL_ERRORS) checkGlError("glAttachShader");
+        /**
+         * Creates a program to draw triangle lists that issues its GL calls through the given
+         * {@link GlApi}. The compiled program is shared through the {@link ShaderRegistry} with
+         * every other user in the same EGL context.
+         *
+         * @param gl         GL to issue calls through
+         * @param eglContext the EGL context the program is used in
+         */
+        public Program(GlApi gl, Object eglContext) {
+            mGl = gl;
+            mEglContext = eglContext;
 
-            // Link the program so it can be executed.
-            GLES20.glLinkProgram(mProgramId);
-            if (CHECK_GL_ERRORS) checkGlError("glLinkProgram");
+            // Compile and link the shaders, or reuse them if this context already has them.
+            mProgramId = ShaderRegistry.getInstance().acquire(eglContext, gl, VERTEX_SHADER_CODE,
+                    FRAGMENT_SHADER_CODE, null /* attributes */);
+            if (CHECK_GL_ERRORS) checkGlError(gl, "glLinkProgram");
 
             // Get a handle to the uMvpMatrix uniform in the vertex shader.
-            mMvpMatrixHandle = GLES20.glGetUniformLocation(mProgramId, "uMvpMatrix");
-            if (CHECK_GL_ERRORS) checkGlError("glGetUniformLocation");
+            mMvpMatrixHandle = gl.glGetUniformLocation(mProgramId, "uMvpMatrix");
+            if (CHECK_GL_ERRORS) checkGlError(gl, "glGetUniformLocation");
+
+            // Get a handle to the uPositionScale uniform in the vertex shader.
+            mPositionScaleHandle = gl.glGetUniformLocation(mProgramId, "uPositionScale");
+            if (CHECK_GL_ERRORS) checkGlError(gl, "glGetUniformLocation");
 
             // Get a handle to the vertex shader's aPosition attribute.
-            mPositionHandle = GLES20.glGetAttribLocation(mProgramId, "aPosition");
-            if (CHECK_GL_ERRORS) checkGlError("glGetAttribLocation");
+            mPositionHandle = gl.glGetAttribLocation(mProgramId, "aPosition");
+            if (CHECK_GL_ERRORS) checkGlError(gl, "glGetAttribLocation");
 
             // Enable vertex array (VBO).
-            GLES20.glEnableVertexAttribArray(mPositionHandle);
-            if (CHECK_GL_ERRORS) checkGlError("glEnableVertexAttribArray");
+            gl.glEnableVertexAttribArray(mPositionHandle);
+            if (CHECK_GL_ERRORS) checkGlError(gl, "glEnableVertexAttribArray");
 
             // Get a handle to fragment shader's uColor uniform.
-            mColorHandle = GLES20.glGetUniformLocation(mProgramId, "uColor");
-            if (CHECK_GL_ERRORS) checkGlError("glGetUniformLocation");
+            mColorHandle = gl.glGetUniformLocation(mProgramId, "uColor");
+            if (CHECK_GL_ERRORS) checkGlError(gl, "glGetUniformLocation");
+        }
+
+        /**
+         * Releases this program. It is deleted once no one else in its EGL context uses it.
+         */
+        public void release() {
+            ShaderRegistry.getInstance().release(mEglContext, mGl, mProgramId);
+        }
+
+        /**
+         * Returns the GL this program issues its calls through.
+         */
+        GlApi getGl() {
+            return mGl;
         }
 
         /**
@@ -291,29 +389,61 @@ public class Gles2ColoredTriangleList {
          * triangle lists.
          */
         public void use() {
-            GLES20.glUseProgram(mProgramId);
-            if (CHECK_GL_ERRORS) checkGlError("glUseProgram");
+            mGl.glUseProgram(mProgramId);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glUseProgram");
         }
 
         /**
-         * Sends the given MVP matrix, vertex data, and color to OpenGL.
+         * Sends the given MVP matrix, client-side vertex data, and color to OpenGL.
          */
-        public void bind(float[] mvpMatrix, FloatBuffer vertexBuffer, float[] color) {
+        public void bind(float[] mvpMatrix, VertexFormat vertexFormat, ByteBuffer vertexBuffer,
+                         float[] color) {
             // Pass the MVP matrix to OpenGL.
-            GLES20.glUniformMatrix4fv(mMvpMatrixHandle, 1 /* count */, false /* transpose */,
+            mGl.glUniformMatrix4fv(mMvpMatrixHandle, 1 /* count */, false /* transpose */,
                     mvpMatrix, 0 /* offset */);
-            if (CHECK_GL_ERRORS) checkGlError("glUniformMatrix4fv");
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glUniformMatrix4fv");
+            mGl.glUniform1f(mPositionScaleHandle, vertexFormat.getPositionScale());
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glUniform1f");
+
+            // Pass the triangle list's client-side vertices to OpenGL.
+            mGl.glEnableVertexAttribArray(mPositionHandle);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glEnableVertexAttribArray");
+            vertexFormat.setAttributePointers(mGl, mPositionHandle, -1 /* colorHandle */,
+                    -1 /* layerHandle */, vertexBuffer);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glVertexAttribPointer");
+
+            // Pass the triangle list's color to OpenGL.
+            mGl.glUniform4fv(mColorHandle, 1 /* count */, color, 0 /* offset */);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glUniform4fv");
+        }
 
-            // Pass the VBO with the triangle list's vertices to OpenGL.
-            GLES20.glEnableVertexAttribArray(mPositionHandle);
-            if (CHECK_GL_ERRORS) checkGlError("glEnableVertexAttribArray");
-            GLES20.glVertexAttribPointer(mPositionHandle, COORDS_PER_VERTEX, GLES20.GL_FLOAT,
-                    false /* normalized */, VERTEX_STRIDE, vertexBuffer);
-            if (CHECK_GL_ERRORS) checkGlError("glVertexAttribPointer");
+        /**
+         * Sends the given MVP matrix, vertex buffer object, and color to OpenGL.
+         */
+        public void bind(float[] mvpMatrix, VertexFormat vertexFormat, int vertexBufferId,
+                         float[] color) {
+            // Pass the MVP matrix to OpenGL.
+            mGl.glUniformMatrix4fv(mMvpMatrixHandle, 1 /* count */, false /* transpose */,
+                    mvpMatrix, 0 /* offset */);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glUniformMatrix4fv");
+            mGl.glUniform1f(mPositionScaleHandle, vertexFormat.getPositionScale());
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glUniform1f");
+
+            // Point the position attribute at the start of the VBO. Unbind it afterwards so
+            // client-side vertex arrays keep working for other triangle lists.
+            mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferId);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glBindBuffer");
+            mGl.glEnableVertexAttribArray(mPositionHandle);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glEnableVertexAttribArray");
+            vertexFormat.setAttributePointers(mGl, mPositionHandle, -1 /* colorHandle */,
+                    -1 /* layerHandle */, 0 /* offset */);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glVertexAttribPointer");
+            mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glBindBuffer");
 
             // Pass the triangle list's color to OpenGL.
-            GLES20.glUniform4fv(mColorHandle, 1 /* count */, color, 0 /* offset */);
-            if (CHECK_GL_ERRORS) checkGlError("glUniform4fv");
+            mGl.glUniform4fv(mColorHandle, 1 /* count */, color, 0 /* offset */);
+            if (CHECK_GL_ERRORS) checkGlError(mGl, "glUniform4fv");
         }
     }
 }
@@ -0,0 +1,204 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Solid colored triangle list that stores each distinct vertex once and draws with
+ * {@link GLES20#GL_UNSIGNED_SHORT} indices. Use this instead of {@link Gles2ColoredTriangleList}
+ * for geometry where triangles share vertices, e.g. tapered hands, rounded ticks or rings. It is
+ * drawn with the same {@link Gles2ColoredTriangleList.Program}.
+ */
+public class Gles2IndexedTriangleList {
+    private static final String TAG = "GlIndexedTriangleList";
+
+    /**
+     * Whether to check for GL errors. This is slow, so not appropriate for production builds.
+     */
+    private static final boolean CHECK_GL_ERRORS = false;
+
+    private static final int COORDS_PER_VERTEX = VertexFormat.COORDS_PER_VERTEX;
+
+    /**
+     * Triangles have three vertices.
+     */
+    private static final int VERTICE_PER_TRIANGLE = 3;
+
+    private static final int NUM_COLOR_COMPONENTS = VertexFormat.NUM_COLOR_COMPONENTS;
+
+    /**
+     * Shaders to render this triangle list.
+     */
+    private final Gles2ColoredTriangleList.Program mProgram;
+
+    /**
+     * Layout of the vertices in {@link #mVertexBuffer}.
+     */
+    private final VertexFormat mVertexFormat;
+
+    /**
+     * Client-side copy of the unique vertices, encoded in {@link #mVertexFormat}.
+     */
+    private final ByteBuffer mVertexBuffer;
+
+    /**
+     * Client-side copy of the indices, three per triangle.
+     */
+    private final ShortBuffer mIndexBuffer;
+
+    /**
+     * Whether the vertices and indices are drawn from GPU-resident buffer objects.
+     */
+    private final boolean mUseBufferObjects;
+
+    /**
+     * Names of the vertex and index buffer objects, or 0 if they haven't been created in the
+     * current GL context.
+     */
+    private int mVertexBufferId;
+    private int mIndexBufferId;
+
+    /**
+     * Color of this triangle list in RGBA order.
+     */
+    private final float[] mColor;
+
+    private final int mNumIndices;
+    private final int mNumVertices;
+
+    /**
+     * Creates an indexed triangle list from non-indexed triangles. Identical vertices are merged
+     * by a {@link VertexWelder}.
+     *
+     * @param program          program for drawing triangles
+     * @param triangleCoords   flat array of 3D coordinates of triangle vertices in
+     *                         counterclockwise order
+     * @param color            color in RGBA order, each in the range [0, 1]
+     * @param useBufferObjects whether to keep the vertices and indices in buffer objects on the
+     *                         GPU. They are created by {@link #onGlContextCreated()}.
+     * @param vertexFormat     how to store the vertices, {@link VertexFormat#FLOAT_XYZ} or
+     *                         {@link VertexFormat#SHORT_XY}
+     */
+    public Gles2IndexedTriangleList(Gles2ColoredTriangleList.Program program,
+                                    float[] triangleCoords, float[] color,
+                                    boolean useBufferObjects, VertexFormat vertexFormat) {
+        if (vertexFormat.hasColor() || vertexFormat.hasLayer()) {
+            throw new IllegalArgumentException("vertex format must only store positions");
+        }
+        if (triangleCoords.length % (VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX) != 0) {
+            throw new IllegalArgumentException("must be multiple"
+                    + " of VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX coordinates");
+        }
+        if (color.length != NUM_COLOR_COMPONENTS) {
+            throw new IllegalArgumentException("wrong number of color components");
+        }
+        mProgram = program;
+        mColor = color;
+        mUseBufferObjects = useBufferObjects;
+        mVertexFormat = vertexFormat;
+
+        VertexWelder welder = new VertexWelder(triangleCoords, COORDS_PER_VERTEX);
+        mVertexBuffer = vertexFormat.encode(welder.getVertices());
+        short[] indices = welder.getIndices();
+        mIndexBuffer = ByteBuffer.allocateDirect(indices.length * VertexWelder.BYTES_PER_INDEX)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        mIndexBuffer.put(indices).position(0);
+        mNumIndices = indices.length;
+        mNumVertices = welder.getUniqueVertexCount();
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Welded " + welder.getInputVertexCount() + " vertices into "
+                    + mNumVertices + ", saving "
+                    + welder.getSavedBytes(vertexFormat.getStride()) + " bytes");
+        }
+    }
+
+    /**
+     * Uploads the vertices and indices into buffer objects if this triangle list was created to
+     * use them. Call this from {@code onGlContextCreated()} each time a GL context is created.
+     */
+    public void onGlContextCreated() {
+        if (!mUseBufferObjects) {
+            return;
+        }
+        GlApi gl = mProgram.getGl();
+        int[] bufferIds = new int[2];
+        gl.glGenBuffers(2 /* n */, bufferIds, 0 /* offset */);
+
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferIds[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.capacity(), mVertexBuffer,
+                GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, bufferIds[1]);
+        gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, getIndexBytes(), mIndexBuffer,
+                GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(gl, "glBufferData");
+
+        mVertexBufferId = bufferIds[0];
+        mIndexBufferId = bufferIds[1];
+    }
+
+    /**
+     * Deletes the buffer objects, if any. Only call this while the GL context that created them
+     * is current.
+     */
+    public void release() {
+        if (mVertexBufferId == 0) {
+            return;
+        }
+        mProgram.getGl().glDeleteBuffers(2 /* n */,
+                new int[]{mVertexBufferId, mIndexBufferId}, 0 /* offset */);
+        mVertexBufferId = 0;
+        mIndexBufferId = 0;
+    }
+
+    /**
+     * Returns the number of unique vertices.
+     */
+    public int getNumVertices() {
+        return mNumVertices;
+    }
+
+    /**
+     * Returns the size of the encoded vertices in bytes.
+     */
+    public int getVertexBytes() {
+        return mVertexBuffer.capacity();
+    }
+
+    /**
+     * Returns the size of the indices in bytes.
+     */
+    public int getIndexBytes() {
+        return mNumIndices * VertexWelder.BYTES_PER_INDEX;
+    }
+
+    /**
+     * Draws this triangle list using OpenGL commands.
+     *
+     * @param mvpMatrix the Model View Project matrix to draw this triangle list
+     */
+    public void draw(float[] mvpMatrix) {
+        GlApi gl = mProgram.getGl();
+        if (mVertexBufferId != 0) {
+            mProgram.bind(mvpMatrix, mVertexFormat, mVertexBufferId, mColor);
+
+            // Unbind the indices afterwards so client-side indices keep working elsewhere.
+            gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mIndexBufferId);
+            gl.glDrawElements(GLES20.GL_TRIANGLES, mNumIndices, GLES20.GL_UNSIGNED_SHORT,
+                    0 /* offset */);
+            gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        } else {
+            mProgram.bind(mvpMatrix, mVertexFormat, mVertexBuffer, mColor);
+            gl.glDrawElements(GLES20.GL_TRIANGLES, mNumIndices, GLES20.GL_UNSIGNED_SHORT,
+                    mIndexBuffer);
+        }
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(gl, "glDrawElements");
+    }
+}
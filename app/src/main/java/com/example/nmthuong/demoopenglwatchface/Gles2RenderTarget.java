@@ -0,0 +1,111 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * An offscreen framebuffer with a single RGBA texture as its color buffer. Draw into it after
+ * {@link #bind()}, then show it with a {@link Gles2TextureCopier}.
+ */
+public class Gles2RenderTarget {
+    private static final String TAG = "GlRenderTarget";
+
+    /**
+     * Whether to check for GL errors. This is slow, so not appropriate for production builds.
+     */
+    private static final boolean CHECK_GL_ERRORS = false;
+
+    private final GlApi mGl;
+    private final int mFramebufferId;
+    private final int mTextureId;
+    private final int mWidth;
+    private final int mHeight;
+
+    private Gles2RenderTarget(GlApi gl, int framebufferId, int textureId, int width, int height) {
+        mGl = gl;
+        mFramebufferId = framebufferId;
+        mTextureId = textureId;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Creates a render target of the given size, or returns null if the driver can't render to
+     * it. Leaves the default framebuffer bound.
+     */
+    public static Gles2RenderTarget create(GlApi gl, int width, int height) {
+        int[] ids = new int[1];
+        gl.glGenTextures(1 /* n */, ids, 0 /* offset */);
+        final int textureId = ids[0];
+        gl.glGenFramebuffers(1 /* n */, ids, 0 /* offset */);
+        final int framebufferId = ids[0];
+
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0 /* level */, GLES20.GL_RGBA, width, height,
+                0 /* border */, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null /* pixels */);
+        // The texture is copied to the screen pixel for pixel, so no filtering is needed.
+        // Textures that aren't a power of two must clamp and have no mipmaps.
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S,
+                GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T,
+                GLES20.GL_CLAMP_TO_EDGE);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+        gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebufferId);
+        gl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, textureId, 0 /* level */);
+        final int status = gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(gl, "glFramebufferTexture2D");
+
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            Log.w(TAG, "Framebuffer incomplete: 0x" + Integer.toHexString(status));
+            gl.glDeleteFramebuffers(1 /* n */, new int[]{framebufferId}, 0 /* offset */);
+            gl.glDeleteTextures(1 /* n */, new int[]{textureId}, 0 /* offset */);
+            return null;
+        }
+        return new Gles2RenderTarget(gl, framebufferId, textureId, width, height);
+    }
+
+    /**
+     * Directs drawing into this render target and sets the viewport to cover it.
+     */
+    public void bind() {
+        mGl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferId);
+        mGl.glViewport(0, 0, mWidth, mHeight);
+    }
+
+    /**
+     * Returns the name of the texture holding the content.
+     */
+    public int getTextureId() {
+        return mTextureId;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Returns the number of pixels in this render target.
+     */
+    public long getPixelCount() {
+        return (long) mWidth * mHeight;
+    }
+
+    /**
+     * Deletes the framebuffer and texture. Only call this while the GL context that created them
+     * is current.
+     */
+    public void release() {
+        mGl.glDeleteFramebuffers(1 /* n */, new int[]{mFramebufferId}, 0 /* offset */);
+        mGl.glDeleteTextures(1 /* n */, new int[]{mTextureId}, 0 /* offset */);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Textured quads ("sprites") that all sample the same texture, e.g. the entries of a texture
+ * atlas, drawn with a single draw call. Textures are expected to have premultiplied alpha, as
+ * uploaded from a {@link android.graphics.Bitmap}, and are blended over the bound framebuffer.
+ * <p>
+ * The quads are kept in a VBO that is only uploaded again by {@link #setQuads}, so drawing an
+ * unchanged batch uploads nothing.
+ */
+public class Gles2SpriteBatch {
+
+    /**
+     * Whether to check for GL errors. This is slow, so not appropriate for production builds.
+     */
+    private static final boolean CHECK_GL_ERRORS = false;
+
+    /**
+     * Floats per vertex: x and y in normalized device coordinates, then s and t.
+     */
+    private static final int FLOATS_PER_VERTEX = 4;
+
+    /**
+     * Two triangles per quad.
+     */
+    private static final int VERTICES_PER_QUAD = 6;
+
+    /**
+     * Floats per quad in the arrays passed to {@link #setQuads}.
+     */
+    public static final int FLOATS_PER_QUAD = FLOATS_PER_VERTEX * VERTICES_PER_QUAD;
+
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int STRIDE = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    private static final String VERTEX_SHADER_CODE = "" +
+            "attribute vec2 aPosition;\n" +
+            "attribute vec2 aTexCoord;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    vTexCoord = aTexCoord;\n" +
+            "    gl_Position = vec4(aPosition, 0.0, 1.0);\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER_CODE = "" +
+            "precision mediump float;\n" +
+            "uniform sampler2D uTexture;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
+            "}\n";
+
+    private final GlApi mGl;
+
+    /**
+     * EGL context the program was created in. Identifies it in the {@link ShaderRegistry}.
+     */
+    private final Object mEglContext;
+
+    private final int mProgramId;
+    private final int mTextureHandle;
+    private final int mPositionHandle;
+    private final int mTexCoordHandle;
+
+    private final int mVertexBufferId;
+
+    /**
+     * Client-side staging for uploads. Grown as needed.
+     */
+    private ByteBuffer mStaging;
+
+    private int mQuadCount;
+    private int mUploads;
+
+    /**
+     * Creates the program and an empty batch. Call this from {@code onGlContextCreated()}.
+     *
+     * @param gl         GL to issue calls through
+     * @param eglContext the EGL context the batch is used in
+     */
+    public Gles2SpriteBatch(GlApi gl, Object eglContext) {
+        mGl = gl;
+        mEglContext = eglContext;
+        mProgramId = ShaderRegistry.getInstance().acquire(eglContext, gl,
+                VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE, null /* attributes */);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(gl, "glLinkProgram");
+        mTextureHandle = gl.glGetUniformLocation(mProgramId, "uTexture");
+        mPositionHandle = gl.glGetAttribLocation(mProgramId, "aPosition");
+        mTexCoordHandle = gl.glGetAttribLocation(mProgramId, "aTexCoord");
+
+        int[] bufferIds = new int[1];
+        gl.glGenBuffers(1 /* n */, bufferIds, 0 /* offset */);
+        mVertexBufferId = bufferIds[0];
+    }
+
+    /**
+     * Writes a quad into an array for {@link #setQuads}. Positions are in normalized device
+     * coordinates, texture coordinates in [0, 1]. The top edge of the quad shows the texture at
+     * {@code t0}.
+     *
+     * @param quads array to write to
+     * @param quad  index of the quad in the array
+     */
+    public static void putQuad(float[] quads, int quad, float left, float top, float right,
+                               float bottom, float s0, float t0, float s1, float t1) {
+        int i = quad * FLOATS_PER_QUAD;
+        i = putVertex(quads, i, left, bottom, s0, t1);
+        i = putVertex(quads, i, right, bottom, s1, t1);
+        i = putVertex(quads, i, left, top, s0, t0);
+        i = putVertex(quads, i, left, top, s0, t0);
+        i = putVertex(quads, i, right, bottom, s1, t1);
+        putVertex(quads, i, right, top, s1, t0);
+    }
+
+    private static int putVertex(float[] quads, int i, float x, float y, float s, float t) {
+        quads[i] = x;
+        quads[i + 1] = y;
+        quads[i + 2] = s;
+        quads[i + 3] = t;
+        return i + FLOATS_PER_VERTEX;
+    }
+
+    /**
+     * Replaces the quads and uploads them.
+     *
+     * @param quads     quads written with {@link #putQuad}
+     * @param quadCount number of quads to take from the array
+     */
+    public void setQuads(float[] quads, int quadCount) {
+        mQuadCount = quadCount;
+        if (quadCount == 0) {
+            return;
+        }
+        final int floats = quadCount * FLOATS_PER_QUAD;
+        if (mStaging == null || mStaging.capacity() < floats * BYTES_PER_FLOAT) {
+            mStaging = ByteBuffer.allocateDirect(floats * BYTES_PER_FLOAT)
+                    .order(ByteOrder.nativeOrder());
+        }
+        FloatBuffer staging = mStaging.asFloatBuffer();
+        staging.put(quads, 0, floats);
+        mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBufferId);
+        mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, floats * BYTES_PER_FLOAT, mStaging,
+                GLES20.GL_DYNAMIC_DRAW);
+        mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(mGl, "glBufferData");
+        mUploads++;
+    }
+
+    /**
+     * Returns the number of quads set.
+     */
+    public int getQuadCount() {
+        return mQuadCount;
+    }
+
+    /**
+     * Returns the number of times the quads were uploaded.
+     */
+    public int getUploads() {
+        return mUploads;
+    }
+
+    /**
+     * Draws every quad with the given texture, blended over the bound framebuffer. Blending is
+     * disabled again afterwards.
+     *
+     * @return the number of draw calls issued, 0 if there are no quads
+     */
+    public int draw(int textureId) {
+        if (mQuadCount == 0) {
+            return 0;
+        }
+        mGl.glUseProgram(mProgramId);
+        mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+        mGl.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        mGl.glUniform1i(mTextureHandle, 0 /* texture unit */);
+
+        mGl.glEnableVertexAttribArray(mPositionHandle);
+        mGl.glEnableVertexAttribArray(mTexCoordHandle);
+        mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBufferId);
+        mGl.glVertexAttribPointer(mPositionHandle, 2 /* size */, GLES20.GL_FLOAT,
+                false /* normalized */, STRIDE, 0 /* offset */);
+        mGl.glVertexAttribPointer(mTexCoordHandle, 2 /* size */, GLES20.GL_FLOAT,
+                false /* normalized */, STRIDE, 2 * BYTES_PER_FLOAT /* offset */);
+        mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        mGl.glEnable(GLES20.GL_BLEND);
+        mGl.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        mGl.glDrawArrays(GLES20.GL_TRIANGLES, 0 /* first */, mQuadCount * VERTICES_PER_QUAD);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(mGl, "glDrawArrays");
+        mGl.glDisable(GLES20.GL_BLEND);
+
+        // Programs drawn next that don't use these attributes mustn't read past their end.
+        mGl.glDisableVertexAttribArray(mPositionHandle);
+        mGl.glDisableVertexAttribArray(mTexCoordHandle);
+        return 1;
+    }
+
+    /**
+     * Deletes the VBO and releases the program. Only call this while the GL context that created
+     * them is current.
+     */
+    public void release() {
+        mGl.glDeleteBuffers(1 /* n */, new int[]{mVertexBufferId}, 0 /* offset */);
+        ShaderRegistry.getInstance().release(mEglContext, mGl, mProgramId);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Copies a texture over the whole bound framebuffer by drawing a full screen quad, e.g. to show
+ * the content of a {@link Gles2RenderTarget}.
+ */
+public class Gles2TextureCopier {
+
+    /**
+     * Whether to check for GL errors. This is slow, so not appropriate for production builds.
+     */
+    private static final boolean CHECK_GL_ERRORS = false;
+
+    /**
+     * Full screen quad as a triangle strip, in normalized device coordinates.
+     */
+    private static final float[] QUAD_COORDS = {
+            -1, -1,
+            1, -1,
+            -1, 1,
+            1, 1
+    };
+
+    private static final int COORDS_PER_QUAD_VERTEX = 2;
+    private static final int BYTES_PER_FLOAT = 4;
+
+    /**
+     * Vertex shader that passes the position through and derives the texture coordinate from it.
+     */
+    private static final String VERTEX_SHADER_CODE = "" +
+            "attribute vec2 aPosition;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    vTexCoord = aPosition * 0.5 + 0.5;\n" +
+            "    gl_Position = vec4(aPosition, 0.0, 1.0);\n" +
+            "}\n";
+
+    /**
+     * Fragment shader that samples the texture.
+     */
+    private static final String FRAGMENT_SHADER_CODE = "" +
+            "precision mediump float;\n" +
+            "uniform sampler2D uTexture;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(uTexture, vTexCoord);\n" +
+            "}\n";
+
+    private final GlApi mGl;
+
+    /**
+     * EGL context the program was created in. Identifies it in the {@link ShaderRegistry}.
+     */
+    private final Object mEglContext;
+
+    private final int mProgramId;
+    private final int mTextureHandle;
+    private final int mPositionHandle;
+
+    /**
+     * Name of the VBO holding {@link #QUAD_COORDS}.
+     */
+    private final int mQuadBufferId;
+
+    /**
+     * Creates the program and the quad. Call this from {@code onGlContextCreated()}.
+     *
+     * @param gl         GL to issue calls through
+     * @param eglContext the EGL context the copier is used in
+     */
+    public Gles2TextureCopier(GlApi gl, Object eglContext) {
+        mGl = gl;
+        mEglContext = eglContext;
+        mProgramId = ShaderRegistry.getInstance().acquire(eglContext, gl,
+                VERTEX_SHADER_CODE, FRAGMENT_SHADER_CODE, null /* attributes */);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(gl, "glLinkProgram");
+        mTextureHandle = gl.glGetUniformLocation(mProgramId, "uTexture");
+        mPositionHandle = gl.glGetAttribLocation(mProgramId, "aPosition");
+
+        ByteBuffer quad = ByteBuffer.allocateDirect(QUAD_COORDS.length * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder());
+        quad.asFloatBuffer().put(QUAD_COORDS);
+        int[] bufferIds = new int[1];
+        gl.glGenBuffers(1 /* n */, bufferIds, 0 /* offset */);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferIds[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, quad.capacity(), quad, GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        mQuadBufferId = bufferIds[0];
+    }
+
+    /**
+     * Copies a texture over the whole bound framebuffer, within the current viewport. The
+     * texture replaces what was there; there is no blending.
+     */
+    public void copy(int textureId) {
+        mGl.glDisable(GLES20.GL_BLEND);
+        mGl.glUseProgram(mProgramId);
+        mGl.glActiveTexture(GLES20.GL_TEXTURE0);
+        mGl.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        mGl.glUniform1i(mTextureHandle, 0 /* texture unit */);
+
+        mGl.glEnableVertexAttribArray(mPositionHandle);
+        mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mQuadBufferId);
+        mGl.glVertexAttribPointer(mPositionHandle, COORDS_PER_QUAD_VERTEX, GLES20.GL_FLOAT,
+                false /* normalized */, 0 /* stride */, 0 /* offset */);
+        mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        mGl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0 /* first */,
+                QUAD_COORDS.length / COORDS_PER_QUAD_VERTEX);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(mGl, "glDrawArrays");
+
+        // Programs drawn next that don't use the quad attribute mustn't read past its end.
+        mGl.glDisableVertexAttribArray(mPositionHandle);
+    }
+
+    /**
+     * Deletes the quad and releases the program. Only call this while the GL context that
+     * created them is current.
+     */
+    public void release() {
+        mGl.glDeleteBuffers(1 /* n */, new int[]{mQuadBufferId}, 0 /* offset */);
+        ShaderRegistry.getInstance().release(mEglContext, mGl, mProgramId);
+    }
+}
@@ -0,0 +1,458 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.EGL14;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Several solid colored triangle lists ("layers") merged into one interleaved vertex buffer so
+ * they can be drawn with a single draw call. Each vertex carries its position, its layer's color
+ * and its layer index. The vertex shader uses the layer index to pick that layer's transform
+ * from a uniform array, so layers can still be moved independently, e.g. to rotate the hands.
+ * <p>
+ * Depending on its {@link Program}, a layer's transform is either a full MVP matrix, see
+ * {@link #draw}, or a 2D rotation and translation applied before a view projection matrix
+ * shared by all layers, see {@link #drawAffine}. The latter needs no matrix math on the CPU.
+ * <p>
+ * The vertex layout is given by a {@link VertexFormat} with a color and a layer.
+ * <p>
+ * Layers are drawn in the order they were added. Hidden layers split the batch into at most one
+ * extra draw call per hidden run of layers.
+ */
+public class Gles2TriangleBatch {
+
+    /**
+     * Whether to check for GL errors. This is slow, so not appropriate for production builds.
+     */
+    private static final boolean CHECK_GL_ERRORS = false;
+
+    /**
+     * Maximum number of layers in a batch. Limited by the size of the uniform array of MVP
+     * matrices in the vertex shader.
+     */
+    public static final int MAX_LAYERS = 8;
+
+    /**
+     * Number of floats per layer in the transforms passed to {@link #drawAffine}.
+     */
+    public static final int FLOATS_PER_AFFINE_TRANSFORM = 4;
+
+    /**
+     * Number of coordinates per vertex in the input arrays: one for each of x, y, and z.
+     */
+    private static final int COORDS_PER_VERTEX = VertexFormat.COORDS_PER_VERTEX;
+
+    /**
+     * Number of components in an OpenGL color.
+     */
+    private static final int NUM_COLOR_COMPONENTS = VertexFormat.NUM_COLOR_COMPONENTS;
+
+    /**
+     * Shaders to render this batch.
+     */
+    private final Program mProgram;
+
+    /**
+     * Layout of the vertices in {@link #mVertexBuffer}.
+     */
+    private final VertexFormat mVertexFormat;
+
+    /**
+     * Client-side copy of the interleaved vertices. This is the source for re-creating the VBO
+     * after the GL context is lost.
+     */
+    private final ByteBuffer mVertexBuffer;
+
+    /**
+     * Index of the first vertex of each layer, plus the total vertex count at the end.
+     */
+    private final int[] mLayerFirstVertex;
+
+    private final int mNumLayers;
+
+    /**
+     * Name of the VBO holding the interleaved vertices, or 0 if it hasn't been created in the
+     * current GL context.
+     */
+    private int mVertexBufferId;
+
+    /**
+     * Creates a batch from the given layers.
+     *
+     * @param program        program for drawing batches
+     * @param layerCoords    for each layer, a flat array of 3D coordinates of triangle vertices in
+     *                       counterclockwise order
+     * @param layerColors    for each layer, a color in RGBA order, each in the range [0, 1]
+     */
+    public Gles2TriangleBatch(Program program, float[][] layerCoords, float[][] layerColors) {
+        this(program, layerCoords, layerColors, VertexFormat.FLOAT_XYZ_RGBA_LAYER);
+    }
+
+    /**
+     * Creates a batch from the given layers.
+     *
+     * @param program        program for drawing batches
+     * @param layerCoords    for each layer, a flat array of 3D coordinates of triangle vertices in
+     *                       counterclockwise order
+     * @param layerColors    for each layer, a color in RGBA order, each in the range [0, 1]
+     * @param vertexFormat   how to store the vertices, {@link VertexFormat#FLOAT_XYZ_RGBA_LAYER}
+     *                       or the compact {@link VertexFormat#SHORT_XY_UBYTE_RGBA_LAYER}
+     */
+    public Gles2TriangleBatch(Program program, float[][] layerCoords, float[][] layerColors,
+                              VertexFormat vertexFormat) {
+        if (!vertexFormat.hasColor() || !vertexFormat.hasLayer()) {
+            throw new IllegalArgumentException("vertex format must store colors and layers");
+        }
+        if (layerCoords.length != layerColors.length) {
+            throw new IllegalArgumentException("need one color per layer");
+        }
+        if (layerCoords.length == 0 || layerCoords.length > MAX_LAYERS) {
+            throw new IllegalArgumentException("must have between 1 and MAX_LAYERS layers");
+        }
+        mProgram = program;
+        mVertexFormat = vertexFormat;
+        mNumLayers = layerCoords.length;
+        mLayerFirstVertex = new int[mNumLayers + 1];
+
+        int numVertices = 0;
+        for (int layer = 0; layer < mNumLayers; layer++) {
+            if (layerCoords[layer].length % (3 * COORDS_PER_VERTEX) != 0) {
+                throw new IllegalArgumentException("must be multiple"
+                        + " of VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX coordinates");
+            }
+            if (layerColors[layer].length != NUM_COLOR_COMPONENTS) {
+                throw new IllegalArgumentException("wrong number of color components");
+            }
+            mLayerFirstVertex[layer] = numVertices;
+            numVertices += layerCoords[layer].length / COORDS_PER_VERTEX;
+        }
+        mLayerFirstVertex[mNumLayers] = numVertices;
+
+        mVertexBuffer = vertexFormat.allocate(numVertices);
+        for (int layer = 0; layer < mNumLayers; layer++) {
+            float[] coords = layerCoords[layer];
+            float[] color = layerColors[layer];
+            for (int i = 0; i < coords.length; i += COORDS_PER_VERTEX) {
+                vertexFormat.put(mVertexBuffer, coords, i, color, 0 /* colorOffset */, layer);
+            }
+        }
+        mVertexBuffer.position(0);
+    }
+
+    /**
+     * Returns the number of layers in this batch.
+     */
+    public int getNumLayers() {
+        return mNumLayers;
+    }
+
+    /**
+     * Returns the size of the encoded vertices in bytes.
+     */
+    public int getVertexBytes() {
+        return mVertexBuffer.capacity();
+    }
+
+    /**
+     * Uploads the interleaved vertices into a VBO. Call this from {@code onGlContextCreated()}
+     * each time a GL context is created.
+     */
+    public void onGlContextCreated() {
+        GlApi gl = mProgram.mGl;
+        int[] bufferIds = new int[1];
+        gl.glGenBuffers(1 /* n */, bufferIds, 0 /* offset */);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferIds[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, mVertexBuffer.capacity(), mVertexBuffer,
+                GLES20.GL_STATIC_DRAW);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(gl, "glBufferData");
+        mVertexBufferId = bufferIds[0];
+    }
+
+    /**
+     * Deletes the VBO, if any. Only call this while the GL context that created it is current.
+     */
+    public void release() {
+        if (mVertexBufferId == 0) {
+            return;
+        }
+        mProgram.mGl.glDeleteBuffers(1 /* n */, new int[]{mVertexBufferId}, 0 /* offset */);
+        mVertexBufferId = 0;
+    }
+
+    /**
+     * Draws the visible layers of this batch, issuing one draw call per contiguous run of visible
+     * layers.
+     *
+     * @param mvpMatrices   the MVP matrix of each layer, packed one after the other
+     * @param layerVisible  whether each layer should be drawn, or null to draw all of them
+     * @return the number of draw calls issued
+     */
+    public int draw(float[] mvpMatrices, boolean[] layerVisible) {
+        mProgram.bindMvpMatrices(mvpMatrices, mNumLayers);
+        return drawLayers(layerVisible);
+    }
+
+    /**
+     * Draws the visible layers of this batch with 2D transforms. Each layer is rotated about the
+     * origin in the XY plane, then translated, then transformed by the view projection matrix.
+     * This needs a program created with {@code affine} set.
+     *
+     * @param vpMatrix        view projection matrix shared by all layers
+     * @param layerTransforms for each layer, {@link #FLOATS_PER_AFFINE_TRANSFORM} floats:
+     *                        the cosine and sine of its rotation angle and its X and Y
+     *                        translation. Angles turn the same way as
+     *                        {@link android.opengl.Matrix#setRotateM} about the Z axis.
+     * @param layerVisible    whether each layer should be drawn, or null to draw all of them
+     * @return the number of draw calls issued
+     */
+    public int drawAffine(float[] vpMatrix, float[] layerTransforms, boolean[] layerVisible) {
+        mProgram.bindAffineTransforms(vpMatrix, layerTransforms, mNumLayers);
+        return drawLayers(layerVisible);
+    }
+
+    /**
+     * Sets the 2D transform of a layer in an array of transforms for {@link #drawAffine}.
+     *
+     * @param layerTransforms transforms of all layers
+     * @param layer           layer to set
+     * @param cos             cosine of the rotation angle
+     * @param sin             sine of the rotation angle
+     * @param x               X translation
+     * @param y               Y translation
+     */
+    public static void setAffineTransform(float[] layerTransforms, int layer, float cos,
+                                          float sin, float x, float y) {
+        int offset = layer * FLOATS_PER_AFFINE_TRANSFORM;
+        layerTransforms[offset] = cos;
+        layerTransforms[offset + 1] = sin;
+        layerTransforms[offset + 2] = x;
+        layerTransforms[offset + 3] = y;
+    }
+
+    /**
+     * Binds the vertices and issues one draw call per contiguous run of visible layers. The
+     * transform uniforms must already be set.
+     */
+    private int drawLayers(boolean[] layerVisible) {
+        mProgram.bindVertices(mVertexFormat, mVertexBufferId,
+                mVertexBufferId == 0 ? mVertexBuffer : null);
+
+        int drawCalls = 0;
+        int layer = 0;
+        while (layer < mNumLayers) {
+            if (layerVisible != null && !layerVisible[layer]) {
+                layer++;
+                continue;
+            }
+            int firstLayer = layer;
+            while (layer < mNumLayers && (layerVisible == null || layerVisible[layer])) {
+                layer++;
+            }
+            int first = mLayerFirstVertex[firstLayer];
+            mProgram.mGl.glDrawArrays(GLES20.GL_TRIANGLES, first, mLayerFirstVertex[layer] - first);
+            if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(mProgram.mGl, "glDrawArrays");
+            drawCalls++;
+        }
+        return drawCalls;
+    }
+
+    /**
+     * OpenGL shaders for drawing triangle batches with per-vertex colors and per-layer MVP
+     * matrices or 2D transforms.
+     */
+    public static class Program {
+        /**
+         * Vertex shader that transforms the input vertex by the MVP matrix of its layer, after
+         * scaling its XY by {@link VertexFormat#getPositionScale()}.
+         */
+        private static final String VERTEX_SHADER_CODE = "" +
+                "uniform mat4 uMvpMatrices[" + MAX_LAYERS + "];\n" +
+                "uniform float uPositionScale;\n" +
+                "attribute vec4 aPosition;\n" +
+                "attribute vec4 aColor;\n" +
+                "attribute float aLayer;\n" +
+                "varying vec4 vColor;\n" +
+                "void main() {\n" +
+                "    vColor = aColor;\n" +
+                "    gl_Position = uMvpMatrices[int(aLayer)]\n" +
+                "            * vec4(aPosition.xy * uPositionScale, aPosition.zw);\n" +
+                "}\n";
+
+        /**
+         * Vertex shader that rotates and translates the input vertex in the XY plane by the 2D
+         * transform of its layer, then applies the shared view projection matrix. Each transform
+         * is (cos, sin, x, y).
+         */
+        private static final String AFFINE_VERTEX_SHADER_CODE = "" +
+                "uniform mat4 uVpMatrix;\n" +
+                "uniform vec4 uTransforms[" + MAX_LAYERS + "];\n" +
+                "uniform float uPositionScale;\n" +
+                "attribute vec4 aPosition;\n" +
+                "attribute vec4 aColor;\n" +
+                "attribute float aLayer;\n" +
+                "varying vec4 vColor;\n" +
+                "void main() {\n" +
+                "    vColor = aColor;\n" +
+                "    vec4 t = uTransforms[int(aLayer)];\n" +
+                "    vec2 p = aPosition.xy * uPositionScale;\n" +
+                "    vec2 q = vec2(t.x * p.x - t.y * p.y, t.y * p.x + t.x * p.y) + t.zw;\n" +
+                "    gl_Position = uVpMatrix * vec4(q, aPosition.zw);\n" +
+                "}\n";
+
+        /**
+         * Fragment shader that draws with the interpolated vertex color.
+         */
+        private static final String FRAGMENT_SHADER_CODE = "" +
+                "precision mediump float;\n" +
+                "varying vec4 vColor;\n" +
+                "void main() {\n" +
+                "    gl_FragColor = vColor;\n" +
+                "}\n";
+
+        private final GlApi mGl;
+
+        /**
+         * EGL context the program was created in. Identifies it in the {@link ShaderRegistry}.
+         */
+        private final Object mEglContext;
+
+        /**
+         * ID OpenGL uses to identify this program.
+         */
+        private final int mProgramId;
+
+        /**
+         * Whether this program takes 2D transforms instead of MVP matrices.
+         */
+        private final boolean mAffine;
+
+        /**
+         * Handle for uMvpMatrices, or uVpMatrix if {@link #mAffine} is set.
+         */
+        private final int mMvpMatricesHandle;
+
+        /**
+         * Handle for uTransforms, or -1 unless {@link #mAffine} is set.
+         */
+        private final int mTransformsHandle;
+        private final int mPositionScaleHandle;
+        private final int mPositionHandle;
+        private final int mColorHandle;
+        private final int mLayerHandle;
+
+        public Program() {
+            this(AndroidGlApi.INSTANCE, EGL14.eglGetCurrentContext());
+        }
+
+        /**
+         * @param gl         GL to issue calls through
+         * @param eglContext the EGL context the program is used in
+         */
+        public Program(GlApi gl, Object eglContext) {
+            this(gl, eglContext, false /* affine */);
+        }
+
+        /**
+         * @param gl         GL to issue calls through
+         * @param eglContext the EGL context the program is used in
+         * @param affine     whether batches are drawn with {@link #drawAffine} instead of
+         *                   {@link #draw}
+         */
+        public Program(GlApi gl, Object eglContext, boolean affine) {
+            mGl = gl;
+            mEglContext = eglContext;
+            mAffine = affine;
+
+            // Compile and link the shaders, or reuse them if this context already has them.
+            mProgramId = ShaderRegistry.getInstance().acquire(eglContext, gl,
+                    affine ? AFFINE_VERTEX_SHADER_CODE : VERTEX_SHADER_CODE,
+                    FRAGMENT_SHADER_CODE, null /* attributes */);
+            if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(gl, "glLinkProgram");
+
+            if (affine) {
+                mMvpMatricesHandle = gl.glGetUniformLocation(mProgramId, "uVpMatrix");
+                mTransformsHandle = gl.glGetUniformLocation(mProgramId, "uTransforms");
+            } else {
+                mMvpMatricesHandle = gl.glGetUniformLocation(mProgramId, "uMvpMatrices");
+                mTransformsHandle = -1;
+            }
+            mPositionScaleHandle = gl.glGetUniformLocation(mProgramId, "uPositionScale");
+            mPositionHandle = gl.glGetAttribLocation(mProgramId, "aPosition");
+            mColorHandle = gl.glGetAttribLocation(mProgramId, "aColor");
+            mLayerHandle = gl.glGetAttribLocation(mProgramId, "aLayer");
+        }
+
+        /**
+         * Releases this program. It is deleted once no one else in its EGL context uses it.
+         */
+        public void release() {
+            ShaderRegistry.getInstance().release(mEglContext, mGl, mProgramId);
+        }
+
+        /**
+         * Tells OpenGL to use this program.
+         */
+        public void use() {
+            mGl.glUseProgram(mProgramId);
+        }
+
+        /**
+         * Sends the MVP matrices of all layers to OpenGL.
+         *
+         * @param mvpMatrices packed MVP matrices, one per layer
+         * @param numLayers   number of matrices in mvpMatrices
+         */
+        void bindMvpMatrices(float[] mvpMatrices, int numLayers) {
+            if (mAffine) {
+                throw new IllegalStateException("program takes 2D transforms");
+            }
+            // All the layer matrices go to OpenGL in one call.
+            mGl.glUniformMatrix4fv(mMvpMatricesHandle, numLayers, false /* transpose */,
+                    mvpMatrices, 0 /* offset */);
+        }
+
+        /**
+         * Sends the shared view projection matrix and the 2D transforms of all layers to OpenGL.
+         *
+         * @param vpMatrix        view projection matrix
+         * @param layerTransforms packed transforms, one per layer
+         * @param numLayers       number of transforms in layerTransforms
+         */
+        void bindAffineTransforms(float[] vpMatrix, float[] layerTransforms, int numLayers) {
+            if (!mAffine) {
+                throw new IllegalStateException("program takes MVP matrices");
+            }
+            mGl.glUniformMatrix4fv(mMvpMatricesHandle, 1 /* count */, false /* transpose */,
+                    vpMatrix, 0 /* offset */);
+            mGl.glUniform4fv(mTransformsHandle, numLayers, layerTransforms, 0 /* offset */);
+        }
+
+        /**
+         * Sends the interleaved vertex data to OpenGL.
+         *
+         * @param vertexFormat   layout of the vertices
+         * @param vertexBufferId VBO holding the vertices, or 0 to use vertexBuffer
+         * @param vertexBuffer   client-side vertices, only used if vertexBufferId is 0
+         */
+        void bindVertices(VertexFormat vertexFormat, int vertexBufferId,
+                          ByteBuffer vertexBuffer) {
+            mGl.glUniform1f(mPositionScaleHandle, vertexFormat.getPositionScale());
+
+            mGl.glEnableVertexAttribArray(mPositionHandle);
+            mGl.glEnableVertexAttribArray(mColorHandle);
+            mGl.glEnableVertexAttribArray(mLayerHandle);
+            if (vertexBufferId != 0) {
+                mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferId);
+                vertexFormat.setAttributePointers(mGl, mPositionHandle, mColorHandle,
+                        mLayerHandle, 0 /* offset */);
+                mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            } else {
+                vertexFormat.setAttributePointers(mGl, mPositionHandle, mColorHandle,
+                        mLayerHandle, vertexBuffer);
+            }
+            if (CHECK_GL_ERRORS) Gles2ColoredTriangleList.checkGlError(mGl, "glVertexAttribPointer");
+        }
+    }
+}
@@ -2,18 +2,18 @@ package com.example.nmthuong.demoopenglwatchface;
 
 import android.content.Context;
 
+import android.opengl.EGL14;
 import android.opengl.GLES20;
-import android.opengl.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
 import android.os.SystemClock;
 import android.support.wearable.watchface.Gles2WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.util.Log;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 
 /**
  * Analog watch face with a ticking second hand. In ambient mode, the second hand isn't
@@ -29,9 +29,30 @@ import java.nio.FloatBuffer;
  */
 public class MainAnaLogWatchFace extends Gles2WatchFaceService {
 
+    private static final String TAG = "MainAnaLogWatchFace";
+
     /* Expected frame rate in interactive mode */
-    private static final long FPS = 60;
-    private float[][] mModelMatrix = new float[360][16];
+    private static final int FPS = 60;
+
+    /**
+     * Message that draws the next scheduled interactive frame.
+     */
+    private static final int MSG_UPDATE_FRAME = 0;
+
+    /**
+     * Names of the {@link EventTrace} events this face records.
+     */
+    private static final int TRACE_ON_DRAW = EventTrace.getInstance().registerName("onDraw");
+    private static final int TRACE_GL_CALLS_ISSUED =
+            EventTrace.getInstance().registerName("glCallsIssued");
+    private static final int TRACE_GL_CALLS_ELIDED =
+            EventTrace.getInstance().registerName("glCallsElided");
+
+    /**
+     * Whether to store vertices as normalized shorts and bytes (8 bytes per vertex) instead of
+     * floats (28 bytes per vertex).
+     */
+    private static final boolean USE_COMPACT_VERTICES = true;
     private float[] mViewMatrix = new float[16];
     private float[] mAmbientViewMatrix = new float[16];
     private float[] mProjectionMatrix = new float[16];
@@ -43,40 +64,24 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
     private int mMVPMatrixHandle;
     private int mPositionHandle;
     private int mColorHandle;
+    private int mPositionScaleHandle;
 
     /**
-     * How many bytes per float.
-     */
-    private final int mBytesPerFloat = 4;
-
-    /**
-     * How many elements per vertex.
-     */
-    private final int mStrideBytes = 7 * mBytesPerFloat;
-
-    /**
-     * Offset of the position data.
-     */
-    private final int mPositionOffset = 0;
-
-    /**
-     * Size of the position data in elements.
+     * Layout of the triangle vertices.
      */
-    private final int mPositionDataSize = 3;
+    private final VertexFormat mVertexFormat = USE_COMPACT_VERTICES
+            ? VertexFormat.SHORT_XY_UBYTE_RGBA : VertexFormat.FLOAT_XYZ_RGBA;
 
-    /**
-     * Offset of the color data.
-     */
-    private final int mColorOffset = 3;
-
-    /**
-     * Size of the color data in elements.
-     */
-    private final int mColorDataSize = 4;
+    private ByteBuffer mTriangle1Vertices;
+    private ByteBuffer mTriangle2Vertices;
+    private ByteBuffer mTriangle3Vertices;
 
-    private FloatBuffer mTriangle1Vertices;
-    private FloatBuffer mTriangle2Vertices;
-    private FloatBuffer mTriangle3Vertices;
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Reuse the programs linked by the previous run instead of compiling them again.
+        ProgramBinaryCache.install(this);
+    }
 
     @Override
     public MyEngine onCreateEngine() {
@@ -87,6 +92,35 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
 
         private Context mActivityContext;
 
+        /**
+         * GL for all rendering by this engine. Redundant state changes are dropped before they
+         * reach the driver.
+         */
+        private final StateCachingGlApi mGl = new StateCachingGlApi(AndroidGlApi.INSTANCE);
+
+        /**
+         * The EGL context {@link #mPerVertexProgramHandle} was created in.
+         */
+        private Object mEglContext;
+
+        /**
+         * Draws {@link #FPS} frames per second, aligned to the wall clock.
+         */
+        private final FrameScheduler mFrameScheduler =
+                new FrameScheduler(FrameScheduler.SYSTEM_TIME_SOURCE);
+
+        /**
+         * Draws the frames {@link #mFrameScheduler} asks for.
+         */
+        private final Handler mFrameHandler = new Handler(Looper.getMainLooper()) {
+            @Override
+            public void handleMessage(Message message) {
+                if (message.what == MSG_UPDATE_FRAME) {
+                    invalidate();
+                }
+            }
+        };
+
         public MyEngine(Context myContext) {
             mActivityContext = myContext;
         }
@@ -94,6 +128,7 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
         @Override
         public void onCreate(SurfaceHolder surfaceHolder) {
             super.onCreate(surfaceHolder);
+            mFrameScheduler.setFixedRate(FPS);
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(MainAnaLogWatchFace.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
@@ -108,6 +143,15 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
         public void onGlContextCreated() {
             super.onGlContextCreated();
 
+            // The new context starts out with default state. If it replaces a lost one, the
+            // programs of the old context are gone.
+            mGl.reset();
+            Object eglContext = EGL14.eglGetCurrentContext();
+            if (mEglContext != null && !mEglContext.equals(eglContext)) {
+                ShaderRegistry.getInstance().forgetContext(mEglContext);
+            }
+            mEglContext = eglContext;
+
 
             final float[] triangle1VerticesData = {
                     // X, Y, Z,
@@ -139,26 +183,21 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
                     0.0f, 0.559016994f, 0.0f,
                     0.0f, 0.0f, 0.0f, 1.0f};
             // Initialize the buffers.
-            mTriangle1Vertices = ByteBuffer.allocateDirect(triangle1VerticesData.length * mBytesPerFloat)
-                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            mTriangle2Vertices = ByteBuffer.allocateDirect(triangle2VerticesData.length * mBytesPerFloat)
-                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            mTriangle3Vertices = ByteBuffer.allocateDirect(triangle3VerticesData.length * mBytesPerFloat)
-                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            mTriangle1Vertices.put(triangle1VerticesData).position(0);
-            mTriangle2Vertices.put(triangle2VerticesData).position(0);
-            mTriangle3Vertices.put(triangle3VerticesData).position(0);
-
-            Matrix.setLookAtM(mViewMatrix, 0, 0,
+            mTriangle1Vertices = mVertexFormat.encode(triangle1VerticesData);
+            mTriangle2Vertices = mVertexFormat.encode(triangle2VerticesData);
+            mTriangle3Vertices = mVertexFormat.encode(triangle3VerticesData);
+
+            Mat4.setLookAt(mViewMatrix, 0, 0,
                     0, -3, 0,
                     0, 0, 0,
                     1, 0);
-            Matrix.setLookAtM(mAmbientViewMatrix, 0, 0, 0,
+            Mat4.setLookAt(mAmbientViewMatrix, 0, 0, 0,
                     -3, 0, 0,
                     0, 0, 1, 0);
 
             final String vertexShader =
                     "uniform mat4 u_MVPMatrix;      \n"        // A constant representing the combined model/view/projection matrix.
+                            + "uniform float u_PositionScale; \n"     // Scale of the XY of a_Position, see VertexFormat.
                             + "attribute vec4 a_Position;     \n"        // Per-vertex position information we will pass in.
                             + "attribute vec4 a_Color;        \n"        // Per-vertex color information we will pass in.
                             + "varying vec4 v_Color;          \n"        // This will be passed into the fragment shader.
@@ -167,7 +206,7 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
                             + "   v_Color = a_Color;          \n"        // Pass the color through to the fragment shader.
                             // It will be interpolated across the triangle.
                             + "   gl_Position = u_MVPMatrix   \n"    // gl_Position is a special variable used to store the final position.
-                            + "               * a_Position;   \n"     // Multiply the vertex by the matrix to get the final point in
+                            + "               * vec4(a_Position.xy * u_PositionScale, a_Position.zw);\n" // Multiply the vertex by the matrix to get the final point in
                             + "}                              \n";    // normalized screen coordinates.
             final String fragmentShader =
                     "precision mediump float;       \n"        // Set the default precision to medium. We don't need as high of a
@@ -178,75 +217,17 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
                             + "{                              \n"
                             + "   gl_FragColor = v_Color;     \n"        // Pass the color directly through the pipeline.
                             + "}                              \n";
-            // Load in the vertex shader.
-            int vertexShaderHandle = GLES20.glCreateShader(GLES20.GL_VERTEX_SHADER);
-            if (vertexShaderHandle != 0) {
-                // Pass in the shader source.
-                GLES20.glShaderSource(vertexShaderHandle, vertexShader);
-                // Compile the shader.
-                GLES20.glCompileShader(vertexShaderHandle);
-                // Get the compilation status.
-                final int[] compileStatus = new int[1];
-                GLES20.glGetShaderiv(vertexShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-                // If the compilation failed, delete the shader.
-                if (compileStatus[0] == 0) {
-                    GLES20.glDeleteShader(vertexShaderHandle);
-                    vertexShaderHandle = 0;
-                }
-            }
-            if (vertexShaderHandle == 0) {
-                throw new RuntimeException("Error creating vertex shader.");
-            }
-            // Load in the fragment shader shader.
-            int fragmentShaderHandle = GLES20.glCreateShader(GLES20.GL_FRAGMENT_SHADER);
-            if (fragmentShaderHandle != 0) {
-                // Pass in the shader source.
-                GLES20.glShaderSource(fragmentShaderHandle, fragmentShader);
-                // Compile the shader.
-                GLES20.glCompileShader(fragmentShaderHandle);
-                // Get the compilation status.
-                final int[] compileStatus = new int[1];
-                GLES20.glGetShaderiv(fragmentShaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-                // If the compilation failed, delete the shader.
-                if (compileStatus[0] == 0) {
-                    GLES20.glDeleteShader(fragmentShaderHandle);
-                    fragmentShaderHandle = 0;
-                }
-            }
-            if (fragmentShaderHandle == 0) {
-                throw new RuntimeException("Error creating fragment shader.");
-            }
-            Log.e("Q", "hehe");
-            // Create a program object and store the handle to it.
-            int programHandle = GLES20.glCreateProgram();
-            if (programHandle != 0) {
-                // Bind the vertex shader to the program.
-                GLES20.glAttachShader(programHandle, vertexShaderHandle);
-                // Bind the fragment shader to the program.
-                GLES20.glAttachShader(programHandle, fragmentShaderHandle);
-                // Bind attributes
-                GLES20.glBindAttribLocation(programHandle, 0, "a_Position");
-                GLES20.glBindAttribLocation(programHandle, 1, "a_Color");
-                // Link the two shaders together into a program.
-                GLES20.glLinkProgram(programHandle);
-                // Get the link status.
-                final int[] linkStatus = new int[1];
-                GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
-                // If the link failed, delete the program.
-                if (linkStatus[0] == 0) {
-                    GLES20.glDeleteProgram(programHandle);
-                    programHandle = 0;
-                }
-            }
-            if (programHandle == 0) {
-                throw new RuntimeException("Error creating program.");
-            }
+            // Compile and link the shaders, or reuse them if this context already has them.
+            int programHandle = ShaderRegistry.getInstance().acquire(mEglContext, mGl,
+                    vertexShader, fragmentShader, new String[]{"a_Position", "a_Color"});
+            mPerVertexProgramHandle = programHandle;
             // Set program handles. These will later be used to pass in values to the program.
-            mMVPMatrixHandle = GLES20.glGetUniformLocation(programHandle, "u_MVPMatrix");
-            mPositionHandle = GLES20.glGetAttribLocation(programHandle, "a_Position");
-            mColorHandle = GLES20.glGetAttribLocation(programHandle, "a_Color");
+            mMVPMatrixHandle = mGl.glGetUniformLocation(programHandle, "u_MVPMatrix");
+            mPositionHandle = mGl.glGetAttribLocation(programHandle, "a_Position");
+            mColorHandle = mGl.glGetAttribLocation(programHandle, "a_Color");
+            mPositionScaleHandle = mGl.glGetUniformLocation(programHandle, "u_PositionScale");
             // Tell OpenGL to use this program when rendering.
-            GLES20.glUseProgram(programHandle);
+            mGl.glUseProgram(programHandle);
 
         }
 
@@ -256,36 +237,65 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
 
             //TODO:  Not clear about aspectRatio
             final float aspectRatio = (float) width / height; // 1 Not clear
-            Matrix.frustumM(mProjectionMatrix, 0, -aspectRatio, aspectRatio, -1, 1, 2, 7);
+            Mat4.setFrustum(mProjectionMatrix, 0, -aspectRatio, aspectRatio, -1, 1, 2, 7);
 
-            Matrix.multiplyMM(mVPMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
-            Matrix.multiplyMM(mAmbiantVPMatrix, 0, mProjectionMatrix, 0, mAmbientViewMatrix, 0);
+            Mat4.multiply(mVPMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
+            Mat4.multiply(mAmbiantVPMatrix, 0, mProjectionMatrix, 0, mAmbientViewMatrix, 0);
         }
 
         @Override
         public void onDraw() {
+            EventTrace.getInstance().begin(TRACE_ON_DRAW);
             super.onDraw();
-            GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+            mGl.beginFrame();
+            mGl.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
 
             // Do a complete rotation every 10 seconds.
             long time = SystemClock.uptimeMillis() % 10000L;
             float angleInDegrees = (360.0f / 10000.0f) * ((int) time);
 
-            // Draw the triangle facing straight on.
-            Matrix.setIdentityM(mModelMatrix[10], 0);
-            Matrix.rotateM(mModelMatrix[10], 0, angleInDegrees, 0.0f, 0.0f, 1.0f);
-            Matrix.rotateM(mModelMatrix[10], 0, 90.0f, 0.0f, 0.0f, 1.0f);
-            Matrix.translateM(mModelMatrix[10],0,0,-1,0f);
+            // Draw the triangle facing straight on: rotate it by the angle plus a quarter turn,
+            // then move it down by one. Rotating about Z only touches two columns of the view
+            // projection matrix, so no full matrix multiply is needed.
+            double angleRadians = Math.toRadians(angleInDegrees + 90.0f);
+            Mat4.multiplyRotateZ(mMVPMatrix, 0, mVPMatrix, 0, (float) Math.cos(angleRadians),
+                    (float) Math.sin(angleRadians));
+            Mat4.translate(mMVPMatrix, 0, 0, -1, 0);
             drawTriangle(mTriangle1Vertices);
 
+            EventTrace.getInstance().counter(TRACE_GL_CALLS_ISSUED, mGl.getFrameIssuedCalls());
+            EventTrace.getInstance().counter(TRACE_GL_CALLS_ELIDED, mGl.getFrameElidedCalls());
+
+            scheduleNextFrame();
+            EventTrace.getInstance().end(TRACE_ON_DRAW);
+        }
 
-            if (isVisible() && !isInAmbientMode()) {
-             //   invalidate();
+        /**
+         * Asks for the next interactive frame at the time {@link #mFrameScheduler} picks.
+         */
+        private void scheduleNextFrame() {
+            mFrameHandler.removeMessages(MSG_UPDATE_FRAME);
+            if (!isVisible() || isInAmbientMode()) {
+                return;
+            }
+            final long delayMillis = mFrameScheduler.getDelayMillis();
+            if (delayMillis <= 0) {
+                invalidate();
+            } else {
+                mFrameHandler.sendEmptyMessageDelayed(MSG_UPDATE_FRAME, delayMillis);
             }
         }
 
         @Override
         public void onDestroy() {
+            mFrameHandler.removeMessages(MSG_UPDATE_FRAME);
+
+            // Give the program back while its context is still alive.
+            if (mPerVertexProgramHandle != 0) {
+                makeEglContextCurrent();
+                ShaderRegistry.getInstance().release(mEglContext, mGl, mPerVertexProgramHandle);
+                mPerVertexProgramHandle = 0;
+            }
             super.onDestroy();
         }
 
@@ -304,76 +314,11 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
-
-        }
-
-        private int compileShader(final int shaderType, final String shaderSource) {
-            int shaderHandle = GLES20.glCreateShader(shaderType);
-
-            if (shaderHandle != 0) {
-                // Pass in the shader source.
-                GLES20.glShaderSource(shaderHandle, shaderSource);
-
-                // Compile the shader.
-                GLES20.glCompileShader(shaderHandle);
-
-                // Get the compilation status.
-                final int[] compileStatus = new int[1];
-                GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
-
-                // If the compilation failed, delete the shader.
-                if (compileStatus[0] == 0) {
-                    Log.e("a", "Error compiling shader: " + GLES20.glGetShaderInfoLog(shaderHandle));
-                    GLES20.glDeleteShader(shaderHandle);
-                    shaderHandle = 0;
-                }
-            }
-
-            if (shaderHandle == 0) {
-                throw new RuntimeException("Error creating shader.");
+            if (visible) {
+                invalidate();
+            } else {
+                mFrameHandler.removeMessages(MSG_UPDATE_FRAME);
             }
-
-            return shaderHandle;
-        }
-
-        private int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) {
-            int programHandle = GLES20.glCreateProgram();
-
-            if (programHandle != 0) {
-                // Bind the vertex shader to the program.
-                GLES20.glAttachShader(programHandle, vertexShaderHandle);
-
-                // Bind the fragment shader to the program.
-                GLES20.glAttachShader(programHandle, fragmentShaderHandle);
-
-                // Bind attributes
-                if (attributes != null) {
-                    final int size = attributes.length;
-                    for (int i = 0; i < size; i++) {
-                        GLES20.glBindAttribLocation(programHandle, i, attributes[i]);
-                    }
-                }
-
-                // Link the two shaders together into a program.
-                GLES20.glLinkProgram(programHandle);
-
-                // Get the link status.
-                final int[] linkStatus = new int[1];
-                GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
-
-                // If the link failed, delete the program.
-                if (linkStatus[0] == 0) {
-                    Log.e("a", "Error compiling program: " + GLES20.glGetProgramInfoLog(programHandle));
-                    GLES20.glDeleteProgram(programHandle);
-                    programHandle = 0;
-                }
-            }
-
-            if (programHandle == 0) {
-                throw new RuntimeException("Error creating program.");
-            }
-
-            return programHandle;
         }
 
         protected String getVertexShader() {
@@ -384,31 +329,18 @@ public class MainAnaLogWatchFace extends Gles2WatchFaceService {
             return RawResourceReader.readTextFileFromRawResource(mActivityContext, R.raw.per_pixel_fragment_shader);
         }
 
-        private void drawTriangle(final FloatBuffer aTriangleBuffer) {
-            // Pass in the position information
-            aTriangleBuffer.position(mPositionOffset);
-            GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
-                    mStrideBytes, aTriangleBuffer);
-
-            GLES20.glEnableVertexAttribArray(mPositionHandle);
-
-            // Pass in the color information
-            aTriangleBuffer.position(mColorOffset);
-            GLES20.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
-                    mStrideBytes, aTriangleBuffer);
-
-            GLES20.glEnableVertexAttribArray(mColorHandle);
-
-            // This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
-            // (which currently contains model * view).
-            Matrix.multiplyMM(mMVPMatrix, 0, mViewMatrix, 0, mModelMatrix[10], 0);
+        private void drawTriangle(final ByteBuffer aTriangleBuffer) {
+            // Pass in the position and color information
+            mVertexFormat.setAttributePointers(mGl, mPositionHandle, mColorHandle,
+                    -1 /* layerHandle */, aTriangleBuffer);
+            mGl.glUniform1f(mPositionScaleHandle, mVertexFormat.getPositionScale());
 
-            // This multiplies the modelview matrix by the projection matrix, and stores the result in the MVP matrix
-            // (which now contains model * view * projection).
-            Matrix.multiplyMM(mMVPMatrix, 0, mProjectionMatrix, 0, mMVPMatrix, 0);
+            mGl.glEnableVertexAttribArray(mPositionHandle);
+            mGl.glEnableVertexAttribArray(mColorHandle);
 
-            GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
-            GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);
+            // mMVPMatrix already holds model * view * projection, see onDraw().
+            mGl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mMVPMatrix, 0);
+            mGl.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);
 
         }
 
@@ -0,0 +1,172 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Allocation-free 4x4 matrix math on flat float arrays, in the column-major layout of
+ * {@link android.opengl.Matrix} and OpenGL. Every method writes its result in place, and results
+ * may alias inputs.
+ * <p>
+ * Besides the general operations this has fast paths for what the watch faces do every frame:
+ * rotating about the Z axis by a precomputed cosine and sine, with
+ * {@link #setRotateZ} and {@link #multiplyRotateZ}.
+ */
+public final class Mat4 {
+
+    /**
+     * Number of floats in a matrix.
+     */
+    public static final int SIZE = 16;
+
+    private Mat4() {
+    }
+
+    /**
+     * Sets a matrix to the identity.
+     */
+    public static void setIdentity(float[] m, int offset) {
+        for (int i = 0; i < SIZE; i++) {
+            m[offset + i] = 0;
+        }
+        m[offset] = 1;
+        m[offset + 5] = 1;
+        m[offset + 10] = 1;
+        m[offset + 15] = 1;
+    }
+
+    /**
+     * Computes result = lhs * rhs, like {@link android.opengl.Matrix#multiplyMM}, except that
+     * result may be the same array region as either input.
+     */
+    public static void multiply(float[] result, int resultOffset, float[] lhs, int lhsOffset,
+                                float[] rhs, int rhsOffset) {
+        final float l00 = lhs[lhsOffset], l10 = lhs[lhsOffset + 1];
+        final float l20 = lhs[lhsOffset + 2], l30 = lhs[lhsOffset + 3];
+        final float l01 = lhs[lhsOffset + 4], l11 = lhs[lhsOffset + 5];
+        final float l21 = lhs[lhsOffset + 6], l31 = lhs[lhsOffset + 7];
+        final float l02 = lhs[lhsOffset + 8], l12 = lhs[lhsOffset + 9];
+        final float l22 = lhs[lhsOffset + 10], l32 = lhs[lhsOffset + 11];
+        final float l03 = lhs[lhsOffset + 12], l13 = lhs[lhsOffset + 13];
+        final float l23 = lhs[lhsOffset + 14], l33 = lhs[lhsOffset + 15];
+        for (int column = 0; column < 4; column++) {
+            final int r = rhsOffset + column * 4;
+            final float r0 = rhs[r], r1 = rhs[r + 1], r2 = rhs[r + 2], r3 = rhs[r + 3];
+            final int o = resultOffset + column * 4;
+            result[o] = l00 * r0 + l01 * r1 + l02 * r2 + l03 * r3;
+            result[o + 1] = l10 * r0 + l11 * r1 + l12 * r2 + l13 * r3;
+            result[o + 2] = l20 * r0 + l21 * r1 + l22 * r2 + l23 * r3;
+            result[o + 3] = l30 * r0 + l31 * r1 + l32 * r2 + l33 * r3;
+        }
+    }
+
+    /**
+     * Sets a matrix to a rotation about the Z axis. Positive angles turn the same way as
+     * {@link android.opengl.Matrix#setRotateM} with axis (0, 0, 1).
+     *
+     * @param cos cosine of the angle
+     * @param sin sine of the angle
+     */
+    public static void setRotateZ(float[] m, int offset, float cos, float sin) {
+        setIdentity(m, offset);
+        m[offset] = cos;
+        m[offset + 1] = sin;
+        m[offset + 4] = -sin;
+        m[offset + 5] = cos;
+    }
+
+    /**
+     * Computes result = lhs * Rz, where Rz is the rotation {@link #setRotateZ} would build. Only
+     * the first two columns change, so this takes 8 multiplies instead of the 64 of a general
+     * {@link #multiply}.
+     */
+    public static void multiplyRotateZ(float[] result, int resultOffset, float[] lhs,
+                                       int lhsOffset, float cos, float sin) {
+        for (int row = 0; row < 4; row++) {
+            final float c0 = lhs[lhsOffset + row];
+            final float c1 = lhs[lhsOffset + 4 + row];
+            result[resultOffset + row] = c0 * cos + c1 * sin;
+            result[resultOffset + 4 + row] = c1 * cos - c0 * sin;
+            result[resultOffset + 8 + row] = lhs[lhsOffset + 8 + row];
+            result[resultOffset + 12 + row] = lhs[lhsOffset + 12 + row];
+        }
+    }
+
+    /**
+     * Translates a matrix in place by (x, y, z), like {@link android.opengl.Matrix#translateM}.
+     */
+    public static void translate(float[] m, int offset, float x, float y, float z) {
+        for (int row = 0; row < 4; row++) {
+            m[offset + 12 + row] += m[offset + row] * x + m[offset + 4 + row] * y
+                    + m[offset + 8 + row] * z;
+        }
+    }
+
+    /**
+     * Sets a perspective projection matrix, like {@link android.opengl.Matrix#frustumM}.
+     */
+    public static void setFrustum(float[] m, int offset, float left, float right, float bottom,
+                                  float top, float near, float far) {
+        if (left == right || top == bottom || near == far || near <= 0 || far <= 0) {
+            throw new IllegalArgumentException("degenerate frustum");
+        }
+        final float width = 1 / (right - left);
+        final float height = 1 / (top - bottom);
+        final float depth = 1 / (near - far);
+        for (int i = 0; i < SIZE; i++) {
+            m[offset + i] = 0;
+        }
+        m[offset] = 2 * near * width;
+        m[offset + 5] = 2 * near * height;
+        m[offset + 8] = (right + left) * width;
+        m[offset + 9] = (top + bottom) * height;
+        m[offset + 10] = (far + near) * depth;
+        m[offset + 11] = -1;
+        m[offset + 14] = 2 * far * near * depth;
+    }
+
+    /**
+     * Sets a view matrix for a camera at the eye point looking at the center point, like
+     * {@link android.opengl.Matrix#setLookAtM}.
+     */
+    public static void setLookAt(float[] m, int offset, float eyeX, float eyeY, float eyeZ,
+                                 float centerX, float centerY, float centerZ,
+                                 float upX, float upY, float upZ) {
+        // Forward.
+        float fx = centerX - eyeX;
+        float fy = centerY - eyeY;
+        float fz = centerZ - eyeZ;
+        float scale = 1 / (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+        fx *= scale;
+        fy *= scale;
+        fz *= scale;
+
+        // Side = forward x up.
+        float sx = fy * upZ - fz * upY;
+        float sy = fz * upX - fx * upZ;
+        float sz = fx * upY - fy * upX;
+        scale = 1 / (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+        sx *= scale;
+        sy *= scale;
+        sz *= scale;
+
+        // Recomputed up = side x forward.
+        final float ux = sy * fz - sz * fy;
+        final float uy = sz * fx - sx * fz;
+        final float uz = sx * fy - sy * fx;
+
+        m[offset] = sx;
+        m[offset + 1] = ux;
+        m[offset + 2] = -fx;
+        m[offset + 3] = 0;
+        m[offset + 4] = sy;
+        m[offset + 5] = uy;
+        m[offset + 6] = -fy;
+        m[offset + 7] = 0;
+        m[offset + 8] = sz;
+        m[offset + 9] = uz;
+        m[offset + 10] = -fz;
+        m[offset + 11] = 0;
+        m[offset + 12] = -(sx * eyeX + sy * eyeY + sz * eyeZ);
+        m[offset + 13] = -(ux * eyeX + uy * eyeY + uz * eyeZ);
+        m[offset + 14] = fx * eyeX + fy * eyeY + fz * eyeZ;
+        m[offset + 15] = 1;
+    }
+}
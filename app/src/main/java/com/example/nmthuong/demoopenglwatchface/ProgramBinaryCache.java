@@ -0,0 +1,381 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.content.Context;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ProgramFactory} that stores the binaries of linked programs on disk and reloads them on
+ * the next start instead of compiling the shader sources again.
+ * <p>
+ * There is one file per program, named after the hash of its sources and attribute bindings. The
+ * file also records the GL renderer and version strings it was created with, because a binary is
+ * only valid for the driver that produced it. Programs whose file is missing, was written by a
+ * different driver, is corrupt, or is refused by the driver are created by the fallback factory,
+ * and their file is rewritten.
+ * <p>
+ * Android only has Java bindings for the OpenGL ES 3.0 program binary entry points, so binaries
+ * are used only when the context reports version 3.0 or later and at least one binary format.
+ * Otherwise every program comes from the fallback factory.
+ * <p>
+ * Files of programs the app no longer creates, e.g. after an update changed their sources, are
+ * never looked up again. {@link #deleteUnusedFiles()} removes them.
+ * <p>
+ * Watch face services call {@link #install} from {@code onCreate()} to set this up.
+ */
+public final class ProgramBinaryCache implements ProgramFactory {
+    private static final String TAG = "ProgramBinaryCache";
+
+    /**
+     * Name of the directory, under {@link android.content.Context#getCacheDir()}, the watch faces
+     * keep their program binaries in.
+     */
+    public static final String DIRECTORY_NAME = "program_binaries";
+
+    /**
+     * Identifies a cache file. "GLPB" in ASCII.
+     */
+    private static final int MAGIC = 0x474c5042;
+
+    /**
+     * Bump this whenever the file layout changes so old files are treated as stale.
+     */
+    private static final int FILE_VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".bin";
+
+    /**
+     * Files not loaded or written for this long are deleted by {@link #deleteUnusedFiles()}.
+     */
+    static final long UNUSED_MAX_AGE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Binaries larger than this are treated as corrupt rather than allocated.
+     */
+    private static final int MAX_BINARY_LENGTH = 4 * 1024 * 1024;
+
+    /**
+     * The cache set up by {@link #install}, shared by every watch face in the process.
+     */
+    private static ProgramBinaryCache sInstance;
+
+    private final File mDirectory;
+    private final ProgramFactory mFallback;
+
+    private int mHits;
+    private int mMisses;
+    private int mStale;
+    private int mCorrupt;
+    private int mNotRetrievable;
+
+    /**
+     * @param directory directory to keep the binaries in, e.g. a subdirectory of
+     *                  {@link android.content.Context#getCacheDir()}. It is created if needed.
+     * @param fallback  factory that creates programs that aren't cached yet, typically
+     *                  {@link SourceProgramFactory#INSTANCE}
+     */
+    public ProgramBinaryCache(File directory, ProgramFactory fallback) {
+        mDirectory = directory;
+        mFallback = fallback;
+    }
+
+    /**
+     * Makes {@link ShaderRegistry} reuse the programs linked by the previous run, keeping their
+     * binaries in the app's cache directory. The first call also deletes unused files; later
+     * calls, e.g. from a second watch face in the same process, return the same cache. Call
+     * this from {@code onCreate()}, before any program is created.
+     *
+     * @return the installed cache
+     */
+    public static synchronized ProgramBinaryCache install(Context context) {
+        if (sInstance == null) {
+            sInstance = new ProgramBinaryCache(new File(context.getCacheDir(), DIRECTORY_NAME),
+                    SourceProgramFactory.INSTANCE);
+            sInstance.deleteUnusedFiles();
+            ShaderRegistry.getInstance().setProgramFactory(sInstance);
+        }
+        return sInstance;
+    }
+
+    @Override
+    public int createProgram(GlApi gl, String vertexShader, String fragmentShader,
+                             String[] attributes, boolean retrievable) {
+        if (!isSupported(gl)) {
+            return mFallback.createProgram(gl, vertexShader, fragmentShader, attributes,
+                    retrievable);
+        }
+
+        String renderer = gl.glGetString(GLES20.GL_RENDERER);
+        String version = gl.glGetString(GLES20.GL_VERSION);
+        long sourceHash = ShaderRegistry.hashProgram(vertexShader, fragmentShader, attributes);
+        File file = getFile(sourceHash);
+
+        int programId = loadProgram(gl, file, renderer, version, sourceHash);
+        if (programId != 0) {
+            mHits++;
+            // Keeps the file from being deleted as unused.
+            file.setLastModified(System.currentTimeMillis());
+            return programId;
+        }
+
+        mMisses++;
+        programId = mFallback.createProgram(gl, vertexShader, fragmentShader, attributes,
+                true /* retrievable */);
+        saveProgram(gl, programId, file, renderer, version, sourceHash);
+        return programId;
+    }
+
+    /**
+     * Deletes the files of programs that haven't been loaded or written for
+     * {@link #UNUSED_MAX_AGE_MILLIS}, and temporary files left behind by a crash. Call it once at
+     * startup, before any program is created.
+     *
+     * @return the number of files deleted
+     */
+    public int deleteUnusedFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long oldestUsedMillis = System.currentTimeMillis() - UNUSED_MAX_AGE_MILLIS;
+        int deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            boolean unused = name.endsWith(ChecksummedFiles.TMP_SUFFIX)
+                    || (name.endsWith(FILE_SUFFIX) && file.lastModified() < oldestUsedMillis);
+            if (unused && file.delete()) {
+                deleted++;
+            }
+        }
+        if (deleted > 0 && Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Deleted " + deleted + " unused files");
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns the number of programs loaded from a binary.
+     */
+    public int getHits() {
+        return mHits;
+    }
+
+    /**
+     * Returns the number of programs created by the fallback factory while binaries were
+     * supported. This includes stale and corrupt binaries.
+     */
+    public int getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * Returns the number of binaries discarded because they were written by a different driver,
+     * a different file version, or the driver refused them.
+     */
+    public int getStale() {
+        return mStale;
+    }
+
+    /**
+     * Returns the number of binaries discarded because their file was truncated or damaged.
+     */
+    public int getCorrupt() {
+        return mCorrupt;
+    }
+
+    /**
+     * Returns the number of programs that couldn't be saved because the driver reported an
+     * empty binary, even though they were linked with
+     * {@link GLES30#GL_PROGRAM_BINARY_RETRIEVABLE_HINT}.
+     */
+    public int getNotRetrievable() {
+        return mNotRetrievable;
+    }
+
+    @Override
+    public String toString() {
+        return "ProgramBinaryCache{hits=" + mHits
+                + ", misses=" + mMisses
+                + ", stale=" + mStale
+                + ", corrupt=" + mCorrupt
+                + ", notRetrievable=" + mNotRetrievable + "}";
+    }
+
+    /**
+     * Returns whether the current context can load and store program binaries.
+     */
+    static boolean isSupported(GlApi gl) {
+        if (getMajorVersion(gl.glGetString(GLES20.GL_VERSION)) < 3) {
+            return false;
+        }
+        int[] formats = new int[1];
+        gl.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+        return formats[0] > 0;
+    }
+
+    /**
+     * Returns the major version from a GL_VERSION string of the form
+     * "OpenGL ES N.M vendor-specific information", or 0 if it can't be parsed.
+     */
+    static int getMajorVersion(String version) {
+        final String prefix = "OpenGL ES ";
+        if (version == null || !version.startsWith(prefix)) {
+            return 0;
+        }
+        int major = 0;
+        for (int i = prefix.length(); i < version.length(); i++) {
+            char c = version.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            major = major * 10 + (c - '0');
+        }
+        return major;
+    }
+
+    private File getFile(long sourceHash) {
+        return new File(mDirectory, Long.toHexString(sourceHash) + FILE_SUFFIX);
+    }
+
+    /**
+     * Loads a program from its cache file.
+     *
+     * @return ID of the linked program, or 0 if there is no usable binary. Unusable files are
+     * deleted.
+     */
+    private int loadProgram(GlApi gl, File file, String renderer, String version,
+                            long sourceHash) {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int binaryFormat;
+        byte[] binary;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != MAGIC) {
+                discard(file, true, "bad magic");
+                return 0;
+            }
+            if (in.readInt() != FILE_VERSION
+                    || !in.readUTF().equals(renderer)
+                    || !in.readUTF().equals(version)
+                    || in.readLong() != sourceHash) {
+                discard(file, false, "written by a different driver or version");
+                return 0;
+            }
+            binaryFormat = in.readInt();
+            int length = in.readInt();
+            long checksum = in.readLong();
+            if (length <= 0 || length > MAX_BINARY_LENGTH) {
+                discard(file, true, "bad length " + length);
+                return 0;
+            }
+            binary = new byte[length];
+            in.readFully(binary);
+            if (in.read() != -1 || ChecksummedFiles.checksum(binary) != checksum) {
+                discard(file, true, "checksum mismatch");
+                return 0;
+            }
+        } catch (EOFException e) {
+            discard(file, true, "truncated");
+            return 0;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read " + file, e);
+            return 0;
+        } finally {
+            ChecksummedFiles.closeQuietly(in);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+        buffer.put(binary).position(0);
+
+        int programId = gl.glCreateProgram();
+        if (programId == 0) {
+            return 0;
+        }
+        gl.glProgramBinary(programId, binaryFormat, buffer, binary.length);
+
+        // Drivers refuse binaries they no longer understand, e.g. after an update that kept the
+        // version string.
+        int[] linkStatus = new int[1];
+        gl.glGetProgramiv(programId, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] == 0) {
+            gl.glDeleteProgram(programId);
+            discard(file, false, "refused by the driver");
+            return 0;
+        }
+        return programId;
+    }
+
+    /**
+     * Writes the binary of a linked program to its cache file. Failures are logged and otherwise
+     * ignored since the program is usable either way.
+     */
+    private void saveProgram(GlApi gl, int programId, File file, final String renderer,
+                             final String version, final long sourceHash) {
+        int[] length = new int[1];
+        gl.glGetProgramiv(programId, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            // The driver didn't keep the binary, so this program is compiled on every start.
+            mNotRetrievable++;
+            Log.w(TAG, "Program " + programId + " has no binary to save");
+            return;
+        }
+        if (length[0] > MAX_BINARY_LENGTH) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length[0]);
+        int[] binaryFormat = new int[1];
+        gl.glGetProgramBinary(programId, length[0], length, 0, binaryFormat, 0, buffer);
+        final byte[] binary = new byte[length[0]];
+        buffer.get(binary);
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Can't create " + mDirectory);
+            return;
+        }
+
+        final int format = binaryFormat[0];
+        try {
+            ChecksummedFiles.writeAtomically(file, new ChecksummedFiles.Content() {
+                @Override
+                public void writeTo(DataOutputStream out) throws IOException {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FILE_VERSION);
+                    out.writeUTF(renderer);
+                    out.writeUTF(version);
+                    out.writeLong(sourceHash);
+                    out.writeInt(format);
+                    out.writeInt(binary.length);
+                    out.writeLong(ChecksummedFiles.checksum(binary));
+                    out.write(binary);
+                }
+            });
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + file, e);
+        }
+    }
+
+    private void discard(File file, boolean corrupt, String reason) {
+        if (corrupt) {
+            mCorrupt++;
+        } else {
+            mStale++;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Discarding " + file.getName() + ": " + reason);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Creates linked GL programs for {@link ShaderRegistry} on a cache miss. The default,
+ * {@link SourceProgramFactory}, compiles the shader sources. {@link ProgramBinaryCache} reloads
+ * programs linked by an earlier run instead.
+ */
+public interface ProgramFactory {
+
+    /**
+     * Returns a newly linked program for the given shaders.
+     *
+     * @param gl             GL of the current context
+     * @param vertexShader   vertex shader source
+     * @param fragmentShader fragment shader source
+     * @param attributes     attribute names to bind to locations 0, 1, ... before linking, or
+     *                       null to let the linker choose
+     * @param retrievable    whether the binary of the program will be read back, so the driver
+     *                       should be asked to keep it with
+     *                       {@link android.opengl.GLES30#GL_PROGRAM_BINARY_RETRIEVABLE_HINT}. Only
+     *                       set this on OpenGL ES 3.0 contexts.
+     * @return ID OpenGL uses to identify the program
+     * @throws RuntimeException if the program can't be created
+     */
+    int createProgram(GlApi gl, String vertexShader, String fragmentShader, String[] attributes,
+                      boolean retrievable);
+}
@@ -0,0 +1,30 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Picks the {@link QualityTier} to render at from telemetry the engine reports. Times are passed
+ * in rather than read from a clock, so a policy can be replayed against a recorded trace.
+ */
+public interface QualityPolicy {
+
+    /**
+     * Reports an interactive frame.
+     *
+     * @param nowMillis  wall clock time the frame was drawn at
+     * @param frameNanos time spent drawing the frame
+     */
+    void onFrameDrawn(long nowMillis, long frameNanos);
+
+    /**
+     * Reports the battery state.
+     *
+     * @param nowMillis    wall clock time of the report
+     * @param levelPercent battery level in the range [0, 100]
+     * @param charging     whether the device is charging or full on a charger
+     */
+    void onBatteryChanged(long nowMillis, int levelPercent, boolean charging);
+
+    /**
+     * Returns the tier to render at.
+     */
+    QualityTier getTier();
+}
@@ -0,0 +1,74 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Rendering quality levels a {@link QualityPolicy} picks from, ordered from cheapest to most
+ * expensive.
+ */
+public enum QualityTier {
+    /**
+     * Ticks the second hand once a second and lets complications wait for the next minute.
+     */
+    LOW(1 /* framesPerSecond */, 60000 /* complicationRefreshMillis */),
+
+    /**
+     * Sweeps the second hand at a reduced frame rate.
+     */
+    MEDIUM(15 /* framesPerSecond */, 5000 /* complicationRefreshMillis */),
+
+    /**
+     * Sweeps the second hand at the full frame rate.
+     */
+    HIGH(60 /* framesPerSecond */, 0 /* complicationRefreshMillis */);
+
+    private final int mFramesPerSecond;
+    private final long mComplicationRefreshMillis;
+
+    QualityTier(int framesPerSecond, long complicationRefreshMillis) {
+        mFramesPerSecond = framesPerSecond;
+        mComplicationRefreshMillis = complicationRefreshMillis;
+    }
+
+    /**
+     * Returns the number of frames to draw per second in interactive mode.
+     */
+    public int getFramesPerSecond() {
+        return mFramesPerSecond;
+    }
+
+    /**
+     * Returns whether the second hand sweeps between whole seconds instead of ticking.
+     */
+    public boolean isSmoothSweep() {
+        return mFramesPerSecond > 1;
+    }
+
+    /**
+     * Returns the shortest time between redraws caused by complication data updates, in
+     * milliseconds. Updates arriving sooner are drawn with the next scheduled frame.
+     */
+    public long getComplicationRefreshMillis() {
+        return mComplicationRefreshMillis;
+    }
+
+    /**
+     * Returns the next cheaper tier, or this tier if it is the cheapest.
+     */
+    public QualityTier lower() {
+        return ordinal() == 0 ? this : values()[ordinal() - 1];
+    }
+
+    /**
+     * Returns the next more expensive tier, or this tier if it is the most expensive.
+     */
+    public QualityTier higher() {
+        QualityTier[] tiers = values();
+        return ordinal() == tiers.length - 1 ? this : tiers[ordinal() + 1];
+    }
+
+    /**
+     * Returns the cheaper of two tiers.
+     */
+    public static QualityTier min(QualityTier a, QualityTier b) {
+        return a.ordinal() <= b.ordinal() ? a : b;
+    }
+}
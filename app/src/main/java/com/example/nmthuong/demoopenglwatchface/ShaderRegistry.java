@@ -0,0 +1,340 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Process-wide cache of linked GL programs. Programs are keyed by their EGL context and a hash of
+ * their shader sources and attribute bindings, so each distinct program is compiled and linked at
+ * most once per context no matter how many engines or objects use it. Programs are reference
+ * counted and deleted when their last user releases them.
+ * <p>
+ * This is also the one place in the app that compiles shaders and links programs. How a missing
+ * program is created is up to the {@link ProgramFactory} set with {@link #setProgramFactory}.
+ */
+public final class ShaderRegistry {
+    private static final String TAG = "ShaderRegistry";
+
+    private static final int TRACE_CREATE_PROGRAM =
+            EventTrace.getInstance().registerName("createProgram");
+
+    private static final ShaderRegistry sInstance = new ShaderRegistry();
+
+    /**
+     * Identifies a program within an EGL context.
+     */
+    private static final class Key {
+        final Object context;
+        final long hash;
+        final String vertexShader;
+        final String fragmentShader;
+        final String[] attributes;
+
+        Key(Object context, String vertexShader, String fragmentShader, String[] attributes) {
+            this.context = context;
+            this.hash = hashProgram(vertexShader, fragmentShader, attributes);
+            this.vertexShader = vertexShader;
+            this.fragmentShader = fragmentShader;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            // The hash only narrows things down. Compare the sources too so a collision can never
+            // hand out the wrong program.
+            return hash == other.hash
+                    && context.equals(other.context)
+                    && vertexShader.equals(other.vertexShader)
+                    && fragmentShader.equals(other.fragmentShader)
+                    && Arrays.equals(attributes, other.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32)) * 31 + context.hashCode();
+        }
+    }
+
+    /**
+     * A linked program and the number of users holding it.
+     */
+    private static final class Entry {
+        final int programId;
+        int refCount;
+
+        Entry(int programId) {
+            this.programId = programId;
+        }
+    }
+
+    private final Map<Key, Entry> mPrograms = new HashMap<>();
+
+    private ProgramFactory mProgramFactory = SourceProgramFactory.INSTANCE;
+
+    private int mCacheHits;
+    private int mCacheMisses;
+    private long mCompileNanos;
+
+    private ShaderRegistry() {
+    }
+
+    public static ShaderRegistry getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Sets the factory used to create programs on a cache miss. Programs that already exist are
+     * not affected.
+     */
+    public synchronized void setProgramFactory(ProgramFactory programFactory) {
+        mProgramFactory = programFactory;
+    }
+
+    /**
+     * Returns a linked program for the given shaders, compiling and linking it if this context
+     * doesn't have one yet. Every call must be balanced by a call to {@link #release}.
+     *
+     * @param context        the EGL context the program is used in, typically
+     *                       {@link android.opengl.EGL14#eglGetCurrentContext()}. Only its identity
+     *                       matters.
+     * @param gl             GL to compile with on a cache miss
+     * @param vertexShader   vertex shader source
+     * @param fragmentShader fragment shader source
+     * @param attributes     attribute names to bind to locations 0, 1, ... before linking, or
+     *                       null to let the linker choose
+     * @return ID OpenGL uses to identify the program
+     */
+    public synchronized int acquire(Object context, GlApi gl, String vertexShader,
+                                    String fragmentShader, String[] attributes) {
+        Key key = new Key(context, vertexShader, fragmentShader, attributes);
+        Entry entry = mPrograms.get(key);
+        if (entry != null) {
+            mCacheHits++;
+        } else {
+            mCacheMisses++;
+            long start = System.nanoTime();
+            EventTrace.getInstance().begin(TRACE_CREATE_PROGRAM);
+            int programId = mProgramFactory.createProgram(gl, vertexShader, fragmentShader,
+                    attributes, false /* retrievable */);
+            EventTrace.getInstance().end(TRACE_CREATE_PROGRAM);
+            long elapsed = System.nanoTime() - start;
+            mCompileNanos += elapsed;
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Created program " + programId + " in " + elapsed / 1000 + " us");
+            }
+            entry = new Entry(programId);
+            mPrograms.put(key, entry);
+        }
+        entry.refCount++;
+        return entry.programId;
+    }
+
+    /**
+     * Releases one reference to a program returned by {@link #acquire}. The program is deleted
+     * when its last reference goes away, so the given context must be current.
+     */
+    public synchronized void release(Object context, GlApi gl, int programId) {
+        Iterator<Map.Entry<Key, Entry>> it = mPrograms.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> mapEntry = it.next();
+            Entry entry = mapEntry.getValue();
+            if (entry.programId == programId && mapEntry.getKey().context.equals(context)) {
+                if (--entry.refCount == 0) {
+                    gl.glDeleteProgram(programId);
+                    it.remove();
+                }
+                return;
+            }
+        }
+        Log.w(TAG, "release() of unknown program " + programId);
+    }
+
+    /**
+     * Forgets every program of a context that has been destroyed or lost. No GL calls are made,
+     * since the programs died with the context.
+     */
+    public synchronized void forgetContext(Object context) {
+        Iterator<Key> it = mPrograms.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().context.equals(context)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of {@link #acquire} calls that found an existing program.
+     */
+    public synchronized int getCacheHits() {
+        return mCacheHits;
+    }
+
+    /**
+     * Returns the number of {@link #acquire} calls that had to compile a program.
+     */
+    public synchronized int getCacheMisses() {
+        return mCacheMisses;
+    }
+
+    /**
+     * Returns the total time spent compiling and linking programs, in nanoseconds.
+     */
+    public synchronized long getCompileNanos() {
+        return mCompileNanos;
+    }
+
+    /**
+     * Returns the number of live programs across all contexts.
+     */
+    public synchronized int getProgramCount() {
+        return mPrograms.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ShaderRegistry{programs=" + mPrograms.size()
+                + ", hits=" + mCacheHits
+                + ", misses=" + mCacheMisses
+                + ", compileUs=" + mCompileNanos / 1000 + "}";
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the shader sources and attribute bindings of a program.
+     */
+    public static long hashProgram(String vertexShader, String fragmentShader,
+                                   String[] attributes) {
+        long hash = Fnv1a.OFFSET_BASIS;
+        hash = hashString(hash, vertexShader);
+        hash = hashString(hash, fragmentShader);
+        if (attributes != null) {
+            for (String attribute : attributes) {
+                hash = hashString(hash, attribute);
+            }
+        }
+        return hash;
+    }
+
+    private static long hashString(long hash, String s) {
+        // Separate consecutive strings so "ab" + "c" and "a" + "bc" differ.
+        return Fnv1a.mixByte(Fnv1a.mixChars(hash, s), 0xff);
+    }
+
+    /**
+     * Compiles an OpenGL shader.
+     *
+     * @param gl           GL to compile the shader with
+     * @param shaderType   {@link GLES20#GL_VERTEX_SHADER} or {@link GLES20#GL_FRAGMENT_SHADER}
+     * @param shaderSource string containing the shader source code
+     * @return ID for the shader
+     */
+    static int compileShader(GlApi gl, int shaderType, String shaderSource) {
+        int shaderHandle = gl.glCreateShader(shaderType);
+
+        if (shaderHandle != 0) {
+            // Pass in the shader source.
+            gl.glShaderSource(shaderHandle, shaderSource);
+
+            // Compile the shader.
+            gl.glCompileShader(shaderHandle);
+
+            // Get the compilation status.
+            final int[] compileStatus = new int[1];
+            gl.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+
+            // If the compilation failed, delete the shader.
+            if (compileStatus[0] == 0) {
+                Log.e(TAG, "Error compiling shader: " + gl.glGetShaderInfoLog(shaderHandle));
+                gl.glDeleteShader(shaderHandle);
+                shaderHandle = 0;
+            }
+        }
+
+        if (shaderHandle == 0) {
+            throw new RuntimeException("Error creating shader.");
+        }
+
+        return shaderHandle;
+    }
+
+    /**
+     * Compiles both shaders and links them into a program. The shaders are flagged for deletion
+     * once linked, so they go away together with the program.
+     *
+     * @param retrievable whether to ask the driver to keep the binary of the program, see
+     *                    {@link ProgramFactory#createProgram}
+     */
+    static int createProgram(GlApi gl, String vertexShader, String fragmentShader,
+                             String[] attributes, boolean retrievable) {
+        int vertexShaderHandle = compileShader(gl, GLES20.GL_VERTEX_SHADER, vertexShader);
+        int fragmentShaderHandle = compileShader(gl, GLES20.GL_FRAGMENT_SHADER, fragmentShader);
+        int programHandle = createAndLinkProgram(gl, vertexShaderHandle, fragmentShaderHandle,
+                attributes, retrievable);
+        gl.glDeleteShader(vertexShaderHandle);
+        gl.glDeleteShader(fragmentShaderHandle);
+        return programHandle;
+    }
+
+    /**
+     * Links a vertex and a fragment shader into a program.
+     *
+     * @param attributes  attribute names to bind to locations 0, 1, ..., or null
+     * @param retrievable whether to ask the driver to keep the binary of the program
+     * @return ID OpenGL uses to identify the program
+     */
+    static int createAndLinkProgram(GlApi gl, int vertexShaderHandle, int fragmentShaderHandle,
+                                    String[] attributes, boolean retrievable) {
+        int programHandle = gl.glCreateProgram();
+
+        if (programHandle != 0) {
+            // Bind the vertex shader to the program.
+            gl.glAttachShader(programHandle, vertexShaderHandle);
+
+            // Bind the fragment shader to the program.
+            gl.glAttachShader(programHandle, fragmentShaderHandle);
+
+            // Bind attributes
+            if (attributes != null) {
+                final int size = attributes.length;
+                for (int i = 0; i < size; i++) {
+                    gl.glBindAttribLocation(programHandle, i, attributes[i]);
+                }
+            }
+
+            // Some drivers only keep the binary of a program if asked before linking.
+            if (retrievable) {
+                gl.glProgramParameteri(programHandle,
+                        GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES20.GL_TRUE);
+            }
+
+            // Link the two shaders together into a program.
+            gl.glLinkProgram(programHandle);
+
+            // Get the link status.
+            final int[] linkStatus = new int[1];
+            gl.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+
+            // If the link failed, delete the program.
+            if (linkStatus[0] == 0) {
+                Log.e(TAG, "Error compiling program: " + gl.glGetProgramInfoLog(programHandle));
+                gl.glDeleteProgram(programHandle);
+                programHandle = 0;
+            }
+        }
+
+        if (programHandle == 0) {
+            throw new RuntimeException("Error creating program.");
+        }
+
+        return programHandle;
+    }
+}
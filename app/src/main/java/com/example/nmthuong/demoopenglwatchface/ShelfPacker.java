@@ -0,0 +1,196 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Packs rectangles into a fixed size area, e.g. images into a texture atlas, using shelves. Pure
+ * Java, no GL calls.
+ * <p>
+ * The area is filled from the bottom with shelves, each as tall as the first rectangle placed on
+ * it. A rectangle goes on the first shelf that is tall enough and has room left, otherwise on a
+ * new shelf. Packing the tallest rectangles first, as {@link #packAll} does, keeps the space lost
+ * above shorter rectangles small.
+ */
+public class ShelfPacker {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mPadding;
+
+    /**
+     * Bottom, height and used width of each shelf, from the bottom up. Grown as needed.
+     */
+    private int[] mShelfBottom = new int[4];
+    private int[] mShelfHeight = new int[4];
+    private int[] mShelfUsedWidth = new int[4];
+    private int mShelfCount;
+
+    private long mUsedPixels;
+
+    /**
+     * Scratch order of the rectangles in {@link #packAll}.
+     */
+    private int[] mOrder = new int[0];
+    private final int[] mPosition = new int[2];
+
+    /**
+     * @param width   width of the area
+     * @param height  height of the area
+     * @param padding empty pixels kept to the right of and above every rectangle, e.g. so that
+     *                filtering doesn't bleed between atlas entries
+     */
+    public ShelfPacker(int width, int height, int padding) {
+        mWidth = width;
+        mHeight = height;
+        mPadding = padding;
+    }
+
+    /**
+     * Removes every rectangle.
+     */
+    public void reset() {
+        mShelfCount = 0;
+        mUsedPixels = 0;
+    }
+
+    /**
+     * Places a rectangle.
+     *
+     * @param result receives the left and bottom of the rectangle
+     * @return whether it fit
+     */
+    public boolean insert(int width, int height, int[] result) {
+        final int paddedWidth = width + mPadding;
+        final int paddedHeight = height + mPadding;
+        if (paddedWidth > mWidth) {
+            return false;
+        }
+        for (int i = 0; i < mShelfCount; i++) {
+            if (paddedHeight <= mShelfHeight[i]
+                    && paddedWidth <= mWidth - mShelfUsedWidth[i]) {
+                result[0] = mShelfUsedWidth[i];
+                result[1] = mShelfBottom[i];
+                mShelfUsedWidth[i] += paddedWidth;
+                mUsedPixels += (long) width * height;
+                return true;
+            }
+        }
+        final int bottom = mShelfCount == 0
+                ? 0 : mShelfBottom[mShelfCount - 1] + mShelfHeight[mShelfCount - 1];
+        if (paddedHeight > mHeight - bottom) {
+            return false;
+        }
+        if (mShelfCount == mShelfBottom.length) {
+            mShelfBottom = grow(mShelfBottom);
+            mShelfHeight = grow(mShelfHeight);
+            mShelfUsedWidth = grow(mShelfUsedWidth);
+        }
+        mShelfBottom[mShelfCount] = bottom;
+        mShelfHeight[mShelfCount] = paddedHeight;
+        mShelfUsedWidth[mShelfCount] = paddedWidth;
+        mShelfCount++;
+        result[0] = 0;
+        result[1] = bottom;
+        mUsedPixels += (long) width * height;
+        return true;
+    }
+
+    /**
+     * Removes every rectangle, then places the given ones, tallest first. Empty rectangles are
+     * placed at the origin and take no space.
+     *
+     * @param widths  width of each rectangle
+     * @param heights height of each rectangle
+     * @param count   number of rectangles
+     * @param result  receives the left and bottom of each rectangle, two ints each
+     * @return whether all of them fit
+     */
+    public boolean packAll(int[] widths, int[] heights, int count, int[] result) {
+        reset();
+        if (mOrder.length < count) {
+            mOrder = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            mOrder[i] = i;
+        }
+        // Insertion sort by decreasing height. Atlases hold a handful of entries.
+        for (int i = 1; i < count; i++) {
+            final int item = mOrder[i];
+            int j = i - 1;
+            while (j >= 0 && heights[mOrder[j]] < heights[item]) {
+                mOrder[j + 1] = mOrder[j];
+                j--;
+            }
+            mOrder[j + 1] = item;
+        }
+
+        final int[] position = mPosition;
+        for (int i = 0; i < count; i++) {
+            final int item = mOrder[i];
+            if (widths[item] <= 0 || heights[item] <= 0) {
+                result[item * 2] = 0;
+                result[item * 2 + 1] = 0;
+                continue;
+            }
+            if (!insert(widths[item], heights[item], position)) {
+                return false;
+            }
+            result[item * 2] = position[0];
+            result[item * 2 + 1] = position[1];
+        }
+        return true;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getShelfCount() {
+        return mShelfCount;
+    }
+
+    /**
+     * Returns the pixels covered by rectangles, without padding.
+     */
+    public long getUsedPixels() {
+        return mUsedPixels;
+    }
+
+    /**
+     * Returns the fraction of the whole area covered by rectangles.
+     */
+    public float getOccupancy() {
+        return (float) mUsedPixels / ((long) mWidth * mHeight);
+    }
+
+    /**
+     * Returns the fraction of the area taken up by shelves so far that rectangles don't cover,
+     * i.e. the space lost to padding, to rectangles shorter than their shelf and to the unused
+     * right ends of full shelves. 0 if there are no shelves.
+     */
+    public float getFragmentation() {
+        if (mShelfCount == 0) {
+            return 0;
+        }
+        final int top = mShelfBottom[mShelfCount - 1] + mShelfHeight[mShelfCount - 1];
+        // The last shelf can still take rectangles, so only its used part counts.
+        final long shelfPixels = (long) (top - mShelfHeight[mShelfCount - 1]) * mWidth
+                + (long) mShelfHeight[mShelfCount - 1] * mShelfUsedWidth[mShelfCount - 1];
+        return 1 - (float) mUsedPixels / shelfPixels;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    @Override
+    public String toString() {
+        return "ShelfPacker{" + mWidth + " x " + mHeight + ", shelves=" + mShelfCount
+                + ", occupancy=" + (int) (getOccupancy() * 100) + "%"
+                + ", fragmentation=" + (int) (getFragmentation() * 100) + "%}";
+    }
+}
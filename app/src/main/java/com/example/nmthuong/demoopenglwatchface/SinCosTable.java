@@ -0,0 +1,57 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Sine and cosine of arbitrary angles in degrees, looked up in a small table with linear
+ * interpolation. The table is shared by the whole process and built the first time it is used.
+ * <p>
+ * With {@link #STEPS_PER_TURN} steps the error is below 5e-6, which moves the tip of a hand as
+ * long as the watch face radius by far less than a pixel.
+ */
+public final class SinCosTable {
+
+    /**
+     * Number of table steps in a full turn.
+     */
+    public static final int STEPS_PER_TURN = 1024;
+
+    private static final float STEPS_PER_DEGREE = STEPS_PER_TURN / 360f;
+
+    /**
+     * Sine of each step, with one extra entry so interpolation never wraps.
+     */
+    private static final float[] SIN = new float[STEPS_PER_TURN + 1];
+
+    static {
+        for (int i = 0; i <= STEPS_PER_TURN; i++) {
+            SIN[i] = (float) Math.sin(2 * Math.PI * i / STEPS_PER_TURN);
+        }
+    }
+
+    private SinCosTable() {
+    }
+
+    /**
+     * Returns the sine of an angle in degrees. Any finite angle is allowed.
+     */
+    public static float sinDegrees(float degrees) {
+        return lookup(degrees * STEPS_PER_DEGREE);
+    }
+
+    /**
+     * Returns the cosine of an angle in degrees. Any finite angle is allowed.
+     */
+    public static float cosDegrees(float degrees) {
+        // cos(x) = sin(x + a quarter turn)
+        return lookup(degrees * STEPS_PER_DEGREE + STEPS_PER_TURN / 4);
+    }
+
+    private static float lookup(float steps) {
+        float floor = (float) Math.floor(steps);
+        float fraction = steps - floor;
+        // Wrap into [0, STEPS_PER_TURN). Steps is a power of two, so masking works for negative
+        // angles too.
+        int index = (int) (long) floor & (STEPS_PER_TURN - 1);
+        float a = SIN[index];
+        return a + (SIN[index + 1] - a) * fraction;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * {@link ProgramFactory} that compiles and links programs from their shader sources.
+ */
+public final class SourceProgramFactory implements ProgramFactory {
+
+    /**
+     * The only instance. It is stateless, so it can be shared by all engines.
+     */
+    public static final SourceProgramFactory INSTANCE = new SourceProgramFactory();
+
+    private SourceProgramFactory() {
+    }
+
+    @Override
+    public int createProgram(GlApi gl, String vertexShader, String fragmentShader,
+                             String[] attributes, boolean retrievable) {
+        return ShaderRegistry.createProgram(gl, vertexShader, fragmentShader, attributes,
+                retrievable);
+    }
+}
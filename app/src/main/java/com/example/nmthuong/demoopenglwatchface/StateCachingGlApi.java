@@ -0,0 +1,805 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+
+/**
+ * {@link GlApi} that keeps a shadow copy of the GL state it has set and drops calls that would not
+ * change anything: re-using the current program, re-enabling an enabled attribute, re-binding the
+ * bound buffer, texture or framebuffer, re-pointing an attribute at the same buffer offset,
+ * re-uploading a uniform value the current program already has, and re-setting the viewport,
+ * blend function or a capability to what it already is. Everything else is forwarded unchanged.
+ * <p>
+ * The shadow state is only correct as long as every GL call on the context goes through this
+ * object. Call {@link #reset()} whenever a new GL context is created.
+ */
+public class StateCachingGlApi implements GlApi {
+
+    /**
+     * Number of vertex attributes tracked. GLES 2.0 guarantees at least 8.
+     */
+    private static final int MAX_VERTEX_ATTRIBS = 16;
+
+    /**
+     * Number of programs whose uniform values are tracked at once.
+     */
+    private static final int MAX_PROGRAMS = 8;
+
+    /**
+     * Number of texture units tracked. GLES 2.0 guarantees at least 8.
+     */
+    private static final int MAX_TEXTURE_UNITS = 8;
+
+    /**
+     * Capabilities whose enabled state is tracked. All of them start out disabled.
+     */
+    private static final int[] CACHED_CAPS = {
+            GLES20.GL_BLEND,
+            GLES20.GL_CULL_FACE,
+            GLES20.GL_DEPTH_TEST,
+            GLES20.GL_SCISSOR_TEST
+    };
+
+    private final GlApi mGl;
+
+    private int mCurrentProgram;
+    private int mBoundArrayBuffer;
+    private int mBoundElementArrayBuffer;
+
+    private final boolean[] mAttribEnabled = new boolean[MAX_VERTEX_ATTRIBS];
+
+    /**
+     * Whether the attribute pointer below is known. Client-side pointers are never cached since
+     * the memory they point at may change between draws.
+     */
+    private final boolean[] mAttribPointerValid = new boolean[MAX_VERTEX_ATTRIBS];
+    private final int[] mAttribBuffer = new int[MAX_VERTEX_ATTRIBS];
+    private final int[] mAttribSize = new int[MAX_VERTEX_ATTRIBS];
+    private final int[] mAttribType = new int[MAX_VERTEX_ATTRIBS];
+    private final boolean[] mAttribNormalized = new boolean[MAX_VERTEX_ATTRIBS];
+    private final int[] mAttribStride = new int[MAX_VERTEX_ATTRIBS];
+    private final int[] mAttribOffset = new int[MAX_VERTEX_ATTRIBS];
+
+    /**
+     * Scratch array for comparing single float uniforms against the cache.
+     */
+    private final float[] mUniformScalar = new float[1];
+
+    private boolean mClearColorValid;
+    private final float[] mClearColor = new float[4];
+
+    private boolean mViewportValid;
+    private final int[] mViewport = new int[4];
+
+    private boolean mScissorValid;
+    private final int[] mScissor = new int[4];
+
+    private final boolean[] mCapEnabled = new boolean[CACHED_CAPS.length];
+    private int mBlendSrc = GLES20.GL_ONE;
+    private int mBlendDst = GLES20.GL_ZERO;
+
+    /**
+     * Index of the active texture unit, and the 2D texture bound to each unit.
+     */
+    private int mActiveTextureUnit;
+    private final int[] mBoundTexture2d = new int[MAX_TEXTURE_UNITS];
+
+    private int mBoundFramebuffer;
+
+    /**
+     * Programs whose uniforms are tracked, and for each of them the last value uploaded to every
+     * uniform location, indexed by location.
+     */
+    private final int[] mUniformPrograms = new int[MAX_PROGRAMS];
+    private final float[][][] mUniformValues = new float[MAX_PROGRAMS][][];
+
+    /**
+     * Uniform values of {@link #mCurrentProgram}, or null if they are not tracked.
+     */
+    private float[][] mCurrentUniformValues;
+
+    private int mFrameIssuedCalls;
+    private int mFrameElidedCalls;
+    private long mTotalIssuedCalls;
+    private long mTotalElidedCalls;
+
+    public StateCachingGlApi(GlApi gl) {
+        mGl = gl;
+    }
+
+    /**
+     * Forgets all shadow state. Call this when a new GL context is created, since its state
+     * starts out at the GL defaults and all object names from the old context are gone.
+     */
+    public void reset() {
+        mCurrentProgram = 0;
+        mBoundArrayBuffer = 0;
+        mBoundElementArrayBuffer = 0;
+        for (int i = 0; i < MAX_VERTEX_ATTRIBS; i++) {
+            mAttribEnabled[i] = false;
+            mAttribPointerValid[i] = false;
+        }
+        mClearColorValid = false;
+        mViewportValid = false;
+        mScissorValid = false;
+        for (int i = 0; i < CACHED_CAPS.length; i++) {
+            mCapEnabled[i] = false;
+        }
+        mBlendSrc = GLES20.GL_ONE;
+        mBlendDst = GLES20.GL_ZERO;
+        mActiveTextureUnit = 0;
+        for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+            mBoundTexture2d[i] = 0;
+        }
+        mBoundFramebuffer = 0;
+        for (int i = 0; i < MAX_PROGRAMS; i++) {
+            mUniformPrograms[i] = 0;
+            mUniformValues[i] = null;
+        }
+        mCurrentUniformValues = null;
+    }
+
+    /**
+     * Resets the per-frame counters. Call this at the start of every frame.
+     */
+    public void beginFrame() {
+        mFrameIssuedCalls = 0;
+        mFrameElidedCalls = 0;
+    }
+
+    /**
+     * Returns the number of calls forwarded to GL since {@link #beginFrame()}.
+     */
+    public int getFrameIssuedCalls() {
+        return mFrameIssuedCalls;
+    }
+
+    /**
+     * Returns the number of redundant calls dropped since {@link #beginFrame()}.
+     */
+    public int getFrameElidedCalls() {
+        return mFrameElidedCalls;
+    }
+
+    public long getTotalIssuedCalls() {
+        return mTotalIssuedCalls;
+    }
+
+    public long getTotalElidedCalls() {
+        return mTotalElidedCalls;
+    }
+
+    private void onIssued() {
+        mFrameIssuedCalls++;
+        mTotalIssuedCalls++;
+    }
+
+    private void onElided() {
+        mFrameElidedCalls++;
+        mTotalElidedCalls++;
+    }
+
+    /**
+     * Returns the uniform value cache for the given program, creating one if there is room.
+     */
+    private float[][] uniformValuesFor(int program) {
+        int free = -1;
+        for (int i = 0; i < MAX_PROGRAMS; i++) {
+            if (mUniformPrograms[i] == program) {
+                return mUniformValues[i];
+            }
+            if (free < 0 && mUniformPrograms[i] == 0) {
+                free = i;
+            }
+        }
+        if (free < 0) {
+            return null;
+        }
+        mUniformPrograms[free] = program;
+        mUniformValues[free] = new float[0][];
+        return mUniformValues[free];
+    }
+
+    /**
+     * Returns whether the current program already has the given value at the given uniform
+     * location. If not, remembers the value as the new one.
+     */
+    private boolean isUniformUnchanged(int location, float[] v, int offset, int length) {
+        if (mCurrentUniformValues == null || location < 0) {
+            return false;
+        }
+        float[][] values = mCurrentUniformValues;
+        if (location >= values.length) {
+            float[][] grown = new float[Math.max(location + 1, values.length * 2)][];
+            System.arraycopy(values, 0, grown, 0, values.length);
+            for (int i = 0; i < MAX_PROGRAMS; i++) {
+                if (mUniformValues[i] == values) {
+                    mUniformValues[i] = grown;
+                }
+            }
+            values = grown;
+            mCurrentUniformValues = grown;
+        }
+        float[] cached = values[location];
+        if (cached != null && cached.length == length) {
+            boolean same = true;
+            for (int i = 0; i < length; i++) {
+                if (cached[i] != v[offset + i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return true;
+            }
+        } else {
+            cached = new float[length];
+            values[location] = cached;
+        }
+        System.arraycopy(v, offset, cached, 0, length);
+        return false;
+    }
+
+    @Override
+    public int glGetError() {
+        onIssued();
+        return mGl.glGetError();
+    }
+
+    @Override
+    public String glGetString(int name) {
+        onIssued();
+        return mGl.glGetString(name);
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        onIssued();
+        mGl.glGetIntegerv(pname, params, offset);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        if (mClearColorValid && mClearColor[0] == red && mClearColor[1] == green
+                && mClearColor[2] == blue && mClearColor[3] == alpha) {
+            onElided();
+            return;
+        }
+        mClearColor[0] = red;
+        mClearColor[1] = green;
+        mClearColor[2] = blue;
+        mClearColor[3] = alpha;
+        mClearColorValid = true;
+        onIssued();
+        mGl.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        onIssued();
+        mGl.glClear(mask);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        if (mViewportValid && mViewport[0] == x && mViewport[1] == y
+                && mViewport[2] == width && mViewport[3] == height) {
+            onElided();
+            return;
+        }
+        mViewport[0] = x;
+        mViewport[1] = y;
+        mViewport[2] = width;
+        mViewport[3] = height;
+        mViewportValid = true;
+        onIssued();
+        mGl.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height) {
+        if (mScissorValid && mScissor[0] == x && mScissor[1] == y
+                && mScissor[2] == width && mScissor[3] == height) {
+            onElided();
+            return;
+        }
+        mScissor[0] = x;
+        mScissor[1] = y;
+        mScissor[2] = width;
+        mScissor[3] = height;
+        mScissorValid = true;
+        onIssued();
+        mGl.glScissor(x, y, width, height);
+    }
+
+    /**
+     * Returns the index of a capability in {@link #CACHED_CAPS}, or -1 if it isn't tracked.
+     */
+    private static int capIndex(int cap) {
+        for (int i = 0; i < CACHED_CAPS.length; i++) {
+            if (CACHED_CAPS[i] == cap) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        int index = capIndex(cap);
+        if (index >= 0) {
+            if (mCapEnabled[index]) {
+                onElided();
+                return;
+            }
+            mCapEnabled[index] = true;
+        }
+        onIssued();
+        mGl.glEnable(cap);
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        int index = capIndex(cap);
+        if (index >= 0) {
+            if (!mCapEnabled[index]) {
+                onElided();
+                return;
+            }
+            mCapEnabled[index] = false;
+        }
+        onIssued();
+        mGl.glDisable(cap);
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        if (sfactor == mBlendSrc && dfactor == mBlendDst) {
+            onElided();
+            return;
+        }
+        mBlendSrc = sfactor;
+        mBlendDst = dfactor;
+        onIssued();
+        mGl.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        onIssued();
+        return mGl.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        onIssued();
+        mGl.glShaderSource(shader, source);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        onIssued();
+        mGl.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        onIssued();
+        mGl.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        onIssued();
+        return mGl.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        onIssued();
+        mGl.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        onIssued();
+        return mGl.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        onIssued();
+        mGl.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        onIssued();
+        mGl.glBindAttribLocation(program, index, name);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        forgetUniforms(program);
+        onIssued();
+        mGl.glLinkProgram(program);
+    }
+
+    /**
+     * Forgets the uniform values of a program that is being relinked, which resets all of its
+     * uniforms to zero.
+     */
+    private void forgetUniforms(int program) {
+        for (int i = 0; i < MAX_PROGRAMS; i++) {
+            if (mUniformPrograms[i] == program) {
+                mUniformValues[i] = new float[0][];
+                if (program == mCurrentProgram) {
+                    mCurrentUniformValues = mUniformValues[i];
+                }
+            }
+        }
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        onIssued();
+        mGl.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        onIssued();
+        return mGl.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        for (int i = 0; i < MAX_PROGRAMS; i++) {
+            if (mUniformPrograms[i] == program) {
+                mUniformPrograms[i] = 0;
+                mUniformValues[i] = null;
+            }
+        }
+        if (program == mCurrentProgram) {
+            // A deleted program stays in use until another one is installed, but its name may
+            // be reused, so don't trust the cache for it anymore.
+            mCurrentProgram = -1;
+            mCurrentUniformValues = null;
+        }
+        onIssued();
+        mGl.glDeleteProgram(program);
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset,
+                                   int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        onIssued();
+        mGl.glGetProgramBinary(program, bufSize, length, lengthOffset, binaryFormat,
+                binaryFormatOffset, binary);
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        // Loading a binary relinks the program.
+        forgetUniforms(program);
+        onIssued();
+        mGl.glProgramBinary(program, binaryFormat, binary, length);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        onIssued();
+        mGl.glProgramParameteri(program, pname, value);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        onIssued();
+        return mGl.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        onIssued();
+        return mGl.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (program == mCurrentProgram) {
+            onElided();
+            return;
+        }
+        mCurrentProgram = program;
+        mCurrentUniformValues = program != 0 ? uniformValuesFor(program) : null;
+        onIssued();
+        mGl.glUseProgram(program);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBS) {
+            if (mAttribEnabled[index]) {
+                onElided();
+                return;
+            }
+            mAttribEnabled[index] = true;
+        }
+        onIssued();
+        mGl.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBS) {
+            if (!mAttribEnabled[index]) {
+                onElided();
+                return;
+            }
+            mAttribEnabled[index] = false;
+        }
+        onIssued();
+        mGl.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, Buffer ptr) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBS) {
+            mAttribPointerValid[index] = false;
+        }
+        onIssued();
+        mGl.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, int offset) {
+        if (index >= 0 && index < MAX_VERTEX_ATTRIBS) {
+            if (mAttribPointerValid[index]
+                    && mAttribBuffer[index] == mBoundArrayBuffer
+                    && mAttribSize[index] == size
+                    && mAttribType[index] == type
+                    && mAttribNormalized[index] == normalized
+                    && mAttribStride[index] == stride
+                    && mAttribOffset[index] == offset) {
+                onElided();
+                return;
+            }
+            mAttribPointerValid[index] = true;
+            mAttribBuffer[index] = mBoundArrayBuffer;
+            mAttribSize[index] = size;
+            mAttribType[index] = type;
+            mAttribNormalized[index] = normalized;
+            mAttribStride[index] = stride;
+            mAttribOffset[index] = offset;
+        }
+        onIssued();
+        mGl.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        mUniformScalar[0] = x;
+        if (isUniformUnchanged(location, mUniformScalar, 0, 1)) {
+            onElided();
+            return;
+        }
+        onIssued();
+        mGl.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        // Compare the bits, so distinct ints never look equal.
+        mUniformScalar[0] = Float.intBitsToFloat(x);
+        if (isUniformUnchanged(location, mUniformScalar, 0, 1)) {
+            onElided();
+            return;
+        }
+        onIssued();
+        mGl.glUniform1i(location, x);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        if (isUniformUnchanged(location, v, offset, count * 4)) {
+            onElided();
+            return;
+        }
+        onIssued();
+        mGl.glUniform4fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+                                   int offset) {
+        if (isUniformUnchanged(location, value, offset, count * 16)) {
+            onElided();
+            return;
+        }
+        onIssued();
+        mGl.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        onIssued();
+        mGl.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+        onIssued();
+        mGl.glDrawElements(mode, count, type, indices);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        onIssued();
+        mGl.glDrawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        onIssued();
+        mGl.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            int buffer = buffers[offset + i];
+            if (buffer == mBoundArrayBuffer) {
+                mBoundArrayBuffer = 0;
+            }
+            if (buffer == mBoundElementArrayBuffer) {
+                mBoundElementArrayBuffer = 0;
+            }
+            for (int j = 0; j < MAX_VERTEX_ATTRIBS; j++) {
+                if (mAttribBuffer[j] == buffer) {
+                    mAttribPointerValid[j] = false;
+                }
+            }
+        }
+        onIssued();
+        mGl.glDeleteBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (target == GLES20.GL_ARRAY_BUFFER) {
+            if (buffer == mBoundArrayBuffer) {
+                onElided();
+                return;
+            }
+            mBoundArrayBuffer = buffer;
+        } else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+            if (buffer == mBoundElementArrayBuffer) {
+                onElided();
+                return;
+            }
+            mBoundElementArrayBuffer = buffer;
+        }
+        onIssued();
+        mGl.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        onIssued();
+        mGl.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        onIssued();
+        mGl.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; i++) {
+            for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+                if (mBoundTexture2d[unit] == textures[offset + i]) {
+                    mBoundTexture2d[unit] = 0;
+                }
+            }
+        }
+        onIssued();
+        mGl.glDeleteTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        int unit = texture - GLES20.GL_TEXTURE0;
+        if (unit == mActiveTextureUnit) {
+            onElided();
+            return;
+        }
+        mActiveTextureUnit = unit;
+        onIssued();
+        mGl.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        boolean tracked = target == GLES20.GL_TEXTURE_2D
+                && mActiveTextureUnit >= 0 && mActiveTextureUnit < MAX_TEXTURE_UNITS;
+        if (tracked) {
+            if (mBoundTexture2d[mActiveTextureUnit] == texture) {
+                onElided();
+                return;
+            }
+            mBoundTexture2d[mActiveTextureUnit] = texture;
+        }
+        onIssued();
+        mGl.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        onIssued();
+        mGl.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                             int border, int format, int type, Buffer pixels) {
+        onIssued();
+        mGl.glTexImage2D(target, level, internalformat, width, height, border, format, type,
+                pixels);
+    }
+
+    @Override
+    public void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap) {
+        onIssued();
+        mGl.texSubImage2D(target, level, xoffset, yoffset, bitmap);
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        onIssued();
+        mGl.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            if (framebuffers[offset + i] == mBoundFramebuffer) {
+                // Deleting the bound framebuffer reverts to the default one.
+                mBoundFramebuffer = 0;
+            }
+        }
+        onIssued();
+        mGl.glDeleteFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        if (target == GLES20.GL_FRAMEBUFFER) {
+            if (framebuffer == mBoundFramebuffer) {
+                onElided();
+                return;
+            }
+            mBoundFramebuffer = framebuffer;
+        }
+        onIssued();
+        mGl.glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture,
+                                       int level) {
+        onIssued();
+        mGl.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        onIssued();
+        return mGl.glCheckFramebufferStatus(target);
+    }
+}
@@ -5,17 +5,20 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Rect;
-import android.opengl.GLES20;
-import android.opengl.Matrix;
+import android.opengl.EGL14;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.os.BatteryManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
 import android.support.wearable.complications.ComplicationData;
 import android.support.wearable.complications.rendering.ComplicationDrawable;
 import android.support.wearable.watchface.Gles2WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.Gravity;
@@ -23,6 +26,9 @@ import android.view.SurfaceHolder;
 import android.view.SurfaceHolder.Callback;
 import android.view.SurfaceView;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.TimeZone;
 
 /*
@@ -33,6 +39,60 @@ public class TestService extends Gles2WatchFaceService {
 
     private static final String TAG = "TestService";
 
+    /**
+     * Whether to adapt the rendering quality to how long frames take and to the battery.
+     * Otherwise the face always renders at {@link #FIXED_QUALITY_TIER}.
+     */
+    private static final boolean USE_ADAPTIVE_QUALITY = true;
+
+    /**
+     * Tier to render at if {@link #USE_ADAPTIVE_QUALITY} is not set, and to start at if it is.
+     */
+    private static final QualityTier FIXED_QUALITY_TIER = QualityTier.MEDIUM;
+
+    /**
+     * Message that draws the next scheduled interactive frame.
+     */
+    private static final int MSG_UPDATE_FRAME = 0;
+
+    /**
+     * Message that prerenders the next ambient frame once the current one is on screen.
+     */
+    private static final int MSG_PRERENDER_AMBIENT_FRAME = 1;
+
+    /**
+     * Message that shows complications drawn by the {@link ComplicationRasterizer}.
+     */
+    private static final int MSG_COMPLICATION_RASTERIZED = 2;
+
+    /**
+     * Message that applies the complication data updates held by the
+     * {@link ComplicationUpdateCoalescer}.
+     */
+    private static final int MSG_FLUSH_COMPLICATION_UPDATES = 3;
+
+    /**
+     * Message that ends a frame in {@link #mFrameMetrics}. Sent to the front of the queue from
+     * {@code onDraw()}, so it runs right after the buffers are swapped.
+     */
+    private static final int MSG_FRAME_SWAPPED = 4;
+
+    /**
+     * CPU time a frame may take before it counts as over budget: one refresh at 60 Hz.
+     */
+    private static final long FRAME_BUDGET_NANOS = 1000000000L / 60;
+
+    /**
+     * Recent frames kept by {@link #mFrameMetrics}, and how many of them a dump shows.
+     */
+    private static final int FRAME_METRICS_RING_CAPACITY = 256;
+    private static final int FRAME_METRICS_DUMP_FRAMES = 32;
+
+    /**
+     * Whether to record {@link EventTrace} events. See {@link #dump}.
+     */
+    private static final boolean USE_TRACING = true;
+
 
     /*Create List Compllication*/
 
@@ -41,7 +101,6 @@ public class TestService extends Gles2WatchFaceService {
     private static final int RIGHT_COMPLICATION_ID = 1;
     private static final int BOTTOM_COMPLICATION_ID = 2;
 
-    private Canvas mCanvas;
     private static final int[] COMPLICATION_IDS = {LEFT_COMPLICATION_ID,
             RIGHT_COMPLICATION_ID, BOTTOM_COMPLICATION_ID};
 
@@ -114,6 +173,42 @@ public class TestService extends Gles2WatchFaceService {
         }
     }
 
+    /**
+     * Timing of every frame drawn by the engine. See {@link #dump}.
+     */
+    private final FrameMetrics mFrameMetrics =
+            new FrameMetrics(FRAME_BUDGET_NANOS, FRAME_METRICS_RING_CAPACITY);
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        EventTrace.getInstance().setEnabled(USE_TRACING);
+        // Reuse the programs linked by the previous run instead of compiling them again.
+        ProgramBinaryCache.install(this);
+    }
+
+    /**
+     * Prints the frame metrics, e.g. with {@code adb shell dumpsys activity service
+     * TestService}. Pass {@code --json} for JSON, or {@code --trace} for the recent
+     * {@link EventTrace} events as a Chrome trace.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        boolean json = false;
+        boolean trace = false;
+        for (String arg : args) {
+            json |= "--json".equals(arg);
+            trace |= "--trace".equals(arg);
+        }
+        StringBuilder out = new StringBuilder();
+        if (trace) {
+            ChromeTraceExporter.export(EventTrace.getInstance(), android.os.Process.myPid(), out);
+        } else {
+            mFrameMetrics.dump(out, json, FRAME_METRICS_DUMP_FRAMES);
+        }
+        writer.print(out);
+    }
+
     /*----- Create Engine -----*/
     @Override
     public Engine onCreateEngine() {
@@ -121,72 +216,50 @@ public class TestService extends Gles2WatchFaceService {
     }
 
 
-    private class Engine extends Gles2WatchFaceService.Engine  {
-        /**
-         * Projection transformation matrix. Converts from 3D to 2D.
-         */
-        private final float[] mProjectionMatrix = new float[16];
-
-        /**
-         * View transformation matrices to use in interactive mode. Converts from world to camera-
-         * relative coordinates. One matrix per camera position.
-         */
-        private final float[] mViewMatrices = new float[16];
-
-        /**
-         * The view transformation matrix to use in ambient mode
-         */
-        private final float[] mAmbientViewMatrix = new float[16];
-
-        /**
-         * Model transformation matrices. Converts from model-relative coordinates to world
-         * coordinates. One matrix per degree of rotation.
-         */
-        private final float[][] mModelMatrices = new float[360][16];
-
-        /**
-         * Products of {@link #mViewMatrices} and {@link #mProjectionMatrix}. One matrix per camera
-         * position.
-         */
-        private final float[] mVpMatrices = new float[16];
-
-        /**
-         * The product of {@link #mAmbientViewMatrix} and {@link #mProjectionMatrix}
-         */
-        private final float[] mAmbientVpMatrix = new float[16];
-
-        /**
-         * Product of {@link #mModelMatrices}, {@link #mViewMatrices}, and
-         * {@link #mProjectionMatrix}.
-         */
-        private final float[] mMvpMatrix = new float[16];
-
-        /**
-         * Triangles for the 4 major ticks. These are grouped together to speed up rendering.
-         */
-        private Gles2ColoredTriangleList mMajorTickTriangles;
+    private class Engine extends Gles2WatchFaceService.Engine
+            implements WatchFaceRenderer.Host {
 
         /**
-         * Triangles for the 8 minor ticks. These are grouped together to speed up rendering.
+         * Draws the face. Everything that needs no Android lives there.
          */
-        private Gles2ColoredTriangleList mMinorTickTriangles;
+        private final WatchFaceRenderer mRenderer = new WatchFaceRenderer(AndroidGlApi.INSTANCE,
+                FrameScheduler.SYSTEM_TIME_SOURCE, USE_ADAPTIVE_QUALITY
+                        ? new AdaptiveQualityGovernor(FIXED_QUALITY_TIER)
+                        : new FixedQualityPolicy(FIXED_QUALITY_TIER), mFrameMetrics, this);
 
         /**
-         * Triangle for the second hand.
+         * Draws the complications into textures in the background. Owned by
+         * {@link #mRenderer}.
          */
-        private Gles2ColoredTriangleList mSecondHandTriangle;
+        private ComplicationRasterizer mComplicationRasterizer;
 
         /**
-         * Triangle for the minute hand.
+         * Scratch space for the bounds of a complication.
          */
-        private Gles2ColoredTriangleList mMinuteHandTriangle;
+        private final Rect mComplicationBounds = new Rect();
 
         /**
-         * Triangle for the hour hand.
+         * Delivers the renderer's delayed work on the main thread.
          */
-        private Gles2ColoredTriangleList mHourHandTriangle;
-
-        private Time mTime = new Time();
+        private final Handler mFrameHandler = new Handler(Looper.getMainLooper()) {
+            @Override
+            public void handleMessage(Message message) {
+                if (message.what == MSG_UPDATE_FRAME) {
+                    mRenderer.onFrameCheck();
+                } else if (message.what == MSG_PRERENDER_AMBIENT_FRAME) {
+                    if (isVisible() && isInAmbientMode()) {
+                        makeEglContextCurrent();
+                        mRenderer.prerenderAmbientFrame();
+                    }
+                } else if (message.what == MSG_COMPLICATION_RASTERIZED) {
+                    mRenderer.onComplicationRasterized();
+                } else if (message.what == MSG_FLUSH_COMPLICATION_UPDATES) {
+                    mRenderer.flushComplicationUpdates();
+                } else if (message.what == MSG_FRAME_SWAPPED) {
+                    mRenderer.onFrameSwapped();
+                }
+            }
+        };
 
         /**
          * Whether we've registered {@link #mTimeZoneReceiver}.
@@ -200,8 +273,17 @@ public class TestService extends Gles2WatchFaceService {
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                final String timeZone = intent.getStringExtra("time-zone");
+                mRenderer.setTimeZone(timeZone != null
+                        ? TimeZone.getTimeZone(timeZone) : TimeZone.getDefault(),
+                        true /* invalidate */);
+            }
+        };
+
+        private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onBatteryChanged(intent);
             }
         };
 
@@ -211,6 +293,7 @@ public class TestService extends Gles2WatchFaceService {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "onCreate");
             }
+            final long startNanos = System.nanoTime();
             super.onCreate(surfaceHolder);
             setWatchFaceStyle(new WatchFaceStyle.Builder(TestService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
@@ -221,19 +304,22 @@ public class TestService extends Gles2WatchFaceService {
                     .build());
 
 
-//            mCanvas = surfaceHolder.getSurface().lockHardwareCanvas();
-//            holder = surfaceHolder;
-
             // TODO: Step 2, intro 3
-            initializeComplications();
+            final ComplicationSnapshotStore snapshotStore = initializeComplications();
 
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "onCreate: took " + (System.nanoTime() - startNanos) / 1000
+                        + " us, " + snapshotStore);
+            }
         }
 
         /*-- Init Complications --*/
 
         // TODO: Step 2, initializeComplications()
-        private void initializeComplications() {
-            Log.d(TAG, "initializeComplications()");
+        private ComplicationSnapshotStore initializeComplications() {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "initializeComplications()");
+            }
 
             mActiveComplicationDataSparseArray = new SparseArray<>(COMPLICATION_IDS.length);
 
@@ -255,9 +341,40 @@ public class TestService extends Gles2WatchFaceService {
             mComplicationDrawableSparseArray.put(RIGHT_COMPLICATION_ID, rightComplicationDrawable);
             mComplicationDrawableSparseArray.put(BOTTOM_COMPLICATION_ID, bottomComplicationDrawable);
 
+            // From now on the drawables are only touched on the rasterizer's thread.
+            ComplicationDrawable[] drawables = new ComplicationDrawable[COMPLICATION_IDS.length];
+            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
+                drawables[i] = mComplicationDrawableSparseArray.get(COMPLICATION_IDS[i]);
+                drawables[i].setBorderColorActive(Color.BLUE);
+            }
+            mComplicationRasterizer = new ComplicationRasterizer(mRenderer.getGl(),
+                    COMPLICATION_IDS, drawables, new ComplicationRasterizer.Listener() {
+                        @Override
+                        public void onComplicationRasterized(int complicationId) {
+                            if (!mFrameHandler.hasMessages(MSG_COMPLICATION_RASTERIZED)) {
+                                mFrameHandler.sendEmptyMessage(MSG_COMPLICATION_RASTERIZED);
+                            }
+                        }
+                    });
+
+            // Show the last known data until the providers send fresh data, which replaces it.
+            ComplicationSnapshotStore snapshotStore = new ComplicationSnapshotStore(
+                    getApplicationContext(),
+                    new File(getNoBackupFilesDir(), ComplicationSnapshotStore.FILE_NAME));
+            mRenderer.setComplications(mComplicationRasterizer,
+                    new ComplicationUpdateCoalescer(getApplicationContext(),
+                            FrameScheduler.SYSTEM_TIME_SOURCE, COMPLICATION_IDS),
+                    snapshotStore);
+            SparseArray<ComplicationData> snapshot = snapshotStore.load();
+            for (int i = 0; i < snapshot.size(); i++) {
+                mActiveComplicationDataSparseArray.put(snapshot.keyAt(i), snapshot.valueAt(i));
+            }
+            mRenderer.restoreComplicationData(snapshot);
+
             setActiveComplications(COMPLICATION_IDS);
 //           mActiveComplicationDataSparseArray = new SparseArray<>(COMPLICATION_IDS.length);
 //            mComplicationDrawableSparseArray = new SparseArray<>(COMPLICATION_IDS.length);
+            return snapshotStore;
         }
 
         /*-- Implementation onComplicationUpdate function --*/
@@ -266,24 +383,18 @@ public class TestService extends Gles2WatchFaceService {
         @Override
         public void onComplicationDataUpdate(
                 int complicationId, ComplicationData complicationData) {
-            Log.d(TAG, "onComplicationDataUpdate() id: " + complicationId);
-
-            // Adds/updates active complication data in the array.
+            // Adds/updates active complication data in the array, even if nothing drawn changed.
             mActiveComplicationDataSparseArray.put(complicationId, complicationData);
 
-            // Updates correct ComplicationDrawable with updated data.
-            ComplicationDrawable complicationDrawable =
-                    mComplicationDrawableSparseArray.get(complicationId);
-            complicationDrawable.setComplicationData(complicationData);
-            complicationDrawable.setBorderColorActive(Color.BLUE);
+            mRenderer.onComplicationDataUpdate(complicationId, complicationData);
+        }
 
-            Rect bounds = new Rect();
-            if (complicationData.getType() == ComplicationData.TYPE_LONG_TEXT) {
-            } else {
+        @Override
+        public void requestComplicationFlush(long delayMillis) {
+            if (!mFrameHandler.hasMessages(MSG_FLUSH_COMPLICATION_UPDATES)) {
+                mFrameHandler.sendEmptyMessageDelayed(MSG_FLUSH_COMPLICATION_UPDATES,
+                        delayMillis);
             }
-            complicationDrawable.setBounds(bounds);
-
-            invalidate();
         }
 
 
@@ -298,61 +409,22 @@ public class TestService extends Gles2WatchFaceService {
             // Draw Image on Background
 
 
-            // Create program for drawing triangles.
-            Gles2ColoredTriangleList.Program triangleProgram =
-                    new Gles2ColoredTriangleList.Program();
-            triangleProgram.use();
-
-            // Create triangles for the ticks.
-            mMajorTickTriangles = createMajorTicks(triangleProgram);
-            mMinorTickTriangles = createMinorTicks(triangleProgram);
-
-            // Create triangles for the hands.
-            mSecondHandTriangle = createHand(
-                    triangleProgram,
-                    0.02f /* width */,
-                    1.0f /* height */,
-                    new float[]{
-                            1.0f /* red */,
-                            0.0f /* green */,
-                            0.0f /* blue */,
-                            1.0f /* alpha */
-                    }
-            );
-            mMinuteHandTriangle = createHand(
-                    triangleProgram,
-                    0.06f /* width */,
-                    0.8f /* height */,
-                    new float[]{
-                            0.7f /* red */,
-                            0.7f /* green */,
-                            0.7f /* blue */,
-                            1.0f /* alpha */
-                    }
-            );
-            mHourHandTriangle = createHand(
-                    triangleProgram,
-                    0.1f /* width */,
-                    0.5f /* height */,
-                    new float[]{
-                            0.9f /* red */,
-                            0.9f /* green */,
-                            0.9f /* blue */,
-                            1.0f /* alpha */
-                    }
-            );
-
-            // Precompute the clock angles.
-            for (int i = 0; i < mModelMatrices.length; ++i) {
-                Matrix.setRotateM(mModelMatrices[i], 0, i, 0, 0, 1);
-            }
+            mRenderer.onGlContextCreated(EGL14.eglGetCurrentContext());
+        }
 
-            Matrix.setLookAtM(mViewMatrices, 0, 0, 0, -3,
-                    0, 0, 0,
-                    0, 1, 0);
-            Matrix.setLookAtM(mAmbientViewMatrix, 0, 0, 0, -3,
-                    0, 0, 0,
-                    0, 1, 0);
+        @Override
+        public void onDestroy() {
+            mFrameHandler.removeMessages(MSG_UPDATE_FRAME);
+
+            // Give the programs back while their context is still alive. This also stops the
+            // rasterizer, so no MSG_COMPLICATION_RASTERIZED is sent after the ones removed here.
+            makeEglContextCurrent();
+            mRenderer.release();
+            mFrameHandler.removeMessages(MSG_PRERENDER_AMBIENT_FRAME);
+            mFrameHandler.removeMessages(MSG_COMPLICATION_RASTERIZED);
+            mFrameHandler.removeMessages(MSG_FLUSH_COMPLICATION_UPDATES);
+            mFrameHandler.removeMessages(MSG_FRAME_SWAPPED);
+            super.onDestroy();
         }
 
         @Override
@@ -361,174 +433,43 @@ public class TestService extends Gles2WatchFaceService {
                 Log.d(TAG, "onGlSurfaceCreated: " + width + " x " + height);
             }
             super.onGlSurfaceCreated(width, height);
-
-            // Update the projection matrix based on the new aspect ratio.
-            final float aspectRatio = (float) width / height;
-            Matrix.frustumM(mProjectionMatrix, 0, -aspectRatio, aspectRatio, -1, 1, 2, 7);
-
-            Matrix.multiplyMM(mVpMatrices, 0, mProjectionMatrix, 0, mViewMatrices, 0);
-            Matrix.multiplyMM(mAmbientVpMatrix, 0, mProjectionMatrix, 0, mAmbientViewMatrix, 0);
             setComplicationLocation(width,height);
+            mRenderer.onSurfaceChanged(width, height);
         }
 
         /*-- Set Complication location --*/
 
         private  void setComplicationLocation(int width, int height) {
-
-            Log.d(TAG,"set complication location was called");
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "setComplicationLocation: " + width + "x" + height);
+            }
             int sizeOfComplication = width / 4;
             int midpointOfScreen = width / 2;
 
             int horizontalOffset = (midpointOfScreen - sizeOfComplication) / 2;
             int verticalOffset = midpointOfScreen - (sizeOfComplication / 2);
 
-            Rect leftBounds =
-                    // Left, Top, Right, Bottom
-                    new Rect(
-                            horizontalOffset,
-                            verticalOffset,
-                            (horizontalOffset + sizeOfComplication),
-                            (verticalOffset + sizeOfComplication));
-
-            ComplicationDrawable leftComplicationDrawable =
-                    mComplicationDrawableSparseArray.get(LEFT_COMPLICATION_ID);
-            leftComplicationDrawable.setBounds(leftBounds);
-
-            Rect rightBounds =
-                    // Left, Top, Right, Bottom
-                    new Rect(
-                            (midpointOfScreen + horizontalOffset),
-                            verticalOffset,
-                            (midpointOfScreen + horizontalOffset + sizeOfComplication),
-                            (verticalOffset + sizeOfComplication));
-
-            ComplicationDrawable rightComplicationDrawable =
-                    mComplicationDrawableSparseArray.get(RIGHT_COMPLICATION_ID);
-            rightComplicationDrawable.setBounds(rightBounds);
-
-            Rect bottomBounds =
-                    // Left, Top, Right, Bottom
-                    new Rect((midpointOfScreen - sizeOfComplication ),
-                            (verticalOffset + sizeOfComplication),
-                            (midpointOfScreen + horizontalOffset*2),
-                            (verticalOffset + sizeOfComplication * 2));
-
-            ComplicationDrawable bottomComplicationDrawable =
-                    mComplicationDrawableSparseArray.get(BOTTOM_COMPLICATION_ID);
-            bottomComplicationDrawable.setBounds(bottomBounds);
-        }
-
-
-        /**
-         * Creates a triangle for a hand on the watch face.
-         *
-         * @param program program for drawing triangles
-         * @param width   width of base of triangle
-         * @param length  length of triangle
-         * @param color   color in RGBA order, each in the range [0, 1]
-         */
-        private Gles2ColoredTriangleList createHand(Gles2ColoredTriangleList.Program program,
-                                                    float width, float length, float[] color) {
-            // Create the data for the VBO.
-            float[] triangleCoords = new float[]{
-                    // in counterclockwise order:
-                    0, length, 0,   // top
-                    -width / 2, 0, 0,   // bottom left
-                    width / 2, 0, 0    // bottom right
-            };
-            return new Gles2ColoredTriangleList(program, triangleCoords, color);
-        }
-
-        /**
-         * Creates a triangle list for the major ticks on the watch face.
-         *
-         * @param program program for drawing triangles
-         */
-        private Gles2ColoredTriangleList createMajorTicks(Gles2ColoredTriangleList.Program program) {
-            // Create the data for the VBO.
-            float[] trianglesCoords = new float[9 * 4];
-            for (int i = 0; i < 4; i++) {
-                float[] triangleCoords = getMajorTickTriangleCoords(i);
-                System.arraycopy(triangleCoords, 0, trianglesCoords, i * 9, triangleCoords.length);
-            }
-
-            return new Gles2ColoredTriangleList(program, trianglesCoords,
-                    new float[]{
-                            1.0f /* red */,
-                            1.0f /* green */,
-                            1.0f /* blue */,
-                            1.0f /* alpha */
-                    }
-            );
-        }
-
-        /**
-         * Creates a triangle list for the minor ticks on the watch face.
-         *
-         * @param program program for drawing triangles
-         */
-        private Gles2ColoredTriangleList createMinorTicks(
-                Gles2ColoredTriangleList.Program program) {
-            // Create the data for the VBO.
-            float[] trianglesCoords = new float[9 * (12 - 4)];
-            int index = 0;
-            for (int i = 0; i < 12; i++) {
-                if (i % 3 == 0) {
-                    // This is where a major tick goes, so skip it.
-                    continue;
-                }
-                float[] triangleCoords = getMinorTickTriangleCoords(i);
-                System.arraycopy(triangleCoords, 0, trianglesCoords, index, triangleCoords.length);
-                index += 9;
-            }
-
-            return new Gles2ColoredTriangleList(program, trianglesCoords,
-                    new float[]{
-                            0.5f /* red */,
-                            0.5f /* green */,
-                            0.5f /* blue */,
-                            1.0f /* alpha */
-                    }
-            );
-        }
+            // Left, Top, Right, Bottom. The rasterizer copies the bounds.
+            mComplicationBounds.set(horizontalOffset,
+                    verticalOffset,
+                    (horizontalOffset + sizeOfComplication),
+                    (verticalOffset + sizeOfComplication));
 
-        private float[] getMajorTickTriangleCoords(int index) {
-            return getTickTriangleCoords(0.03f, 0.09f, index * 360 / 4);
-        }
+            mComplicationRasterizer.setBounds(LEFT_COMPLICATION_ID, mComplicationBounds);
 
-        private float[] getMinorTickTriangleCoords(int index) {
-            return getTickTriangleCoords(0.02f, 0.06f, index * 360 / 12);
-        }
+            mComplicationBounds.set((midpointOfScreen + horizontalOffset),
+                    verticalOffset,
+                    (midpointOfScreen + horizontalOffset + sizeOfComplication),
+                    (verticalOffset + sizeOfComplication));
 
-        private float[] getTickTriangleCoords(float width, float length, int angleDegrees) {
-            float[] coords = new float[]{
-                    0, 1, 0,   // top
-                    width / 2, length + 1, 0,   // bottom left
-                    -width / 2, length + 1, 0    // bottom right
-            };
+            mComplicationRasterizer.setBounds(RIGHT_COMPLICATION_ID, mComplicationBounds);
 
-            rotateCoords(coords, angleDegrees);
-            return coords;
-        }
+            mComplicationBounds.set((midpointOfScreen - sizeOfComplication ),
+                    (verticalOffset + sizeOfComplication),
+                    (midpointOfScreen + horizontalOffset*2),
+                    (verticalOffset + sizeOfComplication * 2));
 
-        /**
-         * Destructively rotates the given coordinates in the XY plane about the origin by the given
-         * angle.
-         *
-         * @param coords       flattened 3D coordinates
-         * @param angleDegrees angle in degrees clockwise when viewed from negative infinity on the
-         *                     Z axis
-         */
-        private void rotateCoords(float[] coords, int angleDegrees) {
-            double angleRadians = Math.toRadians(angleDegrees);
-            double cos = Math.cos(angleRadians);
-            double sin = Math.sin(angleRadians);
-            for (int i = 0; i < coords.length; i += 3) {
-                float x = coords[i];
-                float y = coords[i + 1];
-                coords[i] = (float) (cos * x - sin * y);
-                coords[i + 1] = (float) (sin * x + cos * y);
-            }
+            mComplicationRasterizer.setBounds(BOTTOM_COMPLICATION_ID, mComplicationBounds);
         }
 
         @Override
@@ -537,15 +478,7 @@ public class TestService extends Gles2WatchFaceService {
                 Log.d(TAG, "onAmbientModeChanged: " + inAmbientMode);
             }
             super.onAmbientModeChanged(inAmbientMode);
-
-            ComplicationDrawable complicationDrawable;
-
-            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                complicationDrawable = mComplicationDrawableSparseArray.get(COMPLICATION_IDS[i]);
-                complicationDrawable.setInAmbientMode(inAmbientMode);
-            }
-
-            invalidate();
+            mRenderer.onAmbientModeChanged(inAmbientMode);
         }
 
         @Override
@@ -558,13 +491,11 @@ public class TestService extends Gles2WatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we were detached.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
-
-                invalidate();
+                mRenderer.setTimeZone(TimeZone.getDefault(), false /* invalidate */);
             } else {
                 unregisterReceiver();
             }
+            mRenderer.onVisibilityChanged(visible);
         }
 
         private void registerReceiver() {
@@ -574,6 +505,13 @@ public class TestService extends Gles2WatchFaceService {
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             TestService.this.registerReceiver(mTimeZoneReceiver, filter);
+
+            // The battery broadcast is sticky, so this also delivers the current state.
+            Intent battery = TestService.this.registerReceiver(mBatteryReceiver,
+                    new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            if (battery != null) {
+                onBatteryChanged(battery);
+            }
         }
 
         private void unregisterReceiver() {
@@ -582,6 +520,19 @@ public class TestService extends Gles2WatchFaceService {
             }
             mRegisteredTimeZoneReceiver = false;
             TestService.this.unregisterReceiver(mTimeZoneReceiver);
+            TestService.this.unregisterReceiver(mBatteryReceiver);
+        }
+
+        private void onBatteryChanged(Intent intent) {
+            final int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            final int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            if (level < 0 || scale <= 0) {
+                return;
+            }
+            final int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+            final boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                    || status == BatteryManager.BATTERY_STATUS_FULL;
+            mRenderer.onBatteryChanged(level * 100 / scale, charging);
         }
 
         @Override
@@ -590,87 +541,63 @@ public class TestService extends Gles2WatchFaceService {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "onTimeTick: ambient = " + isInAmbientMode());
             }
-            invalidate();
+            mRenderer.onTimeTick();
         }
 
 
         @Override
         public void onDraw() {
-            if (Log.isLoggable(TAG, Log.VERBOSE)) {
-                Log.v(TAG, "onDraw");
-            }
-
             super.onDraw();
+            mRenderer.onDraw();
+        }
 
-            final float[] vpMatrix;
-
-
-            // Draw background color and select the appropriate view projection matrix. The
-            // background should always be black in ambient mode. The view projection matrix used is
-            // overhead in ambient. In interactive mode, it's tilted depending on the current time.
-            if (isInAmbientMode()) {
-                GLES20.glClearColor(0, 0, 0, 1);
-                vpMatrix = mAmbientVpMatrix;
-            } else {
-                GLES20.glClearColor(0.0f, 0.2f, 0.2f, 1);
-                vpMatrix = mVpMatrices;
-            }
-            GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-
-            // Compute angle indices for the three hands.
-            mTime.setToNow();
-            final int secIndex = mTime.second * 360 / 60;
-            final int minIndex = mTime.minute * 360 / 60;
-            final int hoursIndex = (mTime.hour % 12) * 360 / 12 + mTime.minute * 360 / 60 / 12;
-
-            // Draw triangles from back to front. Don't draw the second hand in ambient mode.
-            {
-                // Combine the model matrix with the projection and camera view.
-                Matrix.multiplyMM(mMvpMatrix, 0, vpMatrix, 0, mModelMatrices[hoursIndex], 0);
-
-                // Draw the triangle.
-                mHourHandTriangle.draw(mMvpMatrix);
-            }
-            {
-                // Combine the model matrix with the projection and camera view.
-                Matrix.multiplyMM(mMvpMatrix, 0, vpMatrix, 0, mModelMatrices[minIndex], 0);
+        @Override
+        public void requestFrameSwappedCallback() {
+            mFrameHandler.sendMessageAtFrontOfQueue(
+                    mFrameHandler.obtainMessage(MSG_FRAME_SWAPPED));
+        }
 
-                // Draw the triangle.
-                mMinuteHandTriangle.draw(mMvpMatrix);
-            }
-            if (!isInAmbientMode()) {
-                // Combine the model matrix with the projection and camera view.
-                Matrix.multiplyMM(mMvpMatrix, 0, vpMatrix, 0, mModelMatrices[secIndex], 0);
+        @Override
+        public void requestAmbientPrerender() {
+            mFrameHandler.removeMessages(MSG_PRERENDER_AMBIENT_FRAME);
+            mFrameHandler.sendEmptyMessage(MSG_PRERENDER_AMBIENT_FRAME);
+        }
 
-                // Draw the triangle.
-                mSecondHandTriangle.draw(mMvpMatrix);
-            }
-            {
-                // Draw the major and minor ticks.
-                mMajorTickTriangles.draw(vpMatrix);
-                mMinorTickTriangles.draw(vpMatrix);
+        @Override
+        public boolean setPreserveBufferOnSwap(boolean preserve) {
+            final EGLDisplay display = EGL14.eglGetCurrentDisplay();
+            final EGLSurface surface = EGL14.eglGetCurrentSurface(EGL14.EGL_DRAW);
+            if (preserve && Log.isLoggable(TAG, Log.DEBUG)) {
+                // Swapping with damage would avoid the preserve, but there are no Java bindings
+                // for it.
+                final String extensions = EGL14.eglQueryString(display, EGL14.EGL_EXTENSIONS);
+                Log.d(TAG, "setPreserveBufferOnSwap: EGL_KHR_partial_update "
+                        + (extensions != null && extensions.contains("EGL_KHR_partial_update"))
+                        + ", EGL_EXT_swap_buffers_with_damage " + (extensions != null
+                        && extensions.contains("EGL_EXT_swap_buffers_with_damage")));
             }
-      //      drawComplications(mCanvas);
-      //      holder.unlockCanvasAndPost(mCanvas);
-
-
-            // Draw every frame as long as we're visible and in interactive mode.
-            if (isVisible() && !isInAmbientMode()) {
-                invalidate();
+            // Preserving fails if the surface's config lacks EGL_SWAP_BEHAVIOR_PRESERVED_BIT.
+            EGL14.eglSurfaceAttrib(display, surface, EGL14.EGL_SWAP_BEHAVIOR,
+                    preserve ? EGL14.EGL_BUFFER_PRESERVED : EGL14.EGL_BUFFER_DESTROYED);
+            final int[] swapBehavior = new int[1];
+            final boolean preserved = EGL14.eglQuerySurface(display, surface,
+                    EGL14.EGL_SWAP_BEHAVIOR, swapBehavior, 0 /* offset */)
+                    && swapBehavior[0] == EGL14.EGL_BUFFER_PRESERVED;
+            if (preserve && !preserved) {
+                Log.w(TAG, "Surface can't preserve its content, drawing full frames");
             }
+            return preserved;
         }
 
-        private void drawComplications(Canvas canvas) {
-                long now = System.currentTimeMillis();
-                int complicationId;
-                ComplicationDrawable complicationDrawable;
+        @Override
+        public void requestFrameCheck(long delayMillis) {
+            mFrameHandler.removeMessages(MSG_UPDATE_FRAME);
+            mFrameHandler.sendEmptyMessageDelayed(MSG_UPDATE_FRAME, delayMillis);
+        }
 
-                for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                    complicationId = COMPLICATION_IDS[i];
-                    complicationDrawable = mComplicationDrawableSparseArray.get(complicationId);
-                    complicationDrawable.draw(canvas, now);
-                    Log.d(TAG, "draw complications was called");
-                }
+        @Override
+        public void cancelFrameCheck() {
+            mFrameHandler.removeMessages(MSG_UPDATE_FRAME);
         }
 
 
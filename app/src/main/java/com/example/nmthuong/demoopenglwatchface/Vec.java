@@ -0,0 +1,64 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Allocation-free operations on flat arrays of vectors, e.g. the 3D coordinates of a triangle
+ * list. Companion to {@link Mat4}.
+ */
+public final class Vec {
+
+    private Vec() {
+    }
+
+    /**
+     * Rotates vectors in place about the Z axis, in the XY plane. Positive angles turn the same
+     * way as {@link Mat4#setRotateZ}. Components other than X and Y are left alone.
+     *
+     * @param coords flat array of vectors
+     * @param offset index of the X of the first vector
+     * @param count  number of vectors
+     * @param stride number of floats from one vector to the next, e.g. 3 for 3D coordinates
+     * @param cos    cosine of the angle
+     * @param sin    sine of the angle
+     */
+    public static void rotateZ(float[] coords, int offset, int count, int stride, float cos,
+                               float sin) {
+        int end = offset + count * stride;
+        for (int i = offset; i < end; i += stride) {
+            final float x = coords[i];
+            final float y = coords[i + 1];
+            coords[i] = cos * x - sin * y;
+            coords[i + 1] = sin * x + cos * y;
+        }
+    }
+
+    /**
+     * Returns the summed area of a list of triangles in the XY plane, counting overlapping
+     * triangles twice.
+     *
+     * @param coords flat array of vertices, three per triangle
+     * @param stride number of floats from one vertex to the next, e.g. 3 for 3D coordinates
+     */
+    public static float triangleArea(float[] coords, int stride) {
+        float area = 0;
+        for (int i = 0; i + 3 * stride <= coords.length; i += 3 * stride) {
+            final float ax = coords[i + stride] - coords[i];
+            final float ay = coords[i + stride + 1] - coords[i + 1];
+            final float bx = coords[i + 2 * stride] - coords[i];
+            final float by = coords[i + 2 * stride + 1] - coords[i + 1];
+            area += Math.abs(ax * by - ay * bx) / 2;
+        }
+        return area;
+    }
+
+    /**
+     * Transforms a point by a matrix, like {@link android.opengl.Matrix#multiplyMV} with w = 1,
+     * and writes the resulting x, y, z and w.
+     */
+    public static void transformPoint(float[] result, int resultOffset, float[] m, int mOffset,
+                                      float x, float y, float z) {
+        for (int row = 0; row < 4; row++) {
+            result[resultOffset + row] = m[mOffset + row] * x + m[mOffset + 4 + row] * y
+                    + m[mOffset + 8 + row] * z + m[mOffset + 12 + row];
+        }
+    }
+}
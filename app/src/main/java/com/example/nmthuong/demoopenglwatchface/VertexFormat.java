@@ -0,0 +1,287 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of an interleaved vertex: a position, optionally followed by a color and a layer index.
+ * <p>
+ * The float formats store positions as 3 floats and colors as 4 floats, the way the watch faces
+ * always have. The compact formats store positions as 2 normalized {@link GLES20#GL_SHORT}s and
+ * colors as 4 normalized {@link GLES20#GL_UNSIGNED_BYTE}s, which cuts a position-and-color vertex
+ * from 28 to 8 bytes. Compact positions only cover the XY plane and the range
+ * [-{@link #getPositionScale()}, {@link #getPositionScale()}], so shaders must multiply the
+ * position attribute's XY by the scale.
+ * <p>
+ * Input coordinates are always 3 floats per vertex and colors 4 floats in the range [0, 1], so
+ * callers don't depend on the format they encode to.
+ */
+public final class VertexFormat {
+
+    /**
+     * Number of coordinates per vertex in the input arrays: one for each of x, y, and z.
+     */
+    public static final int COORDS_PER_VERTEX = 3;
+
+    /**
+     * Number of components in an OpenGL color.
+     */
+    public static final int NUM_COLOR_COMPONENTS = 4;
+
+    /**
+     * Range covered by compact positions. The dial's ticks reach a little beyond the unit circle,
+     * so 1 isn't enough. Over [-2, 2] a step is about 6e-5, far below a pixel on any watch.
+     */
+    private static final float COMPACT_POSITION_SCALE = 2f;
+
+    /**
+     * Positions only, as 3 floats. 12 bytes per vertex.
+     */
+    public static final VertexFormat FLOAT_XYZ =
+            new VertexFormat("FLOAT_XYZ", false /* compact */, false, false);
+
+    /**
+     * Positions only, as 2 normalized shorts. 4 bytes per vertex.
+     */
+    public static final VertexFormat SHORT_XY =
+            new VertexFormat("SHORT_XY", true /* compact */, false, false);
+
+    /**
+     * Positions as 3 floats and colors as 4 floats. 28 bytes per vertex.
+     */
+    public static final VertexFormat FLOAT_XYZ_RGBA =
+            new VertexFormat("FLOAT_XYZ_RGBA", false /* compact */, true, false);
+
+    /**
+     * Positions as 2 normalized shorts and colors as 4 normalized unsigned bytes. 8 bytes per
+     * vertex.
+     */
+    public static final VertexFormat SHORT_XY_UBYTE_RGBA =
+            new VertexFormat("SHORT_XY_UBYTE_RGBA", true /* compact */, true, false);
+
+    /**
+     * Positions as 3 floats, colors as 4 floats and the layer as a float. 32 bytes per vertex.
+     */
+    public static final VertexFormat FLOAT_XYZ_RGBA_LAYER =
+            new VertexFormat("FLOAT_XYZ_RGBA_LAYER", false /* compact */, true, true);
+
+    /**
+     * Positions as 2 normalized shorts, colors as 4 normalized unsigned bytes and the layer as an
+     * unsigned byte padded to 4 bytes. 12 bytes per vertex.
+     */
+    public static final VertexFormat SHORT_XY_UBYTE_RGBA_LAYER =
+            new VertexFormat("SHORT_XY_UBYTE_RGBA_LAYER", true /* compact */, true, true);
+
+    private final String mName;
+    private final boolean mCompact;
+    private final boolean mHasColor;
+    private final boolean mHasLayer;
+
+    private final int mPositionSize;
+    private final int mPositionType;
+    private final int mColorType;
+    private final int mLayerType;
+    private final int mColorOffset;
+    private final int mLayerOffset;
+    private final int mStride;
+
+    private VertexFormat(String name, boolean compact, boolean hasColor, boolean hasLayer) {
+        mName = name;
+        mCompact = compact;
+        mHasColor = hasColor;
+        mHasLayer = hasLayer;
+
+        int bytesPerFloat = Gles2ColoredTriangleList.BYTES_PER_FLOAT;
+        mPositionSize = compact ? 2 : COORDS_PER_VERTEX;
+        mPositionType = compact ? GLES20.GL_SHORT : GLES20.GL_FLOAT;
+        mColorType = compact ? GLES20.GL_UNSIGNED_BYTE : GLES20.GL_FLOAT;
+        mLayerType = compact ? GLES20.GL_UNSIGNED_BYTE : GLES20.GL_FLOAT;
+
+        int offset = compact ? 2 * 2 : COORDS_PER_VERTEX * bytesPerFloat;
+        mColorOffset = offset;
+        if (hasColor) {
+            offset += compact ? NUM_COLOR_COMPONENTS : NUM_COLOR_COMPONENTS * bytesPerFloat;
+        }
+        mLayerOffset = offset;
+        if (hasLayer) {
+            // A lone byte is padded so every vertex stays 4-byte aligned.
+            offset += 4;
+        }
+        mStride = offset;
+    }
+
+    /**
+     * Returns the number of bytes per vertex.
+     */
+    public int getStride() {
+        return mStride;
+    }
+
+    /**
+     * Returns whether positions and colors are stored as normalized integers.
+     */
+    public boolean isCompact() {
+        return mCompact;
+    }
+
+    public boolean hasColor() {
+        return mHasColor;
+    }
+
+    public boolean hasLayer() {
+        return mHasLayer;
+    }
+
+    /**
+     * Returns the factor shaders must multiply the XY of the position attribute by. This is 1
+     * for the float formats.
+     */
+    public float getPositionScale() {
+        return mCompact ? COMPACT_POSITION_SCALE : 1f;
+    }
+
+    /**
+     * Allocates a direct buffer in native byte order for the given number of vertices.
+     */
+    public ByteBuffer allocate(int numVertices) {
+        return ByteBuffer.allocateDirect(numVertices * mStride).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Encodes vertices into a new buffer, ready to be drawn from or uploaded into a VBO.
+     *
+     * @param vertices for each vertex, {@link #COORDS_PER_VERTEX} coordinates followed by
+     *                 {@link #NUM_COLOR_COMPONENTS} color components if this format has a color.
+     *                 This is the layout of {@link #FLOAT_XYZ} and {@link #FLOAT_XYZ_RGBA}.
+     * @throws IllegalArgumentException if this format has a layer, or a coordinate can't be
+     *                                  represented
+     */
+    public ByteBuffer encode(float[] vertices) {
+        if (mHasLayer) {
+            throw new IllegalArgumentException(mName + " needs a layer per vertex");
+        }
+        int floatsPerVertex = COORDS_PER_VERTEX + (mHasColor ? NUM_COLOR_COMPONENTS : 0);
+        if (vertices.length % floatsPerVertex != 0) {
+            throw new IllegalArgumentException("must be multiple of " + floatsPerVertex
+                    + " floats");
+        }
+        ByteBuffer buffer = allocate(vertices.length / floatsPerVertex);
+        for (int i = 0; i < vertices.length; i += floatsPerVertex) {
+            put(buffer, vertices, i, vertices, i + COORDS_PER_VERTEX, 0 /* layer */);
+        }
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Writes one vertex at the buffer's position and advances it by {@link #getStride()}.
+     *
+     * @param buffer       buffer to write to, in native byte order
+     * @param coords       array holding the vertex's x, y and z
+     * @param coordsOffset index of x in coords
+     * @param color        array holding the vertex's color in RGBA order, or null if this format
+     *                     has no color
+     * @param colorOffset  index of red in color
+     * @param layer        layer index, ignored if this format has no layer
+     * @throws IllegalArgumentException if the coordinates can't be represented in this format
+     */
+    public void put(ByteBuffer buffer, float[] coords, int coordsOffset, float[] color,
+                    int colorOffset, int layer) {
+        int start = buffer.position();
+        if (mCompact) {
+            if (coords[coordsOffset + 2] != 0) {
+                throw new IllegalArgumentException(mName + " can't store z");
+            }
+            buffer.putShort(encodePosition(coords[coordsOffset]));
+            buffer.putShort(encodePosition(coords[coordsOffset + 1]));
+            if (mHasColor) {
+                for (int i = 0; i < NUM_COLOR_COMPONENTS; i++) {
+                    buffer.put(encodeColor(color[colorOffset + i]));
+                }
+            }
+            if (mHasLayer) {
+                if (layer < 0 || layer > 0xff) {
+                    throw new IllegalArgumentException("layer out of range: " + layer);
+                }
+                buffer.put((byte) layer);
+            }
+        } else {
+            for (int i = 0; i < COORDS_PER_VERTEX; i++) {
+                buffer.putFloat(coords[coordsOffset + i]);
+            }
+            if (mHasColor) {
+                for (int i = 0; i < NUM_COLOR_COMPONENTS; i++) {
+                    buffer.putFloat(color[colorOffset + i]);
+                }
+            }
+            if (mHasLayer) {
+                buffer.putFloat(layer);
+            }
+        }
+        buffer.position(start + mStride);
+    }
+
+    /**
+     * Points the attributes at vertices in the buffer bound to
+     * {@link GLES20#GL_ARRAY_BUFFER}. Pass -1 for attributes the program doesn't have or this
+     * format doesn't store.
+     *
+     * @param offset offset of the first vertex in the buffer, in bytes
+     */
+    public void setAttributePointers(GlApi gl, int positionHandle, int colorHandle,
+                                     int layerHandle, int offset) {
+        gl.glVertexAttribPointer(positionHandle, mPositionSize, mPositionType, mCompact, mStride,
+                offset);
+        if (mHasColor && colorHandle >= 0) {
+            gl.glVertexAttribPointer(colorHandle, NUM_COLOR_COMPONENTS, mColorType, mCompact,
+                    mStride, offset + mColorOffset);
+        }
+        if (mHasLayer && layerHandle >= 0) {
+            gl.glVertexAttribPointer(layerHandle, 1, mLayerType, false /* normalized */, mStride,
+                    offset + mLayerOffset);
+        }
+    }
+
+    /**
+     * Points the attributes at client-side vertices. Only valid while no buffer is bound to
+     * {@link GLES20#GL_ARRAY_BUFFER}. Pass -1 for attributes the program doesn't have or this
+     * format doesn't store.
+     */
+    public void setAttributePointers(GlApi gl, int positionHandle, int colorHandle,
+                                     int layerHandle, ByteBuffer vertices) {
+        vertices.position(0);
+        gl.glVertexAttribPointer(positionHandle, mPositionSize, mPositionType, mCompact, mStride,
+                vertices);
+        if (mHasColor && colorHandle >= 0) {
+            vertices.position(mColorOffset);
+            gl.glVertexAttribPointer(colorHandle, NUM_COLOR_COMPONENTS, mColorType, mCompact,
+                    mStride, vertices);
+        }
+        if (mHasLayer && layerHandle >= 0) {
+            vertices.position(mLayerOffset);
+            gl.glVertexAttribPointer(layerHandle, 1, mLayerType, false /* normalized */, mStride,
+                    vertices);
+        }
+        vertices.position(0);
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+    private short encodePosition(float value) {
+        float normalized = value / COMPACT_POSITION_SCALE;
+        if (normalized < -1f || normalized > 1f) {
+            throw new IllegalArgumentException("coordinate out of range: " + value);
+        }
+        return (short) Math.round(normalized * Short.MAX_VALUE);
+    }
+
+    private static byte encodeColor(float value) {
+        float clamped = Math.max(0f, Math.min(1f, value));
+        return (byte) Math.round(clamped * 255);
+    }
+}
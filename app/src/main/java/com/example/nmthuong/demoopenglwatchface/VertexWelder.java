@@ -0,0 +1,146 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * Merges identical vertices of a non-indexed triangle list, turning it into a list of unique
+ * vertices and a list of {@link android.opengl.GLES20#GL_UNSIGNED_SHORT} indices into it.
+ * <p>
+ * Vertices are equal when all their components are bitwise equal, except that 0 and -0 are
+ * treated as the same value. Unique vertices are kept in the order they first appear, so the
+ * result is deterministic. Welding uses an open addressing hash table and runs in linear time.
+ */
+public final class VertexWelder {
+
+    /**
+     * Largest number of unique vertices that unsigned short indices can address.
+     */
+    public static final int MAX_VERTICES = 0x10000;
+
+    /**
+     * Number of bytes per index.
+     */
+    public static final int BYTES_PER_INDEX = 2;
+
+    private final int mComponentsPerVertex;
+    private final int mInputVertexCount;
+    private final float[] mVertices;
+    private final short[] mIndices;
+
+    /**
+     * Welds the given vertices.
+     *
+     * @param vertices            flat array of vertices, e.g. 3D coordinates of triangle
+     *                            vertices
+     * @param componentsPerVertex number of floats per vertex
+     * @throws IllegalArgumentException if there are more than {@link #MAX_VERTICES} unique
+     *                                  vertices
+     */
+    public VertexWelder(float[] vertices, int componentsPerVertex) {
+        if (componentsPerVertex <= 0 || vertices.length % componentsPerVertex != 0) {
+            throw new IllegalArgumentException("must be multiple of " + componentsPerVertex
+                    + " floats");
+        }
+        mComponentsPerVertex = componentsPerVertex;
+        mInputVertexCount = vertices.length / componentsPerVertex;
+
+        // Keep the table at most half full so probe sequences stay short.
+        int tableSize = Integer.highestOneBit(Math.max(1, mInputVertexCount) * 2) * 2;
+        int mask = tableSize - 1;
+        // Each slot holds the index of a unique vertex plus one, so 0 means empty.
+        int[] table = new int[tableSize];
+
+        float[] unique = new float[vertices.length];
+        short[] indices = new short[mInputVertexCount];
+        int uniqueCount = 0;
+
+        for (int v = 0; v < mInputVertexCount; v++) {
+            int start = v * componentsPerVertex;
+            int slot = hash(vertices, start, componentsPerVertex) & mask;
+            int index = -1;
+            while (table[slot] != 0) {
+                int candidate = table[slot] - 1;
+                if (equal(unique, candidate * componentsPerVertex, vertices, start,
+                        componentsPerVertex)) {
+                    index = candidate;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (index < 0) {
+                if (uniqueCount == MAX_VERTICES) {
+                    throw new IllegalArgumentException("more than " + MAX_VERTICES
+                            + " unique vertices");
+                }
+                index = uniqueCount++;
+                System.arraycopy(vertices, start, unique, index * componentsPerVertex,
+                        componentsPerVertex);
+                table[slot] = index + 1;
+            }
+            indices[v] = (short) index;
+        }
+
+        mVertices = new float[uniqueCount * componentsPerVertex];
+        System.arraycopy(unique, 0, mVertices, 0, mVertices.length);
+        mIndices = indices;
+    }
+
+    /**
+     * Returns the unique vertices, in the order they first appear in the input.
+     */
+    public float[] getVertices() {
+        return mVertices;
+    }
+
+    /**
+     * Returns one index into {@link #getVertices()} per input vertex. Read them as unsigned.
+     */
+    public short[] getIndices() {
+        return mIndices;
+    }
+
+    public int getInputVertexCount() {
+        return mInputVertexCount;
+    }
+
+    public int getUniqueVertexCount() {
+        return mVertices.length / mComponentsPerVertex;
+    }
+
+    /**
+     * Returns how many bytes the indexed mesh saves over the non-indexed one, counting the
+     * indices against the vertices removed. This is negative if too few vertices were shared to
+     * pay for the indices.
+     *
+     * @param vertexStride number of bytes per vertex once encoded, see
+     *                     {@link VertexFormat#getStride()}
+     */
+    public int getSavedBytes(int vertexStride) {
+        return (mInputVertexCount - getUniqueVertexCount()) * vertexStride
+                - mIndices.length * BYTES_PER_INDEX;
+    }
+
+    private static int hash(float[] vertices, int start, int count) {
+        int hash = 0;
+        for (int i = 0; i < count; i++) {
+            hash = hash * 31 + bits(vertices[start + i]);
+        }
+        // Spread the bits so nearby coordinates don't cluster in the table.
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static boolean equal(float[] a, int aStart, float[] b, int bStart, int count) {
+        for (int i = 0; i < count; i++) {
+            if (bits(a[aStart + i]) != bits(b[bStart + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int bits(float value) {
+        // Adding 0 turns -0 into 0.
+        return Float.floatToIntBits(value + 0f);
+    }
+}
@@ -0,0 +1,1285 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+import android.support.wearable.complications.ComplicationData;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.TimeZone;
+
+/**
+ * Draws the watch face: the dial, the hands and the complications, paced by a
+ * {@link FramePacer} at the tier a {@link QualityPolicy} picks.
+ * <p>
+ * Everything that doesn't need Android lives here, so the same drawing code runs in the engine
+ * and, against a fake {@link GlApi} and a simulated clock, in local unit tests. A {@link Host},
+ * i.e. the engine, owns the visibility and ambient state, the EGL surface and the message
+ * queue, and calls back in from its callbacks. Call everything on the GL thread.
+ */
+public class WatchFaceRenderer {
+
+    private static final String TAG = "WatchFaceRenderer";
+
+    /**
+     * Whether to keep the dial and hand geometry in GPU-resident vertex buffer objects instead of
+     * copying it from client memory on every draw.
+     */
+    private static final boolean USE_VERTEX_BUFFER_OBJECTS = true;
+
+    /**
+     * Whether to merge the hands and ticks into a single {@link Gles2TriangleBatch} so a frame
+     * takes one draw call (two in ambient mode) instead of five.
+     */
+    private static final boolean USE_STATIC_BATCH = true;
+
+    /**
+     * Whether to store vertices as normalized shorts and bytes instead of floats. This cuts the
+     * dial batch from 32 to 12 bytes per vertex and the triangle lists from 12 to 4.
+     */
+    private static final boolean USE_COMPACT_VERTICES = true;
+
+    /**
+     * Whether the dial batch rotates the hands on the GPU from a sine and cosine per hand,
+     * instead of the CPU multiplying a model matrix into the view projection matrix for each
+     * hand. Only used with {@link #USE_STATIC_BATCH}.
+     */
+    private static final boolean USE_AFFINE_HAND_TRANSFORMS = true;
+
+    /**
+     * Whether to draw the next ambient frame right after showing the current one, so the next
+     * time tick only copies it to the screen. See {@link AmbientFrameCache}.
+     */
+    private static final boolean USE_AMBIENT_PRERENDER = true;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    /**
+     * Whether interactive frames only redraw the parts of the screen where the hands moved,
+     * using the scissor test on a swap-preserved surface. See {@link DamageTracker}. Falls back
+     * to full frames if the surface can't preserve its content across swaps.
+     * <p>
+     * Preserving isn't free: a tiled GPU has to load the previous frame into every tile before
+     * drawing, which reads as many pixels as a full frame writes. It pays off because the dial
+     * and complications are drawn again in every tile a full frame covers, while the partial
+     * frame only draws inside the damage. Ambient frames are always drawn whole or copied from a
+     * prerendered frame, so the surface stops preserving its content in ambient mode.
+     */
+    private static final boolean USE_PARTIAL_UPDATES = true;
+
+    /**
+     * Most scissored passes per partial frame. Every pass issues the dial's draw calls again.
+     */
+    private static final int MAX_DAMAGE_RECTS = 2;
+
+    /**
+     * Pixels added around every hand's bounds to cover rasterization and antialiasing.
+     */
+    private static final int DAMAGE_PADDING_PIXELS = 2;
+
+    /**
+     * Fraction of the screen above which a partial frame is drawn whole instead.
+     */
+    private static final float DAMAGE_FULL_FRAME_FRACTION = 0.5f;
+
+    /**
+     * Interactive frames between logs of the average damaged fraction.
+     */
+    private static final int DAMAGE_LOG_INTERVAL_FRAMES = 600;
+
+    /**
+     * Whether to skip scheduled frames that would look the same as the one on screen, e.g. when
+     * the second hand hasn't moved by a pixel yet. See {@link FrameFingerprint}.
+     */
+    private static final boolean USE_FRAME_SKIPPING = true;
+
+    /**
+     * Names of the events this renderer traces.
+     */
+    private static final int TRACE_ON_DRAW = EventTrace.getInstance().registerName("onDraw");
+    private static final int TRACE_UPLOAD_COMPLICATIONS =
+            EventTrace.getInstance().registerName("uploadComplications");
+    private static final int TRACE_DRAW_FRAME = EventTrace.getInstance().registerName("drawFrame");
+    private static final int TRACE_DRAW_AMBIENT_FRAME =
+            EventTrace.getInstance().registerName("drawAmbientFrame");
+    private static final int TRACE_DRAW_COMPLICATIONS =
+            EventTrace.getInstance().registerName("drawComplications");
+    private static final int TRACE_FRAME_SWAPPED =
+            EventTrace.getInstance().registerName("frameSwapped");
+    private static final int TRACE_DRAW_CALLS = EventTrace.getInstance().registerName("drawCalls");
+    private static final int TRACE_FRAGMENTS = EventTrace.getInstance().registerName("fragments");
+    private static final int TRACE_GL_CALLS_ISSUED =
+            EventTrace.getInstance().registerName("glCallsIssued");
+    private static final int TRACE_GL_CALLS_ELIDED =
+            EventTrace.getInstance().registerName("glCallsElided");
+    private static final int TRACE_COMPLICATION_UPDATE =
+            EventTrace.getInstance().registerName("complicationUpdate");
+    private static final int TRACE_FLUSH_COMPLICATION_UPDATES =
+            EventTrace.getInstance().registerName("flushComplicationUpdates");
+    private static final int TRACE_GL_CONTEXT_CREATED =
+            EventTrace.getInstance().registerName("onGlContextCreated");
+    private static final int TRACE_GL_SURFACE_CREATED =
+            EventTrace.getInstance().registerName("onGlSurfaceCreated");
+
+    /**
+     * Layers of {@link #mDialBatch}, in drawing order, see {@link DialGeometry}.
+     */
+    private static final int LAYER_HOUR_HAND = DialGeometry.LAYER_HOUR_HAND;
+    private static final int LAYER_MINUTE_HAND = DialGeometry.LAYER_MINUTE_HAND;
+    private static final int LAYER_SECOND_HAND = DialGeometry.LAYER_SECOND_HAND;
+    private static final int LAYER_MAJOR_TICKS = DialGeometry.LAYER_MAJOR_TICKS;
+    private static final int LAYER_MINOR_TICKS = DialGeometry.LAYER_MINOR_TICKS;
+    private static final int NUM_LAYERS = DialGeometry.NUM_LAYERS;
+
+    /**
+     * What the renderer draws for, i.e. the engine. Besides the {@link FramePacer} callbacks it
+     * delivers delayed work back on the GL thread.
+     */
+    public interface Host extends FramePacer.Host {
+        /**
+         * Asks for {@link WatchFaceRenderer#prerenderAmbientFrame()} to be called once the
+         * current frame is on screen, replacing any earlier request.
+         */
+        void requestAmbientPrerender();
+
+        /**
+         * Asks for {@link WatchFaceRenderer#flushComplicationUpdates()} to be called after a
+         * delay, unless it already will be.
+         */
+        void requestComplicationFlush(long delayMillis);
+
+        /**
+         * Asks for {@link WatchFaceRenderer#onFrameSwapped()} to be called right after the frame
+         * being drawn is swapped to the screen.
+         */
+        void requestFrameSwappedCallback();
+
+        /**
+         * Asks EGL to keep, or to stop keeping, the window surface's content across swaps.
+         * Partial frames rely on it. Called with the surface current.
+         *
+         * @return whether the content is preserved from the next swap on
+         */
+        boolean setPreserveBufferOnSwap(boolean preserve);
+    }
+
+    /**
+     * GL for all rendering by this renderer. Redundant state changes are dropped before they
+     * reach the driver.
+     */
+    private final StateCachingGlApi mGl;
+
+    private final FrameScheduler.TimeSource mTimeSource;
+    private final Host mHost;
+    private final FrameMetrics mFrameMetrics;
+    private final EventTrace mTrace = EventTrace.getInstance();
+
+    /**
+     * The EGL context the GL objects below were created in.
+     */
+    private Object mEglContext;
+
+    /**
+     * Program for {@link #mDialBatch}, or null if {@link #USE_STATIC_BATCH} is not set.
+     */
+    private Gles2TriangleBatch.Program mBatchProgram;
+
+    /**
+     * Program for the separate triangle lists, or null if {@link #USE_STATIC_BATCH} is set.
+     */
+    private Gles2ColoredTriangleList.Program mTriangleProgram;
+
+    /**
+     * Projection transformation matrix. Converts from 3D to 2D.
+     */
+    private final float[] mProjectionMatrix = new float[16];
+
+    /**
+     * View transformation matrices to use in interactive mode. Converts from world to camera-
+     * relative coordinates. One matrix per camera position.
+     */
+    private final float[] mViewMatrices = new float[16];
+
+    /**
+     * The view transformation matrix to use in ambient mode
+     */
+    private final float[] mAmbientViewMatrix = new float[16];
+
+    /**
+     * Products of {@link #mViewMatrices} and {@link #mProjectionMatrix}. One matrix per camera
+     * position.
+     */
+    private final float[] mVpMatrices = new float[16];
+
+    /**
+     * The product of {@link #mAmbientViewMatrix} and {@link #mProjectionMatrix}
+     */
+    private final float[] mAmbientVpMatrix = new float[16];
+
+    /**
+     * Product of a hand's rotation, {@link #mViewMatrices}, and {@link #mProjectionMatrix}.
+     */
+    private final float[] mMvpMatrix = new float[16];
+
+    /**
+     * Triangles for the 4 major ticks. These are grouped together to speed up rendering.
+     */
+    private Gles2ColoredTriangleList mMajorTickTriangles;
+
+    /**
+     * Triangles for the 8 minor ticks. These are grouped together to speed up rendering.
+     */
+    private Gles2ColoredTriangleList mMinorTickTriangles;
+
+    /**
+     * Triangle for the second hand.
+     */
+    private Gles2ColoredTriangleList mSecondHandTriangle;
+
+    /**
+     * Triangle for the minute hand.
+     */
+    private Gles2ColoredTriangleList mMinuteHandTriangle;
+
+    /**
+     * Triangle for the hour hand.
+     */
+    private Gles2ColoredTriangleList mHourHandTriangle;
+
+    /**
+     * The hands and ticks merged into one vertex buffer, used instead of the separate
+     * triangle lists when {@link #USE_STATIC_BATCH} is set.
+     */
+    private Gles2TriangleBatch mDialBatch;
+
+    /**
+     * MVP matrix of each layer of {@link #mDialBatch}, packed one after the other.
+     */
+    private final float[] mLayerMvpMatrices = new float[NUM_LAYERS * 16];
+
+    /**
+     * 2D transform of each layer of {@link #mDialBatch}, used instead of
+     * {@link #mLayerMvpMatrices} when {@link #USE_AFFINE_HAND_TRANSFORMS} is set.
+     */
+    private final float[] mLayerTransforms =
+            new float[NUM_LAYERS * Gles2TriangleBatch.FLOATS_PER_AFFINE_TRANSFORM];
+
+    /**
+     * Which layers of {@link #mDialBatch} to draw in the current frame.
+     */
+    private final boolean[] mLayerVisible = new boolean[NUM_LAYERS];
+
+    /**
+     * Area each layer covers before it is transformed, to estimate fragments shaded.
+     */
+    private final float[] mLayerAreas = new float[NUM_LAYERS];
+
+    /**
+     * Pixels per world unit at the dial.
+     */
+    private float mPixelsPerUnit;
+
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+
+    /**
+     * View projection matrix of the current frame.
+     */
+    private float[] mFrameVpMatrix;
+
+    /**
+     * Angles of the hands of the current frame, in degrees.
+     */
+    private float mHourDegrees;
+    private float mMinDegrees;
+    private float mSecDegrees;
+
+    /**
+     * Tracks the screen bounds of the hands, one item per layer of {@link #mDialBatch}.
+     */
+    private final DamageTracker mDamageTracker = new DamageTracker(NUM_LAYERS,
+            MAX_DAMAGE_RECTS, DAMAGE_PADDING_PIXELS, DAMAGE_FULL_FRAME_FRACTION);
+
+    /**
+     * Whether the window surface keeps its content across swaps, so partial frames can be
+     * drawn.
+     */
+    private boolean mBufferPreserved;
+
+    /**
+     * Whether the window surface failed to keep its content when asked to, so it isn't asked
+     * again.
+     */
+    private boolean mBufferPreserveFailed;
+
+    /**
+     * Length and half base width of each hand's triangle, indexed by layer, for
+     * {@link #mDamageTracker}.
+     */
+    private final float[] mHandExtents = new float[NUM_LAYERS * 2];
+
+    /**
+     * Maps a point on the interactive dial to window pixels: the window offset of one unit
+     * along X, then along Y, then the window position of the center. The dial faces the
+     * camera, so this is the same for every point on it.
+     */
+    private final float[] mDialToWindow = new float[6];
+
+    /**
+     * Scratch space for a scissor rectangle.
+     */
+    private final int[] mScissorRect = new int[4];
+
+    private int mInteractiveFrames;
+
+    /**
+     * Draw calls issued in the current frame.
+     */
+    private int mFrameDrawCalls;
+
+    /**
+     * Draws the complication textures, and shows the frames of {@link #mAmbientFrameCache}.
+     */
+    private Gles2TextureCopier mTextureCopier;
+
+    /**
+     * Draws the complications into textures in the background.
+     */
+    private ComplicationRasterizer mComplicationRasterizer;
+
+    /**
+     * Incremented whenever new complication content is uploaded, so cached frames showing the
+     * old content are dropped.
+     */
+    private long mComplicationGeneration;
+
+    /**
+     * Holds the next ambient frame, or null if {@link #USE_AMBIENT_PRERENDER} is not set.
+     */
+    private AmbientFrameCache mAmbientFrameCache;
+
+    /**
+     * Number of ambient frames drawn and the CPU time they took, whether they were
+     * prerendered or not.
+     */
+    private int mAmbientFrames;
+    private long mAmbientFrameNanos;
+
+    /**
+     * Computes the hand angles in the current time zone.
+     */
+    private final DialClock mDialClock = new DialClock(TimeZone.getDefault());
+
+    /**
+     * Decides when the next interactive frame is due.
+     */
+    private final FrameScheduler mFrameScheduler;
+
+    /**
+     * Asks for the frames {@link #mFrameScheduler} picks, skipping those that would repeat the
+     * one on screen.
+     */
+    private final FramePacer mFramePacer;
+
+    /**
+     * Picks the quality tier from frame times and the battery.
+     */
+    private final QualityPolicy mQualityPolicy;
+
+    /**
+     * Tier {@link #mFrameScheduler} was last set up for.
+     */
+    private QualityTier mQualityTier;
+
+    /**
+     * When a complication update last caused a redraw.
+     */
+    private long mLastComplicationRedrawMillis;
+
+    /**
+     * Drops complication updates that change nothing and merges bursts, see
+     * {@link #onComplicationDataUpdate}.
+     */
+    private ComplicationUpdateCoalescer mComplicationUpdateCoalescer;
+
+    /**
+     * Last known complication data on disk, or null if it isn't kept.
+     */
+    private ComplicationSnapshotStore mComplicationSnapshotStore;
+
+    /**
+     * Hands the complication updates that survive coalescing to the rasterizer.
+     */
+    private final ComplicationUpdateCoalescer.Applier mComplicationDataApplier =
+            new ComplicationUpdateCoalescer.Applier() {
+                @Override
+                public void applyComplicationData(int complicationId, ComplicationData data) {
+                    mFramePacer.onComplicationDataChanged();
+                    if (mComplicationSnapshotStore != null) {
+                        mComplicationSnapshotStore.put(complicationId, data);
+                    }
+                    // The complication is drawn into the atlas in the background. A frame is
+                    // asked for once that is done.
+                    mComplicationRasterizer.setComplicationData(complicationId, data);
+                }
+            };
+
+    /**
+     * @param gl            GL to draw with
+     * @param timeSource    clock the frames are drawn and paced by
+     * @param qualityPolicy picks the tier to draw at
+     * @param frameMetrics  records the timing of every frame
+     * @param host          the engine
+     */
+    public WatchFaceRenderer(GlApi gl, FrameScheduler.TimeSource timeSource,
+                             QualityPolicy qualityPolicy, FrameMetrics frameMetrics, Host host) {
+        mGl = new StateCachingGlApi(gl);
+        mTimeSource = timeSource;
+        mQualityPolicy = qualityPolicy;
+        mFrameMetrics = frameMetrics;
+        mHost = host;
+        mFrameScheduler = new FrameScheduler(timeSource);
+        mFramePacer = new FramePacer(timeSource, mFrameScheduler, host, USE_FRAME_SKIPPING);
+        applyQualityTier(mQualityPolicy.getTier());
+    }
+
+    /**
+     * Returns the GL this renderer issues its calls through, for objects that draw with it.
+     */
+    public StateCachingGlApi getGl() {
+        return mGl;
+    }
+
+    public FramePacer getFramePacer() {
+        return mFramePacer;
+    }
+
+    /**
+     * Returns the prerendered ambient frames, or null if they aren't used.
+     */
+    public AmbientFrameCache getAmbientFrameCache() {
+        return mAmbientFrameCache;
+    }
+
+    /**
+     * Sets what draws and filters the complications. The renderer owns them from now on and
+     * releases them in {@link #release()}.
+     *
+     * @param rasterizer    draws the complications, with {@link #getGl()}
+     * @param coalescer     filters the updates
+     * @param snapshotStore keeps the last known data on disk, or null
+     */
+    public void setComplications(ComplicationRasterizer rasterizer,
+                                 ComplicationUpdateCoalescer coalescer,
+                                 ComplicationSnapshotStore snapshotStore) {
+        mComplicationRasterizer = rasterizer;
+        mComplicationUpdateCoalescer = coalescer;
+        mComplicationSnapshotStore = snapshotStore;
+    }
+
+    /**
+     * Shows complication data restored from a snapshot right away.
+     */
+    public void restoreComplicationData(SparseArray<ComplicationData> snapshot) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            mComplicationUpdateCoalescer.offer(snapshot.keyAt(i), snapshot.valueAt(i));
+        }
+        mComplicationUpdateCoalescer.flush(mComplicationDataApplier);
+    }
+
+    /**
+     * Call this for every complication data update. Updates arriving within one frame of the
+     * first are applied together.
+     */
+    public void onComplicationDataUpdate(int complicationId, ComplicationData data) {
+        mTrace.instant(TRACE_COMPLICATION_UPDATE);
+        if (mComplicationUpdateCoalescer.offer(complicationId, data)) {
+            mHost.requestComplicationFlush(1000 / mQualityTier.getFramesPerSecond());
+        }
+    }
+
+    /**
+     * Applies the complication updates held since the first one of the current burst.
+     */
+    public void flushComplicationUpdates() {
+        mTrace.begin(TRACE_FLUSH_COMPLICATION_UPDATES);
+        mComplicationUpdateCoalescer.flush(mComplicationDataApplier);
+        mTrace.end(TRACE_FLUSH_COMPLICATION_UPDATES);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "flushComplicationUpdates: received "
+                    + mComplicationUpdateCoalescer.getReceived() + ", deduplicated "
+                    + mComplicationUpdateCoalescer.getDeduplicated() + ", merged "
+                    + mComplicationUpdateCoalescer.getMerged() + ", applied "
+                    + mComplicationUpdateCoalescer.getApplied());
+        }
+    }
+
+    /**
+     * Shows complications the rasterizer has finished drawing. Complications finishing faster
+     * than the tier allows are shown with the next frame.
+     */
+    public void onComplicationRasterized() {
+        final long now = mTimeSource.currentTimeMillis();
+        if (now - mLastComplicationRedrawMillis
+                >= mQualityTier.getComplicationRefreshMillis()) {
+            mLastComplicationRedrawMillis = now;
+            mHost.invalidate();
+        }
+    }
+
+    /**
+     * Creates the GL objects in a new context. If it replaces a lost one, the programs of the
+     * old context are forgotten.
+     *
+     * @param eglContext the EGL context now current
+     */
+    public void onGlContextCreated(Object eglContext) {
+        mTrace.begin(TRACE_GL_CONTEXT_CREATED);
+
+        // The new context starts out with default state.
+        mGl.reset();
+        if (mEglContext != null && !mEglContext.equals(eglContext)) {
+            ShaderRegistry.getInstance().forgetContext(mEglContext);
+        }
+        mEglContext = eglContext;
+        mTextureCopier = new Gles2TextureCopier(mGl, mEglContext);
+        mComplicationRasterizer.onGlContextCreated(mEglContext);
+
+        final float[][] layerCoords = DialGeometry.createLayerCoords();
+        final float[][] layerColors = DialGeometry.getLayerColors();
+        for (int layer = 0; layer < NUM_LAYERS; layer++) {
+            mLayerAreas[layer] = Vec.triangleArea(layerCoords[layer],
+                    VertexFormat.COORDS_PER_VERTEX);
+        }
+        setHandExtent(LAYER_HOUR_HAND, layerCoords[LAYER_HOUR_HAND]);
+        setHandExtent(LAYER_MINUTE_HAND, layerCoords[LAYER_MINUTE_HAND]);
+        setHandExtent(LAYER_SECOND_HAND, layerCoords[LAYER_SECOND_HAND]);
+
+        if (USE_STATIC_BATCH) {
+            // Create one batch holding every triangle on the dial.
+            mBatchProgram = new Gles2TriangleBatch.Program(mGl, mEglContext,
+                    USE_AFFINE_HAND_TRANSFORMS);
+            mBatchProgram.use();
+            mDialBatch = new Gles2TriangleBatch(mBatchProgram, layerCoords, layerColors,
+                    USE_COMPACT_VERTICES ? VertexFormat.SHORT_XY_UBYTE_RGBA_LAYER
+                            : VertexFormat.FLOAT_XYZ_RGBA_LAYER);
+
+            // Upload the geometry to the GPU. This runs again whenever the context is
+            // recreated.
+            mDialBatch.onGlContextCreated();
+        } else {
+            // Create program for drawing triangles.
+            mTriangleProgram = new Gles2ColoredTriangleList.Program(mGl, mEglContext);
+            mTriangleProgram.use();
+            Gles2ColoredTriangleList.Program triangleProgram = mTriangleProgram;
+
+            // Create triangles for the ticks and the hands.
+            mMajorTickTriangles = createTriangleList(triangleProgram, layerCoords,
+                    layerColors, LAYER_MAJOR_TICKS);
+            mMinorTickTriangles = createTriangleList(triangleProgram, layerCoords,
+                    layerColors, LAYER_MINOR_TICKS);
+            mSecondHandTriangle = createTriangleList(triangleProgram, layerCoords,
+                    layerColors, LAYER_SECOND_HAND);
+            mMinuteHandTriangle = createTriangleList(triangleProgram, layerCoords,
+                    layerColors, LAYER_MINUTE_HAND);
+            mHourHandTriangle = createTriangleList(triangleProgram, layerCoords,
+                    layerColors, LAYER_HOUR_HAND);
+
+            // Upload the geometry to the GPU. This runs again whenever the context is
+            // recreated.
+            mMajorTickTriangles.onGlContextCreated();
+            mMinorTickTriangles.onGlContextCreated();
+            mSecondHandTriangle.onGlContextCreated();
+            mMinuteHandTriangle.onGlContextCreated();
+            mHourHandTriangle.onGlContextCreated();
+        }
+
+        if (USE_AMBIENT_PRERENDER) {
+            mAmbientFrameCache = new AmbientFrameCache(mGl, mTextureCopier,
+                    new AmbientFrameCache.FrameRenderer() {
+                        @Override
+                        public void drawFrame(long timeMillis) {
+                            WatchFaceRenderer.this.drawFrame(timeMillis);
+                        }
+                    });
+        }
+
+        // The ticks never move.
+        Gles2TriangleBatch.setAffineTransform(mLayerTransforms, LAYER_MAJOR_TICKS,
+                1, 0, 0, 0);
+        Gles2TriangleBatch.setAffineTransform(mLayerTransforms, LAYER_MINOR_TICKS,
+                1, 0, 0, 0);
+
+        Mat4.setLookAt(mViewMatrices, 0, 0, 0, -3,
+                0, 0, 0,
+                0, 1, 0);
+        Mat4.setLookAt(mAmbientViewMatrix, 0, 0, 0, -3,
+                0, 0, 0,
+                0, 1, 0);
+
+        mTrace.end(TRACE_GL_CONTEXT_CREATED);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "onGlContextCreated: " + ShaderRegistry.getInstance());
+            Log.d(TAG, "onGlContextCreated: " + getVertexBytes() + " bytes of vertices");
+        }
+    }
+
+    /**
+     * Sets up the matrices and offscreen targets for a new surface size. Call this with the
+     * surface current.
+     */
+    public void onSurfaceChanged(int width, int height) {
+        mTrace.begin(TRACE_GL_SURFACE_CREATED);
+
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+
+        // Update the projection matrix based on the new aspect ratio.
+        final float aspectRatio = (float) width / height;
+        Mat4.setFrustum(mProjectionMatrix, 0, -aspectRatio, aspectRatio, -1, 1, 2, 7);
+
+        Mat4.multiply(mVpMatrices, 0, mProjectionMatrix, 0, mViewMatrices, 0);
+        Mat4.multiply(mAmbientVpMatrix, 0, mProjectionMatrix, 0, mAmbientViewMatrix, 0);
+
+        // Measure how long one world unit at the dial is on screen.
+        final float[] points = new float[12];
+        Vec.transformPoint(points, 0, mVpMatrices, 0, 0, 0, 0);
+        Vec.transformPoint(points, 4, mVpMatrices, 0, 1, 0, 0);
+        Vec.transformPoint(points, 8, mVpMatrices, 0, 0, 1, 0);
+        mPixelsPerUnit = Math.abs(points[4] / points[7] - points[0] / points[3]) * width / 2;
+        final float centerX = (points[0] / points[3] + 1) * 0.5f * width;
+        final float centerY = (points[1] / points[3] + 1) * 0.5f * height;
+        mDialToWindow[0] = (points[4] / points[7] + 1) * 0.5f * width - centerX;
+        mDialToWindow[1] = (points[5] / points[7] + 1) * 0.5f * height - centerY;
+        mDialToWindow[2] = (points[8] / points[11] + 1) * 0.5f * width - centerX;
+        mDialToWindow[3] = (points[9] / points[11] + 1) * 0.5f * height - centerY;
+        mDialToWindow[4] = centerX;
+        mDialToWindow[5] = centerY;
+
+        mDamageTracker.setSurfaceSize(width, height);
+        mFramePacer.invalidate();
+        mFramePacer.setSweepResolutionMillis((long) (MILLIS_PER_MINUTE
+                / (2 * Math.PI * DialGeometry.SECOND_HAND_LENGTH * mPixelsPerUnit)));
+        // A new surface may be able to preserve its content.
+        mBufferPreserveFailed = false;
+        updateSwapBehavior();
+
+        if (mAmbientFrameCache != null) {
+            mAmbientFrameCache.onSurfaceChanged(width, height);
+        }
+        mTrace.end(TRACE_GL_SURFACE_CREATED);
+    }
+
+    /**
+     * Gives back every GL object and stops the complication threads. Only call this while the
+     * GL context that created them is current.
+     */
+    public void release() {
+        if (mAmbientFrameCache != null) {
+            mAmbientFrameCache.release();
+            mAmbientFrameCache = null;
+        }
+        if (mTextureCopier != null) {
+            mTextureCopier.release();
+            mTextureCopier = null;
+        }
+        mComplicationRasterizer.releaseGl();
+        mComplicationRasterizer.quit();
+        if (mComplicationSnapshotStore != null) {
+            mComplicationSnapshotStore.close();
+        }
+        if (mDialBatch != null) {
+            mDialBatch.release();
+        }
+        if (mMajorTickTriangles != null) {
+            // The triangle lists are created together.
+            mMajorTickTriangles.release();
+            mMinorTickTriangles.release();
+            mSecondHandTriangle.release();
+            mMinuteHandTriangle.release();
+            mHourHandTriangle.release();
+        }
+        if (mBatchProgram != null) {
+            mBatchProgram.release();
+            mBatchProgram = null;
+        }
+        if (mTriangleProgram != null) {
+            mTriangleProgram.release();
+            mTriangleProgram = null;
+        }
+    }
+
+    /**
+     * Returns the size of all the dial geometry in bytes.
+     */
+    private int getVertexBytes() {
+        if (USE_STATIC_BATCH) {
+            return mDialBatch.getVertexBytes();
+        }
+        return mMajorTickTriangles.getVertexBytes()
+                + mMinorTickTriangles.getVertexBytes()
+                + mSecondHandTriangle.getVertexBytes()
+                + mMinuteHandTriangle.getVertexBytes()
+                + mHourHandTriangle.getVertexBytes();
+    }
+
+    /**
+     * Creates a triangle list for one layer of the dial.
+     *
+     * @param program     program for drawing triangles
+     * @param layerCoords triangles of every layer
+     * @param layerColors color of every layer
+     */
+    private Gles2ColoredTriangleList createTriangleList(
+            Gles2ColoredTriangleList.Program program, float[][] layerCoords,
+            float[][] layerColors, int layer) {
+        return new Gles2ColoredTriangleList(program, layerCoords[layer], layerColors[layer],
+                USE_VERTEX_BUFFER_OBJECTS, getTriangleListFormat());
+    }
+
+    /**
+     * Returns the vertex format for the separate triangle lists.
+     */
+    private VertexFormat getTriangleListFormat() {
+        return USE_COMPACT_VERTICES ? VertexFormat.SHORT_XY : VertexFormat.FLOAT_XYZ;
+    }
+
+    /**
+     * Call this after the host entered or left ambient mode.
+     */
+    public void onAmbientModeChanged(boolean inAmbientMode) {
+        mDamageTracker.invalidate();
+        mComplicationRasterizer.setInAmbientMode(inAmbientMode);
+        mHost.invalidate();
+    }
+
+    /**
+     * Call this after the host became visible or invisible.
+     */
+    public void onVisibilityChanged(boolean visible) {
+        if (visible) {
+            mFramePacer.invalidate();
+            mHost.invalidate();
+        } else {
+            mHost.cancelFrameCheck();
+            mDamageTracker.invalidate();
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "onVisibilityChanged: " + mFramePacer);
+            }
+        }
+    }
+
+    /**
+     * Sets the time zone the hands show.
+     *
+     * @param invalidate whether frames drawn for the old zone must be drawn again, i.e. the
+     *                   zone may have changed
+     */
+    public void setTimeZone(TimeZone timeZone, boolean invalidate) {
+        mDialClock.setTimeZone(timeZone);
+        if (invalidate) {
+            mFramePacer.invalidate();
+            if (mAmbientFrameCache != null) {
+                mAmbientFrameCache.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Reports the battery state to the quality policy.
+     *
+     * @param levelPercent battery level in the range [0, 100]
+     * @param charging     whether the device is charging or full on a charger
+     */
+    public void onBatteryChanged(int levelPercent, boolean charging) {
+        mQualityPolicy.onBatteryChanged(mTimeSource.currentTimeMillis(), levelPercent,
+                charging);
+        applyQualityTier(mQualityPolicy.getTier());
+    }
+
+    /**
+     * Sets up frame scheduling for a quality tier, if it isn't already.
+     */
+    private void applyQualityTier(QualityTier tier) {
+        if (tier == mQualityTier) {
+            return;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "applyQualityTier: " + mQualityTier + " -> " + tier + ", "
+                    + mQualityPolicy);
+        }
+        final boolean initial = mQualityTier == null;
+        mQualityTier = tier;
+        mFramePacer.setQualityTier(tier);
+        if (tier.isSmoothSweep()) {
+            mFrameScheduler.setFixedRate(tier.getFramesPerSecond());
+        } else {
+            mFrameScheduler.setOncePerSecond();
+        }
+        // Pick up the new rate now rather than after the pending frame.
+        if (!initial && mHost.isVisible() && !mHost.isInAmbientMode()) {
+            mHost.invalidate();
+        }
+    }
+
+    /**
+     * Call this from the host's {@code onTimeTick()}, once a minute in ambient mode.
+     */
+    public void onTimeTick() {
+        mFramePacer.invalidateIfChanged();
+    }
+
+    /**
+     * Call this when a frame check asked for with {@link Host#requestFrameCheck} is due.
+     */
+    public void onFrameCheck() {
+        mFramePacer.invalidateIfChanged();
+    }
+
+    /**
+     * Draws a frame into the default framebuffer. The host swaps the buffers afterwards.
+     */
+    public void onDraw() {
+        mTrace.begin(TRACE_ON_DRAW);
+        final long frameStartNanos = System.nanoTime();
+        final boolean ambient = mHost.isInAmbientMode();
+        mFrameMetrics.beginFrame(ambient
+                ? FrameMetrics.MODE_AMBIENT : FrameMetrics.MODE_INTERACTIVE);
+        mGl.beginFrame();
+        mFrameDrawCalls = 0;
+
+        if (shouldPreserveBuffer() != mBufferPreserved) {
+            updateSwapBehavior();
+        }
+
+        final long now = mTimeSource.currentTimeMillis();
+        setFrameTime(now);
+        mFrameMetrics.mark(FrameMetrics.PHASE_CLOCK);
+
+        final boolean useAmbientFrameCache = ambient && mAmbientFrameCache != null;
+        boolean partial = setFrameMatrices(!ambient /* trackDamage */);
+        mFrameMetrics.mark(FrameMetrics.PHASE_MATRICES);
+
+        mTrace.begin(TRACE_UPLOAD_COMPLICATIONS);
+        final int uploaded = mComplicationRasterizer.uploadChanged();
+        mTrace.end(TRACE_UPLOAD_COMPLICATIONS);
+        if (uploaded > 0) {
+            // The rest of the screen and frames drawn ahead of time show the old complications.
+            mComplicationGeneration++;
+            partial = false;
+            if (mAmbientFrameCache != null) {
+                mAmbientFrameCache.invalidate();
+            }
+        }
+        final long fragments;
+        if (useAmbientFrameCache) {
+            mTrace.begin(TRACE_DRAW_AMBIENT_FRAME);
+            fragments = drawAmbientFrame(now);
+            mTrace.end(TRACE_DRAW_AMBIENT_FRAME);
+        } else {
+            mTrace.begin(TRACE_DRAW_FRAME);
+            fragments = drawPreparedFrame(partial);
+            mTrace.end(TRACE_DRAW_FRAME);
+        }
+        if (ambient) {
+            onAmbientFrameDrawn(System.nanoTime() - frameStartNanos);
+        }
+        mFramePacer.onFrameDrawn(now);
+        mFrameMetrics.mark(FrameMetrics.PHASE_DRAW);
+        // The buffers are swapped when this returns. The rest of this frame's time is charged
+        // to the swap.
+        mHost.requestFrameSwappedCallback();
+
+        mTrace.counter(TRACE_DRAW_CALLS, mFrameDrawCalls);
+        mTrace.counter(TRACE_FRAGMENTS, fragments);
+        mTrace.counter(TRACE_GL_CALLS_ISSUED, mGl.getFrameIssuedCalls());
+        mTrace.counter(TRACE_GL_CALLS_ELIDED, mGl.getFrameElidedCalls());
+
+        if (!mHost.isInAmbientMode()) {
+            mQualityPolicy.onFrameDrawn(now, System.nanoTime() - frameStartNanos);
+            applyQualityTier(mQualityPolicy.getTier());
+        }
+        mFramePacer.scheduleNextFrame();
+        mTrace.end(TRACE_ON_DRAW);
+    }
+
+    /**
+     * Call this right after the frame drawn by {@link #onDraw()} was swapped to the screen.
+     */
+    public void onFrameSwapped() {
+        mFrameMetrics.endFrame();
+        mTrace.instant(TRACE_FRAME_SWAPPED);
+    }
+
+    /**
+     * Returns whether the window surface should keep its content across swaps, see
+     * {@link #USE_PARTIAL_UPDATES}.
+     */
+    private boolean shouldPreserveBuffer() {
+        return USE_PARTIAL_UPDATES && !mHost.isInAmbientMode() && !mBufferPreserveFailed;
+    }
+
+    /**
+     * Makes the window surface keep its content across swaps only while partial frames can be
+     * drawn. Call this with the surface current.
+     */
+    private void updateSwapBehavior() {
+        final boolean preserve = shouldPreserveBuffer();
+        mBufferPreserved = mHost.setPreserveBufferOnSwap(preserve);
+        mBufferPreserveFailed = preserve && !mBufferPreserved;
+        // The buffer drawn next wasn't preserved by the last swap.
+        mDamageTracker.invalidate();
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "updateSwapBehavior: buffer preserved " + mBufferPreserved);
+        }
+    }
+
+    /**
+     * Draws the frame for the given time into the bound framebuffer in full, e.g. an ambient
+     * frame drawn ahead of time.
+     *
+     * @return an estimate of the fragments shaded
+     */
+    private long drawFrame(long timeMillis) {
+        setFrameTime(timeMillis);
+        return drawPreparedFrame(setFrameMatrices(false /* trackDamage */));
+    }
+
+    /**
+     * Computes the angles of the three hands in degrees for a frame. The minute and hour hands
+     * move continuously. The second hand sweeps between whole seconds only if frames are drawn
+     * more often than once a second, otherwise it ticks.
+     */
+    private void setFrameTime(long timeMillis) {
+        mDialClock.setTime(timeMillis, mFrameScheduler.isContinuous());
+        mSecDegrees = mDialClock.getSecondDegrees();
+        mMinDegrees = mDialClock.getMinuteDegrees();
+        mHourDegrees = mDialClock.getHourDegrees();
+    }
+
+    /**
+     * Computes the transforms of the frame whose hand angles {@link #setFrameTime} set.
+     *
+     * @param trackDamage whether to work out which parts of the screen changed, so the frame
+     *                    can be drawn partially
+     * @return whether the frame can be drawn partially
+     */
+    private boolean setFrameMatrices(boolean trackDamage) {
+        // Select the appropriate view projection matrix. The view projection matrix used is
+        // overhead in ambient. In interactive mode, it's tilted depending on the current time.
+        final float[] vpMatrix = mHost.isInAmbientMode() ? mAmbientVpMatrix : mVpMatrices;
+        mFrameVpMatrix = vpMatrix;
+        if (USE_STATIC_BATCH) {
+            setHandTransforms(vpMatrix, mHourDegrees, mMinDegrees, mSecDegrees);
+        }
+        return trackDamage && trackDamage(mHourDegrees, mMinDegrees, mSecDegrees);
+    }
+
+    /**
+     * Draws the frame prepared by {@link #setFrameTime} and {@link #setFrameMatrices} into the
+     * bound framebuffer.
+     *
+     * @param partial whether to only draw the damaged rectangles
+     * @return an estimate of the fragments shaded
+     */
+    private long drawPreparedFrame(boolean partial) {
+        // Don't draw the second hand in ambient mode.
+        final boolean drawSecondHand = !mHost.isInAmbientMode();
+        if (!partial) {
+            return drawDial(drawSecondHand);
+        }
+
+        // Draw everything again, but only inside the damaged rectangles. The rest of the
+        // screen still shows the previous frame.
+        long fragments = 0;
+        mGl.glEnable(GLES20.GL_SCISSOR_TEST);
+        for (int i = 0; i < mDamageTracker.getRectCount(); i++) {
+            mDamageTracker.getRect(i, mScissorRect);
+            mGl.glScissor(mScissorRect[0], mScissorRect[1], mScissorRect[2],
+                    mScissorRect[3]);
+            fragments += Math.min((long) mScissorRect[2] * mScissorRect[3],
+                    drawDial(drawSecondHand));
+        }
+        mGl.glDisable(GLES20.GL_SCISSOR_TEST);
+        return fragments;
+    }
+
+    /**
+     * Clears the bound framebuffer and draws the complications, hands and ticks with the
+     * transforms from {@link #setFrameMatrices}.
+     *
+     * @return an estimate of the fragments shaded
+     */
+    private long drawDial(boolean drawSecondHand) {
+        clearBackground();
+        final long complicationFragments = drawComplications();
+        if (USE_STATIC_BATCH) {
+            return complicationFragments + drawDialBatch(drawSecondHand);
+        }
+        mFrameDrawCalls += drawTriangleLists(mFrameVpMatrix, mHourDegrees, mMinDegrees,
+                mSecDegrees);
+        mLayerVisible[LAYER_HOUR_HAND] = true;
+        mLayerVisible[LAYER_MINUTE_HAND] = true;
+        mLayerVisible[LAYER_SECOND_HAND] = drawSecondHand;
+        mLayerVisible[LAYER_MAJOR_TICKS] = true;
+        mLayerVisible[LAYER_MINOR_TICKS] = true;
+        return complicationFragments + estimateFragments(mLayerVisible);
+    }
+
+    /**
+     * Feeds the screen bounds of the hands in an interactive frame to
+     * {@link #mDamageTracker}.
+     *
+     * @return whether to draw only the damaged rectangles instead of the whole frame
+     */
+    private boolean trackDamage(float hourDegrees, float minDegrees, float secDegrees) {
+        setHandDamage(LAYER_HOUR_HAND, hourDegrees);
+        setHandDamage(LAYER_MINUTE_HAND, minDegrees);
+        setHandDamage(LAYER_SECOND_HAND, secDegrees);
+        mDamageTracker.endFrame();
+
+        mInteractiveFrames++;
+        if (mInteractiveFrames % DAMAGE_LOG_INTERVAL_FRAMES == 0
+                && Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "trackDamage: " + (int) (mDamageTracker.getAverageDamagedFraction()
+                    * 100) + "% of the screen damaged per frame on average, "
+                    + (mBufferPreserved ? "drawing partial frames" : "drawing full frames"));
+        }
+        return mBufferPreserved && !mDamageTracker.isFullFrame();
+    }
+
+    /**
+     * Stores the length and half base width of a hand's triangle, which points at 12 o'clock
+     * from a base centered on the origin.
+     */
+    private void setHandExtent(int layer, float[] coords) {
+        float length = 0;
+        float halfWidth = 0;
+        for (int c = 0; c < coords.length; c += VertexFormat.COORDS_PER_VERTEX) {
+            halfWidth = Math.max(halfWidth, Math.abs(coords[c]));
+            length = Math.max(length, coords[c + 1]);
+        }
+        mHandExtents[layer * 2] = length;
+        mHandExtents[layer * 2 + 1] = halfWidth;
+    }
+
+    /**
+     * Sets the screen bounds of a hand in {@link #mDamageTracker} from its rotation and
+     * extent, without transforming its vertices.
+     */
+    private void setHandDamage(int layer, float degrees) {
+        final float cos = SinCosTable.cosDegrees(degrees);
+        final float sin = SinCosTable.sinDegrees(degrees);
+        final float length = mHandExtents[layer * 2];
+        final float halfWidth = mHandExtents[layer * 2 + 1];
+        // The tip rotates to (-sin, cos) times the length, the base corners to plus and minus
+        // (cos, sin) times the half width.
+        final float tipX = -sin * length;
+        final float tipY = cos * length;
+        final float cornerX = cos * halfWidth;
+        final float cornerY = sin * halfWidth;
+        final float[] m = mDialToWindow;
+        final float tipWindowX = m[0] * tipX + m[2] * tipY;
+        final float tipWindowY = m[1] * tipX + m[3] * tipY;
+        final float cornerWindowX = Math.abs(m[0] * cornerX + m[2] * cornerY);
+        final float cornerWindowY = Math.abs(m[1] * cornerX + m[3] * cornerY);
+        mDamageTracker.setItemWindowBounds(layer,
+                m[4] + Math.min(tipWindowX, -cornerWindowX),
+                m[5] + Math.min(tipWindowY, -cornerWindowY),
+                m[4] + Math.max(tipWindowX, cornerWindowX),
+                m[5] + Math.max(tipWindowY, cornerWindowY));
+    }
+
+    /**
+     * Shows the prerendered frame for the current minute, or draws it if there is none, then
+     * asks for the next minute's frame to be prerendered once this one is on screen.
+     *
+     * @return an estimate of the fragments shaded
+     */
+    private long drawAmbientFrame(long now) {
+        final long minute = now / MILLIS_PER_MINUTE;
+        final long fragments;
+        if (mAmbientFrameCache.present(minute)) {
+            fragments = mAmbientFrameCache.getPixelCount();
+        } else {
+            fragments = drawPreparedFrame(false /* partial */);
+        }
+        mHost.requestAmbientPrerender();
+        return fragments;
+    }
+
+    /**
+     * Draws the frame for the next minute into {@link #mAmbientFrameCache}. Call this with the
+     * GL context current.
+     */
+    public void prerenderAmbientFrame() {
+        if (mAmbientFrameCache == null || !mHost.isInAmbientMode() || !mHost.isVisible()) {
+            return;
+        }
+        final long nextMinute = mTimeSource.currentTimeMillis() / MILLIS_PER_MINUTE + 1;
+        mAmbientFrameCache.prerender(nextMinute, nextMinute * MILLIS_PER_MINUTE);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "prerenderAmbientFrame: "
+                    + mAmbientFrameCache.getLastPrerenderNanos() / 1000 + " us, "
+                    + mAmbientFrameCache);
+        }
+    }
+
+    /**
+     * Records the cost of an ambient frame, to compare prerendering with drawing directly.
+     */
+    private void onAmbientFrameDrawn(long frameNanos) {
+        mAmbientFrames++;
+        mAmbientFrameNanos += frameNanos;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "onDraw: ambient frame in " + frameNanos / 1000 + " us, average "
+                    + mAmbientFrameNanos / mAmbientFrames / 1000 + " us over "
+                    + mAmbientFrames + " frames");
+        }
+    }
+
+    /**
+     * Clears the screen to the background color. The background should always be black in
+     * ambient mode.
+     */
+    private void clearBackground() {
+        if (mHost.isInAmbientMode()) {
+            mGl.glClearColor(0, 0, 0, 1);
+        } else {
+            mGl.glClearColor(0.0f, 0.2f, 0.2f, 1);
+        }
+        mGl.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+    }
+
+    /**
+     * Sets the transforms of every layer of {@link #mDialBatch} for the current frame.
+     */
+    private void setHandTransforms(float[] vpMatrix, float hourDegrees, float minDegrees,
+                                   float secDegrees) {
+        mFrameVpMatrix = vpMatrix;
+        if (USE_AFFINE_HAND_TRANSFORMS) {
+            // Only the rotation of each hand changes. The GPU applies it together with the
+            // shared view projection matrix.
+            Gles2TriangleBatch.setAffineTransform(mLayerTransforms, LAYER_HOUR_HAND,
+                    SinCosTable.cosDegrees(hourDegrees), SinCosTable.sinDegrees(hourDegrees),
+                    0, 0);
+            Gles2TriangleBatch.setAffineTransform(mLayerTransforms, LAYER_MINUTE_HAND,
+                    SinCosTable.cosDegrees(minDegrees), SinCosTable.sinDegrees(minDegrees),
+                    0, 0);
+            Gles2TriangleBatch.setAffineTransform(mLayerTransforms, LAYER_SECOND_HAND,
+                    SinCosTable.cosDegrees(secDegrees), SinCosTable.sinDegrees(secDegrees),
+                    0, 0);
+        } else {
+            // Fill in the MVP matrix of every layer.
+            setHandMvpMatrix(mLayerMvpMatrices, LAYER_HOUR_HAND * 16, vpMatrix, hourDegrees);
+            setHandMvpMatrix(mLayerMvpMatrices, LAYER_MINUTE_HAND * 16, vpMatrix, minDegrees);
+            setHandMvpMatrix(mLayerMvpMatrices, LAYER_SECOND_HAND * 16, vpMatrix, secDegrees);
+            System.arraycopy(vpMatrix, 0, mLayerMvpMatrices, LAYER_MAJOR_TICKS * 16, 16);
+            System.arraycopy(vpMatrix, 0, mLayerMvpMatrices, LAYER_MINOR_TICKS * 16, 16);
+        }
+    }
+
+    /**
+     * Draws {@link #mDialBatch} with the transforms from {@link #setHandTransforms}. Layers of
+     * the batch are drawn from back to front.
+     *
+     * @return an estimate of the fragments shaded
+     */
+    private long drawDialBatch(boolean drawSecondHand) {
+        mLayerVisible[LAYER_HOUR_HAND] = true;
+        mLayerVisible[LAYER_MINUTE_HAND] = true;
+        mLayerVisible[LAYER_SECOND_HAND] = drawSecondHand;
+        mLayerVisible[LAYER_MAJOR_TICKS] = true;
+        mLayerVisible[LAYER_MINOR_TICKS] = true;
+        // Textures may have been drawn with another program since.
+        mBatchProgram.use();
+        if (USE_AFFINE_HAND_TRANSFORMS) {
+            mFrameDrawCalls += mDialBatch.drawAffine(mFrameVpMatrix, mLayerTransforms,
+                    mLayerVisible);
+        } else {
+            mFrameDrawCalls += mDialBatch.draw(mLayerMvpMatrices, mLayerVisible);
+        }
+        return estimateFragments(mLayerVisible);
+    }
+
+    /**
+     * Estimates the fragments shaded by drawing the given layers from the area they cover.
+     * Clears are not counted, since GPUs fill them without running a shader.
+     */
+    private long estimateFragments(boolean[] layerVisible) {
+        float area = 0;
+        for (int layer = 0; layer < NUM_LAYERS; layer++) {
+            if (layerVisible[layer]) {
+                area += mLayerAreas[layer];
+            }
+        }
+        return (long) (area * mPixelsPerUnit * mPixelsPerUnit);
+    }
+
+    /**
+     * Sets an MVP matrix for a hand: the view projection matrix times a rotation about the Z
+     * axis.
+     *
+     * @param degrees angle of the hand, clockwise from 12 o'clock
+     */
+    private void setHandMvpMatrix(float[] mvpMatrix, int offset, float[] vpMatrix,
+                                  float degrees) {
+        Mat4.multiplyRotateZ(mvpMatrix, offset, vpMatrix, 0, SinCosTable.cosDegrees(degrees),
+                SinCosTable.sinDegrees(degrees));
+    }
+
+    /**
+     * Draws the hands and ticks as separate triangle lists, one draw call each.
+     *
+     * @return the number of draw calls issued
+     */
+    private int drawTriangleLists(float[] vpMatrix, float hourDegrees, float minDegrees,
+                                  float secDegrees) {
+        int drawCalls = 0;
+        mTriangleProgram.use();
+
+        // Draw triangles from back to front. Don't draw the second hand in ambient mode.
+        {
+            // Combine the hand's rotation with the projection and camera view.
+            setHandMvpMatrix(mMvpMatrix, 0, vpMatrix, hourDegrees);
+
+            // Draw the triangle.
+            mHourHandTriangle.draw(mMvpMatrix);
+            drawCalls++;
+        }
+        {
+            // Combine the hand's rotation with the projection and camera view.
+            setHandMvpMatrix(mMvpMatrix, 0, vpMatrix, minDegrees);
+
+            // Draw the triangle.
+            mMinuteHandTriangle.draw(mMvpMatrix);
+            drawCalls++;
+        }
+        if (!mHost.isInAmbientMode()) {
+            // Combine the hand's rotation with the projection and camera view.
+            setHandMvpMatrix(mMvpMatrix, 0, vpMatrix, secDegrees);
+
+            // Draw the triangle.
+            mSecondHandTriangle.draw(mMvpMatrix);
+            drawCalls++;
+        }
+        {
+            // Draw the major and minor ticks.
+            mMajorTickTriangles.draw(vpMatrix);
+            mMinorTickTriangles.draw(vpMatrix);
+            drawCalls += 2;
+        }
+        return drawCalls;
+    }
+
+    /**
+     * Draws the complication atlas over the background.
+     *
+     * @return an estimate of the fragments shaded
+     */
+    private long drawComplications() {
+        mTrace.begin(TRACE_DRAW_COMPLICATIONS);
+        mFrameDrawCalls += mComplicationRasterizer.draw(mSurfaceWidth, mSurfaceHeight);
+        mTrace.end(TRACE_DRAW_COMPLICATIONS);
+        return mComplicationRasterizer.getDrawnPixels();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Replays traces of frame times and battery reports from {@code src/test/resources/governor}
+ * through an {@link AdaptiveQualityGovernor} and checks the tier it picks along the way. Frames
+ * are drawn at the rate of the tier in effect, like the engine does.
+ */
+public class AdaptiveQualityGovernorTest {
+
+    private static final String TRACE_RESOURCE_DIR = "/governor/";
+
+    @Test
+    public void frameTimesMoveTheTierWithHysteresis() throws IOException {
+        replay("hysteresis.trace");
+    }
+
+    @Test
+    public void batteryCapsTheTier() throws IOException {
+        replay("battery.trace");
+    }
+
+    @Test
+    public void percentileUsesTheNearestRank() {
+        final AdaptiveQualityGovernor governor = new AdaptiveQualityGovernor(QualityTier.HIGH);
+        assertEquals(0, governor.getFrameTimePercentileNanos(95));
+        for (int i = 1; i <= 20; i++) {
+            governor.onFrameDrawn(i * 16, i * 1000);
+        }
+        assertEquals(19000, governor.getFrameTimePercentileNanos(95));
+        assertEquals(10000, governor.getFrameTimePercentileNanos(50));
+        assertEquals(1000, governor.getFrameTimePercentileNanos(0));
+    }
+
+    /**
+     * Replays a trace, failing at the first {@code expect} line the governor doesn't meet.
+     */
+    private static void replay(String name) throws IOException {
+        final InputStream in =
+                AdaptiveQualityGovernorTest.class.getResourceAsStream(TRACE_RESOURCE_DIR + name);
+        assertNotNull("no trace " + name, in);
+        final AdaptiveQualityGovernor governor = new AdaptiveQualityGovernor(QualityTier.HIGH);
+        long nowMillis = 0;
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final String where = name + ":" + lineNumber + " at " + nowMillis + " ms";
+                final String[] fields = line.split("\\s+");
+                switch (fields[0]) {
+                    case "frames": {
+                        final long endMillis = nowMillis + Long.parseLong(fields[1]);
+                        final long frameNanos = Long.parseLong(fields[2]) * 1000;
+                        while (nowMillis < endMillis) {
+                            governor.onFrameDrawn(nowMillis, frameNanos);
+                            nowMillis += 1000 / governor.getTier().getFramesPerSecond();
+                        }
+                        break;
+                    }
+                    case "battery":
+                        governor.onBatteryChanged(nowMillis, Integer.parseInt(fields[1]),
+                                fields[2].equals("charging"));
+                        break;
+                    case "expect":
+                        assertEquals(where + ", " + governor, QualityTier.valueOf(fields[1]),
+                                governor.getTier());
+                        break;
+                    default:
+                        fail(where + ": unknown event " + fields[0]);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes the calling thread allocates, to check that a code path doesn't allocate.
+ * Reads {@code com.sun.management.ThreadMXBean}, which HotSpot based JVMs provide. A reading
+ * allocates nothing itself, but to be safe the smallest difference between two readings is
+ * measured once and subtracted by {@link #getBytesSince}.
+ */
+final class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean mThreadBean;
+    private final long mThreadId;
+
+    /**
+     * Bytes allocated by one {@link #getAllocatedBytes()} call.
+     */
+    private final long mOverheadBytes;
+
+    private AllocationCounter(com.sun.management.ThreadMXBean threadBean) {
+        mThreadBean = threadBean;
+        mThreadId = Thread.currentThread().getId();
+        // Warm up, so later readings don't include lazily created objects.
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            final long start = getAllocatedBytes();
+            overhead = Math.min(overhead, getAllocatedBytes() - start);
+        }
+        mOverheadBytes = overhead;
+    }
+
+    /**
+     * Returns a counter for the calling thread, or null if this JVM can't count allocations per
+     * thread.
+     */
+    static AllocationCounter create() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return new AllocationCounter(threadBean);
+    }
+
+    /**
+     * Returns the bytes the thread that created this counter has allocated so far.
+     */
+    long getAllocatedBytes() {
+        return mThreadBean.getThreadAllocatedBytes(mThreadId);
+    }
+
+    /**
+     * Returns the bytes allocated since an earlier {@link #getAllocatedBytes()}, not counting
+     * what the readings allocate themselves.
+     */
+    long getBytesSince(long startBytes) {
+        return Math.max(0, getAllocatedBytes() - startBytes - mOverheadBytes);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AmbientFrameCacheTest {
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    private final RecordingGlApi mGl = new RecordingGlApi();
+    private final Object mEglContext = new Object();
+    private final CountingRenderer mRenderer = new CountingRenderer();
+    private Gles2TextureCopier mCopier;
+    private AmbientFrameCache mCache;
+
+    /**
+     * Counts the frames drawn into the cache and remembers the time of the last one.
+     */
+    private static class CountingRenderer implements AmbientFrameCache.FrameRenderer {
+        int mFrames;
+        long mLastTimeMillis;
+
+        @Override
+        public void drawFrame(long timeMillis) {
+            mFrames++;
+            mLastTimeMillis = timeMillis;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mCopier = new Gles2TextureCopier(mGl, mEglContext);
+        mCache = new AmbientFrameCache(mGl, mCopier, mRenderer);
+        mCache.onSurfaceChanged(320, 320);
+    }
+
+    @After
+    public void tearDown() {
+        mCache.release();
+        mCopier.release();
+        ShaderRegistry.getInstance().forgetContext(mEglContext);
+    }
+
+    @Test
+    public void prerenderDrawsEachKeyOnce() {
+        mCache.prerender(1, MINUTE_MILLIS);
+        mCache.prerender(1, MINUTE_MILLIS);
+
+        assertEquals(1, mRenderer.mFrames);
+        assertEquals(MINUTE_MILLIS, mRenderer.mLastTimeMillis);
+    }
+
+    @Test
+    public void presentOfPrerenderedKeyOnlyCopies() {
+        mCache.prerender(1, MINUTE_MILLIS);
+
+        mGl.beginFrame();
+        assertTrue(mCache.present(1));
+        assertEquals(1, mRenderer.mFrames);
+        // The copy is the only draw call.
+        assertEquals(1, mGl.getFrameDrawCalls());
+        assertEquals(1, mCache.getHits());
+        assertEquals(0, mCache.getMisses());
+    }
+
+    @Test
+    public void presentOfAnotherKeyMisses() {
+        mCache.prerender(1, MINUTE_MILLIS);
+
+        mGl.beginFrame();
+        assertFalse(mCache.present(2));
+        assertEquals(0, mGl.getFrameDrawCalls());
+        assertEquals(0, mCache.getHits());
+        assertEquals(1, mCache.getMisses());
+    }
+
+    @Test
+    public void newKeyIsDrawnAgain() {
+        mCache.prerender(1, MINUTE_MILLIS);
+        assertTrue(mCache.present(1));
+        mCache.prerender(2, 2 * MINUTE_MILLIS);
+
+        assertEquals(2, mRenderer.mFrames);
+        assertEquals(2 * MINUTE_MILLIS, mRenderer.mLastTimeMillis);
+        assertFalse(mCache.present(1));
+        assertTrue(mCache.present(2));
+    }
+
+    @Test
+    public void invalidateForcesTheSameKeyToBeDrawnAgain() {
+        mCache.prerender(1, MINUTE_MILLIS);
+        mCache.invalidate();
+
+        assertFalse(mCache.present(1));
+        mCache.prerender(1, MINUTE_MILLIS);
+        assertEquals(2, mRenderer.mFrames);
+        assertTrue(mCache.present(1));
+    }
+
+    @Test
+    public void surfaceChangeDropsThePrerenderedFrame() {
+        mCache.prerender(1, MINUTE_MILLIS);
+        mCache.onSurfaceChanged(400, 400);
+
+        assertFalse(mCache.present(1));
+        mCache.prerender(1, MINUTE_MILLIS);
+        assertEquals(2, mRenderer.mFrames);
+        assertEquals(400 * 400, mCache.getPixelCount());
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChromeTraceExporterTest {
+
+    private static final int PID = 1234;
+
+    private EventTrace mTrace;
+    private int mFrame;
+    private int mDraw;
+    private int mVsync;
+    private int mUploads;
+
+    @Before
+    public void setUp() {
+        mTrace = new EventTrace(64);
+        mFrame = mTrace.registerName("frame");
+        mDraw = mTrace.registerName("draw \"dial\"\n");
+        mVsync = mTrace.registerName("vsync");
+        mUploads = mTrace.registerName("uploads");
+        mTrace.setEnabled(true);
+    }
+
+    @Test
+    public void eventsKeepTheirTypeNameAndTime() {
+        mTrace.begin(mFrame);
+        mTrace.begin(mDraw);
+        mTrace.instant(mVsync);
+        mTrace.end(mDraw);
+        mTrace.counter(mUploads, 42);
+        mTrace.end(mFrame);
+        final long[] recorded = mTrace.snapshot();
+
+        final StringBuilder out = new StringBuilder();
+        assertEquals(6, ChromeTraceExporter.export(mTrace, recorded, PID, out));
+        final List<Map<String, Object>> events = parseEvents(out);
+
+        assertEquals(Arrays.asList("B", "B", "i", "E", "C", "E"), getAll(events, "ph"));
+        assertEquals(Arrays.asList("frame", "draw \"dial\"\n", "vsync", "draw \"dial\"\n",
+                "uploads", "frame"), getAll(events, "name"));
+        for (int i = 0; i < events.size(); i++) {
+            final Map<String, Object> event = events.get(i);
+            assertEquals(new BigDecimal(PID), event.get("pid"));
+            assertEquals(new BigDecimal(Thread.currentThread().getId()), event.get("tid"));
+            assertEquals(EventTrace.getTimeNanos(recorded, i), getTimeNanos(event));
+            // Sections are begin and end pairs, not complete events.
+            assertFalse(event.containsKey("dur"));
+        }
+        assertEquals("t", events.get(2).get("s"));
+        assertEquals(new BigDecimal(42), ((Map<?, ?>) events.get(4).get("args")).get("value"));
+        assertNested(events);
+    }
+
+    @Test
+    public void timesAreExactMicroseconds() {
+        // Enough events that some fall on fractions that need leading zeros.
+        for (int i = 0; i < 60; i++) {
+            mTrace.instant(mVsync);
+        }
+        final long[] recorded = mTrace.snapshot();
+        final StringBuilder out = new StringBuilder();
+        ChromeTraceExporter.export(mTrace, recorded, PID, out);
+        final List<Map<String, Object>> events = parseEvents(out);
+
+        assertEquals(60, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(EventTrace.getTimeNanos(recorded, i), getTimeNanos(events.get(i)));
+        }
+    }
+
+    @Test
+    public void overflowKeepsTheNewestEventsAndDropsEndsWithoutBegins() {
+        final EventTrace trace = new EventTrace(6);
+        final int frameName = trace.registerName("frame");
+        final int drawName = trace.registerName("draw");
+        trace.setEnabled(true);
+        // 25 events, so the ring ends with the last two events of frame 4 and all of frame 5.
+        trace.instant(frameName);
+        for (int frame = 0; frame < 6; frame++) {
+            trace.begin(frameName);
+            trace.begin(drawName);
+            trace.end(drawName);
+            trace.end(frameName);
+        }
+        final long[] recorded = trace.snapshot();
+        assertEquals(6, recorded.length / EventTrace.EVENT_LONGS);
+
+        final StringBuilder out = new StringBuilder();
+        assertEquals(4, ChromeTraceExporter.export(trace, recorded, PID, out));
+        final List<Map<String, Object>> events = parseEvents(out);
+        assertEquals(Arrays.asList("B", "B", "E", "E"), getAll(events, "ph"));
+        assertEquals(Arrays.asList("frame", "draw", "draw", "frame"), getAll(events, "name"));
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(EventTrace.getTimeNanos(recorded, i + 2), getTimeNanos(events.get(i)));
+        }
+        assertNested(events);
+    }
+
+    @Test
+    public void threadsNestSeparately() throws InterruptedException {
+        final Thread[] threads = new Thread[3];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int frame = 0; frame < 5; frame++) {
+                        mTrace.begin(mFrame);
+                        mTrace.begin(mDraw);
+                        mTrace.end(mDraw);
+                        mTrace.end(mFrame);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        final StringBuilder out = new StringBuilder();
+        assertEquals(60, ChromeTraceExporter.export(mTrace, PID, out));
+
+        final List<Map<String, Object>> events = parseEvents(out);
+        assertEquals(60, events.size());
+        assertNested(events);
+    }
+
+    @Test
+    public void emptyTraceIsValid() {
+        final EventTrace trace = new EventTrace(8);
+        final StringBuilder out = new StringBuilder();
+        assertEquals(0, ChromeTraceExporter.export(trace, PID, out));
+
+        final Map<?, ?> json = (Map<?, ?>) new JsonParser(out.toString()).parse();
+        assertEquals("ms", json.get("displayTimeUnit"));
+        assertTrue(((List<?>) json.get("traceEvents")).isEmpty());
+    }
+
+    /**
+     * Checks that the sections of every thread nest, ending in the order they began, and that
+     * every thread's times never go back.
+     */
+    private static void assertNested(List<Map<String, Object>> events) {
+        final Map<Object, Deque<Object>> openSections = new HashMap<>();
+        final Map<Object, Long> lastTimes = new HashMap<>();
+        for (Map<String, Object> event : events) {
+            final Object tid = event.get("tid");
+            final long time = getTimeNanos(event);
+            final Long lastTime = lastTimes.get(tid);
+            if (lastTime != null && time < lastTime) {
+                fail("time went back on thread " + tid + ": " + event);
+            }
+            lastTimes.put(tid, time);
+
+            Deque<Object> open = openSections.get(tid);
+            if (open == null) {
+                open = new ArrayDeque<>();
+                openSections.put(tid, open);
+            }
+            final Object phase = event.get("ph");
+            if ("B".equals(phase)) {
+                open.push(event.get("name"));
+            } else if ("E".equals(phase)) {
+                if (open.isEmpty()) {
+                    fail("end without begin on thread " + tid + ": " + event);
+                }
+                assertEquals(open.pop(), event.get("name"));
+            }
+        }
+        for (Map.Entry<Object, Deque<Object>> entry : openSections.entrySet()) {
+            assertTrue("unfinished sections on thread " + entry.getKey() + ": "
+                    + entry.getValue(), entry.getValue().isEmpty());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> parseEvents(StringBuilder out) {
+        final Map<?, ?> json = (Map<?, ?>) new JsonParser(out.toString()).parse();
+        return (List<Map<String, Object>>) json.get("traceEvents");
+    }
+
+    private static List<Object> getAll(List<Map<String, Object>> events, String key) {
+        final List<Object> values = new ArrayList<>();
+        for (Map<String, Object> event : events) {
+            values.add(event.get(key));
+        }
+        return values;
+    }
+
+    private static long getTimeNanos(Map<String, Object> event) {
+        return ((BigDecimal) event.get("ts")).movePointRight(3).longValueExact();
+    }
+
+    /**
+     * Parses the JSON the exporter writes into maps, lists, strings and {@link BigDecimal}s.
+     * The Android jar of local unit tests only has stubs of org.json.
+     */
+    private static final class JsonParser {
+        private final String mText;
+        private int mPosition;
+
+        JsonParser(String text) {
+            mText = text;
+        }
+
+        Object parse() {
+            final Object value = parseValue();
+            skipWhitespace();
+            if (mPosition != mText.length()) {
+                throw error("trailing characters");
+            }
+            return value;
+        }
+
+        private Object parseValue() {
+            skipWhitespace();
+            if (mPosition == mText.length()) {
+                throw error("unexpected end");
+            }
+            final char c = mText.charAt(mPosition);
+            if (c == '{') {
+                return parseObject();
+            } else if (c == '[') {
+                return parseArray();
+            } else if (c == '"') {
+                return parseString();
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                return parseNumber();
+            } else if (mText.startsWith("true", mPosition)) {
+                mPosition += 4;
+                return Boolean.TRUE;
+            } else if (mText.startsWith("false", mPosition)) {
+                mPosition += 5;
+                return Boolean.FALSE;
+            } else if (mText.startsWith("null", mPosition)) {
+                mPosition += 4;
+                return null;
+            }
+            throw error("unexpected character");
+        }
+
+        private Map<String, Object> parseObject() {
+            final Map<String, Object> object = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (consume('}')) {
+                return object;
+            }
+            do {
+                skipWhitespace();
+                final String key = parseString();
+                skipWhitespace();
+                expect(':');
+                if (object.containsKey(key)) {
+                    throw error("duplicate key " + key);
+                }
+                object.put(key, parseValue());
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+            return object;
+        }
+
+        private List<Object> parseArray() {
+            final List<Object> array = new ArrayList<>();
+            expect('[');
+            skipWhitespace();
+            if (consume(']')) {
+                return array;
+            }
+            do {
+                array.add(parseValue());
+                skipWhitespace();
+            } while (consume(','));
+            expect(']');
+            return array;
+        }
+
+        private String parseString() {
+            expect('"');
+            final StringBuilder value = new StringBuilder();
+            while (true) {
+                if (mPosition == mText.length()) {
+                    throw error("unterminated string");
+                }
+                final char c = mText.charAt(mPosition++);
+                if (c == '"') {
+                    return value.toString();
+                } else if (c < 0x20) {
+                    throw error("control character in string");
+                } else if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                final char escaped = mText.charAt(mPosition++);
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escaped);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        value.append((char) Integer.parseInt(
+                                mText.substring(mPosition, mPosition + 4), 16));
+                        mPosition += 4;
+                        break;
+                    default:
+                        throw error("bad escape");
+                }
+            }
+        }
+
+        private BigDecimal parseNumber() {
+            final int start = mPosition;
+            while (mPosition < mText.length()
+                    && "+-0123456789.eE".indexOf(mText.charAt(mPosition)) >= 0) {
+                mPosition++;
+            }
+            return new BigDecimal(mText.substring(start, mPosition));
+        }
+
+        private void skipWhitespace() {
+            while (mPosition < mText.length()
+                    && Character.isWhitespace(mText.charAt(mPosition))) {
+                mPosition++;
+            }
+        }
+
+        private boolean consume(char c) {
+            if (mPosition < mText.length() && mText.charAt(mPosition) == c) {
+                mPosition++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw error("expected " + c);
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + mPosition + " in " + mText);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the framing of the snapshot file. The records themselves need the wearable support
+ * library, so they aren't covered here.
+ */
+public class ComplicationSnapshotStoreTest {
+
+    /**
+     * Offsets in a snapshot file: magic, file version, body length and checksum, then the body.
+     */
+    private static final int VERSION_OFFSET = 4;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int BODY_OFFSET = 8 + 4 + 8;
+
+    /**
+     * A body with no records.
+     */
+    private static final byte[] EMPTY_BODY = {0, 0};
+
+    private static final byte[] BODY = {0, 1, 0, 0, 0, 7, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    private File mDirectory;
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("snapshot").toFile();
+        mFile = new File(mDirectory, ComplicationSnapshotStore.FILE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void bodyIsReadBack() throws IOException {
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        assertArrayEquals(BODY, ComplicationSnapshotStore.readBody(mFile));
+
+        // A later write replaces the file and leaves no temporary file behind.
+        ComplicationSnapshotStore.writeBody(mFile, EMPTY_BODY);
+        assertArrayEquals(EMPTY_BODY, ComplicationSnapshotStore.readBody(mFile));
+        assertArrayEquals(new String[]{mFile.getName()}, mDirectory.list());
+    }
+
+    @Test
+    public void directoryIsCreated() throws IOException {
+        final File file = new File(new File(mDirectory, "files"), mFile.getName());
+        ComplicationSnapshotStore.writeBody(file, BODY);
+        assertArrayEquals(BODY, ComplicationSnapshotStore.readBody(file));
+        file.delete();
+        file.getParentFile().delete();
+    }
+
+    @Test
+    public void missingFileIsNoSnapshot() {
+        assertNull(ComplicationSnapshotStore.readBody(mFile));
+    }
+
+    @Test
+    public void damagedBodyIsDiscarded() throws IOException {
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        overwrite(BODY_OFFSET + 5, 8);
+        assertDiscarded();
+    }
+
+    @Test
+    public void otherFileVersionIsDiscarded() throws IOException {
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        overwriteInt(VERSION_OFFSET, ComplicationSnapshotStore.FILE_VERSION + 1);
+        assertDiscarded();
+    }
+
+    @Test
+    public void otherFileIsDiscarded() throws IOException {
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        overwrite(0, 'X');
+        assertDiscarded();
+    }
+
+    @Test
+    public void truncatedFileIsDiscarded() throws IOException {
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        truncate(BODY_OFFSET + BODY.length - 1);
+        assertDiscarded();
+
+        // Cut off inside the header.
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        truncate(LENGTH_OFFSET + 2);
+        assertDiscarded();
+    }
+
+    @Test
+    public void trailingBytesAreDiscarded() throws IOException {
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        overwrite(BODY_OFFSET + BODY.length, 0);
+        assertDiscarded();
+    }
+
+    @Test
+    public void implausibleLengthIsDiscarded() throws IOException {
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        overwriteInt(LENGTH_OFFSET, ComplicationSnapshotStore.MAX_BODY_LENGTH + 1);
+        assertDiscarded();
+
+        ComplicationSnapshotStore.writeBody(mFile, BODY);
+        overwriteInt(LENGTH_OFFSET, -1);
+        assertDiscarded();
+    }
+
+    private void assertDiscarded() {
+        assertTrue(mFile.exists());
+        assertNull(ComplicationSnapshotStore.readBody(mFile));
+        assertFalse("unusable file not deleted", mFile.exists());
+    }
+
+    private void overwrite(long offset, int value) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            raf.seek(offset);
+            raf.write(value);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void overwriteInt(long offset, int value) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            raf.seek(offset);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+}
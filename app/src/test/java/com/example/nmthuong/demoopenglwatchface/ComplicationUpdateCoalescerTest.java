@@ -0,0 +1,178 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.support.wearable.complications.ComplicationData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ComplicationUpdateCoalescerTest {
+
+    private static final int LEFT = 3;
+    private static final int RIGHT = 7;
+
+    private static final long CONTENT_A = 1;
+    private static final long CONTENT_B = 2;
+    private static final long CONTENT_C = 3;
+
+    private final FrameScheduler.TimeSource mClock = new FrameScheduler.TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return 0;
+        }
+    };
+
+    /**
+     * What each piece of data created by {@link #data} shows. Texts can't be read back from
+     * complication data on the JVM, so the coalescer under test hashes this instead.
+     */
+    private final Map<ComplicationData, Long> mContent = new IdentityHashMap<>();
+
+    private final ComplicationUpdateCoalescer mCoalescer = new ComplicationUpdateCoalescer(
+            null /* context */, mClock, new int[]{LEFT, RIGHT}) {
+        @Override
+        long hash(ComplicationData data) {
+            return mContent.get(data);
+        }
+    };
+
+    /**
+     * Records the updates applied.
+     */
+    private final List<Integer> mAppliedIds = new ArrayList<>();
+    private final List<ComplicationData> mAppliedData = new ArrayList<>();
+
+    private final ComplicationUpdateCoalescer.Applier mApplier =
+            new ComplicationUpdateCoalescer.Applier() {
+                @Override
+                public void applyComplicationData(int complicationId, ComplicationData data) {
+                    mAppliedIds.add(complicationId);
+                    mAppliedData.add(data);
+                }
+            };
+
+    @Test
+    public void updatesAreHeldUntilFlushed() {
+        final ComplicationData a = data(CONTENT_A);
+        assertTrue(mCoalescer.offer(LEFT, a));
+        assertTrue(mCoalescer.hasPending());
+        assertTrue(mAppliedIds.isEmpty());
+
+        assertEquals(1, mCoalescer.flush(mApplier));
+        assertFalse(mCoalescer.hasPending());
+        assertEquals(Arrays.asList(LEFT), mAppliedIds);
+        assertSame(a, mAppliedData.get(0));
+
+        // Nothing is left for the next flush.
+        assertEquals(0, mCoalescer.flush(mApplier));
+        assertCounts(1, 0, 0, 1);
+    }
+
+    @Test
+    public void unknownComplicationIsIgnored() {
+        assertFalse(mCoalescer.offer(RIGHT + 1, data(CONTENT_A)));
+        assertFalse(mCoalescer.hasPending());
+        assertCounts(0, 0, 0, 0);
+    }
+
+    @Test
+    public void burstIsAppliedOnceWithTheNewestData() {
+        mCoalescer.offer(LEFT, data(CONTENT_A));
+        mCoalescer.offer(LEFT, data(CONTENT_B));
+        final ComplicationData c = data(CONTENT_C);
+        mCoalescer.offer(LEFT, c);
+
+        assertEquals(1, mCoalescer.flush(mApplier));
+        assertSame(c, mAppliedData.get(0));
+        assertCounts(3, 0, 2, 1);
+    }
+
+    @Test
+    public void repeatOfTheHeldUpdateIsDropped() {
+        final ComplicationData a = data(CONTENT_A);
+        assertTrue(mCoalescer.offer(LEFT, a));
+        assertFalse(mCoalescer.offer(LEFT, data(CONTENT_A)));
+
+        mCoalescer.flush(mApplier);
+        assertSame(a, mAppliedData.get(0));
+        assertCounts(2, 1, 0, 1);
+    }
+
+    @Test
+    public void repeatOfTheAppliedUpdateIsDropped() {
+        mCoalescer.offer(LEFT, data(CONTENT_A));
+        mCoalescer.flush(mApplier);
+
+        assertFalse(mCoalescer.offer(LEFT, data(CONTENT_A)));
+        assertFalse(mCoalescer.hasPending());
+        assertCounts(2, 1, 0, 1);
+    }
+
+    @Test
+    public void burstThatEndsWhereItStartedIsDroppedAtFlush() {
+        mCoalescer.offer(LEFT, data(CONTENT_A));
+        mCoalescer.flush(mApplier);
+
+        // A, then B, then A again within one flush window.
+        assertTrue(mCoalescer.offer(LEFT, data(CONTENT_B)));
+        assertTrue(mCoalescer.offer(LEFT, data(CONTENT_A)));
+        assertEquals(0, mCoalescer.flush(mApplier));
+        assertFalse(mCoalescer.hasPending());
+        assertEquals(1, mAppliedIds.size());
+        assertCounts(3, 1, 1, 1);
+    }
+
+    @Test
+    public void complicationsAreCoalescedSeparately() {
+        mCoalescer.offer(RIGHT, data(CONTENT_A));
+        mCoalescer.offer(LEFT, data(CONTENT_A));
+        mCoalescer.offer(RIGHT, data(CONTENT_B));
+
+        // Applied in the order of the IDs given to the constructor.
+        assertEquals(2, mCoalescer.flush(mApplier));
+        assertEquals(Arrays.asList(LEFT, RIGHT), mAppliedIds);
+        assertEquals(CONTENT_B, (long) mContent.get(mAppliedData.get(1)));
+        assertCounts(3, 0, 1, 2);
+    }
+
+    @Test
+    public void hashTellsTypesApart() {
+        final ComplicationUpdateCoalescer coalescer = new ComplicationUpdateCoalescer(
+                null /* context */, mClock, new int[]{LEFT});
+        final ComplicationData empty = new ComplicationData.Builder(
+                ComplicationData.TYPE_EMPTY).build();
+        final ComplicationData noData = new ComplicationData.Builder(
+                ComplicationData.TYPE_NO_DATA).build();
+
+        assertEquals(coalescer.hash(empty), coalescer.hash(
+                new ComplicationData.Builder(ComplicationData.TYPE_EMPTY).build()));
+        assertFalse(coalescer.hash(empty) == coalescer.hash(noData));
+        assertFalse(coalescer.hash(empty) == coalescer.hash(null));
+    }
+
+    /**
+     * Returns new complication data that shows the given content.
+     */
+    private ComplicationData data(long content) {
+        final ComplicationData data = new ComplicationData.Builder(
+                ComplicationData.TYPE_EMPTY).build();
+        mContent.put(data, content);
+        return data;
+    }
+
+    private void assertCounts(long received, long deduplicated, long merged, long applied) {
+        assertEquals("received", received, mCoalescer.getReceived());
+        assertEquals("deduplicated", deduplicated, mCoalescer.getDeduplicated());
+        assertEquals("merged", merged, mCoalescer.getMerged());
+        assertEquals("applied", applied, mCoalescer.getApplied());
+    }
+}
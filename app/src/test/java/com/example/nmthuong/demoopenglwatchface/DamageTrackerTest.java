@@ -0,0 +1,286 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DamageTrackerTest {
+
+    /**
+     * A power of two, so window coordinates survive the round trip through clip space exactly.
+     */
+    private static final int WIDTH = 128;
+    private static final int HEIGHT = 128;
+
+    private final float[] mPoints = new float[2 * DamageTracker.FLOATS_PER_CLIP_POINT];
+    private final int[] mRect = new int[4];
+
+    @Test
+    public void firstFrameIsFull() {
+        final DamageTracker tracker = createTracker(1, 4, 0.5f);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+
+        assertTrue(tracker.isFullFrame());
+        assertEquals(0, tracker.getRectCount());
+        assertEquals(WIDTH * HEIGHT, tracker.getDamagedPixels());
+    }
+
+    @Test
+    public void unchangedItemsDamageNothing() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+
+        assertFalse(tracker.isFullFrame());
+        assertEquals(0, tracker.getRectCount());
+        assertEquals(0, tracker.getDamagedPixels());
+    }
+
+    @Test
+    public void movedItemDamagesOldAndNewBounds() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+        setItemRect(tracker, 0, 60, 60, 70, 70);
+        tracker.endFrame();
+
+        assertFalse(tracker.isFullFrame());
+        assertEquals(2, tracker.getRectCount());
+        assertRect(tracker, 0, 10, 10, 20, 20);
+        assertRect(tracker, 1, 60, 60, 70, 70);
+        assertEquals(200, tracker.getDamagedPixels());
+        assertEquals(200f / (WIDTH * HEIGHT), tracker.getDamagedFraction(), 1e-6f);
+    }
+
+    @Test
+    public void overlappingRectsAreMerged() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+        setItemRect(tracker, 0, 15, 12, 25, 22);
+        tracker.endFrame();
+
+        assertEquals(1, tracker.getRectCount());
+        assertRect(tracker, 0, 10, 10, 25, 22);
+    }
+
+    @Test
+    public void mergesChainUntilDisjoint() {
+        // The third rectangle bridges the first two, so all three end up as one.
+        final DamageTracker tracker = createSettledTracker(3, 4, 0.9f);
+        tracker.endFrame();
+        setItemRect(tracker, 0, 0, 0, 10, 10);
+        setItemRect(tracker, 1, 20, 0, 30, 10);
+        setItemRect(tracker, 2, 5, 5, 25, 8);
+        tracker.endFrame();
+
+        assertEquals(1, tracker.getRectCount());
+        assertRect(tracker, 0, 0, 0, 30, 10);
+    }
+
+    @Test
+    public void tooManyRectsMergeThePairThatWastesTheFewestPixels() {
+        final DamageTracker tracker = createSettledTracker(3, 2, 0.9f);
+        tracker.endFrame();
+        // The first two are close together, the third is far from both.
+        setItemRect(tracker, 0, 0, 0, 10, 10);
+        setItemRect(tracker, 1, 12, 0, 22, 10);
+        setItemRect(tracker, 2, 80, 80, 90, 90);
+        tracker.endFrame();
+
+        assertEquals(2, tracker.getRectCount());
+        assertRect(tracker, 0, 0, 0, 22, 10);
+        assertRect(tracker, 1, 80, 80, 90, 90);
+    }
+
+    @Test
+    public void wastefulMergeIsAvoidedEvenIfItsRectsAreAddedFirst() {
+        final DamageTracker tracker = createSettledTracker(3, 2, 0.9f);
+        tracker.endFrame();
+        // Merging the first two would add a 60x60 square, merging the last two only 10x10.
+        setItemRect(tracker, 0, 0, 0, 10, 10);
+        setItemRect(tracker, 1, 70, 70, 80, 80);
+        setItemRect(tracker, 2, 70, 50, 80, 60);
+        tracker.endFrame();
+
+        assertEquals(2, tracker.getRectCount());
+        assertRect(tracker, 0, 0, 0, 10, 10);
+        assertRect(tracker, 1, 70, 50, 80, 80);
+    }
+
+    @Test
+    public void rectsAreClippedToTheSurface() {
+        final DamageTracker tracker = createSettledTracker(2, 4, 0.9f);
+        tracker.endFrame();
+        setItemRect(tracker, 0, -10, -10, 10, 10);
+        setItemRect(tracker, 1, 120, 125, 140, 150);
+        tracker.endFrame();
+
+        assertEquals(2, tracker.getRectCount());
+        assertRect(tracker, 0, 0, 0, 10, 10);
+        assertRect(tracker, 1, 120, 125, 128, 128);
+    }
+
+    @Test
+    public void offscreenItemsDamageNothing() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        tracker.endFrame();
+        setItemRect(tracker, 0, 130, 10, 140, 20);
+        tracker.endFrame();
+
+        assertFalse(tracker.isFullFrame());
+        assertEquals(0, tracker.getRectCount());
+    }
+
+    @Test
+    public void paddingIsAddedAroundItems() {
+        final DamageTracker tracker = new DamageTracker(1, 4, 2 /* paddingPixels */, 0.5f);
+        tracker.setSurfaceSize(WIDTH, HEIGHT);
+        tracker.endFrame();
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+
+        assertRect(tracker, 0, 8, 8, 22, 22);
+    }
+
+    @Test
+    public void clearedItemDamagesItsOldBounds() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+        tracker.clearItem(0);
+        tracker.endFrame();
+
+        assertEquals(1, tracker.getRectCount());
+        assertRect(tracker, 0, 10, 10, 20, 20);
+    }
+
+    @Test
+    public void damageAboveTheThresholdDrawsTheWholeFrame() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        tracker.endFrame();
+        // Exactly half the surface is still drawn partially.
+        setItemRect(tracker, 0, 0, 0, 64, 128);
+        tracker.endFrame();
+        assertFalse(tracker.isFullFrame());
+        assertEquals(WIDTH * HEIGHT / 2, tracker.getDamagedPixels());
+
+        tracker.clearItem(0);
+        tracker.endFrame();
+        setItemRect(tracker, 0, 0, 0, 65, 128);
+        tracker.endFrame();
+        assertTrue(tracker.isFullFrame());
+        assertEquals(0, tracker.getRectCount());
+        assertEquals(WIDTH * HEIGHT, tracker.getDamagedPixels());
+        assertEquals(1, tracker.getDamagedFraction(), 0);
+    }
+
+    @Test
+    public void invalidateDrawsTheNextFrameWhole() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+
+        // E.g. after a change of ambient mode.
+        tracker.invalidate();
+        tracker.endFrame();
+        assertTrue(tracker.isFullFrame());
+
+        // Only that frame.
+        tracker.endFrame();
+        assertFalse(tracker.isFullFrame());
+    }
+
+    @Test
+    public void resizeDrawsTheNextFrameWhole() {
+        final DamageTracker tracker = createSettledTracker(1, 4, 0.5f);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+
+        tracker.setSurfaceSize(2 * WIDTH, 2 * HEIGHT);
+        setItemRect(tracker, 0, 10, 10, 20, 20);
+        tracker.endFrame();
+        assertTrue(tracker.isFullFrame());
+        assertEquals(4 * WIDTH * HEIGHT, tracker.getDamagedPixels());
+
+        // Clip space is stretched over the larger surface, so window coordinates double.
+        setItemRect(tracker, 0, 50, 50, 60, 60);
+        tracker.endFrame();
+        assertFalse(tracker.isFullFrame());
+        assertEquals(2, tracker.getRectCount());
+        assertRect(tracker, 0, 20, 20, 40, 40);
+        assertRect(tracker, 1, 100, 100, 120, 120);
+    }
+
+    @Test
+    public void windowBoundsAreRoundedOutwardAndPadded() {
+        final DamageTracker tracker = new DamageTracker(1, 4, 2 /* paddingPixels */, 0.5f);
+        tracker.setSurfaceSize(WIDTH, HEIGHT);
+        tracker.endFrame();
+        tracker.setItemWindowBounds(0, 10.5f, 20.25f, 30.5f, 40.75f);
+        tracker.endFrame();
+
+        assertEquals(1, tracker.getRectCount());
+        assertRect(tracker, 0, 8, 18, 33, 43);
+    }
+
+    @Test
+    public void averageDamagedFractionCoversEveryFrame() {
+        final DamageTracker tracker = createTracker(1, 4, 0.5f);
+        tracker.endFrame();
+        tracker.endFrame();
+
+        assertEquals(0.5f, tracker.getAverageDamagedFraction(), 1e-6f);
+    }
+
+    private static DamageTracker createTracker(int itemCount, int maxRects,
+                                               float fullFrameFraction) {
+        final DamageTracker tracker = new DamageTracker(itemCount, maxRects,
+                0 /* paddingPixels */, fullFrameFraction);
+        tracker.setSurfaceSize(WIDTH, HEIGHT);
+        return tracker;
+    }
+
+    /**
+     * Returns a tracker whose full first frame, with no items, is over.
+     */
+    private static DamageTracker createSettledTracker(int itemCount, int maxRects,
+                                                      float fullFrameFraction) {
+        final DamageTracker tracker = createTracker(itemCount, maxRects, fullFrameFraction);
+        tracker.endFrame();
+        return tracker;
+    }
+
+    /**
+     * Sets the bounds of an item to a rectangle in window coordinates, given by two corners in
+     * clip space.
+     */
+    private void setItemRect(DamageTracker tracker, int item, int left, int bottom, int right,
+                             int top) {
+        setClipPoint(0, left, bottom);
+        setClipPoint(1, right, top);
+        tracker.setItemBounds(item, mPoints, 0, 2);
+    }
+
+    private void setClipPoint(int index, int x, int y) {
+        final int p = index * DamageTracker.FLOATS_PER_CLIP_POINT;
+        // Scale by w to check the perspective divide.
+        final float w = 2;
+        mPoints[p] = ((float) x / WIDTH * 2 - 1) * w;
+        mPoints[p + 1] = ((float) y / HEIGHT * 2 - 1) * w;
+        mPoints[p + 2] = 0;
+        mPoints[p + 3] = w;
+    }
+
+    private void assertRect(DamageTracker tracker, int index, int left, int bottom, int right,
+                            int top) {
+        tracker.getRect(index, mRect);
+        assertArrayEquals(new int[]{left, bottom, right - left, top - bottom}, mRect);
+    }
+}
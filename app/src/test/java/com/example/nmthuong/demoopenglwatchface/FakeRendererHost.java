@@ -0,0 +1,169 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+
+import java.util.TimeZone;
+
+/**
+ * {@link WatchFaceRenderer.Host} for unit tests, with a clock that only moves when told to.
+ * Callbacks the renderer asks for are remembered, and delivered by {@link #draw()} and
+ * {@link #flush()} the way the engine would.
+ */
+class FakeRendererHost implements WatchFaceRenderer.Host {
+
+    static final int[] COMPLICATION_IDS = {0, 1, 2};
+
+    long mNowMillis;
+    boolean mVisible;
+    boolean mAmbient;
+    boolean mCanPreserveBuffer = true;
+    boolean mBufferPreserved;
+    int mSwapBehaviorChanges;
+
+    boolean mInvalidated;
+    boolean mFrameSwappedRequested;
+    boolean mAmbientPrerenderRequested;
+    boolean mFlushRequested;
+
+    final FrameScheduler.TimeSource mClock = new FrameScheduler.TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+    };
+
+    private WatchFaceRenderer mRenderer;
+
+    /**
+     * Returns a renderer for this host that draws into the given GL at the given tier, in UTC,
+     * with complications that never get rasterized since there is no worker thread. Its GL
+     * context and surface are created.
+     */
+    WatchFaceRenderer createRenderer(GlApi gl, QualityTier tier, int width, int height) {
+        return createRenderer(gl, tier, width, height,
+                new FrameMetrics(1000000000L / 60, 16 /* ringCapacity */));
+    }
+
+    /**
+     * Like {@link #createRenderer(GlApi, QualityTier, int, int)}, but the renderer reports frame
+     * timings to the given metrics.
+     */
+    WatchFaceRenderer createRenderer(GlApi gl, QualityTier tier, int width, int height,
+                                     FrameMetrics frameMetrics) {
+        mRenderer = new WatchFaceRenderer(gl, mClock, new FixedQualityPolicy(tier), frameMetrics,
+                this);
+        mRenderer.setTimeZone(TimeZone.getTimeZone("UTC"), false /* invalidate */);
+        final ComplicationDrawable[] drawables =
+                new ComplicationDrawable[COMPLICATION_IDS.length];
+        for (int i = 0; i < drawables.length; i++) {
+            drawables[i] = new ComplicationDrawable();
+        }
+        mRenderer.setComplications(new ComplicationRasterizer(mRenderer.getGl(),
+                        COMPLICATION_IDS, drawables, new ComplicationRasterizer.Listener() {
+                            @Override
+                            public void onComplicationRasterized(int complicationId) {
+                            }
+                        }),
+                new ComplicationUpdateCoalescer(null /* context */, mClock, COMPLICATION_IDS),
+                null /* snapshotStore */);
+        mRenderer.onGlContextCreated(new Object());
+        // Gles2WatchFaceService sets the viewport before onGlSurfaceCreated().
+        mRenderer.getGl().glViewport(0, 0, width, height);
+        mRenderer.onSurfaceChanged(width, height);
+        return mRenderer;
+    }
+
+    /**
+     * Switches visibility and ambient mode like the engine.
+     */
+    void setState(boolean visible, boolean ambient) {
+        if (ambient != mAmbient) {
+            mAmbient = ambient;
+            mRenderer.onAmbientModeChanged(ambient);
+        }
+        if (visible != mVisible) {
+            mVisible = visible;
+            mRenderer.onVisibilityChanged(visible);
+        }
+    }
+
+    /**
+     * Draws a frame if one was asked for, like the system, then delivers the callbacks the
+     * renderer asked for once it is on screen.
+     *
+     * @return whether a frame was drawn
+     */
+    boolean draw() {
+        if (!mInvalidated) {
+            return false;
+        }
+        mInvalidated = false;
+        mRenderer.onDraw();
+        if (mFrameSwappedRequested) {
+            mFrameSwappedRequested = false;
+            mRenderer.onFrameSwapped();
+        }
+        if (mAmbientPrerenderRequested) {
+            mAmbientPrerenderRequested = false;
+            mRenderer.prerenderAmbientFrame();
+        }
+        return true;
+    }
+
+    /**
+     * Applies held complication updates if the renderer asked for it.
+     */
+    void flush() {
+        if (mFlushRequested) {
+            mFlushRequested = false;
+            mRenderer.flushComplicationUpdates();
+        }
+    }
+
+    @Override
+    public boolean isVisible() {
+        return mVisible;
+    }
+
+    @Override
+    public boolean isInAmbientMode() {
+        return mAmbient;
+    }
+
+    @Override
+    public void invalidate() {
+        // The system doesn't draw invisible faces.
+        mInvalidated = mVisible;
+    }
+
+    @Override
+    public void requestFrameCheck(long delayMillis) {
+        // Tests call onFrameCheck() themselves.
+    }
+
+    @Override
+    public void cancelFrameCheck() {
+    }
+
+    @Override
+    public void requestAmbientPrerender() {
+        mAmbientPrerenderRequested = true;
+    }
+
+    @Override
+    public void requestComplicationFlush(long delayMillis) {
+        mFlushRequested = true;
+    }
+
+    @Override
+    public void requestFrameSwappedCallback() {
+        mFrameSwappedRequested = true;
+    }
+
+    @Override
+    public boolean setPreserveBufferOnSwap(boolean preserve) {
+        mSwapBehaviorChanges++;
+        mBufferPreserved = preserve && mCanPreserveBuffer;
+        return mBufferPreserved;
+    }
+}
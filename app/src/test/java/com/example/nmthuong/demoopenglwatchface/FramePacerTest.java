@@ -0,0 +1,218 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FramePacerTest {
+
+    /**
+     * 10:08:37 on the first day of 2018 in UTC, on a whole second.
+     */
+    private static final long SECOND_START_MILLIS = 1514801317000L;
+
+    private static final long NO_CHECK = -1;
+
+    private long mNowMillis = SECOND_START_MILLIS;
+
+    private final FrameScheduler.TimeSource mClock = new FrameScheduler.TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+    };
+
+    private final FrameScheduler mScheduler = new FrameScheduler(mClock);
+
+    /**
+     * Records what the pacer asks the engine for.
+     */
+    private static class FakeHost implements FramePacer.Host {
+        boolean mVisible = true;
+        boolean mAmbient;
+        boolean mInvalidated;
+        long mFrameCheckDelayMillis = NO_CHECK;
+
+        @Override
+        public boolean isVisible() {
+            return mVisible;
+        }
+
+        @Override
+        public boolean isInAmbientMode() {
+            return mAmbient;
+        }
+
+        @Override
+        public void invalidate() {
+            mInvalidated = true;
+        }
+
+        @Override
+        public void requestFrameCheck(long delayMillis) {
+            mFrameCheckDelayMillis = delayMillis;
+        }
+
+        @Override
+        public void cancelFrameCheck() {
+            mFrameCheckDelayMillis = NO_CHECK;
+        }
+    }
+
+    private final FakeHost mHost = new FakeHost();
+    private final FramePacer mPacer = new FramePacer(mClock, mScheduler, mHost,
+            true /* skipUnchanged */);
+
+    @Test
+    public void tickingOnceASecondSkipsRepeats() {
+        assertDrawn();
+        // Checks within the same second would show the same hands.
+        for (long millis = 250; millis < 1000; millis += 250) {
+            mNowMillis = SECOND_START_MILLIS + millis;
+            assertSkipped();
+        }
+        mNowMillis = SECOND_START_MILLIS + 1000;
+        assertDrawn();
+
+        assertEquals(2, mPacer.getRenderedFrames());
+        assertEquals(3, mPacer.getSkippedFrames());
+    }
+
+    @Test
+    public void skippedCheckIsRescheduledForTheNextSecond() {
+        assertDrawn();
+        // E.g. a frame check that came early.
+        mNowMillis = SECOND_START_MILLIS + 997;
+        assertSkipped();
+        assertEquals(3, mHost.mFrameCheckDelayMillis);
+    }
+
+    @Test
+    public void skippedCheckIsRescheduledForWhenTheSweepCanMove() {
+        mScheduler.setSweep();
+        mPacer.setSweepResolutionMillis(40);
+        assertEquals(40, mPacer.getHandResolutionMillis());
+        assertDrawn();
+
+        mNowMillis = SECOND_START_MILLIS + 10;
+        assertSkipped();
+        assertEquals(30, mHost.mFrameCheckDelayMillis);
+    }
+
+    @Test
+    public void rescheduledCheckWaitsForAScheduledFrame() {
+        // At 15 fps frames fall at 0, 67, 134, ... ms, so the hands moving at 40 ms are only
+        // seen at 67 ms.
+        mScheduler.setFixedRate(15);
+        mPacer.setSweepResolutionMillis(40);
+        assertDrawn();
+
+        mNowMillis = SECOND_START_MILLIS + 10;
+        assertSkipped();
+        assertEquals(57, mHost.mFrameCheckDelayMillis);
+    }
+
+    @Test
+    public void newComplicationDataForcesADraw() {
+        assertDrawn();
+        mPacer.onComplicationDataChanged();
+        assertDrawn();
+        assertSkipped();
+    }
+
+    @Test
+    public void qualityTierChangeForcesADraw() {
+        mPacer.setQualityTier(QualityTier.LOW);
+        assertDrawn();
+        mPacer.setQualityTier(QualityTier.HIGH);
+        assertDrawn();
+        // Setting the same tier again changes nothing.
+        mPacer.setQualityTier(QualityTier.HIGH);
+        assertSkipped();
+    }
+
+    @Test
+    public void invalidateForcesADraw() {
+        assertDrawn();
+        mPacer.invalidate();
+        assertDrawn();
+        assertEquals(2, mPacer.getRenderedFrames());
+        assertEquals(0, mPacer.getSkippedFrames());
+    }
+
+    @Test
+    public void ambientFramesChangeOnceAMinuteAndAreNotRescheduled() {
+        mHost.mAmbient = true;
+        assertEquals(60 * 1000, mPacer.getHandResolutionMillis());
+        assertDrawn();
+
+        // onTimeTick() comes once a minute, so no check is asked for in between.
+        mNowMillis = SECOND_START_MILLIS + 1000;
+        assertSkipped();
+        assertEquals(NO_CHECK, mHost.mFrameCheckDelayMillis);
+
+        // The frame drawn at 10:08:37 showed 10:08, so 10:09 is a change.
+        mNowMillis = SECOND_START_MILLIS + 23 * 1000;
+        assertDrawn();
+    }
+
+    @Test
+    public void framesAreNeverSkippedIfSkippingIsOff() {
+        final FramePacer pacer = new FramePacer(mClock, mScheduler, mHost,
+                false /* skipUnchanged */);
+        pacer.onFrameDrawn(mNowMillis);
+        pacer.invalidateIfChanged();
+        assertTrue(mHost.mInvalidated);
+        assertEquals(0, pacer.getSkippedFrames());
+    }
+
+    @Test
+    public void scheduleNextFrameWaitsForTheNextSecond() {
+        mNowMillis = SECOND_START_MILLIS + 400;
+        mPacer.scheduleNextFrame();
+        assertEquals(600, mHost.mFrameCheckDelayMillis);
+        assertFalse(mHost.mInvalidated);
+
+        // Nothing is scheduled while invisible.
+        mHost.mVisible = false;
+        mPacer.scheduleNextFrame();
+        assertEquals(NO_CHECK, mHost.mFrameCheckDelayMillis);
+    }
+
+    @Test
+    public void fingerprintDependsOnEveryInputAndItsOrder() {
+        final FrameFingerprint fingerprint = new FrameFingerprint();
+        fingerprint.begin().add(1).add(2).onFrameDrawn();
+        assertTrue(fingerprint.begin().add(1).add(2).shouldSkip());
+        assertFalse(fingerprint.begin().add(2).add(1).shouldSkip());
+        assertFalse(fingerprint.begin().add(1).add(2).add(false).shouldSkip());
+
+        fingerprint.invalidate();
+        assertFalse(fingerprint.begin().add(1).add(2).shouldSkip());
+        assertEquals(1, fingerprint.getRenderedFrames());
+        assertEquals(1, fingerprint.getSkippedFrames());
+    }
+
+    /**
+     * Checks for a frame now and asserts that it is drawn, then draws it.
+     */
+    private void assertDrawn() {
+        mHost.mInvalidated = false;
+        mHost.mFrameCheckDelayMillis = NO_CHECK;
+        mPacer.invalidateIfChanged();
+        assertTrue("frame at " + mNowMillis + " not drawn", mHost.mInvalidated);
+        mPacer.onFrameDrawn(mNowMillis);
+    }
+
+    /**
+     * Checks for a frame now and asserts that it is skipped.
+     */
+    private void assertSkipped() {
+        mHost.mInvalidated = false;
+        mHost.mFrameCheckDelayMillis = NO_CHECK;
+        mPacer.invalidateIfChanged();
+        assertFalse("frame at " + mNowMillis + " not skipped", mHost.mInvalidated);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that every kind of frame charges its time to each {@link FrameMetrics} phase exactly
+ * once, in order, so the phase breakdown of a frame adds up to its total.
+ */
+public class FramePhaseTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 320;
+
+    /**
+     * Phases of a frame in the order they're marked, one letter per phase.
+     */
+    private static final String FRAME = "[CMDS]";
+
+    /**
+     * Remembers the calls made to it.
+     */
+    private static class RecordingFrameMetrics extends FrameMetrics {
+
+        private static final String PHASE_LETTERS = "CMDS";
+
+        final StringBuilder mCalls = new StringBuilder();
+
+        RecordingFrameMetrics() {
+            super(1000000000L / 60, 16 /* ringCapacity */);
+        }
+
+        @Override
+        public void beginFrame(int mode) {
+            mCalls.append('[');
+            super.beginFrame(mode);
+        }
+
+        @Override
+        public void mark(int phase) {
+            mCalls.append(PHASE_LETTERS.charAt(phase));
+            super.mark(phase);
+        }
+
+        @Override
+        public void endFrame() {
+            super.endFrame();
+            mCalls.append(']');
+        }
+
+        String takeCalls() {
+            final String calls = mCalls.toString();
+            mCalls.setLength(0);
+            return calls;
+        }
+    }
+
+    private final FakeRendererHost mHost = new FakeRendererHost();
+    private final RecordingFrameMetrics mFrameMetrics = new RecordingFrameMetrics();
+    private WatchFaceRenderer mRenderer;
+
+    @Before
+    public void setUp() {
+        mHost.mNowMillis = 8 * 60 * 60 * 1000L;
+        mRenderer = mHost.createRenderer(new RecordingGlApi(), QualityTier.MEDIUM, WIDTH,
+                HEIGHT, mFrameMetrics);
+    }
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+    }
+
+    @Test
+    public void interactiveFramesMarkEachPhaseOnce() {
+        mHost.setState(true /* visible */, false /* ambient */);
+        assertTrue(mHost.draw());
+        assertEquals(FRAME, mFrameMetrics.takeCalls());
+
+        // The hands move a little, so the next frames are drawn in several scissor passes.
+        for (int frame = 0; frame < 3; frame++) {
+            mHost.mNowMillis += 1000;
+            mRenderer.onFrameCheck();
+            mHost.invalidate();
+            assertTrue(mHost.draw());
+            assertEquals(FRAME, mFrameMetrics.takeCalls());
+        }
+    }
+
+    @Test
+    public void ambientFramesMarkEachPhaseOnce() {
+        mHost.setState(true /* visible */, true /* ambient */);
+        // Nothing is prerendered yet, so the first frame is drawn. The following ones come
+        // from frames drawn ahead of time, which aren't timed as frames.
+        assertTrue(mHost.draw());
+        assertEquals(FRAME, mFrameMetrics.takeCalls());
+
+        for (int minute = 0; minute < 3; minute++) {
+            mHost.mNowMillis += 60 * 1000;
+            mRenderer.onTimeTick();
+            assertTrue(mHost.draw());
+            assertEquals(FRAME, mFrameMetrics.takeCalls());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FrameSchedulerTest {
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+
+    /**
+     * 10:08:37 on the first day of 2018 in UTC, on a whole second.
+     */
+    private static final long SECOND_START_MILLIS = 1514801317000L;
+
+    private long mNowMillis = SECOND_START_MILLIS;
+
+    private final FrameScheduler mScheduler = new FrameScheduler(new FrameScheduler.TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+    });
+
+    @Test
+    public void oncePerSecondDrawsAtTheNextSecond() {
+        assertEquals(FrameScheduler.Mode.ONCE_PER_SECOND, mScheduler.getMode());
+        assertFalse(mScheduler.isContinuous());
+
+        // A frame due right now was drawn, so the next one is a second later.
+        assertEquals(1000, mScheduler.getDelayMillis());
+        mNowMillis = SECOND_START_MILLIS + 1;
+        assertEquals(999, mScheduler.getDelayMillis());
+        mNowMillis = SECOND_START_MILLIS + 999;
+        assertEquals(1, mScheduler.getDelayMillis());
+    }
+
+    @Test
+    public void framesAreAlignedBeforeTheEpoch() {
+        assertEquals(0, mScheduler.getNextFrameTimeMillis(-1));
+        assertEquals(-1000, mScheduler.getNextFrameTimeMillis(-1001));
+    }
+
+    @Test
+    public void fixedRateFramesFallOnTheSamePointsEverySecond() {
+        mScheduler.setFixedRate(15);
+        assertTrue(mScheduler.isContinuous());
+        assertEquals(15, mScheduler.getFramesPerSecond());
+
+        long time = SECOND_START_MILLIS - 1;
+        for (int second = 0; second < 3; second++) {
+            final long secondStart = SECOND_START_MILLIS + second * 1000;
+            for (int k = 0; k < 15; k++) {
+                time = mScheduler.getNextFrameTimeMillis(time);
+                // ceil(k * 1000 / 15)
+                assertEquals(secondStart + (k * 1000 + 14) / 15, time);
+            }
+        }
+    }
+
+    @Test
+    public void fixedRateDelayWaitsForTheNextFrame() {
+        mScheduler.setFixedRate(30);
+        mNowMillis = SECOND_START_MILLIS + 500;
+        // Frames 15 and 16 are at 500 and 534 ms.
+        assertEquals(34, mScheduler.getDelayMillis());
+        mNowMillis = SECOND_START_MILLIS + 990;
+        assertEquals(10, mScheduler.getDelayMillis());
+    }
+
+    @Test
+    public void switchingToOncePerSecondWaitsForTheNextSecond() {
+        mScheduler.setFixedRate(30);
+        mNowMillis = SECOND_START_MILLIS + 500;
+        assertEquals(34, mScheduler.getDelayMillis());
+
+        mScheduler.setOncePerSecond();
+        assertEquals(FrameScheduler.Mode.ONCE_PER_SECOND, mScheduler.getMode());
+        assertEquals(1, mScheduler.getFramesPerSecond());
+        assertFalse(mScheduler.isContinuous());
+        assertEquals(500, mScheduler.getDelayMillis());
+
+        mScheduler.setFixedRate(30);
+        assertEquals(34, mScheduler.getDelayMillis());
+    }
+
+    @Test
+    public void sweepDrawsOnTheNextVsync() {
+        mScheduler.setSweep();
+        mNowMillis = SECOND_START_MILLIS + 123;
+
+        assertEquals(FrameScheduler.Mode.SWEEP, mScheduler.getMode());
+        assertEquals(FrameScheduler.MAX_FRAMES_PER_SECOND, mScheduler.getFramesPerSecond());
+        assertTrue(mScheduler.isContinuous());
+        assertEquals(0, mScheduler.getDelayMillis());
+    }
+
+    @Test
+    public void framesPerHour() {
+        assertEquals(3600, countFramesInAnHour());
+        final int[] rates = {1, 7, 15, 24, 30, 60};
+        for (int fps : rates) {
+            mScheduler.setFixedRate(fps);
+            assertEquals("at " + fps + " fps", fps * 3600, countFramesInAnHour());
+        }
+    }
+
+    @Test
+    public void rateOutOfRangeIsRejected() {
+        final int[] rates = {0, -1, FrameScheduler.MAX_FRAMES_PER_SECOND + 1};
+        for (int fps : rates) {
+            try {
+                mScheduler.setFixedRate(fps);
+                fail("accepted " + fps + " fps");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        assertEquals(FrameScheduler.Mode.ONCE_PER_SECOND, mScheduler.getMode());
+    }
+
+    /**
+     * Returns the number of frames an engine following the schedule draws in an hour, starting
+     * at an unaligned time.
+     */
+    private int countFramesInAnHour() {
+        final long start = SECOND_START_MILLIS + 17;
+        final long end = start + MILLIS_PER_HOUR;
+        int frames = 0;
+        long time = mScheduler.getNextFrameTimeMillis(start - 1);
+        while (time < end) {
+            frames++;
+            mNowMillis = time;
+            time += mScheduler.getDelayMillis();
+        }
+        return frames;
+    }
+}
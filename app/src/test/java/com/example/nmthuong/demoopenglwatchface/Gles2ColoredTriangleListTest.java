@@ -0,0 +1,124 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Gles2ColoredTriangleListTest {
+
+    /**
+     * Two triangles in the XY plane.
+     */
+    private static final float[] COORDS = {
+            0, 0, 0, 1, 0, 0, 0, 1, 0,
+            1, 0, 0, 1, 1, 0, 0, 1, 0
+    };
+    private static final float[] COLOR = {1, 1, 1, 1};
+    private static final float[] MVP_MATRIX = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1
+    };
+
+    private final RecordingGlApi mGl = new RecordingGlApi();
+    private final Object mEglContext = new Object();
+    private Gles2ColoredTriangleList.Program mProgram;
+
+    @Before
+    public void setUp() {
+        mProgram = new Gles2ColoredTriangleList.Program(mGl, mEglContext);
+    }
+
+    @After
+    public void tearDown() {
+        mProgram.release();
+        ShaderRegistry.getInstance().forgetContext(mEglContext);
+    }
+
+    @Test
+    public void vertexBufferObjectIsUploadedOnce() {
+        final Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, COORDS,
+                COLOR, true /* useVertexBufferObject */);
+        mGl.beginFrame();
+        list.onGlContextCreated();
+        assertEquals(list.getVertexBytes(), mGl.getFrameUploadBytes());
+
+        for (int frame = 0; frame < 3; frame++) {
+            mGl.beginFrame();
+            list.draw(MVP_MATRIX);
+            assertEquals(1, mGl.getFrameDrawCalls());
+            assertEquals(0, mGl.getFrameUploadBytes());
+        }
+    }
+
+    @Test
+    public void clientSideVerticesAreCopiedOnEveryDraw() {
+        final Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, COORDS,
+                COLOR, false /* useVertexBufferObject */);
+        list.onGlContextCreated();
+        assertEquals(0, mGl.getLiveBufferCount());
+
+        for (int frame = 0; frame < 3; frame++) {
+            mGl.beginFrame();
+            list.draw(MVP_MATRIX);
+            assertEquals(list.getVertexBytes(), mGl.getFrameUploadBytes());
+        }
+    }
+
+    @Test
+    public void compactVerticesUploadFewerBytes() {
+        final Gles2ColoredTriangleList floats = new Gles2ColoredTriangleList(mProgram, COORDS,
+                COLOR, false /* useVertexBufferObject */, VertexFormat.FLOAT_XYZ);
+        final Gles2ColoredTriangleList shorts = new Gles2ColoredTriangleList(mProgram, COORDS,
+                COLOR, false /* useVertexBufferObject */, VertexFormat.SHORT_XY);
+        mGl.beginFrame();
+        floats.draw(MVP_MATRIX);
+        final long floatBytes = mGl.getFrameUploadBytes();
+        mGl.beginFrame();
+        shorts.draw(MVP_MATRIX);
+
+        assertEquals(floatBytes / 3, mGl.getFrameUploadBytes());
+    }
+
+    @Test
+    public void newContextUploadsAgain() {
+        final Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, COORDS,
+                COLOR, true /* useVertexBufferObject */);
+        list.onGlContextCreated();
+        // The buffer died with the lost context, so a new one is created and filled.
+        mGl.beginFrame();
+        list.onGlContextCreated();
+        assertEquals(list.getVertexBytes(), mGl.getFrameUploadBytes());
+
+        mGl.beginFrame();
+        list.draw(MVP_MATRIX);
+        assertEquals(0, mGl.getFrameUploadBytes());
+    }
+
+    @Test
+    public void releaseDeletesTheVertexBufferObject() {
+        final Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, COORDS,
+                COLOR, true /* useVertexBufferObject */);
+        list.onGlContextCreated();
+        assertEquals(1, mGl.getLiveBufferCount());
+
+        list.release();
+        assertEquals(0, mGl.getLiveBufferCount());
+        // Releasing twice deletes nothing else.
+        list.release();
+        assertEquals(0, mGl.getLiveBufferCount());
+    }
+
+    @Test
+    public void drawWithoutVertexBufferObjectFallsBackToClientSideVertices() {
+        final Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, COORDS,
+                COLOR, true /* useVertexBufferObject */);
+        mGl.beginFrame();
+        list.draw(MVP_MATRIX);
+
+        assertEquals(list.getVertexBytes(), mGl.getFrameUploadBytes());
+    }
+}
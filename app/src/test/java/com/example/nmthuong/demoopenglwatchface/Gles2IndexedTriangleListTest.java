@@ -0,0 +1,153 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Gles2IndexedTriangleListTest {
+
+    /**
+     * Two triangles in the XY plane that share an edge, so 6 vertices weld into 4.
+     */
+    private static final float[] COORDS = {
+            0, 0, 0, 1, 0, 0, 0, 1, 0,
+            1, 0, 0, 1, 1, 0, 0, 1, 0
+    };
+    private static final int NUM_INDICES = 6;
+    private static final int NUM_VERTICES = 4;
+
+    private static final float[] COLOR = {1, 1, 1, 1};
+    private static final float[] MVP_MATRIX = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1
+    };
+
+    private final RecordingGlApi mGl = new RecordingGlApi();
+    private final Object mEglContext = new Object();
+    private Gles2ColoredTriangleList.Program mProgram;
+
+    @Before
+    public void setUp() {
+        mProgram = new Gles2ColoredTriangleList.Program(mGl, mEglContext);
+    }
+
+    @After
+    public void tearDown() {
+        mProgram.release();
+        ShaderRegistry.getInstance().forgetContext(mEglContext);
+    }
+
+    @Test
+    public void sharedVerticesAreStoredOnce() {
+        final Gles2IndexedTriangleList list = createList(false /* useBufferObjects */,
+                VertexFormat.FLOAT_XYZ);
+        assertEquals(NUM_VERTICES, list.getNumVertices());
+        assertEquals(NUM_VERTICES * VertexFormat.FLOAT_XYZ.getStride(), list.getVertexBytes());
+        // Two bytes per index.
+        assertEquals(NUM_INDICES * 2, list.getIndexBytes());
+
+        final Gles2IndexedTriangleList shorts = createList(false /* useBufferObjects */,
+                VertexFormat.SHORT_XY);
+        assertEquals(NUM_VERTICES * VertexFormat.SHORT_XY.getStride(), shorts.getVertexBytes());
+    }
+
+    @Test
+    public void bufferObjectsAreUploadedOnce() {
+        final Gles2IndexedTriangleList list = createList(true /* useBufferObjects */,
+                VertexFormat.FLOAT_XYZ);
+        mGl.beginFrame();
+        list.onGlContextCreated();
+        assertEquals(list.getVertexBytes() + list.getIndexBytes(), mGl.getFrameUploadBytes());
+        assertEquals(2, mGl.getLiveBufferCount());
+        // Nothing is left bound.
+        assertEquals(0, mGl.getBoundArrayBuffer());
+        assertEquals(0, mGl.getBoundElementArrayBuffer());
+
+        for (int frame = 0; frame < 3; frame++) {
+            mGl.beginFrame();
+            list.draw(MVP_MATRIX);
+            assertEquals(1, mGl.getFrameDrawCalls());
+            assertEquals(0, mGl.getFrameUploadBytes());
+        }
+    }
+
+    @Test
+    public void bufferObjectsAreDrawnWithShortIndices() {
+        final Gles2IndexedTriangleList list = createList(true /* useBufferObjects */,
+                VertexFormat.FLOAT_XYZ);
+        list.onGlContextCreated();
+        list.draw(MVP_MATRIX);
+
+        assertEquals(GLES20.GL_TRIANGLES, mGl.getLastDrawElementsMode());
+        assertEquals(NUM_INDICES, mGl.getLastDrawElementsCount());
+        assertEquals(GLES20.GL_UNSIGNED_SHORT, mGl.getLastDrawElementsType());
+        assertTrue(mGl.getLastDrawElementsBuffer() != 0);
+        // Unbound afterwards, so client-side indices keep working elsewhere.
+        assertEquals(0, mGl.getBoundElementArrayBuffer());
+    }
+
+    @Test
+    public void clientSideIndicesAreCopiedOnEveryDraw() {
+        final Gles2IndexedTriangleList list = createList(false /* useBufferObjects */,
+                VertexFormat.FLOAT_XYZ);
+        list.onGlContextCreated();
+        assertEquals(0, mGl.getLiveBufferCount());
+
+        for (int frame = 0; frame < 3; frame++) {
+            mGl.beginFrame();
+            list.draw(MVP_MATRIX);
+            assertEquals(1, mGl.getFrameDrawCalls());
+            // RecordingGlApi counts a vertex per index.
+            assertEquals(NUM_INDICES * VertexFormat.FLOAT_XYZ.getStride()
+                    + list.getIndexBytes(), mGl.getFrameUploadBytes());
+        }
+        assertEquals(GLES20.GL_TRIANGLES, mGl.getLastDrawElementsMode());
+        assertEquals(NUM_INDICES, mGl.getLastDrawElementsCount());
+        assertEquals(GLES20.GL_UNSIGNED_SHORT, mGl.getLastDrawElementsType());
+        assertEquals(0, mGl.getLastDrawElementsBuffer());
+    }
+
+    @Test
+    public void drawWithoutBufferObjectsFallsBackToClientSideData() {
+        final Gles2IndexedTriangleList list = createList(true /* useBufferObjects */,
+                VertexFormat.FLOAT_XYZ);
+        mGl.beginFrame();
+        list.draw(MVP_MATRIX);
+
+        assertEquals(0, mGl.getLastDrawElementsBuffer());
+        assertEquals(NUM_INDICES * VertexFormat.FLOAT_XYZ.getStride() + list.getIndexBytes(),
+                mGl.getFrameUploadBytes());
+    }
+
+    @Test
+    public void releaseDeletesBothBufferObjects() {
+        final Gles2IndexedTriangleList list = createList(true /* useBufferObjects */,
+                VertexFormat.FLOAT_XYZ);
+        list.onGlContextCreated();
+
+        list.release();
+        assertEquals(0, mGl.getLiveBufferCount());
+        // Releasing twice deletes nothing else.
+        list.release();
+        assertEquals(0, mGl.getLiveBufferCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partialTriangleIsRefused() {
+        new Gles2IndexedTriangleList(mProgram, new float[]{0, 0, 0, 1, 0, 0}, COLOR,
+                false /* useBufferObjects */, VertexFormat.FLOAT_XYZ);
+    }
+
+    private Gles2IndexedTriangleList createList(boolean useBufferObjects,
+                                                VertexFormat vertexFormat) {
+        return new Gles2IndexedTriangleList(mProgram, COORDS, COLOR, useBufferObjects,
+                vertexFormat);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Gles2TriangleBatchTest {
+
+    private static final float[] TRIANGLE = {0, 0, 0, 1, 0, 0, 0, 1, 0};
+    private static final float[] WHITE = {1, 1, 1, 1};
+    private static final int NUM_LAYERS = 3;
+
+    private final RecordingGlApi mGl = new RecordingGlApi();
+    private final Object mEglContext = new Object();
+    private final float[] mMvpMatrices = new float[NUM_LAYERS * 16];
+    private Gles2TriangleBatch.Program mProgram;
+    private Gles2TriangleBatch mBatch;
+
+    @Before
+    public void setUp() {
+        mProgram = new Gles2TriangleBatch.Program(mGl, mEglContext);
+        final float[][] layerCoords = new float[NUM_LAYERS][];
+        final float[][] layerColors = new float[NUM_LAYERS][];
+        for (int layer = 0; layer < NUM_LAYERS; layer++) {
+            layerCoords[layer] = TRIANGLE;
+            layerColors[layer] = WHITE;
+        }
+        mBatch = new Gles2TriangleBatch(mProgram, layerCoords, layerColors);
+    }
+
+    @After
+    public void tearDown() {
+        mProgram.release();
+        ShaderRegistry.getInstance().forgetContext(mEglContext);
+    }
+
+    @Test
+    public void visibleLayersAreDrawnInOneCall() {
+        mBatch.onGlContextCreated();
+        mGl.beginFrame();
+
+        assertEquals(1, mBatch.draw(mMvpMatrices, null /* layerVisible */));
+        assertEquals(1, mGl.getFrameDrawCalls());
+        assertEquals(0, mGl.getFrameUploadBytes());
+    }
+
+    @Test
+    public void hiddenLayerSplitsTheDraw() {
+        mBatch.onGlContextCreated();
+        mGl.beginFrame();
+
+        assertEquals(2, mBatch.draw(mMvpMatrices, new boolean[]{true, false, true}));
+        assertEquals(2, mGl.getFrameDrawCalls());
+    }
+
+    @Test
+    public void releaseDeletesTheVertexBufferObject() {
+        mBatch.onGlContextCreated();
+        assertEquals(1, mGl.getLiveBufferCount());
+
+        mBatch.release();
+        assertEquals(0, mGl.getLiveBufferCount());
+        mBatch.release();
+        assertEquals(0, mGl.getLiveBufferCount());
+    }
+
+    @Test
+    public void rendererReleasesEveryBuffer() {
+        final RecordingGlApi gl = new RecordingGlApi();
+        final FakeRendererHost host = new FakeRendererHost();
+        final WatchFaceRenderer renderer =
+                host.createRenderer(gl, QualityTier.MEDIUM, 320 /* width */, 320 /* height */);
+        host.setState(true /* visible */, false /* ambient */);
+        host.draw();
+
+        renderer.release();
+        assertEquals(0, gl.getLiveBufferCount());
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Renders frames of the watch face with {@link SoftwareGlApi} and compares them with golden
+ * images in {@code src/test/resources/golden}. Frames that don't match are saved to
+ * {@code build/golden} for a look. After an intended change of the look, run the tests with
+ * {@code -PupdateGoldens} to write new golden images, and check them before committing.
+ */
+public class GoldenImageTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 320;
+
+    /**
+     * 10:08:37.250 on the first day of 2018 in UTC, with the hands well apart.
+     */
+    private static final long TIME_MILLIS = 1514801317250L;
+
+    /**
+     * Most a color channel of a pixel may differ from the golden image without counting as
+     * different. Trigonometry may round differently on another JVM.
+     */
+    private static final int CHANNEL_TOLERANCE = 8;
+
+    /**
+     * Most pixels that may differ, e.g. along the edges of the hands.
+     */
+    private static final int MAX_DIFFERENT_PIXELS = WIDTH * HEIGHT / 500;
+
+    private static final String GOLDEN_RESOURCE_DIR = "/golden/";
+    private static final File GOLDEN_SOURCE_DIR = new File("src/test/resources/golden");
+    private static final File FAILURE_DIR = new File("build/golden");
+
+    private final FakeRendererHost mHost = new FakeRendererHost();
+    private SoftwareGlApi mGl;
+    private WatchFaceRenderer mRenderer;
+
+    /**
+     * Pixels in the scissor boxes set since the last {@link #drawFrame()}.
+     */
+    private long mScissoredPixels;
+
+    @Before
+    public void setUp() {
+        mHost.mNowMillis = TIME_MILLIS;
+        mGl = new SoftwareGlApi(WIDTH, HEIGHT) {
+            @Override
+            public void glScissor(int x, int y, int width, int height) {
+                mScissoredPixels += (long) width * height;
+                super.glScissor(x, y, width, height);
+            }
+        };
+        mRenderer = mHost.createRenderer(mGl, QualityTier.HIGH, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void interactiveFrame() throws IOException {
+        mHost.setState(true /* visible */, false /* ambient */);
+        drawFrame();
+
+        assertMatchesGolden("interactive", mGl.readPixels());
+    }
+
+    @Test
+    public void ambientFrame() throws IOException {
+        mHost.setState(true /* visible */, true /* ambient */);
+        drawFrame();
+
+        assertMatchesGolden("ambient", mGl.readPixels());
+    }
+
+    @Test
+    public void partialFrame() throws IOException {
+        mHost.setState(true /* visible */, false /* ambient */);
+        drawFrame();
+        // The hands move, so only the rectangles they left and entered are drawn.
+        mHost.mNowMillis += 1000;
+        mRenderer.onFrameCheck();
+        mHost.invalidate();
+        drawFrame();
+        assertTrue("frame wasn't partial",
+                mScissoredPixels > 0 && mScissoredPixels < WIDTH * HEIGHT / 2);
+        final int[] partial = mGl.readPixels();
+
+        // A frame drawn in full at the same time must look the same.
+        final FakeRendererHost fullHost = new FakeRendererHost();
+        fullHost.mNowMillis = mHost.mNowMillis;
+        final SoftwareGlApi fullGl = new SoftwareGlApi(WIDTH, HEIGHT);
+        final WatchFaceRenderer fullRenderer =
+                fullHost.createRenderer(fullGl, QualityTier.HIGH, WIDTH, HEIGHT);
+        fullHost.setState(true /* visible */, false /* ambient */);
+        fullGl.beginFrame();
+        assertTrue(fullHost.draw());
+        fullRenderer.release();
+        assertEquals(0, countDifferentPixels(fullGl.readPixels(), partial));
+
+        assertMatchesGolden("partial", partial);
+    }
+
+    private void drawFrame() {
+        mGl.beginFrame();
+        mScissoredPixels = 0;
+        assertTrue("no frame was asked for", mHost.draw());
+    }
+
+    private static void assertMatchesGolden(String name, int[] pixels) throws IOException {
+        final String fileName = name + ".png";
+        if (System.getProperty("updateGoldens") != null) {
+            GOLDEN_SOURCE_DIR.mkdirs();
+            PngWriter.write(pixels, WIDTH, HEIGHT, new File(GOLDEN_SOURCE_DIR, fileName));
+            return;
+        }
+        final int[] golden = readGolden(fileName);
+        final int different = countDifferentPixels(golden, pixels);
+        if (different > MAX_DIFFERENT_PIXELS) {
+            FAILURE_DIR.mkdirs();
+            final File actual = new File(FAILURE_DIR, fileName);
+            PngWriter.write(pixels, WIDTH, HEIGHT, actual);
+            fail(name + " frame has " + different + " pixels unlike the golden image, at most "
+                    + MAX_DIFFERENT_PIXELS + " may differ. Saved as " + actual);
+        }
+    }
+
+    private static int[] readGolden(String fileName) throws IOException {
+        final InputStream in =
+                GoldenImageTest.class.getResourceAsStream(GOLDEN_RESOURCE_DIR + fileName);
+        assertNotNull("no golden image " + fileName + ", run with -PupdateGoldens", in);
+        final BufferedImage image;
+        try {
+            image = ImageIO.read(in);
+        } finally {
+            in.close();
+        }
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+
+    /**
+     * Returns the number of pixels with a channel that differs by more than
+     * {@link #CHANNEL_TOLERANCE}.
+     */
+    private static int countDifferentPixels(int[] expected, int[] actual) {
+        int different = 0;
+        for (int i = 0; i < expected.length; i++) {
+            final int a = expected[i];
+            final int b = actual[i];
+            for (int shift = 0; shift < 32; shift += 8) {
+                if (Math.abs(((a >>> shift) & 0xff) - ((b >>> shift) & 0xff))
+                        > CHANNEL_TOLERANCE) {
+                    different++;
+                    break;
+                }
+            }
+        }
+        return different;
+    }
+}
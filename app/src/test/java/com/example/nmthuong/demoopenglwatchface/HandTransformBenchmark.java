@@ -0,0 +1,164 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the per-frame CPU cost of the two ways the dial batch transforms its hands: an MVP
+ * matrix per layer, or one view projection matrix and a 2D transform per layer. Each frame sets
+ * the transforms the way {@link WatchFaceRenderer#setHandTransforms} does, then draws the whole
+ * dial through a {@link RecordingGlApi}, so the GL calls cost next to nothing and the numbers
+ * are the renderer's own work. See {@link MicroBenchmark} for how to run it.
+ */
+public class HandTransformBenchmark {
+
+    private static final int NUM_LAYERS = DialGeometry.NUM_LAYERS;
+
+    /**
+     * A view projection matrix for a square screen, with a translation so no element is
+     * trivially 0 or 1.
+     */
+    private static final float[] VP_MATRIX = {
+            0.9f, 0, 0, 0,
+            0, 0.9f, 0, 0,
+            0, 0, -0.5f, 0,
+            0.01f, -0.02f, -0.5f, 1
+    };
+
+    private final RecordingGlApi mGl = new RecordingGlApi();
+    private final Object mEglContext = new Object();
+    private final float[] mLayerMvpMatrices = new float[NUM_LAYERS * 16];
+    private final float[] mLayerTransforms =
+            new float[NUM_LAYERS * Gles2TriangleBatch.FLOATS_PER_AFFINE_TRANSFORM];
+    private Gles2TriangleBatch.Program mMatrixProgram;
+    private Gles2TriangleBatch.Program mAffineProgram;
+    private Gles2TriangleBatch mMatrixBatch;
+    private Gles2TriangleBatch mAffineBatch;
+
+    /**
+     * Frame number, which moves the hands so every frame computes new transforms.
+     */
+    private int mFrame;
+
+    @Before
+    public void setUp() {
+        mMatrixProgram = new Gles2TriangleBatch.Program(mGl, mEglContext, false /* affine */);
+        mAffineProgram = new Gles2TriangleBatch.Program(mGl, mEglContext, true /* affine */);
+        final float[][] layerCoords = DialGeometry.createLayerCoords();
+        final float[][] layerColors = DialGeometry.getLayerColors();
+        mMatrixBatch = new Gles2TriangleBatch(mMatrixProgram, layerCoords, layerColors,
+                VertexFormat.SHORT_XY_UBYTE_RGBA_LAYER);
+        mAffineBatch = new Gles2TriangleBatch(mAffineProgram, layerCoords, layerColors,
+                VertexFormat.SHORT_XY_UBYTE_RGBA_LAYER);
+        mMatrixBatch.onGlContextCreated();
+        mAffineBatch.onGlContextCreated();
+    }
+
+    @After
+    public void tearDown() {
+        mMatrixBatch.release();
+        mAffineBatch.release();
+        mMatrixProgram.release();
+        mAffineProgram.release();
+        ShaderRegistry.getInstance().forgetContext(mEglContext);
+    }
+
+    @Test
+    public void affineTransformsSendFewerUniforms() {
+        mGl.beginFrame();
+        drawMatrixFrame();
+        final int matrixFloats = mGl.getFrameUniformFloats();
+        final int matrixCalls = mGl.getFrameCalls();
+        mGl.beginFrame();
+        drawAffineFrame();
+        final int affineFloats = mGl.getFrameUniformFloats();
+        MicroBenchmark.print(String.format(Locale.US,
+                "uniform floats per frame: %d matrix, %d affine", matrixFloats, affineFloats));
+
+        // Both send the position scale. The matrices take 16 floats per layer, the affine path
+        // 16 for the shared matrix and 4 per layer.
+        assertEquals(1 + NUM_LAYERS * 16, matrixFloats);
+        assertEquals(1 + 16 + NUM_LAYERS * 4, affineFloats);
+        // One more call for the transforms, the same draw calls.
+        assertEquals(matrixCalls + 1, mGl.getFrameCalls());
+    }
+
+    @Test
+    public void perFrameCost() {
+        final double matrixNanos = MicroBenchmark.measure("hand MVP matrices + draw",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        return drawMatrixFrame();
+                    }
+                });
+        final double affineNanos = MicroBenchmark.measure("affine hand transforms + draw",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        return drawAffineFrame();
+                    }
+                });
+        if (affineNanos > 0) {
+            MicroBenchmark.print(String.format(Locale.US, "affine per frame: %.2fx faster",
+                    matrixNanos / affineNanos));
+        }
+    }
+
+    /**
+     * Computes an MVP matrix per layer and draws the dial with them.
+     *
+     * @return the number of draw calls
+     */
+    private int drawMatrixFrame() {
+        mFrame++;
+        setHandMvpMatrix(DialGeometry.LAYER_HOUR_HAND, getHourDegrees());
+        setHandMvpMatrix(DialGeometry.LAYER_MINUTE_HAND, getMinuteDegrees());
+        setHandMvpMatrix(DialGeometry.LAYER_SECOND_HAND, getSecondDegrees());
+        System.arraycopy(VP_MATRIX, 0, mLayerMvpMatrices, DialGeometry.LAYER_MAJOR_TICKS * 16,
+                16);
+        System.arraycopy(VP_MATRIX, 0, mLayerMvpMatrices, DialGeometry.LAYER_MINOR_TICKS * 16,
+                16);
+        return mMatrixBatch.draw(mLayerMvpMatrices, null /* layerVisible */);
+    }
+
+    /**
+     * Computes a 2D transform per hand and draws the dial with them.
+     *
+     * @return the number of draw calls
+     */
+    private int drawAffineFrame() {
+        mFrame++;
+        setHandAffineTransform(DialGeometry.LAYER_HOUR_HAND, getHourDegrees());
+        setHandAffineTransform(DialGeometry.LAYER_MINUTE_HAND, getMinuteDegrees());
+        setHandAffineTransform(DialGeometry.LAYER_SECOND_HAND, getSecondDegrees());
+        return mAffineBatch.drawAffine(VP_MATRIX, mLayerTransforms, null /* layerVisible */);
+    }
+
+    private void setHandMvpMatrix(int layer, float degrees) {
+        Mat4.multiplyRotateZ(mLayerMvpMatrices, layer * 16, VP_MATRIX, 0,
+                SinCosTable.cosDegrees(degrees), SinCosTable.sinDegrees(degrees));
+    }
+
+    private void setHandAffineTransform(int layer, float degrees) {
+        Gles2TriangleBatch.setAffineTransform(mLayerTransforms, layer,
+                SinCosTable.cosDegrees(degrees), SinCosTable.sinDegrees(degrees), 0, 0);
+    }
+
+    private float getHourDegrees() {
+        return mFrame * (0.1f / 720);
+    }
+
+    private float getMinuteDegrees() {
+        return mFrame * (0.1f / 60);
+    }
+
+    private float getSecondDegrees() {
+        return mFrame * 0.1f;
+    }
+}
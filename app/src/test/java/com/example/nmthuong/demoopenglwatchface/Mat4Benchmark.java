@@ -0,0 +1,288 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link Mat4} and {@link Vec} with the {@link android.opengl.Matrix} calls and double
+ * precision rotation they replaced, as reimplemented by {@link ReferenceMatrix}. The comparison
+ * tests always run; see {@link MicroBenchmark} for how to time the rest.
+ */
+public class Mat4Benchmark {
+
+    private static final float TOLERANCE = 1e-5f;
+
+    /**
+     * Angles the operations cycle through, so the JIT can't fold a constant rotation.
+     */
+    private static final float[] ANGLES = new float[360];
+
+    static {
+        for (int i = 0; i < ANGLES.length; i++) {
+            // 7 is prime to 360, so every degree is visited with a large step in between.
+            ANGLES[i] = (i * 7 % 360) + 0.25f;
+        }
+    }
+
+    private final float[] mVpMatrix = new float[Mat4.SIZE];
+    private final float[] mRotation = new float[Mat4.SIZE];
+    private final float[] mExpected = new float[Mat4.SIZE];
+    private final float[] mActual = new float[Mat4.SIZE];
+    private final float[] mPoint = {0.3f, -0.7f, 0.1f, 1};
+    private final float[] mDialCoords;
+    private int mAngle;
+
+    public Mat4Benchmark() {
+        final float[] view = new float[Mat4.SIZE];
+        final float[] projection = new float[Mat4.SIZE];
+        Mat4.setLookAt(view, 0, 0, 0, -3, 0, 0, 0, 0, 1, 0);
+        Mat4.setFrustum(projection, 0, -1, 1, -1, 1, 2, 7);
+        Mat4.multiply(mVpMatrix, 0, projection, 0, view, 0);
+
+        final float[][] layerCoords = DialGeometry.createLayerCoords();
+        int length = 0;
+        for (float[] coords : layerCoords) {
+            length += coords.length;
+        }
+        mDialCoords = new float[length];
+        int offset = 0;
+        for (float[] coords : layerCoords) {
+            System.arraycopy(coords, 0, mDialCoords, offset, coords.length);
+            offset += coords.length;
+        }
+    }
+
+    @Test
+    public void multiplyMatchesReference() {
+        ReferenceMatrix.setRotateM(mRotation, 0, 33, 0, 0, 1);
+        ReferenceMatrix.translateM(mRotation, 0, 0.5f, -0.25f, 2);
+        ReferenceMatrix.multiplyMM(mExpected, 0, mVpMatrix, 0, mRotation, 0);
+        Mat4.multiply(mActual, 0, mVpMatrix, 0, mRotation, 0);
+        assertMatrixEquals(mExpected, mActual);
+
+        // Unlike multiplyMM, the result may be an input.
+        System.arraycopy(mVpMatrix, 0, mActual, 0, Mat4.SIZE);
+        Mat4.multiply(mActual, 0, mActual, 0, mRotation, 0);
+        assertMatrixEquals(mExpected, mActual);
+    }
+
+    @Test
+    public void rotateZMatchesReference() {
+        for (float degrees : ANGLES) {
+            ReferenceMatrix.setRotateM(mExpected, 0, degrees, 0, 0, 1);
+            Mat4.setRotateZ(mActual, 0, cos(degrees), sin(degrees));
+            assertMatrixEquals(mExpected, mActual);
+
+            System.arraycopy(mVpMatrix, 0, mExpected, 0, Mat4.SIZE);
+            ReferenceMatrix.rotateM(mExpected, 0, degrees, 0, 0, 1);
+            Mat4.multiplyRotateZ(mActual, 0, mVpMatrix, 0, cos(degrees), sin(degrees));
+            assertMatrixEquals(mExpected, mActual);
+        }
+    }
+
+    @Test
+    public void sinCosTableRotationIsCloseToReference() {
+        for (float degrees : ANGLES) {
+            System.arraycopy(mVpMatrix, 0, mExpected, 0, Mat4.SIZE);
+            ReferenceMatrix.rotateM(mExpected, 0, degrees, 0, 0, 1);
+            Mat4.multiplyRotateZ(mActual, 0, mVpMatrix, 0, SinCosTable.cosDegrees(degrees),
+                    SinCosTable.sinDegrees(degrees));
+            for (int i = 0; i < Mat4.SIZE; i++) {
+                assertEquals("at " + degrees + " degrees", mExpected[i], mActual[i], 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void translateAndTransformPointMatchReference() {
+        System.arraycopy(mVpMatrix, 0, mExpected, 0, Mat4.SIZE);
+        System.arraycopy(mVpMatrix, 0, mActual, 0, Mat4.SIZE);
+        ReferenceMatrix.translateM(mExpected, 0, 0.5f, -0.25f, 2);
+        Mat4.translate(mActual, 0, 0.5f, -0.25f, 2);
+        assertMatrixEquals(mExpected, mActual);
+
+        final float[] expected = new float[4];
+        final float[] actual = new float[4];
+        ReferenceMatrix.multiplyMV(expected, 0, mExpected, 0, mPoint, 0);
+        Vec.transformPoint(actual, 0, mActual, 0, mPoint[0], mPoint[1], mPoint[2]);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(expected[i], actual[i], TOLERANCE);
+        }
+    }
+
+    @Test
+    public void batchRotationMatchesDoublePrecision() {
+        final float[] expected = mDialCoords.clone();
+        final float[] actual = mDialCoords.clone();
+        rotateCoordsInDoubles(expected, 123);
+        Vec.rotateZ(actual, 0, actual.length / 3, 3, cos(123), sin(123));
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], TOLERANCE);
+        }
+    }
+
+    /**
+     * The per-frame work of a hand: its model rotation times the view-projection matrix.
+     */
+    @Test
+    public void handMvpCost() {
+        final double referenceNanos = MicroBenchmark.measure("setRotateM + multiplyMM",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        ReferenceMatrix.setRotateM(mRotation, 0, nextAngle(), 0, 0, 1);
+                        ReferenceMatrix.multiplyMM(mActual, 0, mVpMatrix, 0, mRotation, 0);
+                        return Float.floatToRawIntBits(mActual[0]);
+                    }
+                });
+        final double generalNanos = MicroBenchmark.measure("setRotateZ + multiply",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        final float degrees = nextAngle();
+                        Mat4.setRotateZ(mRotation, 0, cos(degrees), sin(degrees));
+                        Mat4.multiply(mActual, 0, mVpMatrix, 0, mRotation, 0);
+                        return Float.floatToRawIntBits(mActual[0]);
+                    }
+                });
+        final double fastNanos = MicroBenchmark.measure("multiplyRotateZ",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        final float degrees = nextAngle();
+                        Mat4.multiplyRotateZ(mActual, 0, mVpMatrix, 0, cos(degrees),
+                                sin(degrees));
+                        return Float.floatToRawIntBits(mActual[0]);
+                    }
+                });
+        final double tableNanos = MicroBenchmark.measure("multiplyRotateZ + SinCosTable",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        final float degrees = nextAngle();
+                        Mat4.multiplyRotateZ(mActual, 0, mVpMatrix, 0,
+                                SinCosTable.cosDegrees(degrees), SinCosTable.sinDegrees(degrees));
+                        return Float.floatToRawIntBits(mActual[0]);
+                    }
+                });
+        printRatio("setRotateZ + multiply", generalNanos, referenceNanos);
+        printRatio("multiplyRotateZ", fastNanos, referenceNanos);
+        printRatio("multiplyRotateZ + SinCosTable", tableNanos, referenceNanos);
+    }
+
+    @Test
+    public void multiplyCost() {
+        final double referenceNanos = MicroBenchmark.measure("multiplyMM",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        mRotation[0] = nextAngle();
+                        ReferenceMatrix.multiplyMM(mActual, 0, mVpMatrix, 0, mRotation, 0);
+                        return Float.floatToRawIntBits(mActual[0]);
+                    }
+                });
+        final double nanos = MicroBenchmark.measure("multiply", new MicroBenchmark.Operation() {
+            @Override
+            public long run() {
+                mRotation[0] = nextAngle();
+                Mat4.multiply(mActual, 0, mVpMatrix, 0, mRotation, 0);
+                return Float.floatToRawIntBits(mActual[0]);
+            }
+        });
+        printRatio("multiply", nanos, referenceNanos);
+    }
+
+    @Test
+    public void transformPointCost() {
+        final float[] result = new float[4];
+        final double referenceNanos = MicroBenchmark.measure("multiplyMV",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        mPoint[0] = nextAngle();
+                        ReferenceMatrix.multiplyMV(result, 0, mVpMatrix, 0, mPoint, 0);
+                        return Float.floatToRawIntBits(result[0]);
+                    }
+                });
+        final double nanos = MicroBenchmark.measure("transformPoint",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        Vec.transformPoint(result, 0, mVpMatrix, 0, nextAngle(), mPoint[1],
+                                mPoint[2]);
+                        return Float.floatToRawIntBits(result[0]);
+                    }
+                });
+        printRatio("transformPoint", nanos, referenceNanos);
+    }
+
+    /**
+     * Rotating the whole dial, as the geometry is built.
+     */
+    @Test
+    public void batchRotationCost() {
+        final float[] coords = mDialCoords.clone();
+        final double referenceNanos = MicroBenchmark.measure("rotate dial in doubles",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        rotateCoordsInDoubles(coords, nextAngle());
+                        return Float.floatToRawIntBits(coords[0]);
+                    }
+                });
+        final double nanos = MicroBenchmark.measure("Vec.rotateZ dial",
+                new MicroBenchmark.Operation() {
+                    @Override
+                    public long run() {
+                        final float degrees = nextAngle();
+                        Vec.rotateZ(coords, 0, coords.length / 3, 3, cos(degrees),
+                                sin(degrees));
+                        return Float.floatToRawIntBits(coords[0]);
+                    }
+                });
+        printRatio("Vec.rotateZ dial", nanos, referenceNanos);
+    }
+
+    private float nextAngle() {
+        mAngle = (mAngle + 1) % ANGLES.length;
+        return ANGLES[mAngle];
+    }
+
+    /**
+     * The rotation the watch face used to build its geometry with, computing every vertex in
+     * double precision.
+     */
+    private static void rotateCoordsInDoubles(float[] coords, float angleDegrees) {
+        double angleRadians = Math.toRadians(angleDegrees);
+        double cos = Math.cos(angleRadians);
+        double sin = Math.sin(angleRadians);
+        for (int i = 0; i < coords.length; i += 3) {
+            float x = coords[i];
+            float y = coords[i + 1];
+            coords[i] = (float) (cos * x - sin * y);
+            coords[i + 1] = (float) (sin * x + cos * y);
+        }
+    }
+
+    private static float cos(float degrees) {
+        return (float) Math.cos(Math.toRadians(degrees));
+    }
+
+    private static float sin(float degrees) {
+        return (float) Math.sin(Math.toRadians(degrees));
+    }
+
+    private static void printRatio(String name, double nanos, double referenceNanos) {
+        MicroBenchmark.print(String.format(Locale.US, "%s: %.2fx the reference's time", name,
+                nanos / referenceNanos));
+    }
+
+    private static void assertMatrixEquals(float[] expected, float[] actual) {
+        for (int i = 0; i < Mat4.SIZE; i++) {
+            assertEquals("element " + i, expected[i], actual[i], TOLERANCE);
+        }
+    }
+}
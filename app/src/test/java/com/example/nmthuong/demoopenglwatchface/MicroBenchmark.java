@@ -0,0 +1,95 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times small operations on the JVM for the benchmarks next to it. The benchmarks are unit
+ * tests: by default every operation runs once, so they can't rot, and nothing is timed. Run the
+ * tests with {@code -Pbenchmark} to warm up, time and print every operation.
+ * <p>
+ * HotSpot's numbers don't carry over to ART, but the ratios between two ways of doing the same
+ * thing usually do.
+ */
+final class MicroBenchmark {
+
+    static final boolean ENABLED = System.getProperty("benchmark") != null;
+
+    /**
+     * How long a timed round should take. Rounds are made of as many calls as fit.
+     */
+    private static final long ROUND_NANOS = 20000000;
+
+    private static final int WARMUP_ROUNDS = 25;
+    private static final int MEASURED_ROUNDS = 25;
+
+    /**
+     * Collects what the operations return, so the JIT can't remove their work.
+     */
+    private static volatile long sSink;
+
+    /**
+     * An operation to time.
+     */
+    interface Operation {
+        /**
+         * Does the work once.
+         *
+         * @return anything that depends on the result of the work
+         */
+        long run();
+    }
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Times an operation and prints the median time per call.
+     *
+     * @return the median time per call in nanoseconds, or 0 if benchmarks aren't
+     * {@link #ENABLED}
+     */
+    static double measure(String name, Operation operation) {
+        if (!ENABLED) {
+            sSink += operation.run();
+            return 0;
+        }
+        int calls = 1;
+        long nanos;
+        while ((nanos = time(operation, calls)) < ROUND_NANOS / 4) {
+            calls *= 2;
+        }
+        calls = (int) Math.max(1, calls * ROUND_NANOS / nanos);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            time(operation, calls);
+        }
+        final double[] nanosPerCall = new double[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            nanosPerCall[i] = (double) time(operation, calls) / calls;
+        }
+        Arrays.sort(nanosPerCall);
+        final double median = nanosPerCall[MEASURED_ROUNDS / 2];
+        print(String.format(Locale.US, "%-48s %10.1f ns/call", name, median));
+        return median;
+    }
+
+    /**
+     * Prints a line of results if benchmarks are {@link #ENABLED}.
+     */
+    static void print(String line) {
+        if (ENABLED) {
+            System.out.println(line);
+        }
+    }
+
+    private static long time(Operation operation, int calls) {
+        long sink = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += operation.run();
+        }
+        final long nanos = System.nanoTime() - start;
+        sSink += sink;
+        return nanos;
+    }
+}
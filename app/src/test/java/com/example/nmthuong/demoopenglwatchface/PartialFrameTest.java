@@ -0,0 +1,117 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks when {@link WatchFaceRenderer} draws partial frames, and that the surface only keeps
+ * its content across swaps while they can be drawn.
+ */
+public class PartialFrameTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 320;
+
+    private final FakeRendererHost mHost = new FakeRendererHost();
+    private WatchFaceRenderer mRenderer;
+
+    /**
+     * Number of {@code glScissor} calls, i.e. damage rectangles drawn, in the last frame.
+     */
+    private int mScissors;
+
+    private final RecordingGlApi mGl = new RecordingGlApi() {
+        @Override
+        public void glScissor(int x, int y, int width, int height) {
+            mScissors++;
+            super.glScissor(x, y, width, height);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+    }
+
+    @Test
+    public void bufferIsPreservedOnlyWhileInteractive() {
+        createRenderer();
+        mHost.setState(true /* visible */, false /* ambient */);
+        drawFrame();
+        assertTrue(mHost.mBufferPreserved);
+
+        mHost.setState(true /* visible */, true /* ambient */);
+        drawFrame();
+        assertFalse(mHost.mBufferPreserved);
+
+        mHost.setState(true /* visible */, false /* ambient */);
+        drawFrame();
+        assertTrue(mHost.mBufferPreserved);
+    }
+
+    @Test
+    public void firstFrameAfterAmbientIsDrawnWhole() {
+        createRenderer();
+        mHost.setState(true /* visible */, false /* ambient */);
+        drawFrame();
+        assertTrue("frame wasn't partial", drawNextSecond());
+
+        mHost.setState(true /* visible */, true /* ambient */);
+        drawFrame();
+        mHost.setState(true /* visible */, false /* ambient */);
+        assertFalse(drawNextSecond());
+        assertTrue(drawNextSecond());
+    }
+
+    @Test
+    public void firstFrameAfterResizeIsDrawnWhole() {
+        createRenderer();
+        mHost.setState(true /* visible */, false /* ambient */);
+        drawFrame();
+        assertTrue(drawNextSecond());
+
+        mRenderer.onSurfaceChanged(WIDTH, HEIGHT);
+        assertFalse(drawNextSecond());
+        assertTrue(drawNextSecond());
+    }
+
+    @Test
+    public void surfaceThatCantPreserveDrawsFullFrames() {
+        mHost.mCanPreserveBuffer = false;
+        createRenderer();
+        mHost.setState(true /* visible */, false /* ambient */);
+        drawFrame();
+        for (int i = 0; i < 3; i++) {
+            assertFalse(drawNextSecond());
+        }
+        // The surface isn't asked again.
+        assertEquals(1, mHost.mSwapBehaviorChanges);
+    }
+
+    private void createRenderer() {
+        mHost.mNowMillis = 8 * 60 * 60 * 1000L;
+        mRenderer = mHost.createRenderer(mGl, QualityTier.MEDIUM, WIDTH, HEIGHT);
+    }
+
+    private void drawFrame() {
+        mScissors = 0;
+        assertTrue("no frame was asked for", mHost.draw());
+    }
+
+    /**
+     * Draws the frame a second later, when the second hand has moved.
+     *
+     * @return whether the frame was partial
+     */
+    private boolean drawNextSecond() {
+        mHost.mNowMillis += 1000;
+        mRenderer.onFrameCheck();
+        mHost.invalidate();
+        drawFrame();
+        return mScissors > 0;
+    }
+}
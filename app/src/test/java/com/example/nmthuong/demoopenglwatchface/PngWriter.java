@@ -0,0 +1,119 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes pixels as an 8-bit RGBA PNG. Pure Java, so it also runs on a desktop JVM, where
+ * {@link android.graphics.Bitmap#compress} isn't available, e.g. to save frames rendered by
+ * {@link SoftwareGlApi}.
+ * <p>
+ * The output only depends on the pixels: no timestamps or other metadata are written, so the
+ * same frame always encodes to the same bytes.
+ */
+public final class PngWriter {
+
+    private static final byte[] SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static final int BIT_DEPTH = 8;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int FILTER_NONE = 0;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private PngWriter() {
+    }
+
+    /**
+     * Writes a PNG file.
+     *
+     * @see #write(int[], int, int, OutputStream)
+     */
+    public static void write(int[] argb, int width, int height, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(argb, width, height, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a PNG. The stream is not closed.
+     *
+     * @param argb   pixels as {@link android.graphics.Color} ints, top row first
+     * @param width  width in pixels
+     * @param height height in pixels
+     * @param out    where to write the PNG
+     */
+    public static void write(int[] argb, int width, int height, OutputStream out)
+            throws IOException {
+        if (width <= 0 || height <= 0 || argb.length < width * height) {
+            throw new IllegalArgumentException("bad size " + width + "x" + height);
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.writeByte(BIT_DEPTH);
+        headerData.writeByte(COLOR_TYPE_RGBA);
+        headerData.writeByte(0 /* compression */);
+        headerData.writeByte(0 /* filter method */);
+        headerData.writeByte(0 /* interlace */);
+        writeChunk(data, "IHDR", header.toByteArray(), header.size());
+
+        // Every scanline starts with its filter type.
+        final int rowBytes = 1 + width * BYTES_PER_PIXEL;
+        byte[] row = new byte[rowBytes];
+        byte[] deflated = new byte[64 * 1024];
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            for (int y = 0; y < height; y++) {
+                row[0] = FILTER_NONE;
+                for (int x = 0; x < width; x++) {
+                    final int color = argb[y * width + x];
+                    final int i = 1 + x * BYTES_PER_PIXEL;
+                    row[i] = (byte) (color >> 16);
+                    row[i + 1] = (byte) (color >> 8);
+                    row[i + 2] = (byte) color;
+                    row[i + 3] = (byte) (color >>> 24);
+                }
+                deflater.setInput(row);
+                while (!deflater.needsInput()) {
+                    compressed.write(deflated, 0, deflater.deflate(deflated));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressed.write(deflated, 0, deflater.deflate(deflated));
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(data, "IDAT", compressed.toByteArray(), compressed.size());
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int length)
+            throws IOException {
+        final byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,376 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProgramBinaryCacheTest {
+
+    private static final String RENDERER = "Fake GPU";
+    private static final String VERSION = "OpenGL ES 3.0 fake driver";
+    private static final String VERTEX_SHADER = "void main() { gl_Position = vec4(0.0); }";
+    private static final String FRAGMENT_SHADER = "void main() { gl_FragColor = vec4(1.0); }";
+    private static final String[] ATTRIBUTES = {"aPosition"};
+
+    /**
+     * Offset of the binary length in a cache file written for {@link #RENDERER} and
+     * {@link #VERSION}: magic, file version, both strings with their 2-byte lengths, source
+     * hash and binary format.
+     */
+    private static final int LENGTH_OFFSET =
+            4 + 4 + 2 + RENDERER.length() + 2 + VERSION.length() + 8 + 4;
+
+    /**
+     * Links programs the way {@link SourceProgramFactory} would and counts them.
+     */
+    private static class CountingProgramFactory implements ProgramFactory {
+        int mPrograms;
+
+        /**
+         * Whether to leave out the retrievable hint, like a factory that doesn't know about it.
+         */
+        boolean mIgnoreRetrievable;
+
+        @Override
+        public int createProgram(GlApi gl, String vertexShader, String fragmentShader,
+                                 String[] attributes, boolean retrievable) {
+            mPrograms++;
+            final int program = gl.glCreateProgram();
+            if (retrievable && !mIgnoreRetrievable) {
+                gl.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT,
+                        GLES20.GL_TRUE);
+            }
+            gl.glLinkProgram(program);
+            return program;
+        }
+    }
+
+    private final CountingProgramFactory mFallback = new CountingProgramFactory();
+    private File mDirectory;
+    private RecordingGlApi mGl;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("program_binaries").toFile();
+        mGl = createGl(RENDERER, VERSION);
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void savedProgramIsLoadedByTheNextRun() {
+        final ProgramBinaryCache firstRun = createCache();
+        createProgram(firstRun, mGl);
+        assertEquals(1, firstRun.getMisses());
+        assertNotNull(getCacheFile());
+
+        final ProgramBinaryCache secondRun = createCache();
+        final int program = createProgram(secondRun, mGl);
+        assertTrue(program != 0);
+        assertEquals(1, secondRun.getHits());
+        assertEquals(0, secondRun.getMisses());
+        assertEquals(1, mFallback.mPrograms);
+        assertEquals(1, mGl.getProgramBinaryLoads());
+    }
+
+    @Test
+    public void sourceProgramsAreLinkedWithTheRetrievableHint() {
+        final ProgramBinaryCache cache =
+                new ProgramBinaryCache(mDirectory, SourceProgramFactory.INSTANCE);
+        createProgram(cache, mGl);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getNotRetrievable());
+        assertNotNull(getCacheFile());
+    }
+
+    @Test
+    public void programWithoutBinaryIsCountedAndNotSaved() {
+        mFallback.mIgnoreRetrievable = true;
+        final ProgramBinaryCache cache = createCache();
+        createProgram(cache, mGl);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getNotRetrievable());
+        assertEquals(0, mDirectory.list().length);
+    }
+
+    @Test
+    public void contextWithoutBinaryFormatsUsesTheFallback() {
+        final RecordingGlApi gl = createGl(RENDERER, VERSION);
+        gl.setProgramBinaryFormats(0);
+        final ProgramBinaryCache cache = createCache();
+        createProgram(cache, gl);
+        createProgram(cache, gl);
+
+        assertEquals(2, mFallback.mPrograms);
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, mDirectory.list().length);
+    }
+
+    @Test
+    public void es2ContextUsesTheFallback() {
+        final RecordingGlApi gl = createGl(RENDERER, "OpenGL ES 2.0 fake driver");
+        final ProgramBinaryCache cache = createCache();
+        createProgram(cache, gl);
+
+        assertEquals(1, mFallback.mPrograms);
+        assertEquals(0, mDirectory.list().length);
+    }
+
+    @Test
+    public void binaryOfAnotherRendererIsStale() {
+        createProgram(createCache(), mGl);
+
+        final RecordingGlApi otherGl = createGl("Other GPU", VERSION);
+        assertStaleAndRewritten(otherGl);
+    }
+
+    @Test
+    public void binaryOfAnotherDriverVersionIsStale() {
+        createProgram(createCache(), mGl);
+
+        final RecordingGlApi updatedGl = createGl(RENDERER, "OpenGL ES 3.0 updated driver");
+        assertStaleAndRewritten(updatedGl);
+    }
+
+    @Test
+    public void binaryRefusedByTheDriverIsStale() {
+        createProgram(createCache(), mGl);
+
+        mGl.setRejectProgramBinaries(true);
+        final ProgramBinaryCache cache = createCache();
+        final int program = createProgram(cache, mGl);
+        assertTrue(program != 0);
+        assertEquals(1, cache.getStale());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, mGl.getProgramBinaryLoads());
+        assertEquals(2, mFallback.mPrograms);
+        assertNotNull("binary wasn't written again", getCacheFile());
+    }
+
+    @Test
+    public void truncatedFileIsCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        final File file = getCacheFile();
+        setFileLength(file, file.length() - 1);
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void fileTruncatedInTheHeaderIsCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        setFileLength(getCacheFile(), 6);
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void emptyFileIsCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        setFileLength(getCacheFile(), 0);
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void checksumMismatchIsCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        final File file = getCacheFile();
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // Flip the bits of the last byte of the binary.
+            raf.seek(file.length() - 1);
+            final int last = raf.read();
+            raf.seek(file.length() - 1);
+            raf.write(~last);
+        } finally {
+            raf.close();
+        }
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void trailingBytesAreCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        final File file = getCacheFile();
+        setFileLength(file, file.length() + 1);
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void badMagicIsCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        writeInt(getCacheFile(), 0, 0x12345678);
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void negativeLengthIsCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        writeInt(getCacheFile(), LENGTH_OFFSET, -1);
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void hugeLengthIsCorrupt() throws IOException {
+        createProgram(createCache(), mGl);
+        writeInt(getCacheFile(), LENGTH_OFFSET, Integer.MAX_VALUE);
+
+        assertCorruptAndRewritten();
+    }
+
+    @Test
+    public void deleteUnusedFilesKeepsRecentBinaries() throws IOException {
+        createProgram(createCache(), mGl);
+        final File unused = new File(mDirectory, "0123456789abcdef.bin");
+        assertTrue(unused.createNewFile());
+        assertTrue(unused.setLastModified(System.currentTimeMillis()
+                - ProgramBinaryCache.UNUSED_MAX_AGE_MILLIS - 1000));
+        final File leftover = new File(mDirectory, "0123456789abcdef.bin.tmp");
+        assertTrue(leftover.createNewFile());
+        final File other = new File(mDirectory, "notes.txt");
+        assertTrue(other.createNewFile());
+        assertTrue(other.setLastModified(0));
+
+        assertEquals(2, createCache().deleteUnusedFiles());
+        assertFalse(unused.exists());
+        assertFalse(leftover.exists());
+        assertTrue(other.exists());
+        assertNotNull(getCacheFile());
+    }
+
+    @Test
+    public void loadingABinaryKeepsItFromBeingDeleted() {
+        createProgram(createCache(), mGl);
+        final File file = getCacheFile();
+        assertTrue(file.setLastModified(System.currentTimeMillis()
+                - ProgramBinaryCache.UNUSED_MAX_AGE_MILLIS - 1000));
+
+        final ProgramBinaryCache cache = createCache();
+        createProgram(cache, mGl);
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.deleteUnusedFiles());
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void deleteUnusedFilesWithoutDirectoryDeletesNothing() {
+        final ProgramBinaryCache cache =
+                new ProgramBinaryCache(new File(mDirectory, "missing"), mFallback);
+        assertEquals(0, cache.deleteUnusedFiles());
+    }
+
+    /**
+     * Checks that the binary in the cache directory is discarded as stale by a run on the given
+     * GL, and that a binary for that GL replaces it.
+     */
+    private void assertStaleAndRewritten(RecordingGlApi gl) {
+        final ProgramBinaryCache cache = createCache();
+        createProgram(cache, gl);
+        assertEquals(1, cache.getStale());
+        assertEquals(0, cache.getCorrupt());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, gl.getProgramBinaryLoads());
+
+        final ProgramBinaryCache nextRun = createCache();
+        createProgram(nextRun, gl);
+        assertEquals(1, nextRun.getHits());
+    }
+
+    /**
+     * Checks that the binary in the cache directory is discarded as corrupt without reaching the
+     * driver, and that a good binary replaces it.
+     */
+    private void assertCorruptAndRewritten() {
+        final ProgramBinaryCache cache = createCache();
+        final int program = createProgram(cache, mGl);
+        assertTrue(program != 0);
+        assertEquals(1, cache.getCorrupt());
+        assertEquals(0, cache.getStale());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, mGl.getProgramBinaryLoads());
+        assertEquals(2, mFallback.mPrograms);
+
+        final ProgramBinaryCache nextRun = createCache();
+        createProgram(nextRun, mGl);
+        assertEquals(1, nextRun.getHits());
+        assertEquals(1, mGl.getProgramBinaryLoads());
+    }
+
+    private ProgramBinaryCache createCache() {
+        return new ProgramBinaryCache(mDirectory, mFallback);
+    }
+
+    private static RecordingGlApi createGl(String renderer, String version) {
+        final RecordingGlApi gl = new RecordingGlApi(renderer, version, "");
+        gl.setProgramBinaryFormats(1);
+        return gl;
+    }
+
+    private static int createProgram(ProgramBinaryCache cache, GlApi gl) {
+        return cache.createProgram(gl, VERTEX_SHADER, FRAGMENT_SHADER, ATTRIBUTES,
+                false /* retrievable */);
+    }
+
+    /**
+     * Returns the only binary in the cache directory, or null if there is none.
+     */
+    private File getCacheFile() {
+        final File[] files = mDirectory.listFiles();
+        File binary = null;
+        for (File file : files) {
+            if (file.getName().endsWith(".bin")) {
+                assertEquals("more than one binary", null, binary);
+                binary = file;
+            }
+        }
+        return binary;
+    }
+
+    private static void setFileLength(File file, long length) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void writeInt(File file, long offset, int value) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(offset);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+    }
+}
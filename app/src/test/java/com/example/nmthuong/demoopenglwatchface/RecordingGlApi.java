@@ -0,0 +1,690 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link GlApi} stub that needs no GL context. It hands out fresh object names, reports every
+ * shader and program as successfully compiled and linked, and records how much vertex data
+ * would be sent to the GPU. This makes it possible to check the per-frame upload cost of the
+ * rendering code on a plain JVM.
+ * <p>
+ * Vertex data counts as uploaded when it is passed to {@link #glBufferData} or when a draw call
+ * reads an attribute from client-side memory, which the driver has to copy on every draw.
+ * Texture pixels count when they are passed to {@link #glTexImage2D} or
+ * {@link #texSubImage2D}.
+ */
+public class RecordingGlApi implements GlApi {
+
+    /**
+     * Number of vertex attributes tracked. GLES 2.0 guarantees at least 8.
+     */
+    private static final int MAX_VERTEX_ATTRIBS = 16;
+
+    private final String mRenderer;
+    private final String mVersion;
+    private final String mExtensions;
+
+    /**
+     * Next name returned by the glCreate* and glGen* calls.
+     */
+    private int mNextName = 1;
+
+    /**
+     * Next location returned by {@link #glGetAttribLocation}.
+     */
+    private int mNextAttribLocation;
+
+    private int mBoundArrayBuffer;
+    private int mBoundElementArrayBuffer;
+
+    /**
+     * Arguments of the last {@code glDrawElements} call, and the index buffer bound for it, 0
+     * for client-side indices.
+     */
+    private int mLastDrawElementsMode;
+    private int mLastDrawElementsCount;
+    private int mLastDrawElementsType;
+    private int mLastDrawElementsBuffer;
+
+    /**
+     * Buffer objects generated and not deleted yet.
+     */
+    private final Set<Integer> mLiveBuffers = new HashSet<>();
+
+    /**
+     * Value returned for {@link GLES30#GL_NUM_PROGRAM_BINARY_FORMATS}.
+     */
+    private int mProgramBinaryFormats;
+
+    /**
+     * Whether {@link #glProgramBinary} fails to link, as a driver does for binaries it no longer
+     * accepts.
+     */
+    private boolean mRejectProgramBinaries;
+
+    /**
+     * Program whose last {@link #glProgramBinary} failed, so it reports an unsuccessful link.
+     */
+    private int mUnlinkedProgram;
+
+    private int mProgramBinaryLoads;
+
+    /**
+     * Programs with {@link GLES30#GL_PROGRAM_BINARY_RETRIEVABLE_HINT} set.
+     */
+    private final Set<Integer> mRetrievableHints = new HashSet<>();
+
+    /**
+     * Programs linked with the retrievable hint set, or loaded from a binary. Like some drivers,
+     * this only reports a binary for those.
+     */
+    private final Set<Integer> mRetrievablePrograms = new HashSet<>();
+
+    private final boolean[] mAttribEnabled = new boolean[MAX_VERTEX_ATTRIBS];
+
+    /**
+     * Bytes per vertex read by each attribute when it points at client-side memory, or 0 when
+     * it points into a buffer object.
+     */
+    private final int[] mClientAttribBytesPerVertex = new int[MAX_VERTEX_ATTRIBS];
+
+    private long mTotalCalls;
+    private long mTotalDrawCalls;
+    private long mTotalUploadBytes;
+
+    private int mFrameCalls;
+    private int mFrameDrawCalls;
+    private long mFrameUploadBytes;
+    private int mFrameUniformFloats;
+
+    public RecordingGlApi() {
+        this("RecordingGlApi", "OpenGL ES 2.0", "");
+    }
+
+    /**
+     * @param renderer   value returned for {@link GLES20#GL_RENDERER}
+     * @param version    value returned for {@link GLES20#GL_VERSION}
+     * @param extensions value returned for {@link GLES20#GL_EXTENSIONS}
+     */
+    public RecordingGlApi(String renderer, String version, String extensions) {
+        mRenderer = renderer;
+        mVersion = version;
+        mExtensions = extensions;
+    }
+
+    /**
+     * Sets the number of program binary formats the fake driver reports. 0, the default, means
+     * program binaries are not supported.
+     */
+    public void setProgramBinaryFormats(int count) {
+        mProgramBinaryFormats = count;
+    }
+
+    /**
+     * Sets whether the fake driver refuses to link program binaries.
+     */
+    public void setRejectProgramBinaries(boolean reject) {
+        mRejectProgramBinaries = reject;
+    }
+
+    /**
+     * Returns the number of programs loaded through {@link #glProgramBinary}, whether the fake
+     * driver accepted them or not.
+     */
+    public int getProgramBinaryLoads() {
+        return mProgramBinaryLoads;
+    }
+
+    /**
+     * Resets the per-frame counters. Call this at the start of every frame.
+     */
+    public void beginFrame() {
+        mFrameCalls = 0;
+        mFrameDrawCalls = 0;
+        mFrameUploadBytes = 0;
+        mFrameUniformFloats = 0;
+    }
+
+    /**
+     * Returns the number of GL calls made since {@link #beginFrame()}.
+     */
+    public int getFrameCalls() {
+        return mFrameCalls;
+    }
+
+    /**
+     * Returns the number of draw calls made since {@link #beginFrame()}.
+     */
+    public int getFrameDrawCalls() {
+        return mFrameDrawCalls;
+    }
+
+    /**
+     * Returns the number of vertex and texture bytes sent to the GPU since {@link #beginFrame()}.
+     */
+    public long getFrameUploadBytes() {
+        return mFrameUploadBytes;
+    }
+
+    /**
+     * Returns the number of uniform floats and ints set since {@link #beginFrame()}, which the
+     * driver copies into GPU constant memory.
+     */
+    public int getFrameUniformFloats() {
+        return mFrameUniformFloats;
+    }
+
+    /**
+     * Returns the number of buffer objects generated and not deleted yet.
+     */
+    public int getLiveBufferCount() {
+        return mLiveBuffers.size();
+    }
+
+    public long getTotalCalls() {
+        return mTotalCalls;
+    }
+
+    public long getTotalDrawCalls() {
+        return mTotalDrawCalls;
+    }
+
+    public long getTotalUploadBytes() {
+        return mTotalUploadBytes;
+    }
+
+    private void onCall() {
+        mTotalCalls++;
+        mFrameCalls++;
+    }
+
+    private void onUpload(long bytes) {
+        mTotalUploadBytes += bytes;
+        mFrameUploadBytes += bytes;
+    }
+
+    private void onDraw(int vertexCount) {
+        mTotalDrawCalls++;
+        mFrameDrawCalls++;
+        for (int i = 0; i < MAX_VERTEX_ATTRIBS; i++) {
+            if (mAttribEnabled[i]) {
+                onUpload((long) vertexCount * mClientAttribBytesPerVertex[i]);
+            }
+        }
+    }
+
+    private static int bytesPerComponent(int type) {
+        switch (type) {
+            case GLES20.GL_BYTE:
+            case GLES20.GL_UNSIGNED_BYTE:
+                return 1;
+            case GLES20.GL_SHORT:
+            case GLES20.GL_UNSIGNED_SHORT:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    @Override
+    public int glGetError() {
+        onCall();
+        return GLES20.GL_NO_ERROR;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        onCall();
+        switch (name) {
+            case GLES20.GL_RENDERER:
+                return mRenderer;
+            case GLES20.GL_VERSION:
+                return mVersion;
+            case GLES20.GL_EXTENSIONS:
+                return mExtensions;
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        onCall();
+        params[offset] = pname == GLES30.GL_NUM_PROGRAM_BINARY_FORMATS ? mProgramBinaryFormats : 0;
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        onCall();
+    }
+
+    @Override
+    public void glClear(int mask) {
+        onCall();
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        onCall();
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height) {
+        onCall();
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        onCall();
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        onCall();
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        onCall();
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        onCall();
+        return mNextName++;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        onCall();
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        onCall();
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        onCall();
+        params[offset] = GLES20.GL_TRUE;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        onCall();
+        return "";
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        onCall();
+    }
+
+    @Override
+    public int glCreateProgram() {
+        onCall();
+        return mNextName++;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        onCall();
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        onCall();
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        onCall();
+        if (program == mUnlinkedProgram) {
+            mUnlinkedProgram = 0;
+        }
+        if (mRetrievableHints.contains(program)) {
+            mRetrievablePrograms.add(program);
+        } else {
+            mRetrievablePrograms.remove(program);
+        }
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        onCall();
+        if (pname == GLES30.GL_PROGRAM_BINARY_LENGTH) {
+            params[offset] = mRetrievablePrograms.contains(program) ? FAKE_BINARY_LENGTH : 0;
+        } else if (pname == GLES20.GL_LINK_STATUS) {
+            params[offset] = program == mUnlinkedProgram ? GLES20.GL_FALSE : GLES20.GL_TRUE;
+        } else {
+            params[offset] = GLES20.GL_TRUE;
+        }
+    }
+
+    /**
+     * Size of the binaries handed out by {@link #glGetProgramBinary}.
+     */
+    private static final int FAKE_BINARY_LENGTH = 16;
+
+    /**
+     * Binary format handed out by {@link #glGetProgramBinary}.
+     */
+    public static final int FAKE_BINARY_FORMAT = 0x1234;
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset,
+                                   int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        onCall();
+        ByteBuffer bytes = (ByteBuffer) binary;
+        int n = Math.min(bufSize, FAKE_BINARY_LENGTH);
+        for (int i = 0; i < n; i++) {
+            bytes.put(bytes.position() + i, (byte) (program + i));
+        }
+        length[lengthOffset] = n;
+        binaryFormat[binaryFormatOffset] = FAKE_BINARY_FORMAT;
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        onCall();
+        mProgramBinaryLoads++;
+        mUnlinkedProgram = mRejectProgramBinaries || binaryFormat != FAKE_BINARY_FORMAT
+                ? program : 0;
+        mRetrievablePrograms.add(program);
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        onCall();
+        if (pname == GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT) {
+            if (value != GLES20.GL_FALSE) {
+                mRetrievableHints.add(program);
+            } else {
+                mRetrievableHints.remove(program);
+            }
+        }
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        onCall();
+        return "";
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        onCall();
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        onCall();
+        return mNextName++;
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        onCall();
+        return mNextAttribLocation++ % MAX_VERTEX_ATTRIBS;
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        onCall();
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        onCall();
+        mAttribEnabled[index] = true;
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        onCall();
+        mAttribEnabled[index] = false;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, Buffer ptr) {
+        onCall();
+        mClientAttribBytesPerVertex[index] =
+                stride != 0 ? stride : size * bytesPerComponent(type);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, int offset) {
+        onCall();
+        mClientAttribBytesPerVertex[index] = 0;
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        onCall();
+        mFrameUniformFloats++;
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        onCall();
+        mFrameUniformFloats++;
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        onCall();
+        mFrameUniformFloats += count * 4;
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+                                   int offset) {
+        onCall();
+        mFrameUniformFloats += count * 16;
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        onCall();
+        onDraw(count);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Client-side attributes are counted as if every index referenced a distinct vertex, which
+     * overestimates the upload for meshes with shared vertices.
+     */
+    @Override
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+        onCall();
+        onDraw(count);
+        onUpload((long) count * bytesPerComponent(type));
+        onDrawElements(mode, count, type, 0);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        onCall();
+        onDraw(count);
+        onDrawElements(mode, count, type, mBoundElementArrayBuffer);
+    }
+
+    private void onDrawElements(int mode, int count, int type, int buffer) {
+        mLastDrawElementsMode = mode;
+        mLastDrawElementsCount = count;
+        mLastDrawElementsType = type;
+        mLastDrawElementsBuffer = buffer;
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        onCall();
+        for (int i = 0; i < n; i++) {
+            buffers[offset + i] = mNextName++;
+            mLiveBuffers.add(buffers[offset + i]);
+        }
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        onCall();
+        for (int i = 0; i < n; i++) {
+            mLiveBuffers.remove(buffers[offset + i]);
+            if (buffers[offset + i] == mBoundArrayBuffer) {
+                mBoundArrayBuffer = 0;
+            }
+            if (buffers[offset + i] == mBoundElementArrayBuffer) {
+                mBoundElementArrayBuffer = 0;
+            }
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        onCall();
+        if (target == GLES20.GL_ARRAY_BUFFER) {
+            mBoundArrayBuffer = buffer;
+        } else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+            mBoundElementArrayBuffer = buffer;
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        onCall();
+        onUpload(size);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        onCall();
+        for (int i = 0; i < n; i++) {
+            textures[offset + i] = mNextName++;
+        }
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        onCall();
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        onCall();
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        onCall();
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        onCall();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Pixels count as uploaded at 4 bytes each. Allocating storage without pixels uploads
+     * nothing.
+     */
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                             int border, int format, int type, Buffer pixels) {
+        onCall();
+        if (pixels != null) {
+            onUpload((long) width * height * 4);
+        }
+    }
+
+    @Override
+    public void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap) {
+        onCall();
+        onUpload((long) bitmap.getWidth() * bitmap.getHeight() * 4);
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        onCall();
+        for (int i = 0; i < n; i++) {
+            framebuffers[offset + i] = mNextName++;
+        }
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        onCall();
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        onCall();
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture,
+                                       int level) {
+        onCall();
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        onCall();
+        return GLES20.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    /**
+     * Returns the name of the buffer currently bound to {@link GLES20#GL_ARRAY_BUFFER}.
+     */
+    public int getBoundArrayBuffer() {
+        return mBoundArrayBuffer;
+    }
+
+    /**
+     * Returns the name of the buffer currently bound to {@link GLES20#GL_ELEMENT_ARRAY_BUFFER}.
+     */
+    public int getBoundElementArrayBuffer() {
+        return mBoundElementArrayBuffer;
+    }
+
+    /**
+     * Returns the primitive mode of the last {@code glDrawElements} call.
+     */
+    public int getLastDrawElementsMode() {
+        return mLastDrawElementsMode;
+    }
+
+    /**
+     * Returns the number of indices drawn by the last {@code glDrawElements} call.
+     */
+    public int getLastDrawElementsCount() {
+        return mLastDrawElementsCount;
+    }
+
+    /**
+     * Returns the index type of the last {@code glDrawElements} call.
+     */
+    public int getLastDrawElementsType() {
+        return mLastDrawElementsType;
+    }
+
+    /**
+     * Returns the index buffer the last {@code glDrawElements} call read from, or 0 if it
+     * passed client-side indices.
+     */
+    public int getLastDrawElementsBuffer() {
+        return mLastDrawElementsBuffer;
+    }
+}
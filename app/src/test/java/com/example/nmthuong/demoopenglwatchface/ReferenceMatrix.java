@@ -0,0 +1,135 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+/**
+ * The algorithms of the {@link android.opengl.Matrix} methods the watch faces used before
+ * {@link Mat4}, copied from AOSP. The Android jar of local unit tests only has stubs, so this
+ * stands in for it in benchmarks and comparisons. {@code multiplyMM} and {@code multiplyMV} are
+ * native on Android, so the JNI call each of them costs there is missing here.
+ */
+final class ReferenceMatrix {
+
+    /**
+     * Scratch space of {@link #rotateM}, like Android's.
+     */
+    private static final float[] sTemp = new float[32];
+
+    private ReferenceMatrix() {
+    }
+
+    static void multiplyMM(float[] result, int resultOffset, float[] lhs, int lhsOffset,
+                           float[] rhs, int rhsOffset) {
+        for (int i = 0; i < 4; i++) {
+            final float rhsI0 = rhs[rhsOffset + 4 * i];
+            float ri0 = lhs[lhsOffset] * rhsI0;
+            float ri1 = lhs[lhsOffset + 1] * rhsI0;
+            float ri2 = lhs[lhsOffset + 2] * rhsI0;
+            float ri3 = lhs[lhsOffset + 3] * rhsI0;
+            for (int j = 1; j < 4; j++) {
+                final float rhsIj = rhs[rhsOffset + 4 * i + j];
+                ri0 += lhs[lhsOffset + 4 * j] * rhsIj;
+                ri1 += lhs[lhsOffset + 4 * j + 1] * rhsIj;
+                ri2 += lhs[lhsOffset + 4 * j + 2] * rhsIj;
+                ri3 += lhs[lhsOffset + 4 * j + 3] * rhsIj;
+            }
+            result[resultOffset + 4 * i] = ri0;
+            result[resultOffset + 4 * i + 1] = ri1;
+            result[resultOffset + 4 * i + 2] = ri2;
+            result[resultOffset + 4 * i + 3] = ri3;
+        }
+    }
+
+    static void multiplyMV(float[] result, int resultOffset, float[] lhs, int lhsOffset,
+                           float[] rhs, int rhsOffset) {
+        final float x = rhs[rhsOffset];
+        final float y = rhs[rhsOffset + 1];
+        final float z = rhs[rhsOffset + 2];
+        final float w = rhs[rhsOffset + 3];
+        for (int row = 0; row < 4; row++) {
+            result[resultOffset + row] = lhs[lhsOffset + row] * x + lhs[lhsOffset + 4 + row] * y
+                    + lhs[lhsOffset + 8 + row] * z + lhs[lhsOffset + 12 + row] * w;
+        }
+    }
+
+    static void translateM(float[] m, int mOffset, float x, float y, float z) {
+        for (int i = 0; i < 4; i++) {
+            final int mi = mOffset + i;
+            m[12 + mi] += m[mi] * x + m[4 + mi] * y + m[8 + mi] * z;
+        }
+    }
+
+    static void rotateM(float[] m, int mOffset, float a, float x, float y, float z) {
+        synchronized (sTemp) {
+            setRotateM(sTemp, 0, a, x, y, z);
+            multiplyMM(sTemp, 16, m, mOffset, sTemp, 0);
+            System.arraycopy(sTemp, 16, m, mOffset, 16);
+        }
+    }
+
+    static void setRotateM(float[] rm, int rmOffset, float a, float x, float y, float z) {
+        rm[rmOffset + 3] = 0;
+        rm[rmOffset + 7] = 0;
+        rm[rmOffset + 11] = 0;
+        rm[rmOffset + 12] = 0;
+        rm[rmOffset + 13] = 0;
+        rm[rmOffset + 14] = 0;
+        rm[rmOffset + 15] = 1;
+        a *= (float) (Math.PI / 180.0f);
+        final float s = (float) Math.sin(a);
+        final float c = (float) Math.cos(a);
+        if (1.0f == x && 0.0f == y && 0.0f == z) {
+            rm[rmOffset + 5] = c;
+            rm[rmOffset + 10] = c;
+            rm[rmOffset + 6] = s;
+            rm[rmOffset + 9] = -s;
+            rm[rmOffset + 1] = 0;
+            rm[rmOffset + 2] = 0;
+            rm[rmOffset + 4] = 0;
+            rm[rmOffset + 8] = 0;
+            rm[rmOffset] = 1;
+        } else if (0.0f == x && 1.0f == y && 0.0f == z) {
+            rm[rmOffset] = c;
+            rm[rmOffset + 10] = c;
+            rm[rmOffset + 8] = s;
+            rm[rmOffset + 2] = -s;
+            rm[rmOffset + 1] = 0;
+            rm[rmOffset + 4] = 0;
+            rm[rmOffset + 6] = 0;
+            rm[rmOffset + 9] = 0;
+            rm[rmOffset + 5] = 1;
+        } else if (0.0f == x && 0.0f == y && 1.0f == z) {
+            rm[rmOffset] = c;
+            rm[rmOffset + 5] = c;
+            rm[rmOffset + 1] = s;
+            rm[rmOffset + 4] = -s;
+            rm[rmOffset + 2] = 0;
+            rm[rmOffset + 6] = 0;
+            rm[rmOffset + 8] = 0;
+            rm[rmOffset + 9] = 0;
+            rm[rmOffset + 10] = 1;
+        } else {
+            final float len = (float) Math.sqrt(x * x + y * y + z * z);
+            if (1.0f != len) {
+                final float recipLen = 1.0f / len;
+                x *= recipLen;
+                y *= recipLen;
+                z *= recipLen;
+            }
+            final float nc = 1.0f - c;
+            final float xy = x * y;
+            final float yz = y * z;
+            final float zx = z * x;
+            final float xs = x * s;
+            final float ys = y * s;
+            final float zs = z * s;
+            rm[rmOffset] = x * x * nc + c;
+            rm[rmOffset + 4] = xy * nc - zs;
+            rm[rmOffset + 8] = zx * nc + ys;
+            rm[rmOffset + 1] = xy * nc + zs;
+            rm[rmOffset + 5] = y * y * nc + c;
+            rm[rmOffset + 9] = yz * nc - xs;
+            rm[rmOffset + 2] = zx * nc - ys;
+            rm[rmOffset + 6] = yz * nc + xs;
+            rm[rmOffset + 10] = z * z * nc + c;
+        }
+    }
+}
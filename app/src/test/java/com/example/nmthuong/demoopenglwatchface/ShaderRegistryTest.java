@@ -0,0 +1,168 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShaderRegistryTest {
+
+    private static final String VERTEX_SHADER = "attribute vec4 aPosition;"
+            + "void main() { gl_Position = aPosition; }";
+    private static final String FRAGMENT_SHADER = "precision mediump float;"
+            + "void main() { gl_FragColor = vec4(1.0); }";
+    private static final String OTHER_FRAGMENT_SHADER = "precision mediump float;"
+            + "void main() { gl_FragColor = vec4(0.5); }";
+    private static final String[] ATTRIBUTES = {"aPosition"};
+
+    /**
+     * Creates programs without compiling anything and counts them.
+     */
+    private static class CountingProgramFactory implements ProgramFactory {
+        int mPrograms;
+
+        @Override
+        public int createProgram(GlApi gl, String vertexShader, String fragmentShader,
+                                 String[] attributes, boolean retrievable) {
+            mPrograms++;
+            return gl.glCreateProgram();
+        }
+    }
+
+    private final ShaderRegistry mRegistry = ShaderRegistry.getInstance();
+    private final CountingProgramFactory mFactory = new CountingProgramFactory();
+    private final Object mContext = new Object();
+    private final Object mOtherContext = new Object();
+
+    /**
+     * Programs deleted through {@link #mGl}.
+     */
+    private final List<Integer> mDeletedPrograms = new ArrayList<>();
+
+    private final RecordingGlApi mGl = new RecordingGlApi() {
+        @Override
+        public void glDeleteProgram(int program) {
+            mDeletedPrograms.add(program);
+            super.glDeleteProgram(program);
+        }
+    };
+
+    private int mStartHits;
+    private int mStartMisses;
+    private int mStartPrograms;
+
+    @Before
+    public void setUp() {
+        mRegistry.setProgramFactory(mFactory);
+        mStartHits = mRegistry.getCacheHits();
+        mStartMisses = mRegistry.getCacheMisses();
+        mStartPrograms = mRegistry.getProgramCount();
+    }
+
+    @After
+    public void tearDown() {
+        mRegistry.forgetContext(mContext);
+        mRegistry.forgetContext(mOtherContext);
+        mRegistry.setProgramFactory(SourceProgramFactory.INSTANCE);
+    }
+
+    @Test
+    public void sameSourcesShareOneProgram() {
+        final int first = acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        final int second = acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES.clone());
+
+        assertEquals(first, second);
+        assertEquals(1, mFactory.mPrograms);
+        assertEquals(1, mRegistry.getCacheHits() - mStartHits);
+        assertEquals(1, mRegistry.getCacheMisses() - mStartMisses);
+        assertEquals(1, mRegistry.getProgramCount() - mStartPrograms);
+    }
+
+    @Test
+    public void differentSourcesOrAttributesGetTheirOwnProgram() {
+        final int program = acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        final int otherShader = acquire(mContext, OTHER_FRAGMENT_SHADER, ATTRIBUTES);
+        final int unboundAttributes = acquire(mContext, FRAGMENT_SHADER, null);
+
+        assertEquals(3, mFactory.mPrograms);
+        assertTrue(program != otherShader && program != unboundAttributes);
+        assertEquals(0, mRegistry.getCacheHits() - mStartHits);
+        assertEquals(3, mRegistry.getCacheMisses() - mStartMisses);
+    }
+
+    @Test
+    public void hashSeparatesTheStrings() {
+        assertEquals(ShaderRegistry.hashProgram(VERTEX_SHADER, FRAGMENT_SHADER, ATTRIBUTES),
+                ShaderRegistry.hashProgram(VERTEX_SHADER, FRAGMENT_SHADER, ATTRIBUTES.clone()));
+        assertFalse(ShaderRegistry.hashProgram("ab", "c", null)
+                == ShaderRegistry.hashProgram("a", "bc", null));
+        assertFalse(ShaderRegistry.hashProgram(VERTEX_SHADER, FRAGMENT_SHADER, null)
+                == ShaderRegistry.hashProgram(VERTEX_SHADER, FRAGMENT_SHADER, ATTRIBUTES));
+    }
+
+    @Test
+    public void programIsDeletedWithItsLastReference() {
+        final int program = acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+
+        mRegistry.release(mContext, mGl, program);
+        assertTrue(mDeletedPrograms.isEmpty());
+        mRegistry.release(mContext, mGl, program);
+        assertEquals(Arrays.asList(program), mDeletedPrograms);
+        assertEquals(0, mRegistry.getProgramCount() - mStartPrograms);
+
+        // The next user creates it again.
+        acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        assertEquals(2, mFactory.mPrograms);
+    }
+
+    @Test
+    public void releaseOfAnUnknownProgramDeletesNothing() {
+        final int program = acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        mRegistry.release(mOtherContext, mGl, program);
+        mRegistry.release(mContext, mGl, program + 1);
+
+        assertTrue(mDeletedPrograms.isEmpty());
+        assertEquals(1, mRegistry.getProgramCount() - mStartPrograms);
+    }
+
+    @Test
+    public void contextsDontSharePrograms() {
+        final int program = acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        final int otherProgram = acquire(mOtherContext, FRAGMENT_SHADER, ATTRIBUTES);
+
+        assertTrue(program != otherProgram);
+        assertEquals(2, mFactory.mPrograms);
+        assertEquals(2, mRegistry.getProgramCount() - mStartPrograms);
+    }
+
+    @Test
+    public void forgetContextDropsItsProgramsWithoutGlCalls() {
+        acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        acquire(mContext, OTHER_FRAGMENT_SHADER, ATTRIBUTES);
+        final int otherProgram = acquire(mOtherContext, FRAGMENT_SHADER, ATTRIBUTES);
+        final long calls = mGl.getTotalCalls();
+
+        mRegistry.forgetContext(mContext);
+        assertEquals(calls, mGl.getTotalCalls());
+        assertEquals(1, mRegistry.getProgramCount() - mStartPrograms);
+
+        // A new context with the same identity compiles again; the other keeps its program.
+        acquire(mContext, FRAGMENT_SHADER, ATTRIBUTES);
+        assertEquals(otherProgram, acquire(mOtherContext, FRAGMENT_SHADER, ATTRIBUTES));
+        assertEquals(4, mFactory.mPrograms);
+        assertEquals(1, mRegistry.getCacheHits() - mStartHits);
+        assertEquals(4, mRegistry.getCacheMisses() - mStartMisses);
+    }
+
+    private int acquire(Object context, String fragmentShader, String[] attributes) {
+        return mRegistry.acquire(context, mGl, VERTEX_SHADER, fragmentShader, attributes);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShelfPackerTest {
+
+    private final int[] mPosition = new int[2];
+
+    @Test
+    public void rectangleGoesOnTheFirstShelfWithRoom() {
+        final ShelfPacker packer = new ShelfPacker(100, 100, 0 /* padding */);
+        assertInsert(packer, 30, 20, 0, 0);
+        // Shorter than the first shelf, so it goes next to the first rectangle.
+        assertInsert(packer, 30, 10, 30, 0);
+        // Taller than the first shelf, so it opens a second one.
+        assertInsert(packer, 50, 25, 0, 20);
+        // Short enough for the first shelf, but only the second has room.
+        assertInsert(packer, 50, 20, 50, 20);
+
+        assertEquals(2, packer.getShelfCount());
+    }
+
+    @Test
+    public void paddingIsKeptRightOfAndAboveEveryRectangle() {
+        final ShelfPacker packer = new ShelfPacker(100, 100, 2 /* padding */);
+        assertInsert(packer, 10, 10, 0, 0);
+        assertInsert(packer, 10, 10, 12, 0);
+        // One pixel taller than the shelf without padding, so it needs a new shelf.
+        assertInsert(packer, 10, 11, 0, 12);
+        // Only the covered pixels count as used.
+        assertEquals(10 * 10 + 10 * 10 + 10 * 11, packer.getUsedPixels());
+    }
+
+    @Test
+    public void rectangleThatDoesntFitIsRefused() {
+        final ShelfPacker packer = new ShelfPacker(100, 100, 0 /* padding */);
+        assertFalse(packer.insert(101, 1, mPosition));
+        assertInsert(packer, 100, 60, 0, 0);
+        assertFalse(packer.insert(100, 41, mPosition));
+        assertEquals(1, packer.getShelfCount());
+        // Exactly the space left.
+        assertInsert(packer, 100, 40, 0, 60);
+
+        final ShelfPacker padded = new ShelfPacker(100, 100, 1 /* padding */);
+        assertFalse("padding doesn't fit", padded.insert(100, 10, mPosition));
+    }
+
+    @Test
+    public void packAllPlacesTheTallestFirst() {
+        final ShelfPacker packer = new ShelfPacker(100, 100, 0 /* padding */);
+        final int[] positions = new int[8];
+        assertTrue(packer.packAll(new int[]{40, 40, 40, 0}, new int[]{10, 30, 20, 50}, 4,
+                positions));
+
+        // The 30 pixel rectangle opens the first shelf and the 20 pixel one joins it. The 10
+        // pixel one is left without room and opens a second shelf. The empty one takes none.
+        assertArrayEquals(new int[]{0, 30, 0, 0, 40, 0, 0, 0}, positions);
+        assertEquals(2, packer.getShelfCount());
+    }
+
+    @Test
+    public void packAllStartsOver() {
+        final ShelfPacker packer = new ShelfPacker(100, 100, 0 /* padding */);
+        assertInsert(packer, 100, 90, 0, 0);
+        final int[] positions = new int[2];
+        assertTrue(packer.packAll(new int[]{50}, new int[]{50}, 1, positions));
+        assertArrayEquals(new int[]{0, 0}, positions);
+        assertEquals(50 * 50, packer.getUsedPixels());
+    }
+
+    @Test
+    public void packAllFailsWhenTheRectanglesDontFit() {
+        final ShelfPacker packer = new ShelfPacker(100, 100, 0 /* padding */);
+        assertFalse(packer.packAll(new int[]{100, 100}, new int[]{60, 50}, 2, new int[4]));
+    }
+
+    @Test
+    public void occupancyAndFragmentation() {
+        final ShelfPacker packer = new ShelfPacker(100, 100, 0 /* padding */);
+        assertEquals(0, packer.getOccupancy(), 0);
+        assertEquals(0, packer.getFragmentation(), 0);
+
+        assertTrue(packer.packAll(new int[]{40, 40, 40}, new int[]{10, 30, 20}, 3, new int[6]));
+        final int used = 40 * 10 + 40 * 30 + 40 * 20;
+        assertEquals(used, packer.getUsedPixels());
+        assertEquals((float) used / (100 * 100), packer.getOccupancy(), 0);
+        // The first shelf is 30 pixels high and full width. Only the 40 pixels used of the
+        // second, 10 pixel shelf count.
+        final int shelfPixels = 30 * 100 + 10 * 40;
+        assertEquals(1 - (float) used / shelfPixels, packer.getFragmentation(), 0);
+
+        packer.reset();
+        assertEquals(0, packer.getShelfCount());
+        assertEquals(0, packer.getOccupancy(), 0);
+        assertEquals(0, packer.getFragmentation(), 0);
+    }
+
+    /**
+     * The decision {@link ComplicationRasterizer#uploadChanged()} makes before packing.
+     */
+    @Test
+    public void complicationsAreRepackedOnlyWhenTheirSizeChanges() {
+        final int[] widths = {80, 80, 160};
+        final int[] heights = {80, 80, 80};
+        final int[] entryWidths = {80, 80, 160};
+        final int[] entryHeights = {80, 80, 80};
+
+        assertEquals(ComplicationRasterizer.UPLOAD_NOTHING, ComplicationRasterizer.planUpload(
+                true /* hasAtlas */, new boolean[]{false, false, false}, widths, heights,
+                entryWidths, entryHeights));
+        assertEquals(ComplicationRasterizer.UPLOAD_IN_PLACE, ComplicationRasterizer.planUpload(
+                true /* hasAtlas */, new boolean[]{false, true, false}, widths, heights,
+                entryWidths, entryHeights));
+        assertEquals(ComplicationRasterizer.UPLOAD_REPACK, ComplicationRasterizer.planUpload(
+                false /* hasAtlas */, new boolean[]{false, true, false}, widths, heights,
+                entryWidths, entryHeights));
+
+        // A resized complication repacks, but only once it has changed.
+        heights[2] = 90;
+        assertEquals(ComplicationRasterizer.UPLOAD_IN_PLACE, ComplicationRasterizer.planUpload(
+                true /* hasAtlas */, new boolean[]{true, false, false}, widths, heights,
+                entryWidths, entryHeights));
+        assertEquals(ComplicationRasterizer.UPLOAD_REPACK, ComplicationRasterizer.planUpload(
+                true /* hasAtlas */, new boolean[]{true, false, true}, widths, heights,
+                entryWidths, entryHeights));
+
+        // So does one that got drawn for the first time.
+        final int[] noEntries = new int[3];
+        assertEquals(ComplicationRasterizer.UPLOAD_REPACK, ComplicationRasterizer.planUpload(
+                true /* hasAtlas */, new boolean[]{true, false, false}, widths, heights,
+                noEntries, noEntries));
+    }
+
+    private void assertInsert(ShelfPacker packer, int width, int height, int left, int bottom) {
+        assertTrue(packer.insert(width, height, mPosition));
+        assertArrayEquals(new int[]{left, bottom}, mPosition);
+    }
+}
@@ -0,0 +1,2019 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link GlApi} that renders on the CPU into an RGBA framebuffer, so frames of the watch faces can
+ * be rendered without a GPU, e.g. on a desktop JVM, compared against golden images and saved with
+ * {@link #writePng}. It also counts the draw calls, vertices and fragments each frame costs.
+ * <p>
+ * GLSL is not interpreted. Linking a program matches the uniforms, attributes and varyings its
+ * shaders declare against the vertex and fragment stages implemented here, which cover the
+ * programs of this app:
+ * <ul>
+ * <li>a mat4 uniform times a vec4 position whose XY is scaled by a float uniform, with an
+ * optional vec4 color attribute, as in {@link Gles2ColoredTriangleList};</li>
+ * <li>the same with a mat4 array indexed by a float layer attribute, or with a mat4 view
+ * projection and a vec4 array of (cos, sin, x, y) layer transforms, as in
+ * {@link Gles2TriangleBatch};</li>
+ * <li>a vec2 clip space position, with a vec2 texture coordinate attribute or one derived from the
+ * position, as in {@link Gles2SpriteBatch} and {@link Gles2TextureCopier};</li>
+ * <li>a fragment color from a vec4 uniform, a vec4 varying or a sampler2D.</li>
+ * </ul>
+ * Programs that match none of these fail to link with an info log that says so.
+ * <p>
+ * Triangles are rasterized with edge functions in 8-bit subpixel precision and the GL fill rule,
+ * in tiles of {@link #TILE_SIZE} pixels that are skipped or filled without per-pixel tests when
+ * they are entirely outside or inside the triangle. Varyings are interpolated perspective
+ * correctly. Blending and the scissor test are supported; there is no depth buffer, face culling
+ * or color mask. Textures are sampled with their magnification filter and clamped to the edge.
+ * Triangles with a vertex behind the eye or beyond the {@link #GUARD_BAND} are dropped rather
+ * than clipped, which never happens to the 2D geometry of the watch faces. Only triangle
+ * primitives are drawn.
+ * <p>
+ * Rows are stored bottom up, as GL addresses them. Textures attached to framebuffers are rendered
+ * into like the surface.
+ */
+public class SoftwareGlApi implements GlApi {
+
+    /**
+     * Number of vertex attributes. GLES 2.0 guarantees at least 8.
+     */
+    private static final int MAX_VERTEX_ATTRIBS = 16;
+
+    /**
+     * Number of texture units. GLES 2.0 guarantees at least 8.
+     */
+    private static final int MAX_TEXTURE_UNITS = 8;
+
+    private static final int MAX_TEXTURE_SIZE = 4096;
+
+    /**
+     * Width and height of the blocks of pixels tested against a triangle at once.
+     */
+    static final int TILE_SIZE = 8;
+
+    private static final int SUBPIXEL_BITS = 8;
+    private static final int SUBPIXEL_ONE = 1 << SUBPIXEL_BITS;
+
+    /**
+     * Distance outside the viewport, in pixels, beyond which vertices are not rasterized. Keeps
+     * the edge functions from overflowing.
+     */
+    static final float GUARD_BAND = 1 << 16;
+
+    /**
+     * Floats stored per uniform location: enough for a mat4.
+     */
+    private static final int UNIFORM_SLOT_FLOATS = 16;
+
+    /**
+     * Floats interpolated per vertex: a color or a texture coordinate.
+     */
+    private static final int MAX_VARYING_FLOATS = 4;
+
+    private static final int VERTEX_STAGE_MVP = 1;
+    private static final int VERTEX_STAGE_LAYER_MVP = 2;
+    private static final int VERTEX_STAGE_LAYER_AFFINE = 3;
+    private static final int VERTEX_STAGE_CLIP_SPACE = 4;
+
+    private static final int FRAGMENT_STAGE_UNIFORM_COLOR = 1;
+    private static final int FRAGMENT_STAGE_VARYING_COLOR = 2;
+    private static final int FRAGMENT_STAGE_TEXTURE = 3;
+
+    /**
+     * Matches a uniform, attribute or varying declaration. Groups are the qualifier, type, name
+     * and array size.
+     */
+    private static final Pattern DECLARATION = Pattern.compile(
+            "\\b(uniform|attribute|varying)\\s+(?:(?:lowp|mediump|highp)\\s+)?(\\w+)\\s+(\\w+)"
+                    + "\\s*(?:\\[\\s*(\\d+)\\s*\\])?\\s*;");
+
+    private static final class Declaration {
+        final String mQualifier;
+        final String mType;
+        final String mName;
+        final int mArraySize;
+
+        Declaration(String qualifier, String type, String name, int arraySize) {
+            mQualifier = qualifier;
+            mType = type;
+            mName = name;
+            mArraySize = arraySize;
+        }
+
+        boolean is(String qualifier, String type) {
+            return mQualifier.equals(qualifier) && mType.equals(type);
+        }
+    }
+
+    private static final class Shader {
+        final int mType;
+        String mSource;
+        boolean mCompiled;
+        String mInfoLog = "";
+        final List<Declaration> mDeclarations = new ArrayList<>();
+
+        Shader(int type) {
+            mType = type;
+        }
+    }
+
+    private static final class Program {
+        final List<Shader> mShaders = new ArrayList<>();
+        final Map<String, Integer> mAttribBindings = new HashMap<>();
+        boolean mLinked;
+        String mInfoLog = "";
+
+        final Map<String, Integer> mAttribLocations = new HashMap<>();
+        final Map<String, Integer> mUniformLocations = new HashMap<>();
+        final Map<String, Integer> mUniformSizes = new HashMap<>();
+        float[] mUniforms = new float[0];
+
+        int mVertexStage;
+        int mFragmentStage;
+        int mVaryingFloats;
+
+        /**
+         * Locations of the uniforms the stages read, or -1.
+         */
+        int mMatrixUniform = -1;
+        int mMatrixCount;
+        int mScaleUniform = -1;
+        int mTransformsUniform = -1;
+        int mColorUniform = -1;
+        int mSamplerUniform = -1;
+
+        /**
+         * Locations of the attributes the stages read, or -1.
+         */
+        int mPositionAttrib = -1;
+        int mColorAttrib = -1;
+        int mLayerAttrib = -1;
+        int mTexCoordAttrib = -1;
+    }
+
+    private static final class BufferObject {
+        ByteBuffer mData = ByteBuffer.allocate(0);
+    }
+
+    private static final class Texture {
+        int mWidth;
+        int mHeight;
+
+        /**
+         * Premultiplied {@link android.graphics.Color} ints, bottom row first.
+         */
+        int[] mPixels = new int[0];
+        boolean mLinear = true;
+    }
+
+    private static final class Framebuffer {
+        Texture mColorAttachment;
+    }
+
+    private static final class Attrib {
+        boolean mEnabled;
+        int mSize = 4;
+        int mType = GLES20.GL_FLOAT;
+        boolean mNormalized;
+        int mStride;
+
+        /**
+         * Buffer object the attribute points into, or null if it points at client memory.
+         */
+        BufferObject mBuffer;
+        int mOffset;
+        Buffer mClientData;
+        int mClientPosition;
+
+        /**
+         * Where the current draw reads the attribute from.
+         */
+        ByteBuffer mSource;
+        int mBase;
+        int mEffectiveStride;
+    }
+
+    private final String mRenderer;
+
+    private int mError = GLES20.GL_NO_ERROR;
+    private int mNextName = 1;
+
+    private final Map<Integer, Shader> mShaders = new HashMap<>();
+    private final Map<Integer, Program> mPrograms = new HashMap<>();
+    private final Map<Integer, BufferObject> mBuffers = new HashMap<>();
+    private final Map<Integer, Texture> mTextures = new HashMap<>();
+    private final Map<Integer, Framebuffer> mFramebuffers = new HashMap<>();
+
+    private Program mCurrentProgram;
+    private BufferObject mArrayBuffer;
+    private BufferObject mElementArrayBuffer;
+    private int mBoundFramebufferName;
+    private Framebuffer mBoundFramebuffer;
+    private int mActiveTextureUnit;
+    private final Texture[] mBoundTextures = new Texture[MAX_TEXTURE_UNITS];
+    private final Attrib[] mAttribs = new Attrib[MAX_VERTEX_ATTRIBS];
+
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+    private int[] mSurface;
+
+    private final int[] mViewport = new int[4];
+    private final int[] mScissor = new int[4];
+    private boolean mScissorTest;
+    private boolean mBlend;
+    private int mBlendSrc = GLES20.GL_ONE;
+    private int mBlendDst = GLES20.GL_ZERO;
+    private final float[] mClearColor = new float[4];
+
+    // Per draw state, reused so drawing doesn't allocate.
+    private int[] mTargetPixels;
+    private int mTargetWidth;
+    private int mClipLeft;
+    private int mClipBottom;
+    private int mClipRight;
+    private int mClipTop;
+    private int[] mIndices = new int[0];
+    private boolean[] mShaded = new boolean[0];
+    private float[] mScreen = new float[0];
+    private float[] mVaryings = new float[0];
+    private final float[] mAttribValue = new float[4];
+    private final float[] mClip = new float[4];
+    private final float[] mFragment = new float[4];
+    private final long[] mEdgeA = new long[3];
+    private final long[] mEdgeB = new long[3];
+    private final long[] mEdgeC = new long[3];
+    private final long[] mEdgeBias = new long[3];
+
+    private long mTotalDrawCalls;
+    private long mTotalVertices;
+    private long mTotalFragments;
+
+    private int mFrameDrawCalls;
+    private int mFrameVertices;
+    private long mFrameFragments;
+
+    /**
+     * @param width  width of the surface in pixels
+     * @param height height of the surface in pixels
+     */
+    public SoftwareGlApi(int width, int height) {
+        this("SoftwareGlApi", width, height);
+    }
+
+    /**
+     * @param renderer value returned for {@link GLES20#GL_RENDERER}
+     * @param width    width of the surface in pixels
+     * @param height   height of the surface in pixels
+     */
+    public SoftwareGlApi(String renderer, int width, int height) {
+        mRenderer = renderer;
+        for (int i = 0; i < MAX_VERTEX_ATTRIBS; i++) {
+            mAttribs[i] = new Attrib();
+        }
+        setSurfaceSize(width, height);
+    }
+
+    /**
+     * Replaces the surface with a transparent black one of the given size and resets the viewport
+     * and scissor box to cover it, like a newly created EGL surface.
+     */
+    public void setSurfaceSize(int width, int height) {
+        if (width <= 0 || height <= 0 || width > MAX_TEXTURE_SIZE || height > MAX_TEXTURE_SIZE) {
+            throw new IllegalArgumentException("bad surface size " + width + "x" + height);
+        }
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+        mSurface = new int[width * height];
+        setRect(mViewport, 0, 0, width, height);
+        setRect(mScissor, 0, 0, width, height);
+    }
+
+    public int getSurfaceWidth() {
+        return mSurfaceWidth;
+    }
+
+    public int getSurfaceHeight() {
+        return mSurfaceHeight;
+    }
+
+    /**
+     * Returns a copy of the surface as {@link android.graphics.Color} ints, top row first.
+     */
+    public int[] readPixels() {
+        int[] pixels = new int[mSurface.length];
+        for (int y = 0; y < mSurfaceHeight; y++) {
+            System.arraycopy(mSurface, y * mSurfaceWidth, pixels,
+                    (mSurfaceHeight - 1 - y) * mSurfaceWidth, mSurfaceWidth);
+        }
+        return pixels;
+    }
+
+    /**
+     * Saves the surface as a PNG.
+     */
+    public void writePng(File file) throws IOException {
+        PngWriter.write(readPixels(), mSurfaceWidth, mSurfaceHeight, file);
+    }
+
+    /**
+     * Resets the per-frame counters. Call this at the start of every frame.
+     */
+    public void beginFrame() {
+        mFrameDrawCalls = 0;
+        mFrameVertices = 0;
+        mFrameFragments = 0;
+    }
+
+    /**
+     * Returns the number of draw calls made since {@link #beginFrame()}.
+     */
+    public int getFrameDrawCalls() {
+        return mFrameDrawCalls;
+    }
+
+    /**
+     * Returns the number of vertices shaded since {@link #beginFrame()}. Indexed draws shade
+     * each distinct index once.
+     */
+    public int getFrameVertices() {
+        return mFrameVertices;
+    }
+
+    /**
+     * Returns the number of fragments shaded since {@link #beginFrame()}, i.e. pixels covered by
+     * triangles inside the viewport and scissor box. Clears don't count.
+     */
+    public long getFrameFragments() {
+        return mFrameFragments;
+    }
+
+    public long getTotalDrawCalls() {
+        return mTotalDrawCalls;
+    }
+
+    public long getTotalVertices() {
+        return mTotalVertices;
+    }
+
+    public long getTotalFragments() {
+        return mTotalFragments;
+    }
+
+    private void setError(int error) {
+        if (mError == GLES20.GL_NO_ERROR) {
+            mError = error;
+        }
+    }
+
+    private static void setRect(int[] rect, int x, int y, int width, int height) {
+        rect[0] = x;
+        rect[1] = y;
+        rect[2] = width;
+        rect[3] = height;
+    }
+
+    @Override
+    public int glGetError() {
+        final int error = mError;
+        mError = GLES20.GL_NO_ERROR;
+        return error;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        switch (name) {
+            case GLES20.GL_VENDOR:
+            case GLES20.GL_RENDERER:
+                return mRenderer;
+            case GLES20.GL_VERSION:
+                return "OpenGL ES 2.0";
+            case GLES20.GL_EXTENSIONS:
+                return "";
+            default:
+                setError(GLES20.GL_INVALID_ENUM);
+                return null;
+        }
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        switch (pname) {
+            case GLES20.GL_VIEWPORT:
+                System.arraycopy(mViewport, 0, params, offset, 4);
+                break;
+            case GLES20.GL_FRAMEBUFFER_BINDING:
+                params[offset] = mBoundFramebufferName;
+                break;
+            case GLES20.GL_MAX_TEXTURE_SIZE:
+                params[offset] = MAX_TEXTURE_SIZE;
+                break;
+            case GLES30.GL_NUM_PROGRAM_BINARY_FORMATS:
+                params[offset] = 0;
+                break;
+            default:
+                setError(GLES20.GL_INVALID_ENUM);
+                break;
+        }
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        mClearColor[0] = clamp(red);
+        mClearColor[1] = clamp(green);
+        mClearColor[2] = clamp(blue);
+        mClearColor[3] = clamp(alpha);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        if ((mask & GLES20.GL_COLOR_BUFFER_BIT) == 0 || !bindTarget()) {
+            return;
+        }
+        if (mScissorTest) {
+            intersectClip(mScissor);
+        }
+        final int color = pack(mClearColor[0], mClearColor[1], mClearColor[2], mClearColor[3]);
+        for (int y = mClipBottom; y < mClipTop; y++) {
+            final int row = y * mTargetWidth;
+            for (int x = mClipLeft; x < mClipRight; x++) {
+                mTargetPixels[row + x] = color;
+            }
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        if (width < 0 || height < 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        setRect(mViewport, x, y, width, height);
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height) {
+        if (width < 0 || height < 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        setRect(mScissor, x, y, width, height);
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        setCapability(cap, true);
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        setCapability(cap, false);
+    }
+
+    private void setCapability(int cap, boolean enabled) {
+        switch (cap) {
+            case GLES20.GL_BLEND:
+                mBlend = enabled;
+                break;
+            case GLES20.GL_SCISSOR_TEST:
+                mScissorTest = enabled;
+                break;
+            case GLES20.GL_CULL_FACE:
+            case GLES20.GL_DEPTH_TEST:
+                // Not emulated. Nothing in this app enables them.
+                break;
+            default:
+                setError(GLES20.GL_INVALID_ENUM);
+                break;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only factors that depend on alpha alone are supported; others fail with
+     * {@link GLES20#GL_INVALID_ENUM}.
+     */
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        if (!isSupportedBlendFactor(sfactor) || !isSupportedBlendFactor(dfactor)) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return;
+        }
+        mBlendSrc = sfactor;
+        mBlendDst = dfactor;
+    }
+
+    private static boolean isSupportedBlendFactor(int factor) {
+        switch (factor) {
+            case GLES20.GL_ZERO:
+            case GLES20.GL_ONE:
+            case GLES20.GL_SRC_ALPHA:
+            case GLES20.GL_ONE_MINUS_SRC_ALPHA:
+            case GLES20.GL_DST_ALPHA:
+            case GLES20.GL_ONE_MINUS_DST_ALPHA:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        if (type != GLES20.GL_VERTEX_SHADER && type != GLES20.GL_FRAGMENT_SHADER) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return 0;
+        }
+        final int name = mNextName++;
+        mShaders.put(name, new Shader(type));
+        return name;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        Shader s = mShaders.get(shader);
+        if (s == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        s.mSource = source;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the declarations are parsed. Any source with a main function compiles.
+     */
+    @Override
+    public void glCompileShader(int shader) {
+        Shader s = mShaders.get(shader);
+        if (s == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        s.mDeclarations.clear();
+        s.mCompiled = s.mSource != null && s.mSource.contains("void main");
+        s.mInfoLog = s.mCompiled ? "" : "no main function";
+        if (!s.mCompiled) {
+            return;
+        }
+        Matcher matcher = DECLARATION.matcher(s.mSource);
+        while (matcher.find()) {
+            final String arraySize = matcher.group(4);
+            s.mDeclarations.add(new Declaration(matcher.group(1), matcher.group(2),
+                    matcher.group(3), arraySize == null ? 0 : Integer.parseInt(arraySize)));
+        }
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        Shader s = mShaders.get(shader);
+        if (s == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        if (pname == GLES20.GL_COMPILE_STATUS) {
+            params[offset] = s.mCompiled ? GLES20.GL_TRUE : GLES20.GL_FALSE;
+        } else {
+            setError(GLES20.GL_INVALID_ENUM);
+        }
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        Shader s = mShaders.get(shader);
+        if (s == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return "";
+        }
+        return s.mInfoLog;
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        // Programs keep their attached shaders, so nothing else needs to happen.
+        mShaders.remove(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        final int name = mNextName++;
+        mPrograms.put(name, new Program());
+        return name;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        Program p = mPrograms.get(program);
+        Shader s = mShaders.get(shader);
+        if (p == null || s == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        p.mShaders.add(s);
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        Program p = mPrograms.get(program);
+        if (p == null || index < 0 || index >= MAX_VERTEX_ATTRIBS) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        p.mAttribBindings.put(name, index);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        Program p = mPrograms.get(program);
+        if (p == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        p.mInfoLog = link(p);
+        p.mLinked = p.mInfoLog.isEmpty();
+    }
+
+    /**
+     * Assigns locations and picks the stages that emulate the program's shaders.
+     *
+     * @return an empty string on success, otherwise why the program can't be linked
+     */
+    private static String link(Program p) {
+        Shader vertex = null;
+        Shader fragment = null;
+        for (Shader s : p.mShaders) {
+            if (s.mType == GLES20.GL_VERTEX_SHADER) {
+                vertex = s;
+            } else {
+                fragment = s;
+            }
+        }
+        if (vertex == null || fragment == null || !vertex.mCompiled || !fragment.mCompiled) {
+            return "a compiled vertex and fragment shader are needed";
+        }
+
+        // Uniforms, with arrays taking one location per element.
+        p.mUniformLocations.clear();
+        p.mUniformSizes.clear();
+        int locations = 0;
+        for (Shader s : new Shader[]{vertex, fragment}) {
+            for (Declaration d : s.mDeclarations) {
+                if (d.mQualifier.equals("uniform") && !p.mUniformLocations.containsKey(d.mName)) {
+                    p.mUniformLocations.put(d.mName, locations);
+                    p.mUniformSizes.put(d.mName, Math.max(1, d.mArraySize));
+                    locations += Math.max(1, d.mArraySize);
+                }
+            }
+        }
+        p.mUniforms = new float[locations * UNIFORM_SLOT_FLOATS];
+
+        // Attributes: bound ones first, then the lowest free locations.
+        p.mAttribLocations.clear();
+        boolean[] used = new boolean[MAX_VERTEX_ATTRIBS];
+        for (Declaration d : vertex.mDeclarations) {
+            final Integer binding = p.mAttribBindings.get(d.mName);
+            if (d.mQualifier.equals("attribute") && binding != null) {
+                p.mAttribLocations.put(d.mName, binding);
+                used[binding] = true;
+            }
+        }
+        int next = 0;
+        for (Declaration d : vertex.mDeclarations) {
+            if (d.mQualifier.equals("attribute") && !p.mAttribLocations.containsKey(d.mName)) {
+                while (next < MAX_VERTEX_ATTRIBS && used[next]) {
+                    next++;
+                }
+                if (next == MAX_VERTEX_ATTRIBS) {
+                    return "too many attributes";
+                }
+                p.mAttribLocations.put(d.mName, next);
+                used[next] = true;
+            }
+        }
+
+        final String vertexError = linkVertexStage(p, vertex);
+        if (vertexError != null) {
+            return vertexError;
+        }
+        return linkFragmentStage(p, vertex, fragment);
+    }
+
+    private static String linkVertexStage(Program p, Shader vertex) {
+        Declaration matrix = null;
+        Declaration transforms = null;
+        Declaration scale = null;
+        List<Declaration> vec4Attribs = new ArrayList<>();
+        List<Declaration> vec2Attribs = new ArrayList<>();
+        Declaration layer = null;
+        for (Declaration d : vertex.mDeclarations) {
+            if (d.is("uniform", "mat4")) {
+                matrix = d;
+            } else if (d.is("uniform", "vec4") && d.mArraySize > 0) {
+                transforms = d;
+            } else if (d.is("uniform", "float")) {
+                scale = d;
+            } else if (d.is("attribute", "vec4")) {
+                vec4Attribs.add(d);
+            } else if (d.is("attribute", "vec2")) {
+                vec2Attribs.add(d);
+            } else if (d.is("attribute", "float")) {
+                layer = d;
+            }
+        }
+        p.mScaleUniform = scale == null ? -1 : p.mUniformLocations.get(scale.mName);
+        p.mMatrixUniform = matrix == null ? -1 : p.mUniformLocations.get(matrix.mName);
+        p.mMatrixCount = matrix == null ? 0 : Math.max(1, matrix.mArraySize);
+        p.mTransformsUniform = -1;
+        p.mLayerAttrib = -1;
+        p.mColorAttrib = -1;
+        p.mTexCoordAttrib = -1;
+
+        if (matrix != null && !vec4Attribs.isEmpty()) {
+            p.mPositionAttrib = p.mAttribLocations.get(vec4Attribs.get(0).mName);
+            if (vec4Attribs.size() > 1) {
+                p.mColorAttrib = p.mAttribLocations.get(vec4Attribs.get(1).mName);
+            }
+            if (matrix.mArraySize > 0 && layer != null) {
+                p.mVertexStage = VERTEX_STAGE_LAYER_MVP;
+            } else if (matrix.mArraySize == 0 && transforms != null && layer != null) {
+                p.mVertexStage = VERTEX_STAGE_LAYER_AFFINE;
+                p.mTransformsUniform = p.mUniformLocations.get(transforms.mName);
+                p.mMatrixCount = transforms.mArraySize;
+            } else if (matrix.mArraySize == 0 && transforms == null && layer == null) {
+                p.mVertexStage = VERTEX_STAGE_MVP;
+            } else {
+                return "unsupported vertex shader: unknown layer transform";
+            }
+            if (p.mVertexStage != VERTEX_STAGE_MVP) {
+                p.mLayerAttrib = p.mAttribLocations.get(layer.mName);
+            }
+            return null;
+        }
+        if (matrix == null && !vec2Attribs.isEmpty() && vec4Attribs.isEmpty()) {
+            p.mVertexStage = VERTEX_STAGE_CLIP_SPACE;
+            p.mPositionAttrib = p.mAttribLocations.get(vec2Attribs.get(0).mName);
+            if (vec2Attribs.size() > 1) {
+                p.mTexCoordAttrib = p.mAttribLocations.get(vec2Attribs.get(1).mName);
+            } else if (!vertex.mSource.contains("* 0.5 + 0.5")) {
+                return "unsupported vertex shader: unknown texture coordinates";
+            }
+            return null;
+        }
+        return "unsupported vertex shader: no known position transform";
+    }
+
+    private static String linkFragmentStage(Program p, Shader vertex, Shader fragment) {
+        p.mColorUniform = -1;
+        p.mSamplerUniform = -1;
+        Declaration varying = null;
+        for (Declaration d : fragment.mDeclarations) {
+            if (d.is("uniform", "sampler2D")) {
+                p.mFragmentStage = FRAGMENT_STAGE_TEXTURE;
+                p.mSamplerUniform = p.mUniformLocations.get(d.mName);
+                p.mVaryingFloats = 2;
+            } else if (d.is("uniform", "vec4") && p.mSamplerUniform < 0) {
+                p.mFragmentStage = FRAGMENT_STAGE_UNIFORM_COLOR;
+                p.mColorUniform = p.mUniformLocations.get(d.mName);
+                p.mVaryingFloats = 0;
+            } else if (d.mQualifier.equals("varying")) {
+                varying = d;
+            }
+        }
+        if (p.mColorUniform < 0 && p.mSamplerUniform < 0) {
+            if (varying == null || !varying.mType.equals("vec4")) {
+                return "unsupported fragment shader: no known color source";
+            }
+            p.mFragmentStage = FRAGMENT_STAGE_VARYING_COLOR;
+            p.mVaryingFloats = 4;
+        }
+        if (varying != null) {
+            boolean matched = false;
+            for (Declaration d : vertex.mDeclarations) {
+                matched |= d.is("varying", varying.mType) && d.mName.equals(varying.mName);
+            }
+            if (!matched) {
+                return "varying " + varying.mName + " is not written by the vertex shader";
+            }
+        }
+        if (p.mFragmentStage == FRAGMENT_STAGE_VARYING_COLOR && p.mColorAttrib < 0) {
+            return "unsupported vertex shader: no color attribute";
+        }
+        if (p.mFragmentStage == FRAGMENT_STAGE_TEXTURE
+                && p.mVertexStage != VERTEX_STAGE_CLIP_SPACE) {
+            return "unsupported vertex shader: no texture coordinates";
+        }
+        return "";
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        Program p = mPrograms.get(program);
+        if (p == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        if (pname == GLES20.GL_LINK_STATUS) {
+            params[offset] = p.mLinked ? GLES20.GL_TRUE : GLES20.GL_FALSE;
+        } else if (pname == GLES30.GL_PROGRAM_BINARY_LENGTH) {
+            params[offset] = 0;
+        } else {
+            setError(GLES20.GL_INVALID_ENUM);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Program binaries are not supported, which {@link GLES30#GL_NUM_PROGRAM_BINARY_FORMATS}
+     * reports.
+     */
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset,
+                                   int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        length[lengthOffset] = 0;
+        setError(GLES20.GL_INVALID_OPERATION);
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        Program p = mPrograms.get(program);
+        if (p == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        p.mLinked = false;
+        p.mInfoLog = "program binaries are not supported";
+    }
+
+    @Override
+    public void glProgramParameteri(int program, int pname, int value) {
+        // Binaries aren't supported, so there is nothing to keep.
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        Program p = mPrograms.get(program);
+        if (p == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return "";
+        }
+        return p.mInfoLog;
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        // The current program stays usable until another one is used.
+        mPrograms.remove(program);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Array elements can be looked up as "name" for the first or "name[i]".
+     */
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        Program p = getLinkedProgram(program);
+        if (p == null) {
+            return -1;
+        }
+        int element = 0;
+        final int bracket = name.indexOf('[');
+        if (bracket >= 0 && name.endsWith("]")) {
+            try {
+                element = Integer.parseInt(name.substring(bracket + 1, name.length() - 1));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            name = name.substring(0, bracket);
+        }
+        final Integer location = p.mUniformLocations.get(name);
+        if (location == null || element < 0 || element >= p.mUniformSizes.get(name)) {
+            return -1;
+        }
+        return location + element;
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        Program p = getLinkedProgram(program);
+        if (p == null) {
+            return -1;
+        }
+        final Integer location = p.mAttribLocations.get(name);
+        return location == null ? -1 : location;
+    }
+
+    private Program getLinkedProgram(int program) {
+        Program p = mPrograms.get(program);
+        if (p == null) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return null;
+        }
+        if (!p.mLinked) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return null;
+        }
+        return p;
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (program == 0) {
+            mCurrentProgram = null;
+            return;
+        }
+        Program p = getLinkedProgram(program);
+        if (p != null) {
+            mCurrentProgram = p;
+        }
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        mAttribs[index].mEnabled = true;
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        mAttribs[index].mEnabled = false;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, Buffer ptr) {
+        Attrib attrib = setAttribFormat(index, size, type, normalized, stride);
+        if (attrib == null) {
+            return;
+        }
+        attrib.mBuffer = null;
+        attrib.mClientData = ptr;
+        attrib.mClientPosition = ptr.position();
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                                      int stride, int offset) {
+        if (mArrayBuffer == null) {
+            // Offsets without a buffer would be client addresses, which Java can't pass.
+            setError(GLES20.GL_INVALID_OPERATION);
+            return;
+        }
+        Attrib attrib = setAttribFormat(index, size, type, normalized, stride);
+        if (attrib == null) {
+            return;
+        }
+        attrib.mBuffer = mArrayBuffer;
+        attrib.mOffset = offset;
+        attrib.mClientData = null;
+    }
+
+    private Attrib setAttribFormat(int index, int size, int type, boolean normalized,
+                                   int stride) {
+        if (index < 0 || index >= MAX_VERTEX_ATTRIBS || size < 1 || size > 4 || stride < 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return null;
+        }
+        if (bytesPerComponent(type) == 0) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return null;
+        }
+        Attrib attrib = mAttribs[index];
+        attrib.mSize = size;
+        attrib.mType = type;
+        attrib.mNormalized = normalized;
+        attrib.mStride = stride;
+        return attrib;
+    }
+
+    private static int bytesPerComponent(int type) {
+        switch (type) {
+            case GLES20.GL_BYTE:
+            case GLES20.GL_UNSIGNED_BYTE:
+                return 1;
+            case GLES20.GL_SHORT:
+            case GLES20.GL_UNSIGNED_SHORT:
+                return 2;
+            case GLES20.GL_FLOAT:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the uniform storage of the current program for a location and element count, or
+     * null if they don't fit.
+     */
+    private float[] getUniforms(int location, int count) {
+        if (mCurrentProgram == null) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return null;
+        }
+        final float[] uniforms = mCurrentProgram.mUniforms;
+        if (location < 0 || count < 0 || (location + count) * UNIFORM_SLOT_FLOATS > uniforms.length) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return null;
+        }
+        return uniforms;
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        if (location == -1) {
+            return;
+        }
+        final float[] uniforms = getUniforms(location, 1);
+        if (uniforms != null) {
+            uniforms[location * UNIFORM_SLOT_FLOATS] = x;
+        }
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        if (location == -1) {
+            return;
+        }
+        final float[] uniforms = getUniforms(location, count);
+        if (uniforms == null) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(v, offset + i * 4, uniforms, (location + i) * UNIFORM_SLOT_FLOATS,
+                    4);
+        }
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+                                   int offset) {
+        if (transpose) {
+            // GLES 2.0 doesn't allow transposing.
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        if (location == -1) {
+            return;
+        }
+        final float[] uniforms = getUniforms(location, count);
+        if (uniforms == null) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(value, offset + i * 16, uniforms,
+                    (location + i) * UNIFORM_SLOT_FLOATS, 16);
+        }
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        if (first < 0 || count < 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        ensureIndexCapacity(count);
+        for (int i = 0; i < count; i++) {
+            mIndices[i] = first + i;
+        }
+        draw(mode, count);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+        if (count < 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        if (readIndices(asNativeBytes(indices, indices.position()), 0, count, type)) {
+            draw(mode, count);
+        }
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        if (count < 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        if (mElementArrayBuffer == null) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return;
+        }
+        if (readIndices(mElementArrayBuffer.mData, offset, count, type)) {
+            draw(mode, count);
+        }
+    }
+
+    /**
+     * Reads indices into {@link #mIndices}.
+     *
+     * @return false if they can't be read
+     */
+    private boolean readIndices(ByteBuffer source, int offset, int count, int type) {
+        final int size = type == GLES20.GL_UNSIGNED_SHORT ? 2 : 1;
+        if (type != GLES20.GL_UNSIGNED_SHORT && type != GLES20.GL_UNSIGNED_BYTE) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return false;
+        }
+        if (offset < 0 || offset + (long) count * size > source.limit()) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return false;
+        }
+        ensureIndexCapacity(count);
+        for (int i = 0; i < count; i++) {
+            mIndices[i] = size == 2
+                    ? source.getShort(offset + 2 * i) & 0xffff
+                    : source.get(offset + i) & 0xff;
+        }
+        return true;
+    }
+
+    private void ensureIndexCapacity(int count) {
+        if (mIndices.length < count) {
+            mIndices = new int[Math.max(count, mIndices.length * 2)];
+        }
+    }
+
+    /**
+     * Shades the vertices of the first {@code count} entries of {@link #mIndices} and rasterizes
+     * the triangles they make.
+     */
+    private void draw(int mode, int count) {
+        final Program program = mCurrentProgram;
+        if (program == null) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return;
+        }
+        if (mode != GLES20.GL_TRIANGLES && mode != GLES20.GL_TRIANGLE_STRIP
+                && mode != GLES20.GL_TRIANGLE_FAN) {
+            // Points and lines are valid but not rasterized.
+            countDraw(0);
+            return;
+        }
+        if (!bindTarget()) {
+            return;
+        }
+        if (mScissorTest) {
+            intersectClip(mScissor);
+        }
+        intersectClip(mViewport);
+
+        int maxIndex = -1;
+        for (int i = 0; i < count; i++) {
+            maxIndex = Math.max(maxIndex, mIndices[i]);
+        }
+        if (!prepareAttribs(program, maxIndex)) {
+            return;
+        }
+        if (mShaded.length <= maxIndex) {
+            final int capacity = Math.max(maxIndex + 1, mShaded.length * 2);
+            mShaded = new boolean[capacity];
+            mScreen = new float[capacity * 3];
+            mVaryings = new float[capacity * MAX_VARYING_FLOATS];
+        }
+        Arrays.fill(mShaded, 0, maxIndex + 1, false);
+        int vertices = 0;
+        for (int i = 0; i < count; i++) {
+            final int index = mIndices[i];
+            if (!mShaded[index]) {
+                mShaded[index] = true;
+                shadeVertex(program, index);
+                vertices++;
+            }
+        }
+        countDraw(vertices);
+
+        if (mClipLeft >= mClipRight || mClipBottom >= mClipTop) {
+            return;
+        }
+        if (mode == GLES20.GL_TRIANGLES) {
+            for (int i = 0; i + 2 < count; i += 3) {
+                rasterizeTriangle(program, mIndices[i], mIndices[i + 1], mIndices[i + 2]);
+            }
+        } else if (mode == GLES20.GL_TRIANGLE_STRIP) {
+            for (int i = 0; i + 2 < count; i++) {
+                rasterizeTriangle(program, mIndices[i], mIndices[i + 1], mIndices[i + 2]);
+            }
+        } else {
+            for (int i = 1; i + 1 < count; i++) {
+                rasterizeTriangle(program, mIndices[0], mIndices[i], mIndices[i + 1]);
+            }
+        }
+    }
+
+    private void countDraw(int vertices) {
+        mTotalDrawCalls++;
+        mFrameDrawCalls++;
+        mTotalVertices += vertices;
+        mFrameVertices += vertices;
+    }
+
+    /**
+     * Points the attributes the program reads at their data for this draw.
+     *
+     * @return false if an attribute would be read past the end of its data
+     */
+    private boolean prepareAttribs(Program program, int maxIndex) {
+        return prepareAttrib(program.mPositionAttrib, maxIndex)
+                && prepareAttrib(program.mColorAttrib, maxIndex)
+                && prepareAttrib(program.mLayerAttrib, maxIndex)
+                && prepareAttrib(program.mTexCoordAttrib, maxIndex);
+    }
+
+    private boolean prepareAttrib(int index, int maxIndex) {
+        if (index < 0) {
+            return true;
+        }
+        Attrib attrib = mAttribs[index];
+        attrib.mSource = null;
+        if (!attrib.mEnabled || maxIndex < 0) {
+            return true;
+        }
+        if (attrib.mBuffer != null) {
+            attrib.mSource = attrib.mBuffer.mData;
+            attrib.mBase = attrib.mOffset;
+        } else if (attrib.mClientData != null) {
+            attrib.mSource = asNativeBytes(attrib.mClientData, attrib.mClientPosition);
+            attrib.mBase = 0;
+        } else {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return false;
+        }
+        final int elementBytes = attrib.mSize * bytesPerComponent(attrib.mType);
+        attrib.mEffectiveStride = attrib.mStride != 0 ? attrib.mStride : elementBytes;
+        final long end = attrib.mBase + (long) maxIndex * attrib.mEffectiveStride + elementBytes;
+        if (attrib.mBase < 0 || end > attrib.mSource.limit()) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads an attribute of a vertex into {@link #mAttribValue}, filling missing components with
+     * (0, 0, 0, 1) like GL.
+     */
+    private void fetch(int index, int vertex) {
+        final float[] value = mAttribValue;
+        value[0] = 0;
+        value[1] = 0;
+        value[2] = 0;
+        value[3] = 1;
+        if (index < 0) {
+            return;
+        }
+        final Attrib attrib = mAttribs[index];
+        final ByteBuffer source = attrib.mSource;
+        if (source == null) {
+            return;
+        }
+        final int component = bytesPerComponent(attrib.mType);
+        int at = attrib.mBase + vertex * attrib.mEffectiveStride;
+        for (int i = 0; i < attrib.mSize; i++, at += component) {
+            switch (attrib.mType) {
+                case GLES20.GL_FLOAT:
+                    value[i] = source.getFloat(at);
+                    break;
+                case GLES20.GL_SHORT:
+                    final short s = source.getShort(at);
+                    value[i] = attrib.mNormalized ? Math.max(s / 32767f, -1f) : s;
+                    break;
+                case GLES20.GL_UNSIGNED_SHORT:
+                    final int us = source.getShort(at) & 0xffff;
+                    value[i] = attrib.mNormalized ? us / 65535f : us;
+                    break;
+                case GLES20.GL_BYTE:
+                    final byte b = source.get(at);
+                    value[i] = attrib.mNormalized ? Math.max(b / 127f, -1f) : b;
+                    break;
+                default:
+                    final int ub = source.get(at) & 0xff;
+                    value[i] = attrib.mNormalized ? ub / 255f : ub;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Runs the vertex stage for a vertex and stores its window position, 1 / w and varyings
+     * divided by w, or NaN coordinates if it can't be rasterized.
+     */
+    private void shadeVertex(Program program, int vertex) {
+        final float[] u = program.mUniforms;
+        final float[] clip = mClip;
+        final int varyings = vertex * MAX_VARYING_FLOATS;
+        fetch(program.mPositionAttrib, vertex);
+        final float[] p = mAttribValue;
+        if (program.mVertexStage == VERTEX_STAGE_CLIP_SPACE) {
+            clip[0] = p[0];
+            clip[1] = p[1];
+            clip[2] = 0;
+            clip[3] = 1;
+            if (program.mTexCoordAttrib < 0) {
+                mVaryings[varyings] = p[0] * 0.5f + 0.5f;
+                mVaryings[varyings + 1] = p[1] * 0.5f + 0.5f;
+            } else {
+                fetch(program.mTexCoordAttrib, vertex);
+                mVaryings[varyings] = p[0];
+                mVaryings[varyings + 1] = p[1];
+            }
+        } else {
+            final float scale = program.mScaleUniform < 0
+                    ? 1 : u[program.mScaleUniform * UNIFORM_SLOT_FLOATS];
+            float x = p[0] * scale;
+            float y = p[1] * scale;
+            final float z = p[2];
+            final float w = p[3];
+            int matrix = program.mMatrixUniform;
+            if (program.mVertexStage != VERTEX_STAGE_MVP) {
+                fetch(program.mLayerAttrib, vertex);
+                final int layer = Math.min(Math.max((int) p[0], 0), program.mMatrixCount - 1);
+                if (program.mVertexStage == VERTEX_STAGE_LAYER_MVP) {
+                    matrix += layer;
+                } else {
+                    final int t = (program.mTransformsUniform + layer) * UNIFORM_SLOT_FLOATS;
+                    final float rotatedX = u[t] * x - u[t + 1] * y + u[t + 2];
+                    y = u[t + 1] * x + u[t] * y + u[t + 3];
+                    x = rotatedX;
+                }
+            }
+            final int m = matrix * UNIFORM_SLOT_FLOATS;
+            for (int row = 0; row < 4; row++) {
+                clip[row] = u[m + row] * x + u[m + 4 + row] * y + u[m + 8 + row] * z
+                        + u[m + 12 + row] * w;
+            }
+            if (program.mColorAttrib >= 0) {
+                fetch(program.mColorAttrib, vertex);
+                System.arraycopy(p, 0, mVaryings, varyings, 4);
+            }
+        }
+
+        final int screen = vertex * 3;
+        final float w = clip[3];
+        final float windowX = mViewport[0] + (clip[0] / w + 1) * 0.5f * mViewport[2];
+        final float windowY = mViewport[1] + (clip[1] / w + 1) * 0.5f * mViewport[3];
+        if (!(w > 0) || Math.abs(windowX) > GUARD_BAND || Math.abs(windowY) > GUARD_BAND) {
+            mScreen[screen] = Float.NaN;
+            return;
+        }
+        mScreen[screen] = windowX;
+        mScreen[screen + 1] = windowY;
+        mScreen[screen + 2] = 1 / w;
+        for (int i = 0; i < program.mVaryingFloats; i++) {
+            mVaryings[varyings + i] /= w;
+        }
+    }
+
+    /**
+     * Fills the pixels whose centers are inside a triangle, walking its bounding box in tiles.
+     */
+    private void rasterizeTriangle(Program program, int a, int b, int c) {
+        if (Float.isNaN(mScreen[a * 3]) || Float.isNaN(mScreen[b * 3])
+                || Float.isNaN(mScreen[c * 3])) {
+            return;
+        }
+        final long ax = toSubpixels(mScreen[a * 3]);
+        final long ay = toSubpixels(mScreen[a * 3 + 1]);
+        long bx = toSubpixels(mScreen[b * 3]);
+        long by = toSubpixels(mScreen[b * 3 + 1]);
+        long cx = toSubpixels(mScreen[c * 3]);
+        long cy = toSubpixels(mScreen[c * 3 + 1]);
+        long area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (area == 0) {
+            return;
+        }
+        if (area < 0) {
+            // Make the winding counterclockwise so inside is positive for every edge.
+            int swap = b;
+            b = c;
+            c = swap;
+            long swapX = bx;
+            bx = cx;
+            cx = swapX;
+            long swapY = by;
+            by = cy;
+            cy = swapY;
+            area = -area;
+        }
+        // Edge i is opposite vertex i, so its function is that vertex's barycentric weight.
+        setEdge(0, bx, by, cx, cy);
+        setEdge(1, cx, cy, ax, ay);
+        setEdge(2, ax, ay, bx, by);
+
+        final int minX = Math.max(mClipLeft,
+                (int) (Math.min(ax, Math.min(bx, cx)) >> SUBPIXEL_BITS));
+        final int maxX = Math.min(mClipRight - 1,
+                (int) (Math.max(ax, Math.max(bx, cx)) >> SUBPIXEL_BITS));
+        final int minY = Math.max(mClipBottom,
+                (int) (Math.min(ay, Math.min(by, cy)) >> SUBPIXEL_BITS));
+        final int maxY = Math.min(mClipTop - 1,
+                (int) (Math.max(ay, Math.max(by, cy)) >> SUBPIXEL_BITS));
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        final double inverseArea = 1.0 / area;
+        for (int tileY = minY & -TILE_SIZE; tileY <= maxY; tileY += TILE_SIZE) {
+            final int bottom = Math.max(tileY, minY);
+            final int top = Math.min(tileY + TILE_SIZE - 1, maxY);
+            for (int tileX = minX & -TILE_SIZE; tileX <= maxX; tileX += TILE_SIZE) {
+                final int left = Math.max(tileX, minX);
+                final int right = Math.min(tileX + TILE_SIZE - 1, maxX);
+                // Edge functions are linear, so their extremes over the tile are at its corners.
+                boolean covered = true;
+                boolean outside = false;
+                for (int e = 0; e < 3 && !outside; e++) {
+                    final long c00 = evaluateEdge(e, left, bottom);
+                    final long c10 = evaluateEdge(e, right, bottom);
+                    final long c01 = evaluateEdge(e, left, top);
+                    final long c11 = evaluateEdge(e, right, top);
+                    outside = Math.max(Math.max(c00, c10), Math.max(c01, c11)) < 0;
+                    covered &= Math.min(Math.min(c00, c10), Math.min(c01, c11)) >= 0;
+                }
+                if (outside) {
+                    continue;
+                }
+                for (int y = bottom; y <= top; y++) {
+                    long e0 = evaluateEdge(0, left, y);
+                    long e1 = evaluateEdge(1, left, y);
+                    long e2 = evaluateEdge(2, left, y);
+                    final long stepX = SUBPIXEL_ONE;
+                    for (int x = left; x <= right; x++) {
+                        if (covered || (e0 | e1 | e2) >= 0) {
+                            shadeFragment(program, x, y, a, b, c,
+                                    (e0 - mEdgeBias[0]) * inverseArea,
+                                    (e1 - mEdgeBias[1]) * inverseArea,
+                                    (e2 - mEdgeBias[2]) * inverseArea);
+                        }
+                        e0 += mEdgeA[0] * stepX;
+                        e1 += mEdgeA[1] * stepX;
+                        e2 += mEdgeA[2] * stepX;
+                    }
+                }
+            }
+        }
+    }
+
+    private static long toSubpixels(float coordinate) {
+        return Math.round(coordinate * (double) SUBPIXEL_ONE);
+    }
+
+    /**
+     * Sets up the function of the edge from (x0, y0) to (x1, y1), which is positive to its left.
+     * Pixel centers exactly on the edge are only inside if it is a top or left edge, so triangles
+     * that share an edge don't both fill its pixels.
+     */
+    private void setEdge(int edge, long x0, long y0, long x1, long y1) {
+        mEdgeA[edge] = y0 - y1;
+        mEdgeB[edge] = x1 - x0;
+        mEdgeC[edge] = -(mEdgeA[edge] * x0 + mEdgeB[edge] * y0);
+        final boolean topLeft = y1 < y0 || (y1 == y0 && x1 < x0);
+        mEdgeBias[edge] = topLeft ? 0 : -1;
+    }
+
+    /**
+     * Evaluates an edge function at the center of a pixel, including the fill rule bias.
+     */
+    private long evaluateEdge(int edge, int x, int y) {
+        final long px = ((long) x << SUBPIXEL_BITS) + SUBPIXEL_ONE / 2;
+        final long py = ((long) y << SUBPIXEL_BITS) + SUBPIXEL_ONE / 2;
+        return mEdgeA[edge] * px + mEdgeB[edge] * py + mEdgeC[edge] + mEdgeBias[edge];
+    }
+
+    /**
+     * Runs the fragment stage for a pixel and blends the result into the target.
+     *
+     * @param wa barycentric weight of vertex a, likewise for wb and wc
+     */
+    private void shadeFragment(Program program, int x, int y, int a, int b, int c,
+                               double wa, double wb, double wc) {
+        final float[] color = mFragment;
+        if (program.mFragmentStage == FRAGMENT_STAGE_UNIFORM_COLOR) {
+            System.arraycopy(program.mUniforms, program.mColorUniform * UNIFORM_SLOT_FLOATS,
+                    color, 0, 4);
+        } else {
+            // Varyings were divided by w per vertex; dividing by the interpolated 1 / w undoes
+            // it with perspective.
+            final double inverseW = wa * mScreen[a * 3 + 2] + wb * mScreen[b * 3 + 2]
+                    + wc * mScreen[c * 3 + 2];
+            final int va = a * MAX_VARYING_FLOATS;
+            final int vb = b * MAX_VARYING_FLOATS;
+            final int vc = c * MAX_VARYING_FLOATS;
+            for (int i = 0; i < program.mVaryingFloats; i++) {
+                color[i] = (float) ((wa * mVaryings[va + i] + wb * mVaryings[vb + i]
+                        + wc * mVaryings[vc + i]) / inverseW);
+            }
+            if (program.mFragmentStage == FRAGMENT_STAGE_TEXTURE) {
+                final int unit = (int) program.mUniforms[
+                        program.mSamplerUniform * UNIFORM_SLOT_FLOATS];
+                sample(unit >= 0 && unit < MAX_TEXTURE_UNITS ? mBoundTextures[unit] : null,
+                        color[0], color[1], color);
+            }
+        }
+        mTotalFragments++;
+        mFrameFragments++;
+
+        final int i = y * mTargetWidth + x;
+        final float srcR = clamp(color[0]);
+        final float srcG = clamp(color[1]);
+        final float srcB = clamp(color[2]);
+        final float srcA = clamp(color[3]);
+        if (!mBlend) {
+            mTargetPixels[i] = pack(srcR, srcG, srcB, srcA);
+            return;
+        }
+        final int dst = mTargetPixels[i];
+        final float dstA = (dst >>> 24) / 255f;
+        final float s = blendFactor(mBlendSrc, srcA, dstA);
+        final float d = blendFactor(mBlendDst, srcA, dstA);
+        mTargetPixels[i] = pack(
+                srcR * s + ((dst >> 16) & 0xff) / 255f * d,
+                srcG * s + ((dst >> 8) & 0xff) / 255f * d,
+                srcB * s + (dst & 0xff) / 255f * d,
+                srcA * s + dstA * d);
+    }
+
+    private static float blendFactor(int factor, float srcAlpha, float dstAlpha) {
+        switch (factor) {
+            case GLES20.GL_ZERO:
+                return 0;
+            case GLES20.GL_SRC_ALPHA:
+                return srcAlpha;
+            case GLES20.GL_ONE_MINUS_SRC_ALPHA:
+                return 1 - srcAlpha;
+            case GLES20.GL_DST_ALPHA:
+                return dstAlpha;
+            case GLES20.GL_ONE_MINUS_DST_ALPHA:
+                return 1 - dstAlpha;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Samples a texture at (s, t) into {@code out}, clamping to the edge. An incomplete texture
+     * samples as opaque black, like GL.
+     */
+    private static void sample(Texture texture, float s, float t, float[] out) {
+        if (texture == null || texture.mWidth == 0 || texture.mHeight == 0) {
+            out[0] = 0;
+            out[1] = 0;
+            out[2] = 0;
+            out[3] = 1;
+            return;
+        }
+        final int width = texture.mWidth;
+        final int height = texture.mHeight;
+        final float u = s * width - 0.5f;
+        final float v = t * height - 0.5f;
+        if (!texture.mLinear) {
+            unpack(texture.mPixels[clampIndex(Math.round(v), height) * width
+                    + clampIndex(Math.round(u), width)], 1, out, false);
+            return;
+        }
+        final int x0 = (int) Math.floor(u);
+        final int y0 = (int) Math.floor(v);
+        final float fx = u - x0;
+        final float fy = v - y0;
+        final int left = clampIndex(x0, width);
+        final int right = clampIndex(x0 + 1, width);
+        final int bottom = clampIndex(y0, height) * width;
+        final int top = clampIndex(y0 + 1, height) * width;
+        unpack(texture.mPixels[bottom + left], (1 - fx) * (1 - fy), out, false);
+        unpack(texture.mPixels[bottom + right], fx * (1 - fy), out, true);
+        unpack(texture.mPixels[top + left], (1 - fx) * fy, out, true);
+        unpack(texture.mPixels[top + right], fx * fy, out, true);
+    }
+
+    private static int clampIndex(int i, int size) {
+        return i < 0 ? 0 : i >= size ? size - 1 : i;
+    }
+
+    private static void unpack(int color, float weight, float[] out, boolean add) {
+        final float scale = weight / 255f;
+        if (!add) {
+            out[0] = 0;
+            out[1] = 0;
+            out[2] = 0;
+            out[3] = 0;
+        }
+        out[0] += ((color >> 16) & 0xff) * scale;
+        out[1] += ((color >> 8) & 0xff) * scale;
+        out[2] += (color & 0xff) * scale;
+        out[3] += (color >>> 24) * scale;
+    }
+
+    private static float clamp(float value) {
+        return value < 0 ? 0 : value > 1 ? 1 : value;
+    }
+
+    private static int pack(float red, float green, float blue, float alpha) {
+        return (Math.round(clamp(alpha) * 255) << 24)
+                | (Math.round(clamp(red) * 255) << 16)
+                | (Math.round(clamp(green) * 255) << 8)
+                | Math.round(clamp(blue) * 255);
+    }
+
+    /**
+     * Makes the bound framebuffer's color buffer the target of clears and draws, and sets the
+     * clip rectangle to all of it.
+     *
+     * @return false if the bound framebuffer has no color buffer
+     */
+    private boolean bindTarget() {
+        int height;
+        if (mBoundFramebuffer == null) {
+            mTargetPixels = mSurface;
+            mTargetWidth = mSurfaceWidth;
+            height = mSurfaceHeight;
+        } else {
+            final Texture texture = mBoundFramebuffer.mColorAttachment;
+            if (texture == null || texture.mWidth == 0) {
+                setError(GLES20.GL_INVALID_FRAMEBUFFER_OPERATION);
+                return false;
+            }
+            mTargetPixels = texture.mPixels;
+            mTargetWidth = texture.mWidth;
+            height = texture.mHeight;
+        }
+        mClipLeft = 0;
+        mClipBottom = 0;
+        mClipRight = mTargetWidth;
+        mClipTop = height;
+        return true;
+    }
+
+    private void intersectClip(int[] rect) {
+        mClipLeft = Math.max(mClipLeft, rect[0]);
+        mClipBottom = Math.max(mClipBottom, rect[1]);
+        mClipRight = Math.min(mClipRight, rect[0] + rect[2]);
+        mClipTop = Math.min(mClipTop, rect[1] + rect[3]);
+    }
+
+    /**
+     * Returns the bytes of a buffer from a position on, in native order as GL reads them.
+     * Byte buffers are wrapped, others are copied.
+     *
+     * @param position position in elements of the buffer
+     */
+    private static ByteBuffer asNativeBytes(Buffer data, int position) {
+        if (data instanceof ByteBuffer) {
+            ByteBuffer bytes = ((ByteBuffer) data).duplicate();
+            bytes.position(position);
+            return bytes.slice().order(ByteOrder.nativeOrder());
+        }
+        final int count = data.limit() - position;
+        if (data instanceof FloatBuffer) {
+            ByteBuffer bytes = ByteBuffer.allocate(count * 4).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < count; i++) {
+                bytes.putFloat(i * 4, ((FloatBuffer) data).get(position + i));
+            }
+            return bytes;
+        }
+        if (data instanceof ShortBuffer) {
+            ByteBuffer bytes = ByteBuffer.allocate(count * 2).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < count; i++) {
+                bytes.putShort(i * 2, ((ShortBuffer) data).get(position + i));
+            }
+            return bytes;
+        }
+        if (data instanceof IntBuffer) {
+            ByteBuffer bytes = ByteBuffer.allocate(count * 4).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < count; i++) {
+                bytes.putInt(i * 4, ((IntBuffer) data).get(position + i));
+            }
+            return bytes;
+        }
+        throw new IllegalArgumentException("unsupported buffer " + data.getClass().getName());
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            final int name = mNextName++;
+            mBuffers.put(name, new BufferObject());
+            buffers[offset + i] = name;
+        }
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            final BufferObject buffer = mBuffers.remove(buffers[offset + i]);
+            if (buffer == null) {
+                continue;
+            }
+            if (mArrayBuffer == buffer) {
+                mArrayBuffer = null;
+            }
+            if (mElementArrayBuffer == buffer) {
+                mElementArrayBuffer = null;
+            }
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        BufferObject object = null;
+        if (buffer != 0) {
+            object = mBuffers.get(buffer);
+            if (object == null) {
+                object = new BufferObject();
+                mBuffers.put(buffer, object);
+            }
+        }
+        if (target == GLES20.GL_ARRAY_BUFFER) {
+            mArrayBuffer = object;
+        } else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER) {
+            mElementArrayBuffer = object;
+        } else {
+            setError(GLES20.GL_INVALID_ENUM);
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        final BufferObject buffer = target == GLES20.GL_ARRAY_BUFFER ? mArrayBuffer
+                : target == GLES20.GL_ELEMENT_ARRAY_BUFFER ? mElementArrayBuffer : null;
+        if (buffer == null) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return;
+        }
+        if (size < 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        if (data != null) {
+            final ByteBuffer source = asNativeBytes(data, data.position());
+            if (source.limit() < size) {
+                setError(GLES20.GL_INVALID_VALUE);
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                copy.put(i, source.get(i));
+            }
+        }
+        buffer.mData = copy;
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; i++) {
+            final int name = mNextName++;
+            mTextures.put(name, new Texture());
+            textures[offset + i] = name;
+        }
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; i++) {
+            final Texture texture = mTextures.remove(textures[offset + i]);
+            if (texture == null) {
+                continue;
+            }
+            for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+                if (mBoundTextures[unit] == texture) {
+                    mBoundTextures[unit] = null;
+                }
+            }
+            if (mBoundFramebuffer != null && mBoundFramebuffer.mColorAttachment == texture) {
+                mBoundFramebuffer.mColorAttachment = null;
+            }
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        final int unit = texture - GLES20.GL_TEXTURE0;
+        if (unit < 0 || unit >= MAX_TEXTURE_UNITS) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return;
+        }
+        mActiveTextureUnit = unit;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        if (target != GLES20.GL_TEXTURE_2D) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return;
+        }
+        Texture object = null;
+        if (texture != 0) {
+            object = mTextures.get(texture);
+            if (object == null) {
+                object = new Texture();
+                mTextures.put(texture, object);
+            }
+        }
+        mBoundTextures[mActiveTextureUnit] = object;
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        final Texture texture = getBoundTexture(target);
+        if (texture != null && pname == GLES20.GL_TEXTURE_MAG_FILTER) {
+            texture.mLinear = param == GLES20.GL_LINEAR;
+        }
+    }
+
+    private Texture getBoundTexture(int target) {
+        if (target != GLES20.GL_TEXTURE_2D) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return null;
+        }
+        final Texture texture = mBoundTextures[mActiveTextureUnit];
+        if (texture == null) {
+            setError(GLES20.GL_INVALID_OPERATION);
+        }
+        return texture;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only level 0 of {@link GLES20#GL_RGBA} {@link GLES20#GL_UNSIGNED_BYTE} textures is stored.
+     */
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height,
+                             int border, int format, int type, Buffer pixels) {
+        final Texture texture = getBoundTexture(target);
+        if (texture == null || level != 0) {
+            return;
+        }
+        if (internalformat != GLES20.GL_RGBA || format != GLES20.GL_RGBA
+                || type != GLES20.GL_UNSIGNED_BYTE) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return;
+        }
+        if (width < 0 || height < 0 || width > MAX_TEXTURE_SIZE || height > MAX_TEXTURE_SIZE
+                || border != 0) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        texture.mWidth = width;
+        texture.mHeight = height;
+        texture.mPixels = new int[width * height];
+        if (pixels == null) {
+            return;
+        }
+        final ByteBuffer source = asNativeBytes(pixels, pixels.position());
+        if (source.limit() < texture.mPixels.length * 4) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return;
+        }
+        for (int i = 0; i < texture.mPixels.length; i++) {
+            texture.mPixels[i] = ((source.get(i * 4 + 3) & 0xff) << 24)
+                    | ((source.get(i * 4) & 0xff) << 16)
+                    | ((source.get(i * 4 + 1) & 0xff) << 8)
+                    | (source.get(i * 4 + 2) & 0xff);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Pixels are premultiplied, as for a premultiplied bitmap on a device.
+     */
+    @Override
+    public void texSubImage2D(int target, int level, int xoffset, int yoffset, Bitmap bitmap) {
+        final Texture texture = getBoundTexture(target);
+        if (texture == null || level != 0) {
+            return;
+        }
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        if (xoffset < 0 || yoffset < 0 || xoffset + width > texture.mWidth
+                || yoffset + height > texture.mHeight) {
+            setError(GLES20.GL_INVALID_VALUE);
+            return;
+        }
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            final int start = (yoffset + y) * texture.mWidth + xoffset;
+            for (int x = 0; x < width; x++) {
+                texture.mPixels[start + x] = premultiply(row[x]);
+            }
+        }
+    }
+
+    private static int premultiply(int color) {
+        final int alpha = color >>> 24;
+        if (alpha == 0xff) {
+            return color;
+        }
+        final int red = (((color >> 16) & 0xff) * alpha + 127) / 255;
+        final int green = (((color >> 8) & 0xff) * alpha + 127) / 255;
+        final int blue = ((color & 0xff) * alpha + 127) / 255;
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            final int name = mNextName++;
+            mFramebuffers.put(name, new Framebuffer());
+            framebuffers[offset + i] = name;
+        }
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            final Framebuffer framebuffer = mFramebuffers.remove(framebuffers[offset + i]);
+            if (framebuffer != null && framebuffer == mBoundFramebuffer) {
+                mBoundFramebuffer = null;
+                mBoundFramebufferName = 0;
+            }
+        }
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        if (target != GLES20.GL_FRAMEBUFFER) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return;
+        }
+        Framebuffer object = null;
+        if (framebuffer != 0) {
+            object = mFramebuffers.get(framebuffer);
+            if (object == null) {
+                object = new Framebuffer();
+                mFramebuffers.put(framebuffer, object);
+            }
+        }
+        mBoundFramebuffer = object;
+        mBoundFramebufferName = framebuffer;
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture,
+                                       int level) {
+        if (target != GLES20.GL_FRAMEBUFFER || attachment != GLES20.GL_COLOR_ATTACHMENT0
+                || textarget != GLES20.GL_TEXTURE_2D) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return;
+        }
+        if (mBoundFramebuffer == null) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return;
+        }
+        final Texture object = texture == 0 ? null : mTextures.get(texture);
+        if (texture != 0 && (object == null || level != 0)) {
+            setError(GLES20.GL_INVALID_OPERATION);
+            return;
+        }
+        mBoundFramebuffer.mColorAttachment = object;
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        if (target != GLES20.GL_FRAMEBUFFER) {
+            setError(GLES20.GL_INVALID_ENUM);
+            return 0;
+        }
+        if (mBoundFramebuffer == null) {
+            return GLES20.GL_FRAMEBUFFER_COMPLETE;
+        }
+        final Texture texture = mBoundFramebuffer.mColorAttachment;
+        return texture != null && texture.mWidth > 0 && texture.mHeight > 0
+                ? GLES20.GL_FRAMEBUFFER_COMPLETE
+                : GLES20.GL_FRAMEBUFFER_INCOMPLETE_MISSING_ATTACHMENT;
+    }
+}
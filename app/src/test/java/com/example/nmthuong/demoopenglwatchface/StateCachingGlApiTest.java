@@ -0,0 +1,205 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class StateCachingGlApiTest {
+
+    private static final float[] RED = {1, 0, 0, 1};
+    private static final float[] BLUE = {0, 0, 1, 1};
+    private static final int COLOR_LOCATION = 3;
+
+    private final RecordingGlApi mGl = new RecordingGlApi();
+    private final StateCachingGlApi mCache = new StateCachingGlApi(mGl);
+
+    /**
+     * Calls that had reached {@link #mGl} at the last {@link #assertForwarded}.
+     */
+    private long mCheckedCalls;
+
+    @Test
+    public void currentProgramIsNotBoundAgain() {
+        mCache.glUseProgram(1);
+        mCache.glUseProgram(1);
+        assertForwarded(1);
+
+        mCache.glUseProgram(2);
+        mCache.glUseProgram(1);
+        assertForwarded(2);
+    }
+
+    @Test
+    public void unchangedUniformIsDropped() {
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        assertForwarded(2);
+
+        mCache.glUniform4fv(COLOR_LOCATION, 1, BLUE, 0);
+        assertForwarded(1);
+    }
+
+    @Test
+    public void uniformsAreTrackedPerProgram() {
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        // Another program doesn't have the value yet.
+        mCache.glUseProgram(2);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        assertForwarded(4);
+
+        // The first one still has it.
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        assertForwarded(1);
+    }
+
+    @Test
+    public void intAndFloatUniformsCompareTheirBits() {
+        mCache.glUseProgram(1);
+        mCache.glUniform1i(COLOR_LOCATION, 1);
+        mCache.glUniform1i(COLOR_LOCATION, 1);
+        assertForwarded(2);
+
+        mCache.glUniform1f(COLOR_LOCATION, 1);
+        mCache.glUniform1i(COLOR_LOCATION, 2);
+        assertForwarded(2);
+    }
+
+    @Test
+    public void attributeStateIsNotSetAgain() {
+        mCache.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+        mCache.glEnableVertexAttribArray(0);
+        mCache.glVertexAttribPointer(0, 2, GLES20.GL_SHORT, false, 8, 0);
+        assertForwarded(3);
+
+        mCache.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+        mCache.glEnableVertexAttribArray(0);
+        mCache.glVertexAttribPointer(0, 2, GLES20.GL_SHORT, false, 8, 0);
+        assertForwarded(0);
+
+        // The same offset into another buffer is a different pointer.
+        mCache.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 6);
+        mCache.glVertexAttribPointer(0, 2, GLES20.GL_SHORT, false, 8, 0);
+        assertForwarded(2);
+
+        mCache.glDisableVertexAttribArray(0);
+        mCache.glDisableVertexAttribArray(0);
+        assertForwarded(1);
+    }
+
+    @Test
+    public void clientSidePointersAreAlwaysSet() {
+        final ByteBuffer vertices = ByteBuffer.allocateDirect(64);
+        mCache.glVertexAttribPointer(0, 2, GLES20.GL_FLOAT, false, 8, vertices);
+        mCache.glVertexAttribPointer(0, 2, GLES20.GL_FLOAT, false, 8, vertices);
+        assertForwarded(2);
+    }
+
+    @Test
+    public void boundTexturesAreTrackedPerUnit() {
+        mCache.glActiveTexture(GLES20.GL_TEXTURE0);
+        mCache.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mCache.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        // Unit 0 is active from the start.
+        assertForwarded(1);
+
+        mCache.glActiveTexture(GLES20.GL_TEXTURE1);
+        mCache.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mCache.glActiveTexture(GLES20.GL_TEXTURE0);
+        mCache.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        assertForwarded(3);
+
+        // Deleting a texture unbinds it.
+        mCache.glDeleteTextures(1, new int[]{7}, 0);
+        mCache.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        assertForwarded(2);
+    }
+
+    @Test
+    public void linkingForgetsTheUniforms() {
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glLinkProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        assertForwarded(4);
+    }
+
+    @Test
+    public void loadingABinaryForgetsTheUniforms() {
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glProgramBinary(1, RecordingGlApi.FAKE_BINARY_FORMAT,
+                ByteBuffer.allocateDirect(16), 16);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        assertForwarded(4);
+    }
+
+    @Test
+    public void deletingAProgramForgetsIt() {
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glDeleteProgram(1);
+        assertForwarded(3);
+
+        // The name may come back for a new program.
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        assertForwarded(2);
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+        mCache.glEnableVertexAttribArray(0);
+        mCache.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mCache.glViewport(0, 0, 320, 320);
+        mCache.glEnable(GLES20.GL_BLEND);
+        assertForwarded(7);
+
+        mCache.reset();
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 5);
+        mCache.glEnableVertexAttribArray(0);
+        mCache.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        mCache.glViewport(0, 0, 320, 320);
+        mCache.glEnable(GLES20.GL_BLEND);
+        assertForwarded(7);
+    }
+
+    @Test
+    public void frameCountersCountIssuedAndElidedCalls() {
+        mCache.glUseProgram(1);
+        mCache.beginFrame();
+        mCache.glUseProgram(1);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glUniform4fv(COLOR_LOCATION, 1, RED, 0);
+        mCache.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);
+        assertEquals(2, mCache.getFrameIssuedCalls());
+        assertEquals(2, mCache.getFrameElidedCalls());
+
+        mCache.beginFrame();
+        mCache.glUseProgram(1);
+        assertEquals(0, mCache.getFrameIssuedCalls());
+        assertEquals(1, mCache.getFrameElidedCalls());
+        assertEquals(3, mCache.getTotalIssuedCalls());
+        assertEquals(3, mCache.getTotalElidedCalls());
+        assertEquals(mGl.getTotalCalls(), mCache.getTotalIssuedCalls());
+    }
+
+    /**
+     * Asserts how many calls reached the wrapped GL since the last check.
+     */
+    private void assertForwarded(int calls) {
+        assertEquals(calls, mGl.getTotalCalls() - mCheckedCalls);
+        mCheckedCalls = mGl.getTotalCalls();
+    }
+}
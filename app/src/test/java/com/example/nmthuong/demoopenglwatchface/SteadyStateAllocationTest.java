@@ -0,0 +1,136 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.support.wearable.complications.ComplicationData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that the callbacks the engine forwards to {@link WatchFaceRenderer} allocate nothing
+ * once the face has settled, so garbage collection never pauses the UI thread. The renderer
+ * draws into a {@link RecordingGlApi} on a simulated clock. Complication data isn't persisted,
+ * since encoding a snapshot allocates by design and happens off the UI thread.
+ */
+public class SteadyStateAllocationTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 400;
+
+    /**
+     * Calls made before counting, so classes are initialized, lazily created state exists and
+     * the JIT has compiled the code.
+     */
+    private static final int WARMUP_ITERATIONS = 20000;
+
+    private static final int ITERATIONS = 2000;
+
+    /**
+     * Most rounds of {@link #ITERATIONS} calls counted to get one that allocates nothing. HotSpot
+     * now and then charges the thread a few bytes while it resolves a constant or deoptimizes
+     * compiled code, which never happens twice in the same place. An allocation made by the
+     * renderer happens every round.
+     */
+    private static final int MAX_ROUNDS = 3;
+
+    /**
+     * A step of a steady-state scenario.
+     */
+    private interface Step {
+        void run(int iteration);
+    }
+
+    private final FakeRendererHost mHost = new FakeRendererHost();
+    private WatchFaceRenderer mRenderer;
+    private AllocationCounter mAllocationCounter;
+
+    @Before
+    public void setUp() {
+        mAllocationCounter = AllocationCounter.create();
+        assertNotNull("this JVM can't count allocations per thread", mAllocationCounter);
+
+        mHost.mNowMillis = 8 * 60 * 60 * 1000L;
+        mRenderer = mHost.createRenderer(new RecordingGlApi(), QualityTier.MEDIUM, WIDTH,
+                HEIGHT);
+    }
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+    }
+
+    @Test
+    public void interactiveFramesDontAllocate() {
+        mHost.setState(true /* visible */, false /* ambient */);
+        assertDoesNotAllocate("interactive frame", new Step() {
+            @Override
+            public void run(int iteration) {
+                mHost.mNowMillis += 16;
+                mRenderer.onFrameCheck();
+                mHost.draw();
+            }
+        });
+    }
+
+    @Test
+    public void ambientTicksDontAllocate() {
+        mHost.setState(true /* visible */, true /* ambient */);
+        assertDoesNotAllocate("ambient tick", new Step() {
+            @Override
+            public void run(int iteration) {
+                mHost.mNowMillis += 60 * 1000;
+                mRenderer.onTimeTick();
+                mHost.draw();
+            }
+        });
+    }
+
+    @Test
+    public void complicationCallbacksDontAllocate() {
+        mHost.setState(true /* visible */, false /* ambient */);
+        // Updates alternate between two types, so every other one is a real change and the rest
+        // are deduplicated.
+        final ComplicationData[] updates = {
+                new ComplicationData.Builder(ComplicationData.TYPE_EMPTY).build(),
+                new ComplicationData.Builder(ComplicationData.TYPE_NO_DATA).build()
+        };
+        assertDoesNotAllocate("complication update", new Step() {
+            @Override
+            public void run(int iteration) {
+                mHost.mNowMillis += 100;
+                final ComplicationData data = updates[(iteration / 2) % updates.length];
+                for (int id : FakeRendererHost.COMPLICATION_IDS) {
+                    mRenderer.onComplicationDataUpdate(id, data);
+                }
+                mHost.flush();
+                mRenderer.onComplicationRasterized();
+                mHost.draw();
+            }
+        });
+    }
+
+    /**
+     * Runs a step until it has settled, then fails if it still allocates.
+     */
+    private void assertDoesNotAllocate(String what, Step step) {
+        int iteration = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            step.run(iteration++);
+        }
+        long bytes = 0;
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            final long startBytes = mAllocationCounter.getAllocatedBytes();
+            for (int i = 0; i < ITERATIONS; i++) {
+                step.run(iteration++);
+            }
+            bytes = mAllocationCounter.getBytesSince(startBytes);
+            if (bytes == 0) {
+                break;
+            }
+        }
+        assertEquals(what + " allocated over " + ITERATIONS + " calls", 0, bytes);
+    }
+}
@@ -0,0 +1,556 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Replays hours of watch face use in a few seconds and reports what it cost: frames and wakeups
+ * per mode, GL calls, bytes uploaded and bytes allocated.
+ * <p>
+ * Time comes from a simulated clock that jumps straight to the next thing that happens: a
+ * change of visibility or ambient mode from the script, a frame check, an ambient time tick, a
+ * complication flush or a frame. The harness is the {@link WatchFaceRenderer.Host}: it delivers
+ * these callbacks to the engine's {@link WatchFaceRenderer}, which draws into a
+ * {@link RecordingGlApi}. The surface preserves its content, so interactive frames are partial
+ * where the renderer chooses to. Frame checks come up to {@link #MAX_EARLY_FRAME_CHECK_MILLIS}
+ * early, like the engine's. Adaptive quality is not simulated; the tier is fixed for the whole
+ * run.
+ */
+public class TimeLapseHarness implements WatchFaceRenderer.Host {
+
+    public static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+    /**
+     * Time between vsyncs. A frame asked for sooner after the last one waits for the next vsync.
+     */
+    private static final long VSYNC_MILLIS = 16;
+
+    /**
+     * Most milliseconds a delayed frame check may come early. The engine's Handler counts delays
+     * in uptime, while frames are scheduled by the wall clock, which is adjusted against it, so
+     * checks don't land exactly on frame boundaries. One that comes early finds the frame on
+     * screen still current and is skipped.
+     */
+    private static final int MAX_EARLY_FRAME_CHECK_MILLIS = 3;
+
+    /**
+     * Most GL calls a frame may make, counted after {@link StateCachingGlApi} dropped the
+     * redundant ones, indexed by {@link FrameMetrics#MODE_INTERACTIVE} and
+     * {@link FrameMetrics#MODE_AMBIENT}. Ambient frames include prerendering the next one.
+     */
+    private static final int[] MAX_GL_CALLS_PER_FRAME = {16, 24};
+
+    /**
+     * Most vertex and texture bytes a frame may upload. Everything is uploaded once when the
+     * context is created.
+     */
+    private static final long MAX_UPLOAD_BYTES_PER_FRAME = 0;
+
+    /**
+     * Most steady-state wakeups per mode that may allocate. Wakeups during the first visit to
+     * each mode are not steady-state, since they initialize classes, lazily created state and
+     * caches.
+     */
+    private static final int MAX_ALLOCATING_WAKEUPS = 0;
+
+    private static final int NUM_MODES = 2;
+    private static final String[] MODE_NAMES = {"interactive", "ambient"};
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * A change of visibility or ambient mode.
+     */
+    private static final class Transition {
+        final long mTimeMillis;
+        final boolean mVisible;
+        final boolean mAmbient;
+
+        Transition(long timeMillis, boolean visible, boolean ambient) {
+            mTimeMillis = timeMillis;
+            mVisible = visible;
+            mAmbient = ambient;
+        }
+    }
+
+    /**
+     * Most frames, wakeups, GL calls and draw calls each mode may cost over a whole run, e.g. a
+     * day. They catch frames drawn more often than they should be, which budgets per frame
+     * can't.
+     */
+    public static final class Budget {
+        private final long[] mFrames = new long[NUM_MODES];
+        private final long[] mWakeups = new long[NUM_MODES];
+        private final long[] mGlCalls = new long[NUM_MODES];
+        private final long[] mDrawCalls = new long[NUM_MODES];
+
+        /**
+         * Sets the budgets of a mode.
+         *
+         * @param mode {@link FrameMetrics#MODE_INTERACTIVE} or {@link FrameMetrics#MODE_AMBIENT}
+         * @return this, for chaining
+         */
+        public Budget setMode(int mode, long frames, long wakeups, long glCalls,
+                              long drawCalls) {
+            mFrames[mode] = frames;
+            mWakeups[mode] = wakeups;
+            mGlCalls[mode] = glCalls;
+            mDrawCalls[mode] = drawCalls;
+            return this;
+        }
+    }
+
+    /**
+     * Costs of a run.
+     */
+    public static final class Report {
+        private final long mDurationMillis;
+        private final long[] mFrames = new long[NUM_MODES];
+        private final long[] mWakeups = new long[NUM_MODES];
+        private final long[] mGlCalls = new long[NUM_MODES];
+        private final long[] mElidedGlCalls = new long[NUM_MODES];
+        private final long[] mDrawCalls = new long[NUM_MODES];
+        private final long[] mUploadBytes = new long[NUM_MODES];
+        private final long[] mAllocatedBytes = new long[NUM_MODES];
+        private final long[] mAllocatingWakeups = new long[NUM_MODES];
+        private final int[] mMaxFrameGlCalls = new int[NUM_MODES];
+        private final long[] mMaxFrameUploadBytes = new long[NUM_MODES];
+        private boolean mAllocationsCounted;
+        private long mSkippedFrames;
+        private int mAmbientCacheHits;
+        private int mAmbientCacheMisses;
+        private long mSetupUploadBytes;
+        private long mRunNanos;
+
+        private Report(long durationMillis) {
+            mDurationMillis = durationMillis;
+        }
+
+        /**
+         * @param mode {@link FrameMetrics#MODE_INTERACTIVE} or {@link FrameMetrics#MODE_AMBIENT}
+         */
+        public long getFrames(int mode) {
+            return mFrames[mode];
+        }
+
+        /**
+         * Returns the number of times the face woke up in a mode, to draw or to decide not to.
+         */
+        public long getWakeups(int mode) {
+            return mWakeups[mode];
+        }
+
+        public long getGlCalls(int mode) {
+            return mGlCalls[mode];
+        }
+
+        public long getDrawCalls(int mode) {
+            return mDrawCalls[mode];
+        }
+
+        public long getUploadBytes(int mode) {
+            return mUploadBytes[mode];
+        }
+
+        /**
+         * Returns the bytes allocated while handling wakeups in a mode, or -1 if the runtime
+         * can't count allocations.
+         */
+        public long getAllocatedBytes(int mode) {
+            return mAllocationsCounted ? mAllocatedBytes[mode] : -1;
+        }
+
+        /**
+         * Returns the number of steady-state wakeups in a mode that allocated, or -1 if the
+         * runtime can't count allocations.
+         */
+        public long getAllocatingWakeups(int mode) {
+            return mAllocationsCounted ? mAllocatingWakeups[mode] : -1;
+        }
+
+        /**
+         * Returns the number of frames asked for but skipped because they would have repeated
+         * the one on screen.
+         */
+        public long getSkippedFrames() {
+            return mSkippedFrames;
+        }
+
+        /**
+         * Checks the totals of each mode against a budget for the run, the most expensive
+         * frame of each mode against the budgets per frame, and that steady-state wakeups don't
+         * allocate.
+         *
+         * @return what is over budget, or null if nothing is
+         */
+        public String checkBudgets(Budget budget) {
+            StringBuilder out = new StringBuilder();
+            for (int mode = 0; mode < NUM_MODES; mode++) {
+                checkTotal(out, mode, "frames", mFrames[mode], budget.mFrames[mode]);
+                checkTotal(out, mode, "wakeups", mWakeups[mode], budget.mWakeups[mode]);
+                checkTotal(out, mode, "GL calls", mGlCalls[mode], budget.mGlCalls[mode]);
+                checkTotal(out, mode, "draw calls", mDrawCalls[mode], budget.mDrawCalls[mode]);
+                if (mMaxFrameGlCalls[mode] > MAX_GL_CALLS_PER_FRAME[mode]) {
+                    out.append(MODE_NAMES[mode]).append(" frame made ")
+                            .append(mMaxFrameGlCalls[mode]).append(" GL calls, budget ")
+                            .append(MAX_GL_CALLS_PER_FRAME[mode]).append('\n');
+                }
+                if (mMaxFrameUploadBytes[mode] > MAX_UPLOAD_BYTES_PER_FRAME) {
+                    out.append(MODE_NAMES[mode]).append(" frame uploaded ")
+                            .append(mMaxFrameUploadBytes[mode]).append(" bytes, budget ")
+                            .append(MAX_UPLOAD_BYTES_PER_FRAME).append('\n');
+                }
+                if (mAllocatingWakeups[mode] > MAX_ALLOCATING_WAKEUPS) {
+                    out.append(mAllocatingWakeups[mode]).append(' ').append(MODE_NAMES[mode])
+                            .append(" wakeups allocated, budget ")
+                            .append(MAX_ALLOCATING_WAKEUPS).append('\n');
+                }
+            }
+            return out.length() == 0 ? null : out.toString();
+        }
+
+        private static void checkTotal(StringBuilder out, int mode, String name, long total,
+                                       long budget) {
+            if (total > budget) {
+                out.append(MODE_NAMES[mode]).append(": ").append(total).append(' ').append(name)
+                        .append(", budget ").append(budget).append('\n');
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append("TimeLapseHarness: ").append(mDurationMillis / MILLIS_PER_HOUR)
+                    .append(" h simulated in ").append(mRunNanos / 1000000).append(" ms\n");
+            for (int mode = 0; mode < NUM_MODES; mode++) {
+                out.append(MODE_NAMES[mode]).append(": ").append(mFrames[mode])
+                        .append(" frames, ").append(mWakeups[mode]).append(" wakeups, ")
+                        .append(mGlCalls[mode]).append(" GL calls (")
+                        .append(mElidedGlCalls[mode]).append(" elided, max ")
+                        .append(mMaxFrameGlCalls[mode]).append(" per frame), ")
+                        .append(mDrawCalls[mode]).append(" draw calls, ")
+                        .append(mUploadBytes[mode]).append(" bytes uploaded, ");
+                if (mAllocationsCounted) {
+                    out.append(mAllocatedBytes[mode]).append(" bytes allocated, ")
+                            .append(mAllocatingWakeups[mode])
+                            .append(" steady-state wakeups allocated\n");
+                } else {
+                    out.append("allocations not counted\n");
+                }
+            }
+            out.append(mSkippedFrames).append(" frames skipped, ambient cache ")
+                    .append(mAmbientCacheHits).append(" hits ").append(mAmbientCacheMisses)
+                    .append(" misses, ").append(mSetupUploadBytes)
+                    .append(" bytes uploaded at setup\n");
+            return out.toString();
+        }
+    }
+
+    private static final int[] COMPLICATION_IDS = {0, 1, 2};
+
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * The simulated time, in milliseconds since the start of the run. The run starts at
+     * midnight UTC.
+     */
+    private long mNowMillis;
+
+    private final FrameScheduler.TimeSource mClock = new FrameScheduler.TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+    };
+
+    private final List<Transition> mTransitions = new ArrayList<>();
+
+    private boolean mVisible;
+    private boolean mAmbient;
+
+    /**
+     * When the frame check asked for with {@link #requestFrameCheck} is due, or {@link #NEVER}.
+     */
+    private long mFrameCheckMillis = NEVER;
+
+    /**
+     * When the frame asked for with {@link #invalidate()} is drawn, or {@link #NEVER}.
+     */
+    private long mDrawMillis = NEVER;
+
+    /**
+     * When the flush asked for with {@link #requestComplicationFlush} is due, or {@link #NEVER}.
+     */
+    private long mFlushMillis = NEVER;
+
+    /**
+     * Callbacks asked for while drawing, delivered right after the frame.
+     */
+    private boolean mFrameSwappedRequested;
+    private boolean mAmbientPrerenderRequested;
+
+    private long mLastFrameMillis = -VSYNC_MILLIS;
+
+    private final RecordingGlApi mRecordingGl = new RecordingGlApi();
+    private final Object mEglContext = new Object();
+    private final WatchFaceRenderer mRenderer;
+    private final AllocationCounter mAllocationCounter = AllocationCounter.create();
+
+    /**
+     * Picks how early frame checks come, the same way every run.
+     */
+    private final Random mFrameCheckJitter = new Random(1);
+
+    /**
+     * @param width  width of the simulated screen in pixels
+     * @param height height of the simulated screen in pixels
+     * @param tier   tier to draw every frame at
+     */
+    public TimeLapseHarness(int width, int height, QualityTier tier) {
+        mWidth = width;
+        mHeight = height;
+        mRenderer = new WatchFaceRenderer(mRecordingGl, mClock, new FixedQualityPolicy(tier),
+                new FrameMetrics(1000000000L / 60, 16 /* ringCapacity */), this);
+        mRenderer.setTimeZone(TimeZone.getTimeZone("UTC"), false /* invalidate */);
+        final ComplicationDrawable[] drawables =
+                new ComplicationDrawable[COMPLICATION_IDS.length];
+        for (int i = 0; i < drawables.length; i++) {
+            drawables[i] = new ComplicationDrawable();
+        }
+        mRenderer.setComplications(new ComplicationRasterizer(mRenderer.getGl(),
+                        COMPLICATION_IDS, drawables, new ComplicationRasterizer.Listener() {
+                            @Override
+                            public void onComplicationRasterized(int complicationId) {
+                                // Nothing is rasterized without a worker thread.
+                            }
+                        }),
+                new ComplicationUpdateCoalescer(null /* context */, mClock, COMPLICATION_IDS),
+                null /* snapshotStore */);
+    }
+
+    /**
+     * Returns a harness scripted with a typical day: off the wrist until 7:00 and after 23:00,
+     * otherwise in ambient mode with a 6 second glance every 8 minutes.
+     */
+    public static TimeLapseHarness typicalDay(int width, int height, QualityTier tier) {
+        final TimeLapseHarness harness = new TimeLapseHarness(width, height, tier);
+        harness.addGlances(7 * MILLIS_PER_HOUR, 23 * MILLIS_PER_HOUR, 8 * MILLIS_PER_MINUTE,
+                6000);
+        harness.addTransition(23 * MILLIS_PER_HOUR, false /* visible */, true /* ambient */);
+        return harness;
+    }
+
+    /**
+     * Switches visibility and ambient mode at a time since the start of the run. The face
+     * starts out invisible and interactive.
+     */
+    public void addTransition(long timeMillis, boolean visible, boolean ambient) {
+        mTransitions.add(new Transition(timeMillis, visible, ambient));
+    }
+
+    /**
+     * Makes the face visible in ambient mode from one time to another, and interactive for a
+     * while at regular intervals, starting right away.
+     */
+    public void addGlances(long fromMillis, long toMillis, long intervalMillis,
+                           long durationMillis) {
+        for (long start = fromMillis; start < toMillis; start += intervalMillis) {
+            addTransition(start, true /* visible */, false /* ambient */);
+            addTransition(Math.min(start + durationMillis, toMillis), true /* visible */,
+                    true /* ambient */);
+        }
+    }
+
+    /**
+     * Replays the script from midnight for the given time.
+     */
+    public Report run(long durationMillis) {
+        final long startNanos = System.nanoTime();
+        final Report report = new Report(durationMillis);
+        report.mAllocationsCounted = mAllocationCounter != null;
+        mRenderer.onGlContextCreated(mEglContext);
+        // Gles2WatchFaceService sets the viewport before onGlSurfaceCreated().
+        mRenderer.getGl().glViewport(0, 0, mWidth, mHeight);
+        mRenderer.onSurfaceChanged(mWidth, mHeight);
+        report.mSetupUploadBytes = mRecordingGl.getTotalUploadBytes();
+
+        Collections.sort(mTransitions, new Comparator<Transition>() {
+            @Override
+            public int compare(Transition a, Transition b) {
+                return a.mTimeMillis < b.mTimeMillis ? -1 : a.mTimeMillis > b.mTimeMillis ? 1 : 0;
+            }
+        });
+        int nextTransition = 0;
+        // Times each mode was entered, and the mode of the last wakeup.
+        final int[] visits = new int[NUM_MODES];
+        int lastMode = -1;
+        while (true) {
+            final long transitionMillis = nextTransition < mTransitions.size()
+                    ? mTransitions.get(nextTransition).mTimeMillis : NEVER;
+            // The system ticks once a minute in ambient mode.
+            final long tickMillis = mVisible && mAmbient
+                    ? (mNowMillis / MILLIS_PER_MINUTE + 1) * MILLIS_PER_MINUTE : NEVER;
+            final long eventMillis = Math.min(Math.min(transitionMillis, tickMillis),
+                    Math.min(Math.min(mFrameCheckMillis, mFlushMillis), mDrawMillis));
+            if (eventMillis >= durationMillis) {
+                break;
+            }
+            mNowMillis = eventMillis;
+
+            while (nextTransition < mTransitions.size()
+                    && mTransitions.get(nextTransition).mTimeMillis == mNowMillis) {
+                final Transition transition = mTransitions.get(nextTransition++);
+                setState(transition.mVisible, transition.mAmbient);
+            }
+            if (!mVisible) {
+                continue;
+            }
+            final int mode = mAmbient ? FrameMetrics.MODE_AMBIENT
+                    : FrameMetrics.MODE_INTERACTIVE;
+            final long startBytes = mAllocationCounter != null
+                    ? mAllocationCounter.getAllocatedBytes() : 0;
+            if (mode != lastMode) {
+                visits[mode]++;
+                lastMode = mode;
+            }
+            report.mWakeups[mode]++;
+            if (tickMillis == mNowMillis && mAmbient) {
+                mRenderer.onTimeTick();
+            }
+            if (mFrameCheckMillis == mNowMillis) {
+                mFrameCheckMillis = NEVER;
+                mRenderer.onFrameCheck();
+            }
+            if (mFlushMillis == mNowMillis) {
+                mFlushMillis = NEVER;
+                mRenderer.flushComplicationUpdates();
+            }
+            if (mDrawMillis == mNowMillis) {
+                mDrawMillis = NEVER;
+                onDraw(report, mode);
+            }
+            if (mAllocationCounter != null) {
+                final long bytes = mAllocationCounter.getBytesSince(startBytes);
+                report.mAllocatedBytes[mode] += bytes;
+                if (bytes > 0 && visits[mode] > 1) {
+                    report.mAllocatingWakeups[mode]++;
+                }
+            }
+        }
+
+        report.mSkippedFrames = mRenderer.getFramePacer().getSkippedFrames();
+        report.mAmbientCacheHits = mRenderer.getAmbientFrameCache().getHits();
+        report.mAmbientCacheMisses = mRenderer.getAmbientFrameCache().getMisses();
+        mRenderer.release();
+        ShaderRegistry.getInstance().forgetContext(mEglContext);
+        report.mRunNanos = System.nanoTime() - startNanos;
+        return report;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return mVisible;
+    }
+
+    @Override
+    public boolean isInAmbientMode() {
+        return mAmbient;
+    }
+
+    @Override
+    public void invalidate() {
+        // The system doesn't draw invisible faces.
+        if (mVisible && mDrawMillis == NEVER) {
+            mDrawMillis = Math.max(mNowMillis, mLastFrameMillis + VSYNC_MILLIS);
+        }
+    }
+
+    @Override
+    public void requestFrameCheck(long delayMillis) {
+        final long early = delayMillis > MAX_EARLY_FRAME_CHECK_MILLIS
+                ? mFrameCheckJitter.nextInt(MAX_EARLY_FRAME_CHECK_MILLIS + 1) : 0;
+        mFrameCheckMillis = mNowMillis + Math.max(0, delayMillis) - early;
+    }
+
+    @Override
+    public void cancelFrameCheck() {
+        mFrameCheckMillis = NEVER;
+    }
+
+    @Override
+    public void requestAmbientPrerender() {
+        mAmbientPrerenderRequested = true;
+    }
+
+    @Override
+    public void requestComplicationFlush(long delayMillis) {
+        if (mFlushMillis == NEVER) {
+            mFlushMillis = mNowMillis + Math.max(0, delayMillis);
+        }
+    }
+
+    @Override
+    public void requestFrameSwappedCallback() {
+        mFrameSwappedRequested = true;
+    }
+
+    @Override
+    public boolean setPreserveBufferOnSwap(boolean preserve) {
+        return preserve;
+    }
+
+    /**
+     * Does what the engine does when the visibility or ambient mode changes.
+     */
+    private void setState(boolean visible, boolean ambient) {
+        if (ambient != mAmbient) {
+            mAmbient = ambient;
+            mRenderer.onAmbientModeChanged(ambient);
+        }
+        if (visible != mVisible) {
+            mVisible = visible;
+            if (!visible) {
+                mDrawMillis = NEVER;
+            }
+            mRenderer.onVisibilityChanged(visible);
+        }
+    }
+
+    /**
+     * Draws a frame like the engine's {@code onDraw()}, then delivers the callbacks the renderer
+     * asked for once it is on screen, and adds the costs to the report. Ambient frames include
+     * prerendering the next one.
+     */
+    private void onDraw(Report report, int mode) {
+        mRecordingGl.beginFrame();
+        mRenderer.onDraw();
+        mLastFrameMillis = mNowMillis;
+        if (mFrameSwappedRequested) {
+            mFrameSwappedRequested = false;
+            mRenderer.onFrameSwapped();
+        }
+        if (mAmbientPrerenderRequested) {
+            mAmbientPrerenderRequested = false;
+            mRenderer.prerenderAmbientFrame();
+        }
+
+        report.mFrames[mode]++;
+        report.mGlCalls[mode] += mRecordingGl.getFrameCalls();
+        report.mElidedGlCalls[mode] += mRenderer.getGl().getFrameElidedCalls();
+        report.mDrawCalls[mode] += mRecordingGl.getFrameDrawCalls();
+        report.mUploadBytes[mode] += mRecordingGl.getFrameUploadBytes();
+        report.mMaxFrameGlCalls[mode] = Math.max(report.mMaxFrameGlCalls[mode],
+                mRecordingGl.getFrameCalls());
+        report.mMaxFrameUploadBytes[mode] = Math.max(report.mMaxFrameUploadBytes[mode],
+                mRecordingGl.getFrameUploadBytes());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TimeLapseHarnessTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 400;
+
+    /**
+     * Most days replayed per tier to get one within budget. HotSpot now and then charges the
+     * thread a few bytes while it resolves a constant or deoptimizes compiled code, which never
+     * happens twice in the same place. An allocation made by the renderer happens every day.
+     */
+    private static final int MAX_CHECKED_DAYS = 3;
+
+    /**
+     * Days replayed before the checked ones, so the JIT has compiled the frame loop's paths.
+     */
+    private static final int WARMUP_DAYS = 2;
+
+    /**
+     * What a typical day is made of: 6 second glances every 8 minutes from 7:00 to 23:00, and
+     * ambient mode in between.
+     */
+    private static final int GLANCES = 120;
+    private static final long INTERACTIVE_SECONDS = GLANCES * 6;
+    private static final long AMBIENT_MINUTES = 16 * 60;
+
+    /**
+     * Most interactive frames per second at the tiers that sweep. The tip of the second hand
+     * moves a pixel about every 70 ms on this screen, so frame skipping holds HIGH to about the
+     * rate of MEDIUM.
+     */
+    private static final int MAX_SWEEP_FRAMES_PER_SECOND = 15;
+
+    @Test
+    public void typicalDayStaysWithinBudgets() {
+        for (QualityTier tier : QualityTier.values()) {
+            for (int day = 0; day < WARMUP_DAYS; day++) {
+                TimeLapseHarness.typicalDay(WIDTH, HEIGHT, tier)
+                        .run(TimeLapseHarness.MILLIS_PER_DAY);
+            }
+            TimeLapseHarness.Report report = null;
+            String failure = null;
+            for (int day = 0; day < MAX_CHECKED_DAYS; day++) {
+                report = TimeLapseHarness.typicalDay(WIDTH, HEIGHT, tier)
+                        .run(TimeLapseHarness.MILLIS_PER_DAY);
+                failure = report.checkBudgets(getTypicalDayBudget(tier));
+                if (failure == null) {
+                    break;
+                }
+            }
+            MicroBenchmark.print(tier + " " + report);
+
+            assertNull(tier + " " + report, failure);
+            assertTrue(report.getFrames(FrameMetrics.MODE_INTERACTIVE) > 0);
+            assertTrue(report.getFrames(FrameMetrics.MODE_AMBIENT) > 0);
+            // Even at one frame a second, frame checks that come early are skipped.
+            assertTrue(tier + " " + report, report.getSkippedFrames() > 0);
+        }
+    }
+
+    private static TimeLapseHarness.Budget getTypicalDayBudget(QualityTier tier) {
+        final long interactiveFrames = INTERACTIVE_SECONDS
+                * Math.min(tier.getFramesPerSecond(), MAX_SWEEP_FRAMES_PER_SECOND);
+        // A frame a minute, and one when each glance ends.
+        final long ambientFrames = AMBIENT_MINUTES + GLANCES;
+        return new TimeLapseHarness.Budget()
+                // Every frame may take a second wakeup that comes early and skips it, and the
+                // first frame of every glance an extra one.
+                .setMode(FrameMetrics.MODE_INTERACTIVE, interactiveFrames,
+                        2 * interactiveFrames + GLANCES, 8 * interactiveFrames,
+                        interactiveFrames)
+                // An interactive frame asked for just before a glance ends is drawn after it.
+                .setMode(FrameMetrics.MODE_AMBIENT, ambientFrames, ambientFrames + GLANCES,
+                        17 * ambientFrames, 3 * ambientFrames);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the float and compact {@link VertexFormat}s on the dial's geometry: how many bytes
+ * every vertex takes, and how long encoding takes. See {@link MicroBenchmark} for how to run it.
+ */
+public class VertexFormatBenchmark {
+
+    /**
+     * Vertices of every layer of the dial, {@link VertexFormat#COORDS_PER_VERTEX} floats each.
+     */
+    private final float[] mCoords;
+
+    /**
+     * {@link #mCoords} with every vertex followed by its layer's color, the input of the formats
+     * with a color.
+     */
+    private final float[] mColoredCoords;
+
+    /**
+     * Layer of every vertex.
+     */
+    private final int[] mLayers;
+
+    private final float[] mColors;
+    private final int mVertexCount;
+
+    public VertexFormatBenchmark() {
+        final float[][] layerCoords = DialGeometry.createLayerCoords();
+        final float[][] layerColors = DialGeometry.getLayerColors();
+        int vertexCount = 0;
+        for (float[] coords : layerCoords) {
+            vertexCount += coords.length / VertexFormat.COORDS_PER_VERTEX;
+        }
+        mVertexCount = vertexCount;
+        mCoords = new float[vertexCount * VertexFormat.COORDS_PER_VERTEX];
+        mColoredCoords = new float[vertexCount
+                * (VertexFormat.COORDS_PER_VERTEX + VertexFormat.NUM_COLOR_COMPONENTS)];
+        mColors = new float[vertexCount * VertexFormat.NUM_COLOR_COMPONENTS];
+        mLayers = new int[vertexCount];
+        int v = 0;
+        int c = 0;
+        for (int layer = 0; layer < layerCoords.length; layer++) {
+            final float[] coords = layerCoords[layer];
+            for (int i = 0; i < coords.length; i += VertexFormat.COORDS_PER_VERTEX, v++) {
+                System.arraycopy(coords, i, mCoords, v * VertexFormat.COORDS_PER_VERTEX,
+                        VertexFormat.COORDS_PER_VERTEX);
+                System.arraycopy(coords, i, mColoredCoords, c, VertexFormat.COORDS_PER_VERTEX);
+                c += VertexFormat.COORDS_PER_VERTEX;
+                System.arraycopy(layerColors[layer], 0, mColoredCoords, c,
+                        VertexFormat.NUM_COLOR_COMPONENTS);
+                c += VertexFormat.NUM_COLOR_COMPONENTS;
+                System.arraycopy(layerColors[layer], 0, mColors,
+                        v * VertexFormat.NUM_COLOR_COMPONENTS, VertexFormat.NUM_COLOR_COMPONENTS);
+                mLayers[v] = layer;
+            }
+        }
+    }
+
+    @Test
+    public void compactFormatsShrinkTheDial() {
+        assertSizeReduction(VertexFormat.FLOAT_XYZ, VertexFormat.SHORT_XY, 3);
+        assertSizeReduction(VertexFormat.FLOAT_XYZ_RGBA, VertexFormat.SHORT_XY_UBYTE_RGBA, 3.5);
+        assertSizeReduction(VertexFormat.FLOAT_XYZ_RGBA_LAYER,
+                VertexFormat.SHORT_XY_UBYTE_RGBA_LAYER, 32.0 / 12);
+    }
+
+    @Test
+    public void encodeCost() {
+        compareEncodeCost(VertexFormat.FLOAT_XYZ, VertexFormat.SHORT_XY, mCoords);
+        compareEncodeCost(VertexFormat.FLOAT_XYZ_RGBA, VertexFormat.SHORT_XY_UBYTE_RGBA,
+                mColoredCoords);
+    }
+
+    @Test
+    public void putCost() {
+        comparePutCost(VertexFormat.FLOAT_XYZ_RGBA_LAYER, VertexFormat.SHORT_XY_UBYTE_RGBA_LAYER);
+    }
+
+    private void assertSizeReduction(VertexFormat floatFormat, VertexFormat compactFormat,
+                                     double expectedRatio) {
+        final int floatBytes = mVertexCount * floatFormat.getStride();
+        final int compactBytes = mVertexCount * compactFormat.getStride();
+        MicroBenchmark.print(String.format(Locale.US, "%s: %d vertices, %d -> %d bytes (%.2fx)",
+                compactFormat, mVertexCount, floatBytes, compactBytes,
+                (double) floatBytes / compactBytes));
+        assertEquals(expectedRatio, (double) floatBytes / compactBytes, 1e-9);
+    }
+
+    /**
+     * Times {@link VertexFormat#encode} of the whole dial, including the buffer it allocates.
+     */
+    private void compareEncodeCost(VertexFormat floatFormat, VertexFormat compactFormat,
+                                   final float[] vertices) {
+        final double floatNanos = measureEncode(floatFormat, vertices);
+        final double compactNanos = measureEncode(compactFormat, vertices);
+        printComparison(compactFormat, floatNanos, compactNanos);
+    }
+
+    private double measureEncode(final VertexFormat format, final float[] vertices) {
+        return MicroBenchmark.measure("encode " + format, new MicroBenchmark.Operation() {
+            @Override
+            public long run() {
+                return format.encode(vertices).get(format.getStride() - 1);
+            }
+        });
+    }
+
+    /**
+     * Times {@link VertexFormat#put} of every vertex of the dial into a reused buffer, the way
+     * the dial batch is built.
+     */
+    private void comparePutCost(VertexFormat floatFormat, VertexFormat compactFormat) {
+        final double floatNanos = measurePut(floatFormat);
+        final double compactNanos = measurePut(compactFormat);
+        printComparison(compactFormat, floatNanos, compactNanos);
+    }
+
+    private double measurePut(final VertexFormat format) {
+        final ByteBuffer buffer = format.allocate(mVertexCount);
+        return MicroBenchmark.measure("put " + format, new MicroBenchmark.Operation() {
+            @Override
+            public long run() {
+                buffer.position(0);
+                for (int v = 0; v < mVertexCount; v++) {
+                    format.put(buffer, mCoords, v * VertexFormat.COORDS_PER_VERTEX, mColors,
+                            v * VertexFormat.NUM_COLOR_COMPONENTS, mLayers[v]);
+                }
+                return buffer.get(0);
+            }
+        });
+    }
+
+    private void printComparison(VertexFormat compactFormat, double floatNanos,
+                                 double compactNanos) {
+        MicroBenchmark.print(String.format(Locale.US,
+                "%s: %.1f ns per vertex, %.2fx the float format's time", compactFormat,
+                compactNanos / mVertexCount, compactNanos / floatNanos));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.nmthuong.demoopenglwatchface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VertexWelderTest {
+
+    /**
+     * A unit square as two triangles sharing the diagonal from (1, 0) to (0, 1).
+     */
+    private static final float[] SQUARE = {
+            0, 0, 0, 1, 0, 0, 0, 1, 0,
+            0, 1, 0, 1, 0, 0, 1, 1, 0
+    };
+
+    @Test
+    public void sharedVerticesAreWelded() {
+        final VertexWelder welder = new VertexWelder(SQUARE, 3);
+
+        assertEquals(6, welder.getInputVertexCount());
+        assertEquals(4, welder.getUniqueVertexCount());
+        // Unique vertices keep the order they first appear in.
+        assertArrayEquals(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 1, 0},
+                welder.getVertices(), 0);
+        assertArrayEquals(new short[]{0, 1, 2, 2, 1, 3}, welder.getIndices());
+    }
+
+    @Test
+    public void negativeZeroIsWeldedWithZero() {
+        final float[] vertices = {
+                0f, 1, 0, -0f, 1, 0, 0, 1, -0f,
+                -0f, -0f, -0f, 0, 0, 0, 1, 1, 1
+        };
+        final VertexWelder welder = new VertexWelder(vertices, 3);
+
+        assertEquals(3, welder.getUniqueVertexCount());
+        assertArrayEquals(new short[]{0, 0, 0, 1, 1, 2}, welder.getIndices());
+    }
+
+    @Test
+    public void differentComponentsAreKeptApart() {
+        // Same coordinates in a different order, and values one ulp apart.
+        final float[] vertices = {
+                1, 2, 3, 3, 2, 1, 1, 2, Math.nextUp(3f)
+        };
+        final VertexWelder welder = new VertexWelder(vertices, 3);
+
+        assertEquals(3, welder.getUniqueVertexCount());
+    }
+
+    @Test
+    public void indicesReproduceTheInput() {
+        // A 20x20 grid of quads, two triangles each, so inner corners are shared by up to six
+        // triangles.
+        final int size = 20;
+        final float[] vertices = new float[size * size * 6 * 3];
+        int n = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final int[] corners = {x, y, x + 1, y, x, y + 1, x, y + 1, x + 1, y, x + 1, y + 1};
+                for (int c = 0; c < corners.length; c += 2) {
+                    vertices[n++] = corners[c] * 0.1f - 1;
+                    vertices[n++] = corners[c + 1] * 0.1f - 1;
+                    vertices[n++] = 0;
+                }
+            }
+        }
+        final VertexWelder welder = new VertexWelder(vertices, 3);
+
+        assertEquals((size + 1) * (size + 1), welder.getUniqueVertexCount());
+        final float[] unique = welder.getVertices();
+        final short[] indices = welder.getIndices();
+        assertEquals(size * size * 6, indices.length);
+        for (int v = 0; v < indices.length; v++) {
+            final int index = indices[v] & 0xffff;
+            for (int i = 0; i < 3; i++) {
+                assertEquals(vertices[v * 3 + i], unique[index * 3 + i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void savedBytesCountIndicesAgainstRemovedVertices() {
+        final VertexWelder welder = new VertexWelder(SQUARE, 3);
+
+        // Two 12-byte vertices removed, six 2-byte indices added.
+        assertEquals(2 * 12 - 6 * 2, welder.getSavedBytes(12));
+        // Compact vertices don't pay for the indices.
+        assertTrue(welder.getSavedBytes(4) < 0);
+    }
+
+    @Test
+    public void allUnsignedShortIndicesCanBeUsed() {
+        final float[] vertices = new float[VertexWelder.MAX_VERTICES * 2];
+        for (int i = 0; i < VertexWelder.MAX_VERTICES; i++) {
+            vertices[i] = i;
+            // The second half repeats the first.
+            vertices[VertexWelder.MAX_VERTICES + i] = i;
+        }
+        final VertexWelder welder = new VertexWelder(vertices, 1);
+
+        assertEquals(VertexWelder.MAX_VERTICES, welder.getUniqueVertexCount());
+        final short[] indices = welder.getIndices();
+        final int last = VertexWelder.MAX_VERTICES - 1;
+        assertEquals(last, indices[last] & 0xffff);
+        assertEquals(last, indices[indices.length - 1] & 0xffff);
+    }
+
+    @Test
+    public void tooManyUniqueVerticesAreRejected() {
+        final float[] vertices = new float[VertexWelder.MAX_VERTICES + 1];
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = i;
+        }
+        try {
+            new VertexWelder(vertices, 1);
+            fail("welded " + vertices.length + " unique vertices");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void partialVerticesAreRejected() {
+        try {
+            new VertexWelder(new float[]{0, 0, 0, 1}, 3);
+            fail("accepted 4 floats as 3D vertices");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void emptyInputHasNoVertices() {
+        final VertexWelder welder = new VertexWelder(new float[0], 3);
+
+        assertEquals(0, welder.getUniqueVertexCount());
+        assertEquals(0, welder.getIndices().length);
+    }
+}